@@ -0,0 +1,189 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.settings.WidgetSettings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class LightMapStripsTest
+{
+    public static final int TEST_APPWIDGET_ID = Integer.MAX_VALUE - 20;
+    public static final int TEST_APPWIDGET_ID_POLAR = Integer.MAX_VALUE - 21;
+    public static final int W = 240, H = 16;
+
+    private Context context;
+
+    @Before
+    public void setup()
+    {
+        context = InstrumentationRegistry.getTargetContext();
+        WidgetSettings.saveLocationFromAppPref(context, TEST_APPWIDGET_ID, false);
+        WidgetSettings.saveLocationPref(context, TEST_APPWIDGET_ID, new Location("test", "35", "-112", "0"));
+        WidgetSettings.saveLocationFromAppPref(context, TEST_APPWIDGET_ID_POLAR, false);
+        WidgetSettings.saveLocationPref(context, TEST_APPWIDGET_ID_POLAR, new Location("polar", "85", "0", "0"));
+        LightMapStrips.clear();
+    }
+
+    @After
+    public void cleanup()
+    {
+        WidgetSettings.deletePrefs(context, TEST_APPWIDGET_ID);
+        WidgetSettings.deletePrefs(context, TEST_APPWIDGET_ID_POLAR);
+        LightMapStrips.clear();
+    }
+
+    protected SuntimesRiseSetDataset createData(int appWidgetId, int year, int month, int day)
+    {
+        SuntimesRiseSetDataset data = new SuntimesRiseSetDataset(context, appWidgetId);
+        Calendar date = Calendar.getInstance(data.timezone());
+        date.set(year, month, day, 12, 0, 0);
+        data.setTodayIs(date);
+        data.calculateData();
+        return data;
+    }
+
+    protected LightMapView.LightMapColors createColors(SuntimesRiseSetDataset data)
+    {
+        LightMapView.LightMapColors colors = new LightMapView.LightMapColors();
+        colors.colorNight = 0xff000000;
+        colors.colorAstro = 0xff000040;
+        colors.colorNautical = 0xff000080;
+        colors.colorCivil = 0xff0000c0;
+        colors.colorDay = 0xffffff00;
+        colors.now = data.calendar().getTimeInMillis();
+        colors.offsetMinutes = 0;
+        return colors;
+    }
+
+    @Test
+    public void test_strips()
+    {
+        Bitmap strip = Bitmap.createBitmap(W, H, Bitmap.Config.RGB_565);
+        assertNull(LightMapStrips.get("test0"));
+        assertEquals(1, LightMapStrips.getNumMisses());
+
+        LightMapStrips.put("test0", strip);
+        assertTrue(LightMapStrips.contains("test0"));
+        assertSame(strip, LightMapStrips.get("test0"));
+        assertEquals(1, LightMapStrips.getNumHits());
+        assertEquals(1, LightMapStrips.getNumEntries());
+
+        LightMapStrips.clear();
+        assertFalse(LightMapStrips.contains("test0"));
+        assertEquals(0, LightMapStrips.getNumEntries());
+    }
+
+    @Test
+    public void test_strips_evicted()
+    {
+        int w = 1024;
+        int h = (int) Math.min(4096, (LightMapStrips.MAX_BYTES / 2) / (w * 2) + 1);    // RGB_565; each strip is more than half the cache
+        LightMapStrips.put("test0", Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565));
+        LightMapStrips.put("test1", Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565));
+        assertFalse("least recently used strip is evicted", LightMapStrips.contains("test0"));
+        assertTrue(LightMapStrips.contains("test1"));
+        assertEquals(1, LightMapStrips.getNumEntries());
+    }
+
+    @Test
+    public void test_dayStripKey()
+    {
+        LightMapView.LightMapTask task = new LightMapView.LightMapTask();
+        SuntimesRiseSetDataset data = createData(TEST_APPWIDGET_ID, 2024, Calendar.JUNE, 21);
+        LightMapView.LightMapColors colors = createColors(data);
+
+        String key = task.dayStripKey(data, W, H, colors);
+        assertEquals(key, task.dayStripKey(data, W, H, colors));
+        assertEquals("same content (another dataset)", key, task.dayStripKey(createData(TEST_APPWIDGET_ID, 2024, Calendar.JUNE, 21), W, H, colors));
+        assertNotEquals("size", key, task.dayStripKey(data, W + 1, H, colors));
+
+        LightMapView.LightMapColors colors1 = createColors(data);
+        colors1.colorCivil = 0xff0000ff;
+        assertNotEquals("colors", key, task.dayStripKey(data, W, H, colors1));
+
+        colors1 = createColors(data);
+        colors1.option_lmt = true;
+        assertNotEquals("timezone", key, task.dayStripKey(data, W, H, colors1));
+
+        assertNotEquals("day", key, task.dayStripKey(createData(TEST_APPWIDGET_ID, 2024, Calendar.JUNE, 22), W, H, colors));
+        assertNotEquals("location", key, task.dayStripKey(createData(TEST_APPWIDGET_ID_POLAR, 2024, Calendar.MARCH, 1), W, H, colors));
+    }
+
+    @Test
+    public void test_dayStrip_invalidated()
+    {
+        LightMapView.LightMapTask task = new LightMapView.LightMapTask();
+        SuntimesRiseSetDataset data = createData(TEST_APPWIDGET_ID, 2024, Calendar.JUNE, 21);
+        LightMapView.LightMapColors colors = createColors(data);
+        assertFalse(task.hasDayStrip(data, W, H, colors));
+        assertNull("not cached", task.makeOverlayBitmap(data, W, H, colors));
+
+        Bitmap strip = task.getDayStrip(data, W, H, colors);
+        assertTrue(task.hasDayStrip(data, W, H, colors));
+        assertSame(strip, task.getDayStrip(data, W, H, colors));
+        assertNotNull("cached; composed without drawing the strip", task.makeOverlayBitmap(data, W, H, colors));
+
+        SuntimesRiseSetDataset data1 = createData(TEST_APPWIDGET_ID, 2024, Calendar.JUNE, 22);
+        LightMapView.LightMapColors colors1 = createColors(data1);
+        assertFalse("next day", task.hasDayStrip(data1, W, H, colors1));
+        assertNull(task.makeOverlayBitmap(data1, W, H, colors1));
+        assertNotSame(strip, task.getDayStrip(data1, W, H, colors1));
+
+        colors.colorDay = 0xffffffff;
+        assertFalse("colors changed", task.hasDayStrip(data, W, H, colors));
+        assertNotSame(strip, task.getDayStrip(data, W, H, colors));
+        assertEquals(3, LightMapStrips.getNumEntries());
+    }
+
+    @Test
+    public void test_overlay_polar()
+    {
+        LightMapView.LightMapTask task = new LightMapView.LightMapTask();
+        SuntimesRiseSetDataset data = createData(TEST_APPWIDGET_ID_POLAR, 2024, Calendar.JUNE, 21);    // polar day
+        assertFalse(LightMapView.LightMapTask.hasEvents(data));
+
+        LightMapView.LightMapColors colors = createColors(data);
+        task.getDayStrip(data, W, H, colors);
+        assertTrue(task.hasDayStrip(data, W, H, colors));
+        assertNull("the overlay isn't composed for polar days (the key requires the sun's position)", task.makeOverlayBitmap(data, W, H, colors));
+    }
+}
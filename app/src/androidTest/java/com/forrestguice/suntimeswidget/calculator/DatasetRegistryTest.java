@@ -0,0 +1,165 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.settings.WidgetSettings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class DatasetRegistryTest
+{
+    public static final int TEST_APPWIDGET_ID0 = Integer.MAX_VALUE - 10;
+    public static final int TEST_APPWIDGET_ID1 = Integer.MAX_VALUE - 11;
+    public static final int TEST_APPWIDGET_ID2 = Integer.MAX_VALUE - 12;
+
+    public static final Location TEST_LOCATION0 = new Location("test0", "35", "-112", "0");
+    public static final Location TEST_LOCATION1 = new Location("test1", "-33.9", "18.4", "0");
+
+    private Context context;
+
+    @Before
+    public void setup()
+    {
+        context = InstrumentationRegistry.getTargetContext();
+        saveLocation(TEST_APPWIDGET_ID0, TEST_LOCATION0);
+        saveLocation(TEST_APPWIDGET_ID1, TEST_LOCATION0);
+        saveLocation(TEST_APPWIDGET_ID2, TEST_LOCATION1);
+        DatasetRegistry.invalidate();
+    }
+
+    @After
+    public void cleanup()
+    {
+        WidgetSettings.deletePrefs(context, TEST_APPWIDGET_ID0);
+        WidgetSettings.deletePrefs(context, TEST_APPWIDGET_ID1);
+        WidgetSettings.deletePrefs(context, TEST_APPWIDGET_ID2);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        DatasetRegistry.invalidate();
+    }
+
+    protected void saveLocation(int appWidgetId, Location location)
+    {
+        WidgetSettings.saveLocationFromAppPref(context, appWidgetId, false);
+        WidgetSettings.saveLocationPref(context, appWidgetId, location);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();    // prefs listeners are called on the main thread
+    }
+
+    @Test
+    public void test_fingerprint_hit()
+    {
+        SuntimesRiseSetDataset dataset0 = DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0);
+        assertNotNull(dataset0);
+        assertTrue(dataset0.isCalculated());
+        assertSame(dataset0, DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0));
+        assertSame("same configuration (another consumer)", dataset0, DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID1));
+
+        SuntimesRiseSetData2 data0 = DatasetRegistry.getRiseSetData(context, TEST_APPWIDGET_ID0);
+        assertSame(data0, DatasetRegistry.getRiseSetData(context, TEST_APPWIDGET_ID0));
+
+        SuntimesMoonData moon0 = DatasetRegistry.getMoonData(context, TEST_APPWIDGET_ID0);
+        assertSame(moon0, DatasetRegistry.getMoonData(context, TEST_APPWIDGET_ID0));
+        assertSame(moon0, DatasetRegistry.getMoonData(context, TEST_APPWIDGET_ID1));
+        assertEquals(3, DatasetRegistry.getNumEntries());
+    }
+
+    @Test
+    public void test_fingerprint_miss()
+    {
+        SuntimesRiseSetDataset dataset0 = DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0);
+        SuntimesRiseSetDataset dataset2 = DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID2);
+        assertNotSame("different location", dataset0, dataset2);
+        assertEquals(TEST_LOCATION1.getLatitude(), dataset2.location().getLatitude());
+        assertEquals(2, DatasetRegistry.getNumEntries());
+    }
+
+    @Test
+    public void test_fingerprint_thread() throws InterruptedException
+    {
+        final SuntimesRiseSetDataset dataset0 = DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0);
+        final SuntimesRiseSetDataset[] result = new SuntimesRiseSetDataset[2];
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                result[0] = DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0);
+                result[1] = DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID1);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertNotNull(result[0]);
+        assertNotSame("entries are confined to a thread", dataset0, result[0]);
+        assertNotSame("calculators are confined to a thread", dataset0.calculator(), result[0].calculator());
+        assertSame(result[0], result[1]);
+        assertSame(dataset0, DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0));
+    }
+
+    @Test
+    public void test_invalidate()
+    {
+        SuntimesRiseSetDataset dataset0 = DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0);
+        DatasetRegistry.invalidate();
+        assertEquals(0, DatasetRegistry.getNumEntries());
+        assertNotSame(dataset0, DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0));
+    }
+
+    @Test
+    public void test_invalidate_prefsChanged()
+    {
+        SuntimesRiseSetDataset dataset0 = DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0);
+        SuntimesMoonData moon0 = DatasetRegistry.getMoonData(context, TEST_APPWIDGET_ID0);
+
+        WidgetSettings.saveNextSuggestedUpdate(context, TEST_APPWIDGET_ID0, System.currentTimeMillis());    // not a data setting
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertSame(dataset0, DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0));
+
+        saveLocation(TEST_APPWIDGET_ID0, TEST_LOCATION1);    // data setting; clears the registry
+        SuntimesRiseSetDataset dataset1 = DatasetRegistry.getRiseSetDataset(context, TEST_APPWIDGET_ID0);
+        assertNotSame(dataset0, dataset1);
+        assertEquals(TEST_LOCATION1.getLatitude(), dataset1.location().getLatitude());
+        assertNotSame(moon0, DatasetRegistry.getMoonData(context, TEST_APPWIDGET_ID0));
+    }
+
+    @Test
+    public void test_isDataKey()
+    {
+        assertTrue(DatasetRegistry.isDataKey(WidgetSettings.PREF_PREFIX_KEY + TEST_APPWIDGET_ID0 + WidgetSettings.PREF_PREFIX_KEY_LOCATION + "latitude"));
+        assertTrue(DatasetRegistry.isDataKey(WidgetSettings.PREF_PREFIX_KEY + TEST_APPWIDGET_ID0 + WidgetSettings.PREF_PREFIX_KEY_TIMEZONE + "timezone"));
+        assertTrue(DatasetRegistry.isDataKey("event_alias_test"));    // event settings
+        assertFalse(DatasetRegistry.isDataKey(WidgetSettings.PREF_PREFIX_KEY + TEST_APPWIDGET_ID0 + WidgetSettings.PREF_PREFIX_KEY_APPEARANCE + "theme"));
+    }
+}
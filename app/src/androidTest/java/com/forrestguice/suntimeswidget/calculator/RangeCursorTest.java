@@ -0,0 +1,211 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.database.Cursor;
+import android.database.CursorIndexOutOfBoundsException;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class RangeCursorTest
+{
+    public static final String[] COLUMNS = new String[] { "position", "value", "odd" };
+
+    /**
+     * Fills each row with [position, position * 10, position (odd rows only)], recording the start of every window.
+     */
+    public static class TestRowFactory implements RangeCursor.RowFactory
+    {
+        public final List<Integer> windows = Collections.synchronizedList(new ArrayList<Integer>());
+        public final AtomicInteger active = new AtomicInteger(0);
+        public volatile boolean overlapped = false;
+        public long delayMs = 0;
+
+        @Override
+        public void fillRows(int position, Object[][] rows)
+        {
+            if (active.incrementAndGet() > 1) {
+                overlapped = true;
+            }
+            windows.add(position);
+            for (int i=0; i<rows.length; i++)
+            {
+                int p = position + i;
+                assertEquals(COLUMNS.length, rows[i].length);
+                for (Object value : rows[i]) {
+                    assertNull("rows are cleared before they are filled", value);
+                }
+                rows[i][0] = p;
+                rows[i][1] = (long) p * 10;
+                if (p % 2 == 1) {
+                    rows[i][2] = p;
+                }
+            }
+            if (delayMs > 0) {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) { /* EMPTY */ }
+            }
+            active.decrementAndGet();
+        }
+    }
+
+    @Test
+    public void test_rangeCursor_rows()
+    {
+        TestRowFactory factory = new TestRowFactory();
+        Cursor cursor = new RangeCursor(COLUMNS, 10, factory, 4);
+        assertEquals(10, cursor.getCount());
+        assertEquals(COLUMNS.length, cursor.getColumnCount());
+        assertEquals(1, cursor.getColumnIndex("value"));
+        assertTrue("rows are computed lazily", factory.windows.isEmpty());
+
+        int n = 0;
+        while (cursor.moveToNext())
+        {
+            int p = cursor.getPosition();
+            assertEquals(p, cursor.getInt(0));
+            assertEquals(p * 10L, cursor.getLong(1));
+            assertEquals((double) p * 10, cursor.getDouble(1), 0d);
+            assertEquals(Integer.toString(p * 10), cursor.getString(1));
+            assertEquals(Cursor.FIELD_TYPE_INTEGER, cursor.getType(1));
+            if (p % 2 == 1) {
+                assertFalse(cursor.isNull(2));
+                assertEquals(p, cursor.getInt(2));
+            } else {
+                assertTrue(cursor.isNull(2));
+                assertEquals(Cursor.FIELD_TYPE_NULL, cursor.getType(2));
+                assertNull(cursor.getString(2));
+            }
+            n++;
+        }
+        assertEquals(10, n);
+        cursor.close();
+    }
+
+    @Test
+    public void test_rangeCursor_window()
+    {
+        TestRowFactory factory = new TestRowFactory();
+        Cursor cursor = new RangeCursor(COLUMNS, 10, factory, 4);
+
+        while (cursor.moveToNext()) {
+            cursor.getInt(0);
+        }
+        assertEquals("windows of 4 rows (the last is partial)", 3, factory.windows.size());
+        assertEquals(0, (int) factory.windows.get(0));
+        assertEquals(4, (int) factory.windows.get(1));
+        assertEquals(8, (int) factory.windows.get(2));
+
+        assertTrue(cursor.moveToPosition(9));     // inside the current window [8, 10)
+        assertEquals(3, factory.windows.size());
+        assertEquals(9, cursor.getInt(0));
+
+        assertTrue(cursor.moveToPosition(2));     // outside; a new window starts at the row being moved to
+        assertEquals(4, factory.windows.size());
+        assertEquals(2, (int) factory.windows.get(3));
+        assertEquals(2, cursor.getInt(0));
+
+        assertTrue(cursor.moveToPosition(5));     // inside [2, 6)
+        assertEquals(4, factory.windows.size());
+        assertEquals(50, cursor.getLong(1));
+
+        assertTrue(cursor.moveToPosition(6));
+        assertEquals(5, factory.windows.size());
+        assertEquals(6, (int) factory.windows.get(4));
+
+        assertFalse(cursor.moveToPosition(10));
+        assertFalse(cursor.moveToPosition(-1));
+        try {
+            cursor.getInt(0);
+            fail("expected CursorIndexOutOfBoundsException (before first row)");
+        } catch (CursorIndexOutOfBoundsException e) { /* EMPTY */ }
+
+        assertTrue(cursor.moveToFirst());
+        try {
+            cursor.getInt(COLUMNS.length);
+            fail("expected CursorIndexOutOfBoundsException (column)");
+        } catch (CursorIndexOutOfBoundsException e) { /* EMPTY */ }
+        cursor.close();
+    }
+
+    @Test
+    public void test_rangeCursor_smallRange()
+    {
+        TestRowFactory factory = new TestRowFactory();
+        Cursor cursor = new RangeCursor(COLUMNS, 3, factory, 32);    // window larger than the range
+        while (cursor.moveToNext()) {
+            assertEquals(cursor.getPosition(), cursor.getInt(0));
+        }
+        assertEquals(1, factory.windows.size());
+        cursor.close();
+
+        TestRowFactory factory1 = new TestRowFactory();
+        Cursor cursor1 = new RangeCursor(COLUMNS, 0, factory1);
+        assertEquals(0, cursor1.getCount());
+        assertFalse(cursor1.moveToFirst());
+        assertTrue(factory1.windows.isEmpty());
+        cursor1.close();
+    }
+
+    @Test
+    public void test_rangeCursor_serialized() throws InterruptedException
+    {
+        final TestRowFactory factory = new TestRowFactory();
+        factory.delayMs = 5;
+        final RangeCursor cursor = new RangeCursor(COLUMNS, 100, factory, 2);
+
+        final Thread[] threads = new Thread[4];
+        for (int i=0; i<threads.length; i++)
+        {
+            final int offset = i;
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int p=offset; p<100; p+=threads.length * 3) {
+                        cursor.onMove(-1, p);    // windows are filled one at a time
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse("fillRows was called concurrently", factory.overlapped);
+        assertTrue(factory.windows.size() > 0);
+        cursor.close();
+    }
+}
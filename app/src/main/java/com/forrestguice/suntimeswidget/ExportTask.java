@@ -60,18 +60,18 @@ public abstract class ExportTask extends AsyncTask<Object, Object, ExportTask.Ex
     protected int numEntries;
     public final String newLine = System.getProperty("line.separator");
 
-    protected boolean isPaused = false;
+    protected final PauseCondition pauseCondition = new PauseCondition();
     public void pauseTask()
     {
-        isPaused = true;
+        pauseCondition.pause();
     }
     public void resumeTask()
     {
-        isPaused = false;
+        pauseCondition.resume();
     }
     public boolean isPaused()
     {
-        return isPaused;
+        return pauseCondition.isPaused();
     }
 
     public ExportTask(Context context, String exportTarget)
@@ -260,16 +260,25 @@ public abstract class ExportTask extends AsyncTask<Object, Object, ExportTask.Ex
         //
         // Step 4: wait for UI to spin a second, then return
         //
-        long endTime = System.currentTimeMillis();
-        while ((endTime - startTime) < MIN_WAIT_TIME || isPaused)
-        {
-            endTime = System.currentTimeMillis();
-        }
+        pauseCondition.awaitFinish(startTime, MIN_WAIT_TIME);
         return new ExportResult(exported, exportUri, exportFile, mimeType);
     }
 
     protected abstract boolean export(Context context, BufferedOutputStream out) throws IOException;
 
+    /**
+     * Delivers ExportProgress (published by export) to the TaskListener.
+     */
+    @Override
+    protected void onProgressUpdate(Object... progress)
+    {
+        for (Object item : progress) {
+            if (item instanceof ExportProgress) {
+                signalProgress((ExportProgress) item);
+            }
+        }
+    }
+
     protected void cleanup(Context context) {}
 
     /**
@@ -400,6 +409,7 @@ public abstract class ExportTask extends AsyncTask<Object, Object, ExportTask.Ex
     public static abstract class TaskListener
     {
         public void onStarted() {}
+        public void onProgress( ExportProgress progress ) {}
         public void onFinished( ExportResult result ) {}
     }
     protected TaskListener taskListener = null;
@@ -418,6 +428,13 @@ public abstract class ExportTask extends AsyncTask<Object, Object, ExportTask.Ex
             taskListener.onStarted();
         }
     }
+    private void signalProgress( ExportProgress progress )
+    {
+        if (taskListener != null)
+        {
+            taskListener.onProgress(progress);
+        }
+    }
     private void signalFinished( ExportResult result )
     {
         if (taskListener != null)
@@ -441,6 +441,8 @@ public class LightMapDialog extends BottomSheetDialogFragment
     public static final String MAPTAG_LIGHTMAP = "_lightmap";
     public static final String PREF_KEY_LIGHTMAP_SHOWGRAPH = "showgraph";
     public static final boolean DEF_KEY_LIGHTMAP_SHOWGRAPH = false;
+    public static final String PREF_KEY_LIGHTMAP_SHOWYEAR = "showyear";
+    public static final boolean DEF_KEY_LIGHTMAP_SHOWYEAR = false;
     public static final String PREF_KEY_LIGHTMAP_SEEKALTITUDE = "seekaltitude";
     public static final String DEF_KEY_LIGHTMAP_SEEKALTITUDE = "";
 
@@ -572,6 +574,14 @@ public class LightMapDialog extends BottomSheetDialogFragment
                     updateViews();
                     return true;
 
+                case R.id.action_showyear:
+                    toggledValue = !WorldMapWidgetSettings.loadWorldMapPref(context, 0, PREF_KEY_LIGHTMAP_SHOWYEAR, MAPTAG_LIGHTMAP, DEF_KEY_LIGHTMAP_SHOWYEAR);
+                    WorldMapWidgetSettings.saveWorldMapPref(context, 0, PREF_KEY_LIGHTMAP_SHOWYEAR, MAPTAG_LIGHTMAP, toggledValue);
+                    item.setChecked(toggledValue);
+                    updateOptions(context);
+                    updateViews();
+                    return true;
+
                 case R.id.graphOption_showGrid:
                     toggledValue = !WorldMapWidgetSettings.loadWorldMapPref(context, 0, WorldMapWidgetSettings.PREF_KEY_WORLDMAP_MINORGRID, MAPTAG_LIGHTMAP, DEF_KEY_WORLDMAP_MINORGRID);
                     WorldMapWidgetSettings.saveWorldMapPref(context, 0, WorldMapWidgetSettings.PREF_KEY_WORLDMAP_MINORGRID, MAPTAG_LIGHTMAP, toggledValue);
@@ -655,6 +665,10 @@ public class LightMapDialog extends BottomSheetDialogFragment
         if (showGraphItem != null) {
             showGraphItem.setChecked(WorldMapWidgetSettings.loadWorldMapPref(context, 0, PREF_KEY_LIGHTMAP_SHOWGRAPH, MAPTAG_LIGHTMAP, DEF_KEY_LIGHTMAP_SHOWGRAPH));
         }
+        MenuItem showYearItem = menu.findItem(R.id.action_showyear);
+        if (showYearItem != null) {
+            showYearItem.setChecked(WorldMapWidgetSettings.loadWorldMapPref(context, 0, PREF_KEY_LIGHTMAP_SHOWYEAR, MAPTAG_LIGHTMAP, DEF_KEY_LIGHTMAP_SHOWYEAR));
+        }
         MenuItem graphOption_showGrid = menu.findItem(R.id.graphOption_showGrid);
         if (graphOption_showGrid != null) {
             graphOption_showGrid.setChecked(WorldMapWidgetSettings.loadWorldMapPref(context, 0, WorldMapWidgetSettings.PREF_KEY_WORLDMAP_MINORGRID, MAPTAG_LIGHTMAP, DEF_KEY_WORLDMAP_MINORGRID));
@@ -826,6 +840,8 @@ public class LightMapDialog extends BottomSheetDialogFragment
             options.anim_lock = anim_lock;
             options.anim_frameOffsetMinutes = WorldMapWidgetSettings.loadWorldMapPref(context, 0, WorldMapWidgetSettings.PREF_KEY_WORLDMAP_SPEED1D, MAPTAG_LIGHTMAP)
                     ? 24 * 60 : 1;
+            options.option_mapMode = WorldMapWidgetSettings.loadWorldMapPref(context, 0, PREF_KEY_LIGHTMAP_SHOWYEAR, MAPTAG_LIGHTMAP, DEF_KEY_LIGHTMAP_SHOWYEAR)
+                    ? LightMapView.LightMapColors.MAP_YEAR : LightMapView.LightMapColors.MAP_DAY;
 
             if (graphView != null && graphView.getVisibility() == View.VISIBLE)
             {
@@ -0,0 +1,297 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget;
+
+import android.support.annotation.NonNull;
+
+import com.forrestguice.suntimeswidget.calculator.RangeExecutor;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTable;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A year of twilight boundaries (astronomical, nautical, civil, and rise/set) rendered as a heatmap; days run left
+ * to right, and the time of day runs top (midnight) to bottom (midnight).
+ *
+ * Boundaries for every day are solved in a single batched pass (RiseSetTable, split into ranges of days that are
+ * evaluated in parallel by RangeExecutor), stored as minutes in a primitive buffer, and cached by calculator,
+ * location, timezone, and year (at most MAX_ENTRIES). Rasterizing the buffer into pixels is also done in parallel
+ * (by column).
+ */
+public class LightMapHeatmap
+{
+    public static final int MAX_ENTRIES = 4;
+    public static final int MIN_CHUNK_DAYS = 16;
+    public static final int MIN_CHUNK_COLUMNS = 32;
+    public static final float MINUTES_IN_DAY = 24 * 60;
+
+    public static final int LAYER_ASTRO = 0;
+    public static final int LAYER_NAUTICAL = 1;
+    public static final int LAYER_CIVIL = 2;
+    public static final int LAYER_DAY = 3;
+    public static final int NUM_LAYERS = 4;
+
+    protected static final int[] RISE_EVENTS = { RiseSetTable.ASTRO_RISE, RiseSetTable.NAUTICAL_RISE, RiseSetTable.CIVIL_RISE, RiseSetTable.OFFICIAL_RISE };
+    protected static final int[] SET_EVENTS = { RiseSetTable.ASTRO_SET, RiseSetTable.NAUTICAL_SET, RiseSetTable.CIVIL_SET, RiseSetTable.OFFICIAL_SET };
+    protected static final int EVENT_MASK = RiseSetTable.eventMask(RISE_EVENTS) | RiseSetTable.eventMask(SET_EVENTS);
+
+    /**
+     * YearData
+     */
+    public static class YearData
+    {
+        public final int year, numDays;
+        protected final float[] minutes;      // [day][layer][rise, set]; minutes into the day [0, 1440], or NaN if the event doesn't occur
+        protected final float[] elevation;    // [day]; sun elevation at noon (only for days without any events, otherwise NaN)
+
+        public YearData(int year, int numDays)
+        {
+            this.year = year;
+            this.numDays = numDays;
+            minutes = new float[numDays * NUM_LAYERS * 2];
+            elevation = new float[numDays];
+            Arrays.fill(minutes, Float.NaN);
+            Arrays.fill(elevation, Float.NaN);
+        }
+
+        public float riseMinute(int day, int layer) {
+            return minutes[(day * NUM_LAYERS + layer) * 2];
+        }
+        public float setMinute(int day, int layer) {
+            return minutes[(day * NUM_LAYERS + layer) * 2 + 1];
+        }
+        public boolean hasLayer(int day, int layer) {
+            return !Float.isNaN(riseMinute(day, layer)) || !Float.isNaN(setMinute(day, layer));
+        }
+        public float noonElevation(int day) {
+            return elevation[day];
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final LinkedHashMap<String, YearData> cache = new LinkedHashMap<String, YearData>(MAX_ENTRIES + 1, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, YearData> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * @param calculator the calculator (and its location) used to solve each day; it isn't used directly (the year is
+     *                   solved using a copy, so the calculator may be shared with other threads, e.g. the UI thread)
+     * @param timezone the timezone that defines the year's days
+     * @param displayTimezone the timezone used to display times (e.g. local mean time)
+     * @param year the year
+     * @return the year's twilight boundaries (cached)
+     */
+    @NonNull
+    public static YearData get(@NonNull SuntimesCalculator calculator, @NonNull TimeZone timezone, @NonNull TimeZone displayTimezone, int year)
+    {
+        Location location = calculator.getLocation();
+        String key = calculator.name() + ":" + location.getLatitude() + "," + location.getLongitude() + "," + location.getAltitude()
+                + ":" + timezone.getID() + ":" + displayTimezone.getID() + displayTimezone.getRawOffset() + ":" + year;
+        synchronized (lock)
+        {
+            YearData data = cache.get(key);
+            if (data != null) {
+                return data;
+            }
+        }
+
+        SuntimesCalculator copy = RangeExecutor.copyCalculator(calculator, null);
+        YearData data = calculate((copy != null ? copy : calculator), timezone, displayTimezone, year);    // solved outside the lock
+        synchronized (lock)
+        {
+            YearData existing = cache.get(key);
+            if (existing != null) {
+                return existing;    // solved concurrently by another caller
+            }
+            cache.put(key, data);
+            return data;
+        }
+    }
+
+    public static void clear()
+    {
+        synchronized (lock) {
+            cache.clear();
+        }
+    }
+
+    public static int getNumEntries()
+    {
+        synchronized (lock) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Solves every day of the year (in parallel).
+     */
+    @NonNull
+    public static YearData calculate(@NonNull final SuntimesCalculator calculator, @NonNull TimeZone timezone, @NonNull final TimeZone displayTimezone, int year)
+    {
+        final Calendar start = Calendar.getInstance(timezone);
+        start.clear();
+        start.set(year, Calendar.JANUARY, 1, 12, 0, 0);    // noon; days are identified by their noon
+        final YearData data = new YearData(year, start.getActualMaximum(Calendar.DAY_OF_YEAR));
+
+        RangeExecutor.execute(null, data.numDays, MIN_CHUNK_DAYS, new RangeExecutor.RangeTask()
+        {
+            @Override
+            public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+            {
+                SuntimesCalculator c = workspace.getCalculator(calculator);
+                Calendar date = (Calendar) start.clone();
+                date.add(Calendar.DAY_OF_YEAR, from);
+                RiseSetTable table = RiseSetTable.create(c, date, to - from, EVENT_MASK);
+                SuntimesCalculator.SunPosition position = new SuntimesCalculator.SunPosition();
+
+                for (int i=0; i<table.numDays(); i++)
+                {
+                    int day = from + i;
+                    long noonMillis = table.getDay(i);
+                    long epochDay = EventMillis.epochDay(noonMillis, displayTimezone);
+
+                    boolean hasEvents = false;
+                    for (int layer=0; layer<NUM_LAYERS; layer++)
+                    {
+                        int j = (day * NUM_LAYERS + layer) * 2;
+                        data.minutes[j] = toMinute(table.get(RISE_EVENTS[layer], i), epochDay, displayTimezone);
+                        data.minutes[j + 1] = toMinute(table.get(SET_EVENTS[layer], i), epochDay, displayTimezone);
+                        hasEvents = hasEvents || data.hasLayer(day, layer);
+                    }
+
+                    if (!hasEvents)
+                    {
+                        if (EventMillis.getSunPosition(c, noonMillis, position)) {
+                            data.elevation[day] = (float) position.elevation;
+
+                        } else {
+                            Calendar noon = Calendar.getInstance(c.getTimeZone());
+                            noon.setTimeInMillis(noonMillis);
+                            data.elevation[day] = (c.isDay(noon) ? 90 : -90);
+                        }
+                    }
+                }
+            }
+        }, calculator);
+        return data;
+    }
+
+    /**
+     * @return minutes into the day (clamped to [0, 1440]), or NaN if millis is NONE
+     */
+    protected static float toMinute(long millis, long epochDay, TimeZone timezone)
+    {
+        if (millis == EventMillis.NONE) {
+            return Float.NaN;
+        }
+        long dayDiff = EventMillis.epochDay(millis, timezone) - epochDay;  // average case: 0; edge cases: -1, 1
+        float minute = (dayDiff * MINUTES_IN_DAY) + EventMillis.minuteOfDay(millis, timezone);
+        return Math.max(0, Math.min(MINUTES_IN_DAY, minute));
+    }
+
+    /**
+     * Rasterizes the year into pixels (ARGB, row-major); columns are shaded in parallel.
+     * @param data year data
+     * @param w width (pixels)
+     * @param h height (pixels)
+     * @param colorNight background color
+     * @param layerColors color of each layer (indexed by LAYER_ASTRO, LAYER_NAUTICAL, LAYER_CIVIL, LAYER_DAY)
+     * @param pixels a buffer of at least w * h
+     */
+    public static void rasterize(@NonNull final YearData data, final int w, final int h, final int colorNight, @NonNull final int[] layerColors, @NonNull final int[] pixels)
+    {
+        RangeExecutor.execute(null, w, MIN_CHUNK_COLUMNS, new RangeExecutor.RangeTask()
+        {
+            @Override
+            public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+            {
+                int[] column = new int[h];
+                int columnDay = -1;
+                for (int x=from; x<to; x++)
+                {
+                    int day = (int)(((long) x * data.numDays) / w);
+                    if (day != columnDay) {
+                        shadeColumn(data, day, h, layerColors, colorNight, column);
+                        columnDay = day;
+                    }
+                    for (int y=0; y<h; y++) {
+                        pixels[y * w + x] = column[y];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Shades a single day (see LightMapView.LightMapTask.makeBitmap; the layers are applied in the same order, with the same fallbacks).
+     */
+    protected static void shadeColumn(YearData data, int day, int h, int[] layerColors, int colorNight, int[] column)
+    {
+        Arrays.fill(column, colorNight);
+        boolean hasTwilight = false;
+        for (int layer=0; layer<NUM_LAYERS; layer++)
+        {
+            if (data.hasLayer(day, layer))
+            {
+                shadeSpan(data.riseMinute(day, layer), data.setMinute(day, layer), h, layerColors[layer], column);
+                hasTwilight = hasTwilight || (layer != LAYER_DAY);
+
+            } else if (layer < LAYER_DAY && data.hasLayer(day, layer + 1)) {
+                Arrays.fill(column, layerColors[layer]);    // the next layer has events, so this one lasts all day
+
+            } else if (layer == LAYER_DAY && !hasTwilight) {
+                float elevation = data.noonElevation(day);
+                if (elevation > 0) {
+                    Arrays.fill(column, layerColors[LAYER_DAY]);
+                } else if (elevation > -6) {
+                    Arrays.fill(column, layerColors[LAYER_CIVIL]);
+                } else if (elevation > -12) {
+                    Arrays.fill(column, layerColors[LAYER_NAUTICAL]);
+                } else if (elevation > -18) {
+                    Arrays.fill(column, layerColors[LAYER_ASTRO]);
+                }
+            }
+        }
+    }
+
+    protected static void shadeSpan(float riseMinute, float setMinute, int h, int color, int[] column)
+    {
+        int top = (Float.isNaN(riseMinute) ? 0 : Math.round((riseMinute / MINUTES_IN_DAY) * h));
+        int bottom = (Float.isNaN(setMinute) ? h : Math.round((setMinute / MINUTES_IN_DAY) * h));
+        if (!Float.isNaN(riseMinute) && !Float.isNaN(setMinute) && setMinute < riseMinute)
+        {
+            Arrays.fill(column, 0, bottom, color);
+            Arrays.fill(column, top, h, color);
+
+        } else if (top < bottom) {
+            Arrays.fill(column, top, bottom, color);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process-wide cache of light map day strips (the twilight bands drawn by LightMapView.LightMapTask, without the
+ * now marker). Strips are keyed by their content (size, colors, and event times), so views that show the same day
+ * (e.g. the cards in a list, or successive ticks of the same view) share them, and only the now marker is drawn
+ * per frame.
+ *
+ * The least recently used strips are evicted once the cache exceeds MAX_BYTES. Strips are composed into other
+ * bitmaps (never displayed directly), but may still be in use when they are evicted, so they are dropped (never
+ * recycled).
+ */
+public class LightMapStrips
+{
+    public static final long MAX_BYTES = Runtime.getRuntime().maxMemory() / 32;
+
+    private static final Object lock = new Object();
+    private static final LinkedHashMap<String, Bitmap> strips = new LinkedHashMap<>(16, 0.75f, true);
+    private static long numBytes = 0;
+    private static int numHits = 0, numMisses = 0;
+
+    /**
+     * @return a cached strip, or null
+     */
+    @Nullable
+    public static Bitmap get(@NonNull String key)
+    {
+        synchronized (lock)
+        {
+            Bitmap strip = strips.get(key);
+            if (strip != null) {
+                numHits++;
+            } else numMisses++;
+            return strip;
+        }
+    }
+
+    public static boolean contains(@NonNull String key)
+    {
+        synchronized (lock) {
+            return strips.containsKey(key);
+        }
+    }
+
+    public static void put(@NonNull String key, @NonNull Bitmap strip)
+    {
+        synchronized (lock)
+        {
+            Bitmap previous = strips.put(key, strip);
+            if (previous != null) {
+                numBytes -= byteCount(previous);
+            }
+            numBytes += byteCount(strip);
+
+            Iterator<Map.Entry<String, Bitmap>> entries = strips.entrySet().iterator();
+            while (numBytes > MAX_BYTES && entries.hasNext())
+            {
+                Map.Entry<String, Bitmap> entry = entries.next();
+                if (entry.getValue() != strip)
+                {
+                    numBytes -= byteCount(entry.getValue());
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    public static void clear()
+    {
+        synchronized (lock)
+        {
+            strips.clear();
+            numBytes = 0;
+        }
+    }
+
+    public static int getNumEntries()
+    {
+        synchronized (lock) {
+            return strips.size();
+        }
+    }
+    public static int getNumHits()
+    {
+        synchronized (lock) {
+            return numHits;
+        }
+    }
+    public static int getNumMisses()
+    {
+        synchronized (lock) {
+            return numMisses;
+        }
+    }
+
+    protected static long byteCount(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
@@ -34,11 +34,16 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 
+import com.forrestguice.suntimeswidget.calculator.core.ElevationCrossings;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
 import com.forrestguice.suntimeswidget.themes.SuntimesTheme;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
+import com.forrestguice.suntimeswidget.views.FrameClock;
 
 import java.util.Calendar;
 import java.util.TimeZone;
@@ -187,8 +192,13 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
             return;
         }
 
-        if (useMainThread)
+        Bitmap overlay = (animated ? null : new LightMapTask().makeOverlayBitmap(data, getWidth(), getHeight(), colors));
+        if (overlay != null)
         {
+            //Log.d("DEBUG", "updating lightmap (overlay) on main thread.. " + getWidth() + "x" + getHeight() + " @ " + getNow() + " :: view-" + Integer.toHexString(getColors().hashCode()));
+            drawTaskListener.onFinished(overlay);    // the day strip is cached; only the now marker was drawn
+
+        } else if (useMainThread) {
             //Log.d("DEBUG", "updating lightmap on main thread.. " + getWidth() + "x" + getHeight() + " @ " + getNow() + " :: view-" + Integer.toHexString(getColors().hashCode()));
             LightMapTask draw = new LightMapTask();
             Bitmap b = draw.makeBitmap(data, getWidth(), getHeight(), colors);
@@ -201,6 +211,19 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         }
     }
 
+    /**
+     * Displays a frame; the previous frame is no longer displayed and is returned to the BitmapPool.
+     */
+    protected void setFrame(@Nullable Bitmap frame)
+    {
+        setImageBitmap(frame);
+        if (this.frame != null && this.frame != frame) {
+            BitmapPool.release(this.frame);
+        }
+        this.frame = frame;
+    }
+    private Bitmap frame = null;
+
     private final LightMapTaskListener drawTaskListener = new LightMapTaskListener() {
         @Override
         public void onStarted() {
@@ -222,7 +245,7 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         @Override
         public void onFrame(Bitmap frame, long offsetMinutes) {
             //Log.d(LightMapView.class.getSimpleName(), "LightmapView.updateViews: onFrame: " + Integer.toHexString(getColors().hashCode()));
-            setImageBitmap(frame);
+            setFrame(frame);
             if (mapListener != null) {
                 mapListener.onFrame(frame, offsetMinutes);
             }
@@ -236,7 +259,7 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         @Override
         public void onFinished(Bitmap frame) {
             //Log.d(LightMapView.class.getSimpleName(), "LightmapView.updateViews: onFinished: " + Integer.toHexString(getColors().hashCode()));
-            setImageBitmap(frame);
+            setFrame(frame);
             if (mapListener != null) {
                 mapListener.onFinished(frame);
             }
@@ -262,6 +285,7 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         animated = bundle.getBoolean("animated", animated);
         colors.offsetMinutes = bundle.getLong("offsetMinutes", colors.offsetMinutes);
         colors.now = bundle.getLong("now", colors.now);
+        colors.option_mapMode = bundle.getInt("mapMode", colors.option_mapMode);
     }
 
     protected boolean saveSettings(Bundle bundle)
@@ -270,6 +294,7 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         bundle.putBoolean("animated", animated);
         bundle.putLong("offsetMinutes", colors.offsetMinutes);
         bundle.putLong("now", colors.now);
+        bundle.putInt("mapMode", colors.option_mapMode);
         return true;
     }
 
@@ -373,8 +398,8 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         {
             Calendar calendar = Calendar.getInstance(data.timezone());
             calendar.setTimeInMillis(colors.now + (colors.offsetMinutes * 60 * 1000));
-            Calendar event = rising ? data.calculator().getSunriseCalendarForDate(calendar, degrees)
-                    : data.calculator().getSunsetCalendarForDate(calendar, degrees);
+            Calendar event = rising ? ElevationCrossings.getSunriseCalendarForDate(data.calculator(), calendar, degrees)
+                    : ElevationCrossings.getSunsetCalendarForDate(data.calculator(), calendar, degrees);
             return ((event != null) ? event.getTimeInMillis() : null);
         } else return null;
     }
@@ -393,6 +418,18 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         return animated;
     }
 
+    /**
+     * @param mode LightMapColors.MAP_DAY, LightMapColors.MAP_YEAR
+     */
+    public void setMapMode(int mode)
+    {
+        colors.option_mapMode = mode;
+        updateViews(true);
+    }
+    public int getMapMode() {
+        return colors.option_mapMode;
+    }
+
     /**
      * LightMapTask
      */
@@ -413,7 +450,7 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         {
             int w, h;
             int numFrames = 1;
-            long frameDuration = 250000000;    // nanoseconds (250 ms)
+            long frameDuration = 250;    // ms
             long initialOffset = 0;
             SuntimesRiseSetDataset data;
             try {
@@ -428,18 +465,19 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
                 if (params.length > 5) {
                     initialOffset = (long)params[5];
                 }
-                frameDuration = colors.anim_frameLengthMs * 1000000;   // ms to ns
+                frameDuration = colors.anim_frameLengthMs;
 
             } catch (ClassCastException e) {
                 Log.w(LightMapTask.class.getSimpleName(), "Invalid params; using [null, 0, 0]");
                 return null;
             }
 
-            long time0 = System.nanoTime();
+            FrameClock clock = new FrameClock(frameDuration);
+            clock.start();
             Bitmap frame = null;
             colors.offsetMinutes = initialOffset;
 
-            int i = 0;
+            int i = 0, advance = 0, lastAdvance = 0;    // lastAdvance is undone when the loop ends (advance is 0 if interrupted)
             while (i < numFrames || numFrames <= 0)
             {
                 //Log.d(LightMapTask.class.getSimpleName(), "generating frame " + i + " | " + w + "," + h);
@@ -468,21 +506,23 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
 
                 frame = makeBitmap(data, w, h, colors);
 
-                long time1 = System.nanoTime();
-                while ((time1 - time0) < frameDuration) {
-                    time1 = System.nanoTime();
+                advance = clock.awaitFrame();
+                if (advance <= 0) {
+                    colors.releaseDrawLock();
+                    break;    // interrupted (cancelled)
                 }
 
                 publishProgress(frame);
                 if (listener != null) {
                     listener.afterFrame(frame, colors.offsetMinutes);
                 }
-                colors.offsetMinutes += colors.anim_frameOffsetMinutes;
-                time0 = System.nanoTime();
+                colors.offsetMinutes += advance * colors.anim_frameOffsetMinutes;
+                lastAdvance = advance;
                 i++;
                 colors.releaseDrawLock();
             }
-            colors.offsetMinutes -= colors.anim_frameOffsetMinutes;
+            colors.offsetMinutes -= lastAdvance * colors.anim_frameOffsetMinutes;
+            //Log.d("DEBUG", "LightMapTask: frames: " + clock.getNumFrames() + ", dropped: " + clock.getNumDropped() + ", pooled bitmaps: " + BitmapPool.getHitRate());
 
             //Log.d("DEBUG", "doInBackground: done: " + (data != null ? data.dataActual.sunsetCalendarToday().get(Calendar.DAY_OF_YEAR) : "null"));
             return frame;
@@ -504,10 +544,91 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
 
             this.colors = colors;
             Calendar now = mapTime(data, colors);
-            Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565);
+            if (colors.option_mapMode == LightMapColors.MAP_YEAR) {
+                return makeYearBitmap(data, now, w, h, colors);
+            }
+
+            Bitmap b = BitmapPool.obtain(w, h, Bitmap.Config.RGB_565);
             Canvas c = new Canvas(b);
             Paint p = new Paint(Paint.ANTI_ALIAS_FLAG);
+            c.drawBitmap(getDayStrip(data, w, h, colors), 0, 0, null);    // layer 0: day strip (cached)
+            drawNow(data, now, c, p, colors);                            // layer 1: now marker
+
+            //long bench_end = System.nanoTime();
+            //Log.d("BENCH", "make lightmap :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
+            return b;
+        }
 
+        /**
+         * Layer 0; the day's twilight bands (without the now marker). Strips are cached by their content (@see LightMapStrips),
+         * so successive ticks (and card lists) reuse them; the result is shared and must not be modified or recycled.
+         */
+        public Bitmap getDayStrip(@Nullable SuntimesRiseSetDataset data, int w, int h, LightMapColors colors)
+        {
+            String key = dayStripKey(data, w, h, colors);
+            Bitmap strip = LightMapStrips.get(key);
+            if (strip == null)
+            {
+                strip = Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565);
+                drawDayStrip(data, new Canvas(strip), new Paint(Paint.ANTI_ALIAS_FLAG), colors);
+                LightMapStrips.put(key, strip);
+            }
+            return strip;
+        }
+
+        /**
+         * @return true if the day strip is already cached (so a frame can be composed without drawing it)
+         */
+        public boolean hasDayStrip(@Nullable SuntimesRiseSetDataset data, int w, int h, LightMapColors colors) {
+            return LightMapStrips.contains(dayStripKey(data, w, h, colors));
+        }
+
+        /**
+         * @return a key that identifies the strip's content (size, colors, timezone, and the event times of each layer)
+         */
+        protected String dayStripKey(@Nullable SuntimesRiseSetDataset data, int w, int h, LightMapColors colors)
+        {
+            StringBuilder key = new StringBuilder();
+            key.append(w).append("x").append(h).append(":")
+                    .append(colors.colorNight).append(",").append(colors.colorAstro).append(",").append(colors.colorNautical).append(",")
+                    .append(colors.colorCivil).append(",").append(colors.colorDay);
+
+            if (data != null)
+            {
+                SuntimesRiseSetData[] layers = new SuntimesRiseSetData[] { data.dataAstro, data.dataNautical, data.dataCivil, data.dataActual };
+                for (SuntimesRiseSetData layer : layers)
+                {
+                    TimeZone timezone = (colors.option_lmt ? lmt(layer.location()) : layer.timezone());
+                    Calendar today = layer.calendar();
+                    key.append(":").append(timezone.getID()).append(timezone.getRawOffset())
+                            .append(",").append(EventMillis.epochDay(today.getTimeInMillis(), today.getTimeZone()))
+                            .append(",").append(EventMillis.toMillis(layer.sunriseCalendarToday()))
+                            .append(",").append(EventMillis.toMillis(layer.sunsetCalendarToday()));
+                }
+                if (!hasEvents(data)) {
+                    key.append(":").append(noLayersColor(data, colors));    // calls the calculator (@see makeOverlayBitmap)
+                }
+            }
+            return key.toString();
+        }
+
+        /**
+         * @return true if any layer has a rising or setting event (false for polar day or night)
+         */
+        protected static boolean hasEvents(@NonNull SuntimesRiseSetDataset data)
+        {
+            SuntimesRiseSetData[] layers = new SuntimesRiseSetData[] { data.dataAstro, data.dataNautical, data.dataCivil, data.dataActual };
+            for (SuntimesRiseSetData layer : layers)
+            {
+                if (layer.hasSunriseTimeToday() || layer.hasSunsetTimeToday()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        protected void drawDayStrip(@Nullable SuntimesRiseSetDataset data, Canvas c, Paint p, LightMapColors colors)
+        {
             boolean layer_astro, layer_nautical, layer_civil;
 
             // draw background (night)
@@ -553,37 +674,52 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
                     boolean noLayers = !layer_astro && !layer_nautical && !layer_civil;
                     if (noLayers)
                     {
-                        Calendar calendar = data.nowThen(data.dataNoon.calendar());
-                        SuntimesCalculator calculator = data.calculator();
-                        SuntimesCalculator.SunPosition position = (calculator != null ? calculator.getSunPosition(calendar) : null);
-
-                        if (position == null)
+                        Integer color = noLayersColor(data, colors);
+                        if (color != null)
                         {
-                            if (calculator != null && calculator.isDay(calendar))
-                            {
-                                p.setColor(colors.colorDay);
-                                drawRect(c, p);
-                            }
-
-                        } else if (position.elevation > 0) {
-                            p.setColor(colors.colorDay);
-                            drawRect(c, p);
-
-                        } else if (position.elevation > -6) {
-                            p.setColor(colors.colorCivil);
-                            drawRect(c, p);
-
-                        } else if (position.elevation > -12) {
-                            p.setColor(colors.colorNautical);
-                            drawRect(c, p);
-
-                        } else if (position.elevation > -18) {
-                            p.setColor(colors.colorAstro);
+                            p.setColor(color);
                             drawRect(c, p);
                         }
                     }
                 }
+            }
+        }
+
+        /**
+         * @return the color that fills the day when there are no twilight layers (e.g. polar day or night), or null (night)
+         */
+        @Nullable
+        protected Integer noLayersColor(@NonNull SuntimesRiseSetDataset data, LightMapColors colors)
+        {
+            Calendar calendar = data.nowThen(data.dataNoon.calendar());
+            SuntimesCalculator calculator = data.calculator();
+            SuntimesCalculator.SunPosition position = (calculator != null ? calculator.getSunPosition(calendar) : null);
+
+            if (position == null) {
+                return ((calculator != null && calculator.isDay(calendar)) ? colors.colorDay : null);
 
+            } else if (position.elevation > 0) {
+                return colors.colorDay;
+
+            } else if (position.elevation > -6) {
+                return colors.colorCivil;
+
+            } else if (position.elevation > -12) {
+                return colors.colorNautical;
+
+            } else if (position.elevation > -18) {
+                return colors.colorAstro;
+
+            } else return null;
+        }
+
+        /**
+         * Layer 1; the now marker (the only part of the light map that changes between ticks).
+         */
+        protected void drawNow(@Nullable SuntimesRiseSetDataset data, Calendar now, Canvas c, Paint p, LightMapColors colors)
+        {
+            if (data != null)
+            {
                 // draw now marker
                 if (colors.option_drawNow > 0)
                 {
@@ -593,32 +729,92 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
                             : colors.option_drawNow_pointSizePx;
                     int pointStroke = (int)Math.ceil(pointRadius / 3d);
 
-                    if (colors.option_lmt)
-                    {
-                        TimeZone lmt = WidgetTimezones.localMeanTime(null, data.location());
-                        Calendar nowLmt = Calendar.getInstance(lmt);
-                        nowLmt.setTimeInMillis(now.getTimeInMillis());
-                        now = nowLmt;
-                    }
-
+                    TimeZone timezone = (colors.option_lmt ? lmt(data.location()) : now.getTimeZone());
                     switch (colors.option_drawNow) {
                         case LightMapColors.DRAW_SUN2:
                             DashPathEffect dashed = new DashPathEffect(new float[] {4, 2}, 0);
-                            drawPoint(now, pointRadius, pointStroke, c, p, Color.TRANSPARENT, colors.colorPointStroke, dashed);
+                            drawPoint(now.getTimeInMillis(), timezone, pointRadius, pointStroke, c, p, Color.TRANSPARENT, colors.colorPointStroke, dashed);
                             break;
 
                         case LightMapColors.DRAW_SUN1:
                         default:
-                            drawPoint(now, pointRadius, pointStroke, c, p, colors.colorPointFill, colors.colorPointStroke, null);
+                            drawPoint(now.getTimeInMillis(), timezone, pointRadius, pointStroke, c, p, colors.colorPointFill, colors.colorPointStroke, null);
                             break;
                     }
                 }
             }
 
+        }
+
+        /**
+         * Composes a frame from a cached day strip (and the now marker); this is cheap enough to do on the main thread.
+         * @return a frame, or null if the strip isn't cached (or the data needs to be recalculated for the map time)
+         */
+        @Nullable
+        public Bitmap makeOverlayBitmap(@Nullable SuntimesRiseSetDataset data, int w, int h, LightMapColors colors)
+        {
+            if (w <= 0 || h <= 0 || colors == null || colors.option_mapMode != LightMapColors.MAP_DAY
+                    || data == null || data.dataActual == null) {
+                return null;
+            }
+            if (!hasEvents(data)) {
+                return null;    // polar day or night; the strip's key depends on the sun's position (which shouldn't be calculated here)
+            }
+
+            this.colors = colors;
+            Calendar now = mapTime(data, colors);
+            long data_age = Math.abs(now.getTimeInMillis() - data.dataActual.calendar().getTimeInMillis());
+            if (data_age >= (12 * 60 * 60 * 1000) || !hasDayStrip(data, w, h, colors)) {
+                return null;
+            }
+
+            Bitmap b = BitmapPool.obtain(w, h, Bitmap.Config.RGB_565);
+            Canvas c = new Canvas(b);
+            c.drawBitmap(getDayStrip(data, w, h, colors), 0, 0, null);
+            drawNow(data, now, c, new Paint(Paint.ANTI_ALIAS_FLAG), colors);
+            return b;
+        }
+
+        /**
+         * @return a heatmap of the year containing `now` (days left to right, time of day top to bottom)
+         */
+        public Bitmap makeYearBitmap(@Nullable SuntimesRiseSetDataset data, Calendar now, int w, int h, LightMapColors colors)
+        {
+            //long bench_start = System.nanoTime();
+            Bitmap b = BitmapPool.obtain(w, h, Bitmap.Config.RGB_565);
+            SuntimesCalculator calculator = (data != null ? data.calculator() : null);
+            if (calculator == null)
+            {
+                b.eraseColor(colors.colorNight);
+                return b;
+            }
+
+            TimeZone timezone = (colors.option_lmt ? lmt(data.location()) : data.timezone());
+            LightMapHeatmap.YearData year = LightMapHeatmap.get(calculator, data.timezone(), timezone, now.get(Calendar.YEAR));
+            if (pixels == null || pixels.length != w * h) {
+                pixels = new int[w * h];
+            }
+            LightMapHeatmap.rasterize(year, w, h, colors.colorNight, new int[] { colors.colorAstro, colors.colorNautical, colors.colorCivil, colors.colorDay }, pixels);
+            b.setPixels(pixels, 0, w, 0, 0, w, h);
+
+            // draw now marker
+            if (colors.option_drawNow > 0)
+            {
+                Canvas c = new Canvas(b);
+                Paint p = new Paint(Paint.ANTI_ALIAS_FLAG);
+                int pointRadius = (colors.option_drawNow_pointSizePx <= 0) ? (int)Math.ceil(Math.min(w, h) / 40d) : colors.option_drawNow_pointSizePx;
+                int pointStroke = (int)Math.ceil(pointRadius / 3d);
+                float x = (float)(((now.get(Calendar.DAY_OF_YEAR) - 0.5d) / year.numDays) * w);
+                float y = (float)((EventMillis.minuteOfDay(now.getTimeInMillis(), timezone) / MINUTES_IN_DAY) * h);
+                boolean dashed = (colors.option_drawNow == LightMapColors.DRAW_SUN2);
+                drawPoint(x, y, pointRadius, pointStroke, c, p, (dashed ? Color.TRANSPARENT : colors.colorPointFill), colors.colorPointStroke, (dashed ? new DashPathEffect(new float[] {4, 2}, 0) : null));
+            }
+
             //long bench_end = System.nanoTime();
-            //Log.d("BENCH", "make lightmap :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
+            //Log.d("BENCH", "make lightmap (year) :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
             return b;
         }
+        private int[] pixels = null;    // reused by makeYearBitmap
 
         protected Calendar mapTime(@Nullable SuntimesRiseSetDataset data, @NonNull LightMapColors options)
         {
@@ -705,38 +901,25 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         @SuppressWarnings("BooleanMethodIsAlwaysInverted")
         protected boolean drawRect( LightMapColors options, SuntimesRiseSetData data, Canvas c, Paint p )
         {
-            Calendar riseTime = data.sunriseCalendarToday();
-            Calendar setTime = data.sunsetCalendarToday();
-            if (riseTime == null && setTime == null)
+            long riseTime = EventMillis.toMillis(data.sunriseCalendarToday());
+            long setTime = EventMillis.toMillis(data.sunsetCalendarToday());
+            if (riseTime == EventMillis.NONE && setTime == EventMillis.NONE)
             {
                 return false;
             }
 
-            if (options.option_lmt)
-            {
-                TimeZone lmt = WidgetTimezones.localMeanTime(null, data.location());
-                if (riseTime != null)
-                {
-                    Calendar riseTimeLmt = Calendar.getInstance(lmt);
-                    riseTimeLmt.setTimeInMillis(riseTime.getTimeInMillis());
-                    riseTime = riseTimeLmt;
-                }
-                if (setTime != null)
-                {
-                    Calendar setTimeLmt = Calendar.getInstance(lmt);
-                    setTimeLmt.setTimeInMillis(setTime.getTimeInMillis());
-                    setTime = setTimeLmt;
-                }
-            }
+            Calendar today = data.calendar();
+            long todayDay = EventMillis.epochDay(today.getTimeInMillis(), today.getTimeZone());
+            TimeZone timezone = (options.option_lmt ? lmt(data.location()) : data.timezone());
 
             int w = c.getWidth();
             int h = c.getHeight();
 
             int left = 0;
-            if (riseTime != null)
+            if (riseTime != EventMillis.NONE)
             {
-                int dayDiff = riseTime.get(Calendar.DAY_OF_YEAR) - data.calendar().get(Calendar.DAY_OF_YEAR);  // average case: 0; edge cases: -1, 1
-                double riseMinute = riseTime.get(Calendar.HOUR_OF_DAY) * 60 + riseTime.get(Calendar.MINUTE);
+                long dayDiff = EventMillis.epochDay(riseTime, timezone) - todayDay;  // average case: 0; edge cases: -1, 1
+                double riseMinute = EventMillis.minuteOfDay(riseTime, timezone);
                 double riseR = ((dayDiff * 60 * 24) + riseMinute) / MINUTES_IN_DAY;
                 if (riseR > 1) {
                     riseR = 1;
@@ -747,10 +930,10 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
             }
 
             int right = w;
-            if (setTime != null)
+            if (setTime != EventMillis.NONE)
             {
-                int dayDiff = setTime.get(Calendar.DAY_OF_YEAR) - data.calendar().get(Calendar.DAY_OF_YEAR);  // average case: 0; edge cases: -1, 1
-                double setMinute = setTime.get(Calendar.HOUR_OF_DAY) * 60 + setTime.get(Calendar.MINUTE);
+                long dayDiff = EventMillis.epochDay(setTime, timezone) - todayDay;  // average case: 0; edge cases: -1, 1
+                double setMinute = EventMillis.minuteOfDay(setTime, timezone);
                 double setR = ((dayDiff * 60 * 24) + setMinute) / MINUTES_IN_DAY;
                 if (setR > 1) {
                     setR = 1;
@@ -760,7 +943,7 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
                 right = (int) Math.round(setR * w);
             }
 
-            boolean setTimeBeforeRiseTime = (riseTime != null && setTime != null && setTime.getTime().before(riseTime.getTime()));
+            boolean setTimeBeforeRiseTime = (riseTime != EventMillis.NONE && setTime != EventMillis.NONE && setTime < riseTime);
             if (setTimeBeforeRiseTime)
             {
                 c.drawRect(0, 0, right, h, p);
@@ -772,31 +955,51 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
             return true;
         }
 
+        private TimeZone lmt = null;
+        private TimeZone lmt(Location location)
+        {
+            if (lmt == null || lmt.getRawOffset() != WidgetTimezones.LocalMeanTime.findOffset(location.getLongitudeAsDouble())) {
+                lmt = WidgetTimezones.localMeanTime(null, location);
+            }
+            return lmt;
+        }
+
         protected void drawPoint(Calendar calendar, int radius, int strokeWidth, Canvas c, Paint p, int fillColor, int strokeColor, DashPathEffect strokeEffect)
         {
-            if (calendar != null)
+            if (calendar != null) {
+                drawPoint(calendar.getTimeInMillis(), calendar.getTimeZone(), radius, strokeWidth, c, p, fillColor, strokeColor, strokeEffect);
+            }
+        }
+
+        protected void drawPoint(long millis, TimeZone timezone, int radius, int strokeWidth, Canvas c, Paint p, int fillColor, int strokeColor, DashPathEffect strokeEffect)
+        {
+            if (millis != EventMillis.NONE)
             {
                 int w = c.getWidth();
                 int h = c.getHeight();
 
-                double minute = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+                double minute = EventMillis.minuteOfDay(millis, timezone);
                 int x = (int) Math.round((minute / MINUTES_IN_DAY) * w);
                 int y = h / 2;
+                drawPoint(x, y, radius, strokeWidth, c, p, fillColor, strokeColor, strokeEffect);
+            }
+        }
 
-                p.setStyle(Paint.Style.FILL);
-                p.setColor(fillColor);
-                c.drawCircle(x, y, radius, p);
-
-                p.setStyle(Paint.Style.STROKE);
-                p.setStrokeWidth(strokeWidth);
-                p.setColor(strokeColor);
+        protected void drawPoint(float x, float y, int radius, int strokeWidth, Canvas c, Paint p, int fillColor, int strokeColor, DashPathEffect strokeEffect)
+        {
+            p.setStyle(Paint.Style.FILL);
+            p.setColor(fillColor);
+            c.drawCircle(x, y, radius, p);
 
-                if (strokeEffect != null) {
-                    p.setPathEffect(strokeEffect);
-                }
+            p.setStyle(Paint.Style.STROKE);
+            p.setStrokeWidth(strokeWidth);
+            p.setColor(strokeColor);
 
-                c.drawCircle(x, y, radius, p);
+            if (strokeEffect != null) {
+                p.setPathEffect(strokeEffect);
             }
+
+            c.drawCircle(x, y, radius, p);
         }
 
         private LightMapTaskListener listener = null;
@@ -838,11 +1041,15 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         public static final int DRAW_SUN1 = 1;    // solid stroke
         public static final int DRAW_SUN2 = 2;    // dashed stroke
 
+        public static final int MAP_DAY = 0;      // a single day (twilight bands)
+        public static final int MAP_YEAR = 1;     // a year of days (heatmap; @see LightMapHeatmap)
+
         public int colorDay, colorCivil, colorNautical, colorAstro, colorNight;
         public int colorPointFill, colorPointStroke;
         public int option_drawNow = DRAW_SUN1;
         public int option_drawNow_pointSizePx = -1;    // when set, used a fixed point size
         public boolean option_lmt = false;
+        public int option_mapMode = MAP_DAY;
 
         public long offsetMinutes = 0;
         public long now = -1L;
@@ -24,6 +24,7 @@ import android.util.Log;
 import android.view.View;
 import android.widget.RemoteViews;
 
+import com.forrestguice.suntimeswidget.calculator.DatasetRegistry;
 import com.forrestguice.suntimeswidget.calculator.MoonPhaseDisplay;
 import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesMoonData;
@@ -70,8 +71,7 @@ public class MoonWidget0 extends SuntimesWidget0
             updateLocationToLastKnown(context, appWidgetId);
         }
 
-        SuntimesMoonData data = new SuntimesMoonData(context, appWidgetId);
-        data.calculate();
+        SuntimesMoonData data = DatasetRegistry.getMoonData(context, appWidgetId);
         layout.prepareForUpdate(context, appWidgetId, data);
 
         RemoteViews views = layout.getViews(context);
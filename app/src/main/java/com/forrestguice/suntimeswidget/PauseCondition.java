@@ -0,0 +1,96 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.forrestguice.suntimeswidget;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pause/resume coordination for background tasks. A task calls awaitFinish at the end of doInBackground to
+ * wait (blocking, rather than spinning) until a minimum time has elapsed and the task is no longer paused;
+ * the UI calls pause and resume (e.g. from onPause/onResume) to hold the result until it can be shown.
+ */
+public class PauseCondition
+{
+    protected final ReentrantLock lock = new ReentrantLock();
+    protected final Condition resumed = lock.newCondition();
+    protected boolean paused = false;
+
+    public void pause()
+    {
+        lock.lock();
+        try {
+            paused = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void resume()
+    {
+        lock.lock();
+        try {
+            paused = false;
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isPaused()
+    {
+        lock.lock();
+        try {
+            return paused;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until minWaitMillis have elapsed (since startMillis) and the condition is not paused.
+     * @param startMillis start time (System.currentTimeMillis)
+     * @param minWaitMillis minimum time to wait (since start)
+     * @return true when finished waiting, false if interrupted
+     */
+    public boolean awaitFinish(long startMillis, long minWaitMillis)
+    {
+        lock.lock();
+        try {
+            long remaining = (startMillis + minWaitMillis) - System.currentTimeMillis();
+            while (remaining > 0 || paused)
+            {
+                if (remaining > 0) {
+                    resumed.await(remaining, TimeUnit.MILLISECONDS);
+                } else resumed.await();
+                remaining = (startMillis + minWaitMillis) - System.currentTimeMillis();
+            }
+            return true;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -86,6 +86,7 @@ import com.forrestguice.suntimeswidget.alarmclock.AlarmEventProvider;
 import com.forrestguice.suntimeswidget.alarmclock.ui.AlarmClockActivity;
 import com.forrestguice.suntimeswidget.alarmclock.ui.AlarmCreateDialog;
 import com.forrestguice.suntimeswidget.calculator.CalculatorProvider;
+import com.forrestguice.suntimeswidget.calculator.DatasetRegistry;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 
 import com.forrestguice.suntimeswidget.calculator.SuntimesMoonData;
@@ -579,7 +580,7 @@ public class SuntimesActivity extends AppCompatActivity
         if (moonDialog != null)
         {
             moonDialog.themeViews(this, appThemeOverride);
-            moonDialog.setData((dataset_moon != null) ? dataset_moon : new SuntimesMoonData(SuntimesActivity.this, 0, "moon"));
+            moonDialog.setData((dataset_moon != null) ? dataset_moon : DatasetRegistry.getMoonData(SuntimesActivity.this, 0, "moon"));
             moonDialog.setDialogListener(moonDialogListener);
             moonDialog.updateViews();
             //Log.d("DEBUG", "MoonDialog updated on restore.");
@@ -1824,6 +1825,7 @@ public class SuntimesActivity extends AppCompatActivity
 
     protected void invalidateData( Context context )
     {
+        DatasetRegistry.invalidate();
         if (dataset != null) {
             dataset.invalidateCalculation();
         }
@@ -2330,9 +2332,7 @@ public class SuntimesActivity extends AppCompatActivity
         if (dataset != null) {
             lightMapDialog.setData(SuntimesActivity.this, dataset);
         } else {
-            SuntimesRiseSetDataset data = new SuntimesRiseSetDataset(SuntimesActivity.this);
-            data.calculateData();
-            lightMapDialog.setData(SuntimesActivity.this, data);
+            lightMapDialog.setData(SuntimesActivity.this, DatasetRegistry.getRiseSetDataset(SuntimesActivity.this, 0));
         }
         lightMapDialog.setDialogListener(lightMapListener);
         lightMapDialog.show(getSupportFragmentManager(), DIALOGTAG_LIGHTMAP);
@@ -2487,7 +2487,7 @@ public class SuntimesActivity extends AppCompatActivity
         MoonDialog moonDialog = new MoonDialog();
         moonDialog.themeViews(this, appThemeOverride);
         SuntimesMoonData d = card_adapter.initData(this, card_layout.findFirstVisibleItemPosition()).second;
-        moonDialog.setData((d != null) ? d : new SuntimesMoonData(SuntimesActivity.this, 0, "moon"));
+        moonDialog.setData((d != null) ? d : DatasetRegistry.getMoonData(SuntimesActivity.this, 0, "moon"));
         moonDialog.setDialogListener(moonDialogListener);
         moonDialog.show(getSupportFragmentManager(), DIALOGTAG_MOON);
         return moonDialog;
@@ -34,6 +34,7 @@ import android.widget.RemoteViews;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
 
+import com.forrestguice.suntimeswidget.calculator.DatasetRegistry;
 import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData2;
@@ -42,6 +43,8 @@ import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.getfix.GetFixHelper;
 import com.forrestguice.suntimeswidget.settings.WidgetSettingsImportTask;
 import com.forrestguice.suntimeswidget.settings.WidgetSettingsMetadata;
+import com.forrestguice.suntimeswidget.widgets.WidgetRefreshScheduler;
+import com.forrestguice.suntimeswidget.widgets.WidgetUpdateScheduler;
 import com.forrestguice.suntimeswidget.widgets.layouts.SunLayout;
 import com.forrestguice.suntimeswidget.widgets.layouts.SunLayout_2x1_0;
 import com.forrestguice.suntimeswidget.widgets.layouts.SunLayout_3x1_0;
@@ -59,7 +62,7 @@ import static com.forrestguice.suntimeswidget.SuntimesConfigActivity0.EXTRA_RECO
 /**
  * Widget receiver for resizable widget (that falls back to 1x1 layout).
  */
-public class SuntimesWidget0 extends AppWidgetProvider
+public class SuntimesWidget0 extends AppWidgetProvider implements WidgetUpdateScheduler.UpdateTarget
 {
     public static final String SUNTIMES_WIDGET_UPDATE = "suntimes.SUNTIMES_WIDGET_UPDATE";
     public static final String SUNTIMES_THEME_UPDATE = "suntimes.SUNTIMES_THEME_UPDATE";
@@ -101,7 +104,7 @@ public class SuntimesWidget0 extends AppWidgetProvider
         newOptions.putString(WidgetSettingsMetadata.PREF_KEY_META_CLASSNAME, getClass().getSimpleName());
         WidgetSettingsMetadata.saveMetaData(context, appWidgetId, newOptions);
         initLocale(context);
-        updateWidget(context, appWidgetManager, appWidgetId);
+        WidgetUpdateScheduler.schedule(context, getClass(), new int[] { appWidgetId }, this, WidgetUpdateScheduler.goAsync(this));
     }
 
     @Override
@@ -133,7 +136,6 @@ public class SuntimesWidget0 extends AppWidgetProvider
 
         String filter = getUpdateIntentFilter();
         String action = intent.getAction();
-        Bundle extras = intent.getExtras();
 
         if (action != null && action.equals(filter))
         {
@@ -146,9 +148,8 @@ public class SuntimesWidget0 extends AppWidgetProvider
                 if (appWidgetID <= 0) {
                     updateWidgets(context);
                 } else {
-                    onUpdate(context, AppWidgetManager.getInstance(context), new int[]{appWidgetID});
+                    onUpdate(context, AppWidgetManager.getInstance(context), new int[]{appWidgetID});    // schedules the next update after updating (@see onUpdateWidget)
                 }
-                setUpdateAlarm(context, appWidgetID);      // schedule next update
             }
 
         } else if (isClickAction(action)) {
@@ -182,8 +183,7 @@ public class SuntimesWidget0 extends AppWidgetProvider
 
         } else if (action != null && action.equals(SUNTIMES_ALARM_UPDATE)) {
             Log.d(TAG, "onReceive: SUNTIMES_ALARM_UPDATE :: " + getClass());
-            updateWidgets(context);
-            setUpdateAlarms(context);
+            updateWidgets(context);    // also schedules the next update (@see onUpdateWidget)
 
         } else if (action != null && action.equals("android.intent.action.TIME_SET")) {
             Log.d(TAG, "onReceive: android.intent.action.TIME_SET :: " + getClass());
@@ -193,16 +193,7 @@ public class SuntimesWidget0 extends AppWidgetProvider
 
         } else if (action != null && action.equals(AppWidgetManager.ACTION_APPWIDGET_UPDATE)) {
             Log.d(TAG, "onReceive: ACTION_APPWIDGET_UPDATE :: " + getClass());
-            if (extras != null)
-            {
-                int[] appWidgetIds = extras.getIntArray(AppWidgetManager.EXTRA_APPWIDGET_IDS);
-                if (appWidgetIds != null)
-                {
-                    for (int appWidgetId : appWidgetIds) {
-                        setUpdateAlarm(context, appWidgetId);
-                    }
-                }
-            }
+            // handled by onUpdate; the update alarms are registered after each widget is updated (@see onUpdateWidget)
 
         } else {
             Log.d(TAG, "onReceive: unhandled :: " + action + " :: " + getClass());
@@ -367,13 +358,24 @@ public class SuntimesWidget0 extends AppWidgetProvider
     {
         initLocale(context);
         WidgetThemes.initThemes(context);
+        WidgetUpdateScheduler.schedule(context, getClass(), appWidgetIds, this, WidgetUpdateScheduler.goAsync(this));
+        super.onUpdate(context, appWidgetManager, appWidgetIds);
+    }
 
-        for (int appWidgetId : appWidgetIds)
-        {
+    /**
+     * Called by WidgetUpdateScheduler (from a worker thread) to update a widget; the update alarm is set
+     * afterward since it depends on the result (@see WidgetSettings.saveNextSuggestedUpdate). The alarm is set
+     * even if the update fails (falling back to the next suggested update, or midnight), so a single failed
+     * update doesn't stop the widget from refreshing.
+     */
+    @Override
+    public void onUpdateWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId)
+    {
+        try {
             updateWidget(context, appWidgetManager, appWidgetId);
+        } finally {
+            setUpdateAlarm(context, appWidgetId);
         }
-
-        super.onUpdate(context, appWidgetManager, appWidgetIds);
     }
 
     protected void updateWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId)
@@ -404,6 +406,7 @@ public class SuntimesWidget0 extends AppWidgetProvider
     @Override
     public void onDeleted(Context context, int[] appWidgetIds)
     {
+        WidgetUpdateScheduler.cancel(getClass(), appWidgetIds);
         for (int appWidgetId : appWidgetIds)
         {
             unsetUpdateAlarm(context, appWidgetId);
@@ -574,8 +577,14 @@ public class SuntimesWidget0 extends AppWidgetProvider
     protected static void updateLocationToLastKnown(Context context, int appWidgetId)
     {
         android.location.Location currentLocation = GetFixHelper.lastKnownLocation(context);
-        if (currentLocation != null) {
-            WidgetSettings.saveLocationPref(context, appWidgetId, new Location(context.getString(R.string.gps_lastfix_title_found), currentLocation));
+        if (currentLocation != null)
+        {
+            Location location = new Location(context.getString(R.string.gps_lastfix_title_found), currentLocation);
+            if (!location.equals(WidgetSettings.loadLocationPref(context, appWidgetId)))
+            {
+                WidgetSettings.saveLocationPref(context, appWidgetId, location);
+                DatasetRegistry.invalidate();    // don't wait for the (main thread) prefs listener
+            }
         }
     }
 
@@ -686,40 +695,43 @@ public class SuntimesWidget0 extends AppWidgetProvider
     }
 
     /**
-     * Start widget updates; register an alarm (inexactRepeating) that does not wake the device.
+     * Start widget updates; schedules the widget's next update with the shared refresh alarm (that does not wake the device).
      * @param context the context
+     * @see WidgetRefreshScheduler
      */
     protected void setUpdateAlarm( Context context, int alarmID )
     {
-        AlarmManager alarmManager = (AlarmManager)context.getSystemService(Context.ALARM_SERVICE);
-        if (alarmManager != null)
+        long updateTime = getUpdateTimeMillis(context, alarmID);
+        if (updateTime > 0)
         {
-            PendingIntent alarmIntent = getUpdateIntent(context, alarmID);
-            long updateTime = getUpdateTimeMillis(context, alarmID);
-            if (updateTime > 0)
-            {
-                if (Build.VERSION.SDK_INT < 19) {
-                    alarmManager.set(AlarmManager.RTC, updateTime, alarmIntent);
-                } else {
-                    alarmManager.setWindow(AlarmManager.RTC, updateTime, 5 * 1000, alarmIntent);
-                }
-                Log.d(TAG, "setUpdateAlarm: " + utils.calendarDateTimeDisplayString(context, updateTime).toString() + " --> " + getUpdateIntentFilter() + "(" + alarmID + ") :: " + utils.timeDeltaLongDisplayString(getUpdateInterval(), true) );
-            } else Log.d(TAG, "setUpdateAlarm: skipping " + alarmID);
-        }
+            WidgetRefreshScheduler.schedule(context, getClass(), alarmID, getUpdateIntentFilter(), updateTime);
+            Log.d(TAG, "setUpdateAlarm: " + utils.calendarDateTimeDisplayString(context, updateTime).toString() + " --> " + getUpdateIntentFilter() + "(" + alarmID + ") :: " + utils.timeDeltaLongDisplayString(getUpdateInterval(), true) );
+        } else Log.d(TAG, "setUpdateAlarm: skipping " + alarmID);
+        unsetLegacyUpdateAlarm(context, alarmID);
     }
 
     /**
-     * Stop widget updates; unregisters the update alarm.
+     * Stop widget updates; removes the widget from the shared refresh alarm.
      * @param context the context
      */
     protected void unsetUpdateAlarm( Context context, int alarmID )
+    {
+        WidgetRefreshScheduler.unschedule(context, getClass(), alarmID);
+        unsetLegacyUpdateAlarm(context, alarmID);
+        Log.d(TAG, "unsetUpdateAlarm: unset alarm --> " + getUpdateIntentFilter() + "(" + alarmID + ")");
+    }
+
+    /**
+     * Cancels the per-widget alarm that was registered by previous versions (if any).
+     */
+    protected void unsetLegacyUpdateAlarm( Context context, int alarmID )
     {
         AlarmManager alarmManager = (AlarmManager)context.getSystemService(Context.ALARM_SERVICE);
-        if (alarmManager != null)
+        PendingIntent alarmIntent = getUpdateIntent(context, alarmID, PendingIntent.FLAG_NO_CREATE);
+        if (alarmManager != null && alarmIntent != null)
         {
-            PendingIntent alarmIntent = getUpdateIntent(context, alarmID);
             alarmManager.cancel(alarmIntent);
-            Log.d(TAG, "unsetUpdateAlarm: unset alarm --> " + getUpdateIntentFilter() + "(" + alarmID + ")");
+            alarmIntent.cancel();
         }
     }
 
@@ -773,7 +785,10 @@ public class SuntimesWidget0 extends AppWidgetProvider
      * @param context the context
      * @return a SUNTIMES_WIDGET_UPDATE broadcast intent for widget alarmId (@see getUpdateAlarmId)
      */
-    protected PendingIntent getUpdateIntent(Context context, int appWidgetId)
+    protected PendingIntent getUpdateIntent(Context context, int appWidgetId) {
+        return getUpdateIntent(context, appWidgetId, 0);
+    }
+    protected PendingIntent getUpdateIntent(Context context, int appWidgetId, int flags)
     {
         String updateFilter = getUpdateIntentFilter();
         Intent intent = new Intent(updateFilter);
@@ -786,7 +801,7 @@ public class SuntimesWidget0 extends AppWidgetProvider
          * results in stale alarms (that may eventually consume all of the device's memory).
          */
         //return PendingIntent.getBroadcast(context, alarmId, intent, PendingIntent.FLAG_CANCEL_CURRENT);
-        return PendingIntent.getBroadcast(context, appWidgetId, intent, 0);
+        return PendingIntent.getBroadcast(context, appWidgetId, intent, flags);
     }
 
     /**
@@ -23,6 +23,7 @@ import android.content.Context;
 import android.view.View;
 import android.widget.RemoteViews;
 
+import com.forrestguice.suntimeswidget.calculator.DatasetRegistry;
 import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.widgets.layouts.SunPosLayout;
@@ -87,7 +88,7 @@ public class SuntimesWidget2 extends SuntimesWidget0
             updateLocationToLastKnown(context, appWidgetId);
         }
 
-        SuntimesRiseSetDataset dataset = new SuntimesRiseSetDataset(context, appWidgetId);
+        SuntimesRiseSetDataset dataset = DatasetRegistry.getRiseSetDataset(context, appWidgetId);
         layout.prepareForUpdate(context, appWidgetId, dataset, widgetMaxSizeDp(context, appWidgetManager, appWidgetId, new int[] {40, 40}));
 
         RemoteViews views = layout.getViews(context);
@@ -2217,44 +2217,10 @@ public class AlarmNotifications extends BroadcastReceiver
         }
 
         SuntimesRiseSetData sunData = getData_sunEvent(context, event, location);
-
-        Calendar alarmTime = Calendar.getInstance();
-        Calendar eventTime;
-
-        Calendar day = Calendar.getInstance();
-        sunData.setTodayIs(day);
-        sunData.calculate();
-        eventTime = (event.isRising() ? sunData.sunriseCalendarToday() : sunData.sunsetCalendarToday());
-        if (eventTime != null)
-        {
-            eventTime.set(Calendar.SECOND, 0);
-            alarmTime.setTimeInMillis(eventTime.getTimeInMillis() + offset);
-        }
-
-        int c = 0;
-        Set<Long> timestamps = new HashSet<>();
-        while (now.after(alarmTime)
-                || eventTime == null
-                || (repeating && !repeatingDays.contains(eventTime.get(Calendar.DAY_OF_WEEK))))
-        {
-            if (!timestamps.add(alarmTime.getTimeInMillis()) && c > 365) {
-                Log.e(TAG, "updateAlarmTime: encountered same timestamp twice! (breaking loop)");
-                t_updateAlarmTime_brokenLoop = true;
-                t_updateAlarmTime_runningLoop = false;
-                return null;
-            }
-
-            Log.w("AlarmReceiverItem", "updateAlarmTime: sunEvent advancing by 1 day..");
-            day.add(Calendar.DAY_OF_YEAR, 1);
-            sunData.setTodayIs(day);
-            sunData.calculate();
-            eventTime = (event.isRising() ? sunData.sunriseCalendarToday() : sunData.sunsetCalendarToday());
-            if (eventTime != null)
-            {
-                eventTime.set(Calendar.SECOND, 0);
-                alarmTime.setTimeInMillis(eventTime.getTimeInMillis() + offset);
-            }
-            c++;
+        Calendar eventTime = sunData.findNextEvent(event.isRising(), now.getTimeInMillis(), offset, (repeating ? repeatingDays : null));
+        if (eventTime == null) {
+            Log.e(TAG, "updateAlarmTime: failed to find the next sunEvent within a year! (breaking loop)");
+            t_updateAlarmTime_brokenLoop = true;
         }
         t_updateAlarmTime_runningLoop = false;
         return eventTime;
@@ -0,0 +1,642 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillisCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTable;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTableCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A SuntimesCalculator that wraps another SuntimesCalculator, memoizing the results of day-based
+ * methods (rise, set, twilight, noon, golden/blue hour, moonrise/set, and seasons).
+ *
+ * Results are held in a process-wide cache; each configuration (calculator name, location, timezone) has an
+ * LRU cache of its own keyed by local day, so wrapped instances that share the same configuration also share results.
+ * Methods that depend on the time of day (position, isDay, moon phase, etc) are passed through.
+ */
+public class CachedSuntimesCalculator implements SuntimesCalculator, RiseSetTableCalculator, EventMillisCalculator
+{
+    protected SuntimesCalculator calculator;
+    protected String configKey = "";
+
+    public CachedSuntimesCalculator(@NonNull SuntimesCalculator calculator)
+    {
+        this.calculator = calculator;
+        this.configKey = createConfigKey(calculator);
+    }
+
+    /**
+     * @return the wrapped calculator
+     */
+    public SuntimesCalculator getCalculator() {
+        return calculator;
+    }
+
+    /**
+     * Tables are not cached; the request is passed to the wrapped calculator (native or fallback).
+     */
+    @Override
+    public RiseSetTable getRiseSetTable(Calendar startDate, int numDays, int events) {
+        return RiseSetTable.create(calculator, startDate, numDays, events);
+    }
+
+    /**
+     * Primitive results are passed to the wrapped calculator (native or fallback).
+     */
+    @Override
+    public long getEventMillis(int event, long dateMillis) {
+        return EventMillis.getEventMillis(calculator, event, dateMillis);
+    }
+
+    @Override
+    public boolean getSunPosition(long millis, SunPosition result) {
+        return EventMillis.getSunPosition(calculator, millis, result);
+    }
+
+    @Override
+    public boolean getMoonPosition(long millis, MoonPosition result) {
+        return EventMillis.getMoonPosition(calculator, millis, result);
+    }
+
+    protected static String createConfigKey(@NonNull SuntimesCalculator calculator)
+    {
+        StringBuilder key = new StringBuilder(calculator.name());
+        Location location = calculator.getLocation();
+        if (location != null) {
+            key.append("|").append(location.getLatitude()).append(",").append(location.getLongitude()).append(",").append(location.getAltitude());
+        }
+        TimeZone timezone = calculator.getTimeZone();
+        if (timezone != null) {
+            key.append("|").append(timezone.getID()).append(",").append(timezone.getRawOffset());
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param date a Calendar representing a given date
+     * @return a key identifying the local day of the given date (year * 1000 + dayOfYear), or NO_KEY if the date
+     * uses a different timezone than the calculator (the local day is ambiguous, so the result isn't cached)
+     */
+    protected long dayKey(@NonNull Calendar date)
+    {
+        TimeZone timezone = calculator.getTimeZone();
+        TimeZone dateTimezone = date.getTimeZone();
+        if (timezone != null && timezone != dateTimezone && !timezone.getID().equals(dateTimezone.getID())) {
+            return NO_KEY;
+        }
+        return (date.get(Calendar.YEAR) * 1000L) + date.get(Calendar.DAY_OF_YEAR);
+    }
+
+    /**
+     * @return a key identifying the year of the given date (year * 1000; distinct from any dayKey)
+     */
+    protected long yearKey(@NonNull Calendar date) {
+        return date.get(Calendar.YEAR) * 1000L;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // Cache
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final int DEF_MAX_ENTRIES = 512;
+    public static final int MAX_CONFIGS = 32;
+    protected static final long NO_KEY = Long.MIN_VALUE;
+    protected static final Object NULL_RESULT = new Object();
+
+    private static final Object cacheLock = new Object();
+    private static volatile int maxEntries = DEF_MAX_ENTRIES;
+    private static volatile int cacheGeneration = 0;
+    private static final AtomicLong cacheHits = new AtomicLong(), cacheMisses = new AtomicLong();
+    private static final LinkedHashMap<String, ConfigCache> caches = new LinkedHashMap<String, ConfigCache>(MAX_CONFIGS, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConfigCache> eldest) {
+            return size() > MAX_CONFIGS;
+        }
+    };
+
+    /**
+     * Results for a single configuration (calculator, location, timezone), by day (or year); each configuration
+     * has its own lock, so calculators with different configurations don't contend. The shared map of configurations
+     * is only consulted when a calculator is initialized (or after clearCache).
+     */
+    protected static class ConfigCache
+    {
+        protected final int generation;
+        protected final LinkedHashMap<Long, DayEntry> days = new LinkedHashMap<Long, DayEntry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, DayEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        public ConfigCache(int generation) {
+            this.generation = generation;
+        }
+
+        public int size()
+        {
+            synchronized (this) {
+                return days.size();
+            }
+        }
+    }
+
+    protected static class DayEntry
+    {
+        protected final Object[] values = new Object[NUM_EVENTS];
+        protected HashMap<Double, Object> riseAngles = null, setAngles = null;
+    }
+
+    protected ConfigCache configCache = null;
+
+    /**
+     * @return the cache for this calculator's configuration
+     */
+    protected ConfigCache configCache()
+    {
+        ConfigCache retValue = configCache;
+        if (retValue == null || retValue.generation != cacheGeneration)
+        {
+            synchronized (cacheLock)
+            {
+                retValue = caches.get(configKey);
+                if (retValue == null || retValue.generation != cacheGeneration) {
+                    caches.put(configKey, retValue = new ConfigCache(cacheGeneration));
+                }
+            }
+            configCache = retValue;
+        }
+        return retValue;
+    }
+
+    /**
+     * @param key a key identifying the day (@see dayKey), or year (@see yearKey)
+     * @param event the event (one of the EVENT_ constants)
+     * @param angle the angle (EVENT_RISE_ANGLE, EVENT_SET_ANGLE), or 0
+     * @return the cached value, NULL_RESULT if the cached value is null, or null if the value is not in the cache
+     */
+    @Nullable
+    protected Object getCachedValue(long key, int event, double angle)
+    {
+        if (key == NO_KEY) {
+            return null;
+        }
+        ConfigCache cache = configCache();
+        Object value = null;
+        synchronized (cache)
+        {
+            DayEntry entry = cache.days.get(key);
+            if (entry != null)
+            {
+                switch (event)
+                {
+                    case EVENT_RISE_ANGLE: value = (entry.riseAngles != null ? entry.riseAngles.get(angle) : null); break;
+                    case EVENT_SET_ANGLE: value = (entry.setAngles != null ? entry.setAngles.get(angle) : null); break;
+                    default: value = entry.values[event]; break;
+                }
+            }
+        }
+        if (value != null) {
+            cacheHits.incrementAndGet();
+        } else cacheMisses.incrementAndGet();
+        return value;
+    }
+
+    protected void putCachedValue(long key, int event, double angle, @Nullable Object value)
+    {
+        if (key == NO_KEY) {
+            return;
+        }
+        ConfigCache cache = configCache();
+        synchronized (cache)
+        {
+            DayEntry entry = cache.days.get(key);
+            if (entry == null) {
+                cache.days.put(key, entry = new DayEntry());
+            }
+            Object v = (value != null ? value : NULL_RESULT);
+            switch (event)
+            {
+                case EVENT_RISE_ANGLE:
+                    if (entry.riseAngles == null) {
+                        entry.riseAngles = new HashMap<>();
+                    }
+                    entry.riseAngles.put(angle, v);
+                    break;
+
+                case EVENT_SET_ANGLE:
+                    if (entry.setAngles == null) {
+                        entry.setAngles = new HashMap<>();
+                    }
+                    entry.setAngles.put(angle, v);
+                    break;
+
+                default:
+                    entry.values[event] = v;
+                    break;
+            }
+        }
+    }
+
+    public static void clearCache()
+    {
+        synchronized (cacheLock)
+        {
+            cacheGeneration++;    // calculators holding a cache from an earlier generation replace it on their next lookup
+            caches.clear();
+            cacheHits.set(0);
+            cacheMisses.set(0);
+        }
+    }
+
+    /**
+     * @param value the maximum number of days (or years) kept for each configuration
+     */
+    public static void setMaxCacheEntries(int value) {
+        maxEntries = value;    // trimmed on the next put
+    }
+
+    public static long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public static long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * @return the number of days (or years) in the cache (all configurations)
+     */
+    public static int getCacheSize()
+    {
+        int n = 0;
+        synchronized (cacheLock)
+        {
+            for (ConfigCache cache : caches.values()) {
+                n += cache.size();
+            }
+        }
+        return n;
+    }
+
+    @Nullable
+    protected static Calendar copy(@Nullable Calendar calendar) {
+        return (calendar != null ? (Calendar) calendar.clone() : null);
+    }
+
+    @Nullable
+    protected static Calendar[] copy(@Nullable Calendar[] calendars)
+    {
+        if (calendars == null) {
+            return null;
+        }
+        Calendar[] retValue = new Calendar[calendars.length];
+        for (int i=0; i<calendars.length; i++) {
+            retValue[i] = copy(calendars[i]);
+        }
+        return retValue;
+    }
+
+    @Nullable
+    protected static MoonTimes copy(@Nullable MoonTimes moonTimes)
+    {
+        if (moonTimes == null) {
+            return null;
+        }
+        MoonTimes retValue = new MoonTimes();
+        retValue.riseTime = copy(moonTimes.riseTime);
+        retValue.setTime = copy(moonTimes.setTime);
+        return retValue;
+    }
+
+    protected static final int EVENT_ASTRO_RISE = 0, EVENT_NAUTICAL_RISE = 1, EVENT_CIVIL_RISE = 2, EVENT_OFFICIAL_RISE = 3, EVENT_NOON = 4;
+    protected static final int EVENT_OFFICIAL_SET = 5, EVENT_CIVIL_SET = 6, EVENT_NAUTICAL_SET = 7, EVENT_ASTRO_SET = 8;
+    protected static final int EVENT_GOLDEN_MORNING = 9, EVENT_GOLDEN_EVENING = 10;
+    protected static final int EVENT_SPRING = 11, EVENT_SUMMER = 12, EVENT_AUTUMN = 13, EVENT_WINTER = 14;
+    protected static final int EVENT_BLUE_MORNING = 15, EVENT_BLUE_EVENING = 16, EVENT_MOONTIMES = 17, EVENT_TROPICAL_YEAR = 18;
+    protected static final int NUM_EVENTS = 19;
+    protected static final int EVENT_RISE_ANGLE = -1, EVENT_SET_ANGLE = -2;
+
+    @Nullable
+    protected Calendar getCalendar(long key, int event, Calendar date)
+    {
+        Object value = getCachedValue(key, event, 0);
+        if (value == null)
+        {
+            Calendar result;
+            switch (event)
+            {
+                case EVENT_ASTRO_RISE: result = calculator.getAstronomicalSunriseCalendarForDate(date); break;
+                case EVENT_NAUTICAL_RISE: result = calculator.getNauticalSunriseCalendarForDate(date); break;
+                case EVENT_CIVIL_RISE: result = calculator.getCivilSunriseCalendarForDate(date); break;
+                case EVENT_OFFICIAL_RISE: result = calculator.getOfficialSunriseCalendarForDate(date); break;
+                case EVENT_NOON: result = calculator.getSolarNoonCalendarForDate(date); break;
+                case EVENT_OFFICIAL_SET: result = calculator.getOfficialSunsetCalendarForDate(date); break;
+                case EVENT_CIVIL_SET: result = calculator.getCivilSunsetCalendarForDate(date); break;
+                case EVENT_NAUTICAL_SET: result = calculator.getNauticalSunsetCalendarForDate(date); break;
+                case EVENT_ASTRO_SET: result = calculator.getAstronomicalSunsetCalendarForDate(date); break;
+                case EVENT_GOLDEN_MORNING: result = calculator.getMorningGoldenHourForDate(date); break;
+                case EVENT_GOLDEN_EVENING: result = calculator.getEveningGoldenHourForDate(date); break;
+                case EVENT_SPRING: result = calculator.getSpringEquinoxForYear(date); break;
+                case EVENT_SUMMER: result = calculator.getSummerSolsticeForYear(date); break;
+                case EVENT_AUTUMN: result = calculator.getAutumnalEquinoxForYear(date); break;
+                case EVENT_WINTER: result = calculator.getWinterSolsticeForYear(date); break;
+                default: result = null; break;
+            }
+            putCachedValue(key, event, 0, copy(result));
+            return result;
+        }
+        return (value == NULL_RESULT ? null : copy((Calendar) value));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // SuntimesCalculator
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public String name() {
+        return calculator.name();
+    }
+
+    @Override
+    public int[] getSupportedFeatures() {
+        return calculator.getSupportedFeatures();
+    }
+
+    @Override
+    public void init(Location location, String timezone)
+    {
+        calculator.init(location, timezone);
+        configKey = createConfigKey(calculator);
+        configCache = null;
+    }
+
+    @Override
+    public void init(Location location, TimeZone timezone)
+    {
+        calculator.init(location, timezone);
+        configKey = createConfigKey(calculator);
+        configCache = null;
+    }
+
+    @Override
+    public void init(Location location, TimeZone timezone, Context context)
+    {
+        calculator.init(location, timezone, context);
+        configKey = createConfigKey(calculator);
+        configCache = null;
+    }
+
+    @Override
+    public Calendar getAstronomicalSunriseCalendarForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_ASTRO_RISE, date);
+    }
+
+    @Override
+    public Calendar getNauticalSunriseCalendarForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_NAUTICAL_RISE, date);
+    }
+
+    @Override
+    public Calendar getCivilSunriseCalendarForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_CIVIL_RISE, date);
+    }
+
+    @Override
+    public Calendar getOfficialSunriseCalendarForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_OFFICIAL_RISE, date);
+    }
+
+    @Override
+    public Calendar getSolarNoonCalendarForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_NOON, date);
+    }
+
+    @Override
+    public Calendar getOfficialSunsetCalendarForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_OFFICIAL_SET, date);
+    }
+
+    @Override
+    public Calendar getCivilSunsetCalendarForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_CIVIL_SET, date);
+    }
+
+    @Override
+    public Calendar getNauticalSunsetCalendarForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_NAUTICAL_SET, date);
+    }
+
+    @Override
+    public Calendar getAstronomicalSunsetCalendarForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_ASTRO_SET, date);
+    }
+
+    @Override
+    @Deprecated
+    public Calendar getVernalEquinoxForYear(Calendar date) {
+        return getSpringEquinoxForYear(date);
+    }
+
+    @Override
+    public Calendar getSpringEquinoxForYear(Calendar date) {
+        return getCalendar(yearKey(date), EVENT_SPRING, date);
+    }
+
+    @Override
+    public Calendar getSummerSolsticeForYear(Calendar date) {
+        return getCalendar(yearKey(date), EVENT_SUMMER, date);
+    }
+
+    @Override
+    public Calendar getAutumnalEquinoxForYear(Calendar date) {
+        return getCalendar(yearKey(date), EVENT_AUTUMN, date);
+    }
+
+    @Override
+    public Calendar getWinterSolsticeForYear(Calendar date) {
+        return getCalendar(yearKey(date), EVENT_WINTER, date);
+    }
+
+    @Override
+    public Calendar[] getMorningBlueHourForDate(Calendar date)
+    {
+        long key = dayKey(date);
+        Object value = getCachedValue(key, EVENT_BLUE_MORNING, 0);
+        if (value == null)
+        {
+            Calendar[] result = calculator.getMorningBlueHourForDate(date);
+            putCachedValue(key, EVENT_BLUE_MORNING, 0, copy(result));
+            return result;
+        }
+        return (value == NULL_RESULT ? null : copy((Calendar[]) value));
+    }
+
+    @Override
+    public Calendar[] getEveningBlueHourForDate(Calendar date)
+    {
+        long key = dayKey(date);
+        Object value = getCachedValue(key, EVENT_BLUE_EVENING, 0);
+        if (value == null)
+        {
+            Calendar[] result = calculator.getEveningBlueHourForDate(date);
+            putCachedValue(key, EVENT_BLUE_EVENING, 0, copy(result));
+            return result;
+        }
+        return (value == NULL_RESULT ? null : copy((Calendar[]) value));
+    }
+
+    @Override
+    public Calendar getMorningGoldenHourForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_GOLDEN_MORNING, date);
+    }
+
+    @Override
+    public Calendar getEveningGoldenHourForDate(Calendar date) {
+        return getCalendar(dayKey(date), EVENT_GOLDEN_EVENING, date);
+    }
+
+    @Override
+    public boolean isDay(Calendar dateTime) {
+        return calculator.isDay(dateTime);
+    }
+
+    @Override
+    public MoonTimes getMoonTimesForDate(Calendar date)
+    {
+        long key = dayKey(date);
+        Object value = getCachedValue(key, EVENT_MOONTIMES, 0);
+        if (value == null)
+        {
+            MoonTimes result = calculator.getMoonTimesForDate(date);
+            putCachedValue(key, EVENT_MOONTIMES, 0, copy(result));
+            return result;
+        }
+        return (value == NULL_RESULT ? null : copy((MoonTimes) value));
+    }
+
+    @Override
+    public double getMoonIlluminationForDate(Calendar dateTime) {
+        return calculator.getMoonIlluminationForDate(dateTime);
+    }
+
+    @Override
+    public Calendar getMoonPhaseNextDate(MoonPhase phase, Calendar date) {
+        return calculator.getMoonPhaseNextDate(phase, date);
+    }
+
+    @Override
+    public SunPosition getSunPosition(Calendar dateTime) {
+        return calculator.getSunPosition(dateTime);
+    }
+
+    @Override
+    public MoonPosition getMoonPosition(Calendar dateTime) {
+        return calculator.getMoonPosition(dateTime);
+    }
+
+    @Override
+    public double getShadowLength(double objHeight, Calendar dateTime) {
+        return calculator.getShadowLength(objHeight, dateTime);
+    }
+
+    @Override
+    public double equationOfTime(Calendar dateTime) {
+        return calculator.equationOfTime(dateTime);
+    }
+
+    @Override
+    public Calendar getMoonPerigeeNextDate(Calendar date) {
+        return calculator.getMoonPerigeeNextDate(date);
+    }
+
+    @Override
+    public Calendar getMoonApogeeNextDate(Calendar date) {
+        return calculator.getMoonApogeeNextDate(date);
+    }
+
+    @Override
+    public Location getLocation() {
+        return calculator.getLocation();
+    }
+
+    @Override
+    public TimeZone getTimeZone() {
+        return calculator.getTimeZone();
+    }
+
+    @Override
+    public long getTropicalYearLength(Calendar date)
+    {
+        long key = yearKey(date);
+        Object value = getCachedValue(key, EVENT_TROPICAL_YEAR, 0);
+        if (value == null)
+        {
+            long result = calculator.getTropicalYearLength(date);
+            putCachedValue(key, EVENT_TROPICAL_YEAR, 0, result);
+            return result;
+        }
+        return (Long) value;
+    }
+
+    @Override
+    public Calendar getSunriseCalendarForDate(Calendar date, double angle)
+    {
+        long key = dayKey(date);
+        Object value = getCachedValue(key, EVENT_RISE_ANGLE, angle);
+        if (value == null)
+        {
+            Calendar result = calculator.getSunriseCalendarForDate(date, angle);
+            putCachedValue(key, EVENT_RISE_ANGLE, angle, copy(result));
+            return result;
+        }
+        return (value == NULL_RESULT ? null : copy((Calendar) value));
+    }
+
+    @Override
+    public Calendar getSunsetCalendarForDate(Calendar date, double angle)
+    {
+        long key = dayKey(date);
+        Object value = getCachedValue(key, EVENT_SET_ANGLE, angle);
+        if (value == null)
+        {
+            Calendar result = calculator.getSunsetCalendarForDate(date, angle);
+            putCachedValue(key, EVENT_SET_ANGLE, angle, copy(result));
+            return result;
+        }
+        return (value == NULL_RESULT ? null : copy((Calendar) value));
+    }
+
+}
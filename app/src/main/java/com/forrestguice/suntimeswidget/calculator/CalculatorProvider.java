@@ -37,12 +37,13 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.TimeZone;
 
 import com.forrestguice.suntimeswidget.BuildConfig;
 import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTable;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.AppSettings;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
@@ -432,229 +433,167 @@ public class CalculatorProvider extends ContentProvider
      */
     private Cursor querySun(long[] range, @NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selection, @Nullable String sortOrder)
     {
-        String[] columns = (projection != null ? projection : QUERY_SUN_PROJECTION);
-        MatrixCursor retValue = new MatrixCursor(columns);
-        SuntimesCalculator calculator = initSunCalculator(getContext(), selection);
+        final String[] columns = (projection != null ? projection : QUERY_SUN_PROJECTION);
+        final SuntimesCalculator calculator = initCursorCalculator(getContext(), initSunCalculator(getContext(), selection));    // owned by the cursor
         if (calculator != null)
         {
-            Calendar day = Calendar.getInstance(calculator.getTimeZone());
-            day.setTimeInMillis(range[0]);
+            final Calendar startDay = Calendar.getInstance(calculator.getTimeZone());
+            startDay.setTimeInMillis(range[0]);
 
             Calendar endDay = Calendar.getInstance(calculator.getTimeZone());
             endDay.setTimeInMillis(range[1] + 1000);      // +1000ms (make range[1] inclusive)
 
-            do {
-                Map<String,SuntimesCalculator.SunPosition> positions = new HashMap<>();
-                SuntimesCalculator.SunPosition position;
-
-                Calendar calendar;
-                Calendar[] morningBlueHour = null, eveningBlueHour = null;
-                Object[] row = new Object[columns.length];
-                for (int i=0; i<columns.length; i++)
+            final Context context = getContext();
+            final SunQueryPlan plan = new SunQueryPlan(columns);
+            return new RangeCursor(columns, countDays(startDay, endDay), new RangeCursor.RowFactory()
+            {
+                @Override
+                public void fillRows(final int position, final Object[][] rows)
                 {
-                    switch (columns[i])
+                    RangeExecutor.execute(context, rows.length, new RangeExecutor.RangeTask()    // the window is split between threads
                     {
-                        case COLUMN_SUN_ACTUAL_RISE:
-                            calendar = calculator.getOfficialSunriseCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_ACTUAL_SET:
-                            calendar = calculator.getOfficialSunsetCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_CIVIL_RISE:
-                            calendar = calculator.getCivilSunriseCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_CIVIL_SET:
-                            calendar = calculator.getCivilSunsetCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_NAUTICAL_RISE:
-                            calendar = calculator.getNauticalSunriseCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_NAUTICAL_SET:
-                            calendar = calculator.getNauticalSunsetCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_ASTRO_RISE:
-                            calendar = calculator.getAstronomicalSunriseCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_ASTRO_SET:
-                            calendar = calculator.getAstronomicalSunsetCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_NOON:
-                            calendar = calculator.getSolarNoonCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_GOLDEN_EVENING:
-                            calendar = calculator.getEveningGoldenHourForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_GOLDEN_MORNING:
-                            calendar =  calculator.getMorningGoldenHourForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_BLUE8_RISE:
-                            if (morningBlueHour == null) {
-                                morningBlueHour = calculator.getMorningBlueHourForDate(day);
-                            }
-                            row[i] = (morningBlueHour[0] != null) ? morningBlueHour[0].getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_BLUE4_RISE:
-                            if (morningBlueHour == null) {
-                                morningBlueHour = calculator.getMorningBlueHourForDate(day);
-                            }
-                            row[i] = (morningBlueHour[1] != null) ? morningBlueHour[1].getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_BLUE4_SET:
-                            if (eveningBlueHour == null) {
-                                eveningBlueHour = calculator.getEveningBlueHourForDate(day);
+                        @Override
+                        public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+                        {
+                            SuntimesCalculator c = workspace.getCalculator(calculator);
+                            Calendar day = (Calendar) startDay.clone();
+                            day.add(Calendar.DAY_OF_YEAR, position + from);
+                            RiseSetTable table = RiseSetTable.create(c, day, to - from, plan.eventMask);    // solve the chunk in a single pass (requested events only)
+                            for (int d=0; d<table.numDays(); d++) {
+                                fillSunRow(c, plan, table, d, rows[from + d]);
                             }
-                            row[i] = (eveningBlueHour[0] != null) ? eveningBlueHour[0].getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_BLUE8_SET:
-                            if (eveningBlueHour == null) {
-                                eveningBlueHour = calculator.getEveningBlueHourForDate(day);
-                            }
-                            row[i] = (eveningBlueHour[1] != null) ? eveningBlueHour[1].getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_NOON_AZ: case COLUMN_SUN_NOON_ALT:
-                        case COLUMN_SUN_NOON_RA: case COLUMN_SUN_NOON_DEC:
-                            calendar = calculator.getSolarNoonCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_NOON, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_ACTUAL_RISE_AZ: case COLUMN_SUN_ACTUAL_RISE_ALT:
-                        case COLUMN_SUN_ACTUAL_RISE_RA: case COLUMN_SUN_ACTUAL_RISE_DEC:
-                            calendar = calculator.getOfficialSunriseCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_ACTUAL_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_ACTUAL_SET_AZ: case COLUMN_SUN_ACTUAL_SET_ALT:
-                        case COLUMN_SUN_ACTUAL_SET_RA: case COLUMN_SUN_ACTUAL_SET_DEC:
-                            calendar = calculator.getOfficialSunsetCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_ACTUAL_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_CIVIL_RISE_AZ: case COLUMN_SUN_CIVIL_RISE_ALT:
-                        case COLUMN_SUN_CIVIL_RISE_RA: case COLUMN_SUN_CIVIL_RISE_DEC:
-                            calendar = calculator.getCivilSunriseCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_CIVIL_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_CIVIL_SET_AZ: case COLUMN_SUN_CIVIL_SET_ALT:
-                        case COLUMN_SUN_CIVIL_SET_RA: case COLUMN_SUN_CIVIL_SET_DEC:
-                            calendar = calculator.getCivilSunsetCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_CIVIL_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_NAUTICAL_RISE_AZ: case COLUMN_SUN_NAUTICAL_RISE_ALT:
-                        case COLUMN_SUN_NAUTICAL_RISE_RA: case COLUMN_SUN_NAUTICAL_RISE_DEC:
-                            calendar = calculator.getNauticalSunriseCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_NAUTICAL_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_NAUTICAL_SET_AZ: case COLUMN_SUN_NAUTICAL_SET_ALT:
-                        case COLUMN_SUN_NAUTICAL_SET_RA: case COLUMN_SUN_NAUTICAL_SET_DEC:
-                            calendar = calculator.getNauticalSunsetCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_NAUTICAL_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_ASTRO_RISE_AZ: case COLUMN_SUN_ASTRO_RISE_ALT:
-                        case COLUMN_SUN_ASTRO_RISE_RA: case COLUMN_SUN_ASTRO_RISE_DEC:
-                            calendar = calculator.getAstronomicalSunriseCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_ASTRO_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_ASTRO_SET_AZ: case COLUMN_SUN_ASTRO_SET_ALT:
-                        case COLUMN_SUN_ASTRO_SET_RA: case COLUMN_SUN_ASTRO_SET_DEC:
-                            calendar = calculator.getAstronomicalSunsetCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_ASTRO_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_GOLDEN_MORNING_AZ: case COLUMN_SUN_GOLDEN_MORNING_ALT:
-                        case COLUMN_SUN_GOLDEN_MORNING_RA: case COLUMN_SUN_GOLDEN_MORNING_DEC:
-                            calendar = calculator.getMorningGoldenHourForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_GOLDEN_MORNING, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_GOLDEN_EVENING_AZ: case COLUMN_SUN_GOLDEN_EVENING_ALT:
-                        case COLUMN_SUN_GOLDEN_EVENING_RA: case COLUMN_SUN_GOLDEN_EVENING_DEC:
-                            calendar = calculator.getEveningGoldenHourForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_GOLDEN_EVENING, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_BLUE8_RISE_AZ: case COLUMN_SUN_BLUE8_RISE_ALT:
-                        case COLUMN_SUN_BLUE8_RISE_RA: case COLUMN_SUN_BLUE8_RISE_DEC:
-                            calendar = calculator.getMorningBlueHourForDate(day)[0];
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_BLUE8_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_BLUE8_SET_AZ: case COLUMN_SUN_BLUE8_SET_ALT:
-                        case COLUMN_SUN_BLUE8_SET_RA: case COLUMN_SUN_BLUE8_SET_DEC:
-                            calendar = calculator.getEveningBlueHourForDate(day)[1];
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_BLUE8_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_BLUE4_RISE_AZ: case COLUMN_SUN_BLUE4_RISE_ALT:
-                        case COLUMN_SUN_BLUE4_RISE_RA: case COLUMN_SUN_BLUE4_RISE_DEC:
-                            calendar = calculator.getMorningBlueHourForDate(day)[1];
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_BLUE4_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_BLUE4_SET_AZ: case COLUMN_SUN_BLUE4_SET_ALT:
-                        case COLUMN_SUN_BLUE4_SET_RA: case COLUMN_SUN_BLUE4_SET_DEC:
-                            calendar = calculator.getEveningBlueHourForDate(day)[0];
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_BLUE4_SET, columns[i], positions);
-                            break;
-
-                        default:
-                            row[i] = null;
-                            break;
-                    }
+                        }
+                    }, calculator);
                 }
-                retValue.addRow(row);
-                day.add(Calendar.DAY_OF_YEAR, 1);
-            } while (day.before(endDay));
+            }, RangeExecutor.suggestedWindowSize(RangeExecutor.DEF_MIN_CHUNK));
 
-        } else Log.w("CalculatorProvider", "querySun: sunSource is null!");
-        return retValue;
+        } else {
+            Log.w("CalculatorProvider", "querySun: sunSource is null!");
+            return new MatrixCursor(columns);
+        }
     }
 
-    protected static Double getPositionValueForSunKey(@NonNull SuntimesCalculator calculator, @Nullable Calendar calendar, String rootKey, String fullKey, Map<String, SuntimesCalculator.SunPosition> positions)
+    protected static void fillSunRow(@NonNull SuntimesCalculator calculator, @NonNull SunQueryPlan plan, @NonNull RiseSetTable table, int d, Object[] row)
     {
-        if (!positions.containsKey(rootKey)) {
-            positions.put(rootKey, calendar != null ? calculator.getSunPosition(calendar) : null);
+        SuntimesCalculator.SunPosition[] positions = new SuntimesCalculator.SunPosition[RiseSetTable.NUM_EVENTS];
+        for (int event=0; event<RiseSetTable.NUM_EVENTS; event++)
+        {
+            if (RiseSetTable.isSelected(plan.positionMask, event) && table.has(event, d))    // each position is computed once per day (shared by its columns)
+            {
+                SuntimesCalculator.SunPosition position = new SuntimesCalculator.SunPosition();
+                if (EventMillis.getSunPosition(calculator, table.get(event, d), position)) {
+                    positions[event] = position;
+                }
+            }
         }
-        SuntimesCalculator.SunPosition position = positions.get(rootKey);
 
-        String ROOT_KEY_PLUS_POSITION_AZ = rootKey + _POSITION_AZ;
-        String ROOT_KEY_PLUS_POSITION_ALT = rootKey + _POSITION_ALT;
-        String ROOT_KEY_PLUS_POSITION_RA = rootKey + _POSITION_RA;
-        String ROOT_KEY_PLUS_POSITION_DEC = rootKey + _POSITION_DEC;
-        String[] ROOT_KEY_PLUS_POSITION = new String[] { ROOT_KEY_PLUS_POSITION_AZ, ROOT_KEY_PLUS_POSITION_ALT, ROOT_KEY_PLUS_POSITION_RA, ROOT_KEY_PLUS_POSITION_DEC };    // 0, 1, 2, 3
+        for (int i=0; i<row.length; i++)
+        {
+            int event = plan.columnEvent[i];
+            SuntimesCalculator.SunPosition position = (event >= 0 ? positions[event] : null);
+            switch (plan.columnValue[i])
+            {
+                case SunQueryPlan.VALUE_TIME: row[i] = getEventValue(table, event, d); break;
+                case SunQueryPlan.VALUE_AZ: row[i] = (position != null ? position.azimuth : null); break;
+                case SunQueryPlan.VALUE_ALT: row[i] = (position != null ? position.elevation : null); break;
+                case SunQueryPlan.VALUE_RA: row[i] = (position != null ? position.rightAscension : null); break;
+                case SunQueryPlan.VALUE_DEC: row[i] = (position != null ? position.declination : null); break;
+                default: row[i] = null; break;
+            }
+        }
+    }
 
-        int j = -1;    // index into ROOT_KEY_PLUS_POSITION
-        for (int i=0; i<ROOT_KEY_PLUS_POSITION.length; i++)
+    /**
+     * SunQueryPlan; maps each column of a querySun projection to an event (and value) once per query, so that
+     * only the events and positions that are actually requested are computed.
+     */
+    protected static class SunQueryPlan
+    {
+        public static final int VALUE_NONE = 0;
+        public static final int VALUE_TIME = 1;
+        public static final int VALUE_AZ = 2;
+        public static final int VALUE_ALT = 3;
+        public static final int VALUE_RA = 4;
+        public static final int VALUE_DEC = 5;
+
+        public final int[] columnEvent;    // RiseSetTable event for each column (or -1)
+        public final int[] columnValue;    // VALUE_ for each column
+        public int eventMask = 0;          // events that need to be solved
+        public int positionMask = 0;       // events that need a sun position
+
+        public SunQueryPlan(String[] columns)
         {
-            if (ROOT_KEY_PLUS_POSITION[i].equals(fullKey)) {
-                j = i;
-                break;
+            columnEvent = new int[columns.length];
+            columnValue = new int[columns.length];
+            for (int i=0; i<columns.length; i++)
+            {
+                int[] entry = COLUMNS.get(columns[i]);
+                columnEvent[i] = (entry != null ? entry[0] : -1);
+                columnValue[i] = (entry != null ? entry[1] : VALUE_NONE);
+                if (entry != null)
+                {
+                    eventMask |= RiseSetTable.eventMask(entry[0]);
+                    if (entry[1] != VALUE_TIME) {
+                        positionMask |= RiseSetTable.eventMask(entry[0]);
+                    }
+                }
             }
         }
-        switch (j)
+
+        protected static final HashMap<String, int[]> COLUMNS = new HashMap<>();
+        static
         {
-            case 0: return (position != null ? position.azimuth : null);
-            case 1: return (position != null ? position.elevation : null);
-            case 2: return (position != null ? position.rightAscension : null);
-            case 3: return (position != null ? position.declination : null);
+            putColumns(COLUMN_SUN_ACTUAL_RISE, RiseSetTable.OFFICIAL_RISE);
+            putColumns(COLUMN_SUN_ACTUAL_SET, RiseSetTable.OFFICIAL_SET);
+            putColumns(COLUMN_SUN_CIVIL_RISE, RiseSetTable.CIVIL_RISE);
+            putColumns(COLUMN_SUN_CIVIL_SET, RiseSetTable.CIVIL_SET);
+            putColumns(COLUMN_SUN_NAUTICAL_RISE, RiseSetTable.NAUTICAL_RISE);
+            putColumns(COLUMN_SUN_NAUTICAL_SET, RiseSetTable.NAUTICAL_SET);
+            putColumns(COLUMN_SUN_ASTRO_RISE, RiseSetTable.ASTRO_RISE);
+            putColumns(COLUMN_SUN_ASTRO_SET, RiseSetTable.ASTRO_SET);
+            putColumns(COLUMN_SUN_NOON, RiseSetTable.NOON);
+            putColumns(COLUMN_SUN_GOLDEN_MORNING, RiseSetTable.GOLDEN_MORNING);
+            putColumns(COLUMN_SUN_GOLDEN_EVENING, RiseSetTable.GOLDEN_EVENING);
+            putColumns(COLUMN_SUN_BLUE8_RISE, RiseSetTable.BLUE8_RISE);
+            putColumns(COLUMN_SUN_BLUE4_RISE, RiseSetTable.BLUE4_RISE);
+            putColumns(COLUMN_SUN_BLUE4_SET, RiseSetTable.BLUE4_SET);
+            putColumns(COLUMN_SUN_BLUE8_SET, RiseSetTable.BLUE8_SET);
         }
-        return null;
+        private static void putColumns(String rootKey, int event)
+        {
+            COLUMNS.put(rootKey, new int[] { event, VALUE_TIME });
+            COLUMNS.put(rootKey + _POSITION_AZ, new int[] { event, VALUE_AZ });
+            COLUMNS.put(rootKey + _POSITION_ALT, new int[] { event, VALUE_ALT });
+            COLUMNS.put(rootKey + _POSITION_RA, new int[] { event, VALUE_RA });
+            COLUMNS.put(rootKey + _POSITION_DEC, new int[] { event, VALUE_DEC });
+        }
+    }
+
+    /**
+     * @return the number of days iterated by `do { day.add(DAY_OF_YEAR, 1) } while (day.before(endDay))` (at least 1)
+     */
+    protected static int countDays(Calendar startDay, Calendar endDay) {
+        return countSteps(startDay, endDay, Calendar.DAY_OF_YEAR);
+    }
+
+    /**
+     * @param field Calendar field (e.g. Calendar.DAY_OF_YEAR, Calendar.YEAR)
+     * @return the number of steps iterated by `do { calendar.add(field, 1) } while (calendar.before(end))` (at least 1)
+     */
+    protected static int countSteps(Calendar start, Calendar end, int field)
+    {
+        Calendar calendar = (Calendar) start.clone();
+        int n = 0;
+        do {
+            n++;
+            calendar.add(field, 1);
+        } while (calendar.before(end));
+        return n;
+    }
+
+    @Nullable
+    protected static Long getEventValue(@NonNull RiseSetTable table, int event, int i) {
+        return (table.has(event, i) ? table.get(event, i) : null);
     }
 
     public static final String COLUMN_SUN_NOON_AZ = COLUMN_SUN_NOON + _POSITION_AZ;
@@ -797,84 +736,106 @@ public class CalculatorProvider extends ContentProvider
      */
     private Cursor queryMoon(long[] range, @NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selection, @Nullable String sortOrder)
     {
-        String[] columns = (projection != null ? projection : QUERY_MOON_PROJECTION);
-        MatrixCursor retValue = new MatrixCursor(columns);
-        SuntimesCalculator calculator = initMoonCalculator(getContext(), selection);
+        final String[] columns = (projection != null ? projection : QUERY_MOON_PROJECTION);
+        final SuntimesCalculator calculator = initCursorCalculator(getContext(), initMoonCalculator(getContext(), selection));    // owned by the cursor
         if (calculator != null)
         {
-            Calendar day = Calendar.getInstance(calculator.getTimeZone());
-            day.setTimeInMillis(range[0]);
+            final Calendar startDay = Calendar.getInstance(calculator.getTimeZone());
+            startDay.setTimeInMillis(range[0]);
 
             Calendar endDay = Calendar.getInstance(calculator.getTimeZone());
             endDay.setTimeInMillis(range[1] + 1000);    // +1000ms (make range[1] inclusive)
 
-            do {
-                SuntimesCalculator.MoonTimes moontimes = null;
-                SuntimesCalculator.MoonPosition position_rising = null, position_setting = null;
-                Object[] row = new Object[columns.length];
-                for (int i=0; i<columns.length; i++)
+            final Context context = getContext();
+            return new RangeCursor(columns, countDays(startDay, endDay), new RangeCursor.RowFactory()
+            {
+                @Override
+                public void fillRows(final int position, final Object[][] rows)
                 {
-                    switch (columns[i])
+                    RangeExecutor.execute(context, rows.length, new RangeExecutor.RangeTask()
                     {
-                        case COLUMN_MOON_RISE:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            row[i] = (moontimes.riseTime) != null ? moontimes.riseTime.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_MOON_SET:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            row[i] = (moontimes.setTime) != null ? moontimes.setTime.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_MOON_RISE_AZ: case COLUMN_MOON_RISE_ALT:
-                        case COLUMN_MOON_RISE_RA: case COLUMN_MOON_RISE_DEC:
-                        case COLUMN_MOON_RISE_DISTANCE:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            position_rising = (position_rising == null && moontimes.riseTime != null) ? calculator.getMoonPosition(moontimes.riseTime) : position_rising;
-                            switch (columns[i])
-                            {
-                                case COLUMN_MOON_RISE_AZ: row[i] = (position_rising != null ? position_rising.azimuth : null); break;
-                                case COLUMN_MOON_RISE_ALT: row[i] = (position_rising != null ? position_rising.elevation : null); break;
-                                case COLUMN_MOON_RISE_RA: row[i] = (position_rising != null ? position_rising.rightAscension : null); break;
-                                case COLUMN_MOON_RISE_DEC: row[i] = (position_rising != null ? position_rising.declination : null); break;
-                                case COLUMN_MOON_RISE_DISTANCE: row[i] = (position_rising != null ? position_rising.distance : null); break;
-                            }
-                            break;
-
-                        case COLUMN_MOON_SET_AZ: case COLUMN_MOON_SET_ALT:
-                        case COLUMN_MOON_SET_RA: case COLUMN_MOON_SET_DEC:
-                        case COLUMN_MOON_SET_DISTANCE:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            position_setting = (position_setting == null && moontimes.setTime != null) ? calculator.getMoonPosition(moontimes.setTime) : position_setting;
-                            switch (columns[i])
-                            {
-                                case COLUMN_MOON_SET_AZ: row[i] = (position_setting != null ? position_setting.azimuth : null); break;
-                                case COLUMN_MOON_SET_ALT: row[i] = (position_setting != null ? position_setting.elevation : null); break;
-                                case COLUMN_MOON_SET_RA: row[i] = (position_setting != null ? position_setting.rightAscension : null); break;
-                                case COLUMN_MOON_SET_DEC: row[i] = (position_setting != null ? position_setting.declination : null); break;
-                                case COLUMN_MOON_SET_DISTANCE: row[i] = (position_setting != null ? position_setting.distance : null); break;
+                        @Override
+                        public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+                        {
+                            SuntimesCalculator c = workspace.getCalculator(calculator);
+                            Calendar day = (Calendar) startDay.clone();
+                            day.add(Calendar.DAY_OF_YEAR, position + from);
+                            for (int i=from; i<to; i++) {
+                                fillMoonRow(c, day, columns, rows[i]);
+                                day.add(Calendar.DAY_OF_YEAR, 1);
                             }
-                            break;
+                        }
+                    }, calculator);
+                }
+            }, RangeExecutor.suggestedWindowSize(RangeExecutor.DEF_MIN_CHUNK));
 
-                        case COLUMN_MOON_RISE_ILLUM:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            row[i] = (moontimes.riseTime) != null ? calculator.getMoonIlluminationForDate(moontimes.riseTime) : null;
-                            break;
-                        case COLUMN_MOON_SET_ILLUM:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            row[i] = (moontimes.setTime) != null ? calculator.getMoonIlluminationForDate(moontimes.setTime) : null;
-                            break;
+        } else {
+            Log.w("CalculatorProvider", "queryMoon: moonSource is null!");
+            return new MatrixCursor(columns);
+        }
+    }
 
-                        default:
-                            row[i] = null;
-                            break;
+    protected static void fillMoonRow(@NonNull SuntimesCalculator calculator, @NonNull Calendar day, String[] columns, Object[] row)
+    {
+        SuntimesCalculator.MoonTimes moontimes = null;
+        SuntimesCalculator.MoonPosition position_rising = null, position_setting = null;
+        for (int i=0; i<columns.length; i++)
+        {
+            switch (columns[i])
+            {
+                case COLUMN_MOON_RISE:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    row[i] = (moontimes.riseTime) != null ? moontimes.riseTime.getTimeInMillis() : null;
+                    break;
+                case COLUMN_MOON_SET:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    row[i] = (moontimes.setTime) != null ? moontimes.setTime.getTimeInMillis() : null;
+                    break;
+
+                case COLUMN_MOON_RISE_AZ: case COLUMN_MOON_RISE_ALT:
+                case COLUMN_MOON_RISE_RA: case COLUMN_MOON_RISE_DEC:
+                case COLUMN_MOON_RISE_DISTANCE:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    position_rising = (position_rising == null && moontimes.riseTime != null) ? calculator.getMoonPosition(moontimes.riseTime) : position_rising;
+                    switch (columns[i])
+                    {
+                        case COLUMN_MOON_RISE_AZ: row[i] = (position_rising != null ? position_rising.azimuth : null); break;
+                        case COLUMN_MOON_RISE_ALT: row[i] = (position_rising != null ? position_rising.elevation : null); break;
+                        case COLUMN_MOON_RISE_RA: row[i] = (position_rising != null ? position_rising.rightAscension : null); break;
+                        case COLUMN_MOON_RISE_DEC: row[i] = (position_rising != null ? position_rising.declination : null); break;
+                        case COLUMN_MOON_RISE_DISTANCE: row[i] = (position_rising != null ? position_rising.distance : null); break;
                     }
-                }
-                retValue.addRow(row);
-                day.add(Calendar.DAY_OF_YEAR, 1);
-            } while (day.before(endDay));
+                    break;
 
-        } else Log.w("CalculatorProvider", "queryMoon: moonSource is null!");
-        return retValue;
+                case COLUMN_MOON_SET_AZ: case COLUMN_MOON_SET_ALT:
+                case COLUMN_MOON_SET_RA: case COLUMN_MOON_SET_DEC:
+                case COLUMN_MOON_SET_DISTANCE:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    position_setting = (position_setting == null && moontimes.setTime != null) ? calculator.getMoonPosition(moontimes.setTime) : position_setting;
+                    switch (columns[i])
+                    {
+                        case COLUMN_MOON_SET_AZ: row[i] = (position_setting != null ? position_setting.azimuth : null); break;
+                        case COLUMN_MOON_SET_ALT: row[i] = (position_setting != null ? position_setting.elevation : null); break;
+                        case COLUMN_MOON_SET_RA: row[i] = (position_setting != null ? position_setting.rightAscension : null); break;
+                        case COLUMN_MOON_SET_DEC: row[i] = (position_setting != null ? position_setting.declination : null); break;
+                        case COLUMN_MOON_SET_DISTANCE: row[i] = (position_setting != null ? position_setting.distance : null); break;
+                    }
+                    break;
+
+                case COLUMN_MOON_RISE_ILLUM:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    row[i] = (moontimes.riseTime) != null ? calculator.getMoonIlluminationForDate(moontimes.riseTime) : null;
+                    break;
+                case COLUMN_MOON_SET_ILLUM:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    row[i] = (moontimes.setTime) != null ? calculator.getMoonIlluminationForDate(moontimes.setTime) : null;
+                    break;
+
+                default:
+                    row[i] = null;
+                    break;
+            }
+        }
     }
 
     public static final String COLUMN_MOON_RISE_AZ = COLUMN_MOON_RISE + _POSITION_AZ;
@@ -1061,94 +1022,119 @@ public class CalculatorProvider extends ContentProvider
      */
     private Cursor querySeasons(long[] range, @NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selection, @Nullable String sortOrder)
     {
-        String[] columns = (projection != null ? projection : QUERY_SEASONS_PROJECTION);
-        MatrixCursor retValue = new MatrixCursor(columns);
-        SuntimesCalculator calculator = initSunCalculator(getContext(), selection);
+        final String[] columns = (projection != null ? projection : QUERY_SEASONS_PROJECTION);
+        final SuntimesCalculator calculator = initCursorCalculator(getContext(), initSunCalculator(getContext(), selection));    // owned by the cursor
         if (calculator != null)
         {
-            Calendar year = Calendar.getInstance(calculator.getTimeZone());
-            year.setTimeInMillis(range[0]);
-
-            Calendar year0 = Calendar.getInstance(calculator.getTimeZone());
-            year0.setTimeInMillis(year.getTimeInMillis());
-            year0.add(Calendar.YEAR, -1);
+            final Calendar startYear = Calendar.getInstance(calculator.getTimeZone());
+            startYear.setTimeInMillis(range[0]);
 
             Calendar endYear = Calendar.getInstance(calculator.getTimeZone());
             endYear.setTimeInMillis(range[1]);
             endYear.add(Calendar.YEAR, 1);                   // +1 year (make range[1] inclusive)
 
-            do {
-                Object[] row = new Object[columns.length];
-                for (int i=0; i<columns.length; i++)
+            final Context context = getContext();
+            return new RangeCursor(columns, countSteps(startYear, endYear, Calendar.YEAR), new RangeCursor.RowFactory()
+            {
+                @Override
+                public void fillRows(final int position, final Object[][] rows)
                 {
-                    Calendar event;
-                    switch (columns[i])
+                    RangeExecutor.execute(context, rows.length, SEASONS_MIN_CHUNK, new RangeExecutor.RangeTask()
                     {
-                        case COLUMN_SEASON_YEAR:
-                            row[i] = year.get(Calendar.YEAR);
-                            break;
+                        @Override
+                        public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+                        {
+                            SuntimesCalculator c = workspace.getCalculator(calculator);
+                            Calendar year = (Calendar) startYear.clone();
+                            year.add(Calendar.YEAR, position + from);
 
-                        case COLUMN_SEASON_TROPICAL_YEAR_LENGTH:
-                            row[i] = calculator.getTropicalYearLength(year);
-                            break;
-
-                        case COLUMN_SEASON_CROSS_SPRING:
-                            event = SuntimesData.midpoint(calculator.getSpringEquinoxForYear(year), calculator.getSummerSolsticeForYear(year));
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
+                            Calendar year0 = (Calendar) year.clone();
+                            year0.add(Calendar.YEAR, -1);
 
-                        case COLUMN_SEASON_CROSS_AUTUMN:
-                            event = SuntimesData.midpoint(calculator.getAutumnalEquinoxForYear(year), calculator.getWinterSolsticeForYear(year));
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_CROSS_SUMMER:
-                            event = (calculator.getLocation().getLatitudeAsDouble() >= 0)
-                                    ? SuntimesData.midpoint(calculator.getSummerSolsticeForYear(year), calculator.getAutumnalEquinoxForYear(year))
-                                    : SuntimesData.midpoint(calculator.getSummerSolsticeForYear(year0), calculator.getAutumnalEquinoxForYear(year));
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_CROSS_WINTER:
-                            event = (calculator.getLocation().getLatitudeAsDouble() >= 0)
-                                    ? SuntimesData.midpoint(calculator.getWinterSolsticeForYear(year0), calculator.getSpringEquinoxForYear(year))
-                                    : SuntimesData.midpoint(calculator.getWinterSolsticeForYear(year), calculator.getSpringEquinoxForYear(year));
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_VERNAL:
-                        case COLUMN_SEASON_SPRING:
-                            event = calculator.getSpringEquinoxForYear(year);
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_SUMMER:
-                            event = calculator.getSummerSolsticeForYear(year);
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_AUTUMN:
-                            event = calculator.getAutumnalEquinoxForYear(year);
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
+                            for (int i=from; i<to; i++)
+                            {
+                                fillSeasonsRow(c, year, year0, columns, rows[i]);
+                                year.add(Calendar.YEAR, 1);
+                                year0.add(Calendar.YEAR, 1);
+                            }
+                        }
+                    }, calculator);
+                }
+            }, RangeExecutor.suggestedWindowSize(SEASONS_MIN_CHUNK));
 
-                        case COLUMN_SEASON_WINTER:
-                            event = calculator.getWinterSolsticeForYear(year);
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
+        } else {
+            Log.w("CalculatorProvider", "querySeasons: sunSource is null!");
+            return new MatrixCursor(columns);
+        }
+    }
 
-                        default:
-                            row[i] = null;
-                            break;
-                    }
-                }
-                retValue.addRow(row);
-                year.add(Calendar.YEAR, 1);
-                year0.add(Calendar.YEAR, 1);
-            } while (year.before(endYear));
+    protected static final int SEASONS_MIN_CHUNK = 2;    // years
 
-        } else Log.w("CalculatorProvider", "querySeasons: sunSource is null!");
-        return retValue;
+    protected static void fillSeasonsRow(@NonNull SuntimesCalculator calculator, @NonNull Calendar year, @NonNull Calendar year0, String[] columns, Object[] row)
+    {
+        for (int i=0; i<columns.length; i++)
+        {
+            Calendar event;
+            switch (columns[i])
+            {
+                case COLUMN_SEASON_YEAR:
+                    row[i] = year.get(Calendar.YEAR);
+                    break;
+
+                case COLUMN_SEASON_TROPICAL_YEAR_LENGTH:
+                    row[i] = calculator.getTropicalYearLength(year);
+                    break;
+
+                case COLUMN_SEASON_CROSS_SPRING:
+                    event = SuntimesData.midpoint(calculator.getSpringEquinoxForYear(year), calculator.getSummerSolsticeForYear(year));
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_CROSS_AUTUMN:
+                    event = SuntimesData.midpoint(calculator.getAutumnalEquinoxForYear(year), calculator.getWinterSolsticeForYear(year));
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_CROSS_SUMMER:
+                    event = (calculator.getLocation().getLatitudeAsDouble() >= 0)
+                            ? SuntimesData.midpoint(calculator.getSummerSolsticeForYear(year), calculator.getAutumnalEquinoxForYear(year))
+                            : SuntimesData.midpoint(calculator.getSummerSolsticeForYear(year0), calculator.getAutumnalEquinoxForYear(year));
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_CROSS_WINTER:
+                    event = (calculator.getLocation().getLatitudeAsDouble() >= 0)
+                            ? SuntimesData.midpoint(calculator.getWinterSolsticeForYear(year0), calculator.getSpringEquinoxForYear(year))
+                            : SuntimesData.midpoint(calculator.getWinterSolsticeForYear(year), calculator.getSpringEquinoxForYear(year));
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_VERNAL:
+                case COLUMN_SEASON_SPRING:
+                    event = calculator.getSpringEquinoxForYear(year);
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_SUMMER:
+                    event = calculator.getSummerSolsticeForYear(year);
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_AUTUMN:
+                    event = calculator.getAutumnalEquinoxForYear(year);
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_WINTER:
+                    event = calculator.getWinterSolsticeForYear(year);
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                default:
+                    row[i] = null;
+                    break;
+            }
+        }
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////
@@ -1195,6 +1181,22 @@ public class CalculatorProvider extends ContentProvider
         }
     }
 
+    /**
+     * RangeCursor rows are computed lazily (on whichever thread moves the cursor), long after the query returns; the cursor
+     * is given its own (unpooled) copy of the calculator so it never shares the static sun/moon sources, or the query thread's
+     * pooled calculators, with other clients.
+     * @return a calculator owned by a single cursor (or the calculator itself if it can't be copied)
+     */
+    @Nullable
+    private static SuntimesCalculator initCursorCalculator(Context context, @Nullable SuntimesCalculator calculator)
+    {
+        if (calculator == null) {
+            return null;
+        }
+        SuntimesCalculator copy = RangeExecutor.copyCalculator(calculator, context);
+        return (copy != null ? copy : calculator);
+    }
+
     private static SparseArray<SuntimesCalculator> sunSource = new SparseArray<>();    // sun source for appWidgetID (app is 0)
     private static SuntimesCalculator initSunCalculator(Context context, int appWidgetID)
     {
@@ -0,0 +1,364 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.events.EventSettings;
+import com.forrestguice.suntimeswidget.settings.WidgetSettings;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A process-wide registry of calculated datasets. Datasets are keyed by a fingerprint of their effective
+ * configuration (calculator, location, timezone, date, and event aliases), so consumers (widgets, tiles,
+ * and the activity) that share a configuration also share a single calculated dataset.
+ *
+ * Entries are confined to the thread that calculated them (the thread is part of the key); a dataset holds a
+ * calculator from that thread's pool (@see SuntimesCalculatorFactory), and calculators are not thread-safe, so
+ * consumers on different threads (e.g. widget updates and the activity) never share a dataset.
+ *
+ * Datasets returned by the registry are shared (by consumers on the same thread); they must be treated as
+ * read-only (use the copy constructor to obtain a dataset that can be modified). The registry is cleared when
+ * widget or event settings change, and the current date is part of the key (so a lookup made after a date
+ * rollover calculates a new dataset).
+ */
+public class DatasetRegistry
+{
+    public static final int MAX_ENTRIES = 16;
+
+    protected static final Object lock = new Object();
+    protected static final Map<String, Object> entries = new LinkedHashMap<String, Object>(MAX_ENTRIES, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    protected static final HashMap<String, Binding> bindings = new HashMap<>();    // consumer (type, appWidgetId, options, thread) -> configuration
+    protected static int generation = 0;    // incremented by invalidate (datasets calculated before then are discarded)
+    protected static SharedPreferences.OnSharedPreferenceChangeListener listener = null;    // strong ref; prefs only hold weak refs to listeners
+
+    /**
+     * @param context a context
+     * @param appWidgetId the widgetID to load settings from (0 for app)
+     * @return a shared (read-only) dataset that has been calculated
+     */
+    @NonNull
+    public static SuntimesRiseSetDataset getRiseSetDataset(Context context, int appWidgetId) {
+        return getRiseSetDataset(context, appWidgetId, null);
+    }
+
+    /**
+     * @param eventIDs event aliases to include in the dataset (or null)
+     */
+    @NonNull
+    public static SuntimesRiseSetDataset getRiseSetDataset(Context context, int appWidgetId, @Nullable Collection<String> eventIDs)
+    {
+        Context appContext = context.getApplicationContext();
+        String bindingKey = "sun:" + appWidgetId + ":" + (eventIDs != null ? eventIDs.toString() : "") + threadKey();
+        int generation0;
+        synchronized (lock)
+        {
+            initListener(appContext);
+            Object entry = findEntry(bindingKey);
+            if (entry instanceof SuntimesRiseSetDataset) {
+                return (SuntimesRiseSetDataset) entry;
+            }
+            generation0 = generation;
+        }
+
+        SuntimesRiseSetDataset dataset = new SuntimesRiseSetDataset(appContext, appWidgetId);
+        StringBuilder aliases = new StringBuilder();
+        if (eventIDs != null)
+        {
+            for (String eventID : eventIDs)
+            {
+                EventSettings.EventAlias alias = EventSettings.loadEvent(appContext, eventID);
+                if (alias != null)
+                {
+                    SuntimesRiseSetData data = new SuntimesRiseSetData(appContext, appWidgetId);
+                    data.setDataMode(new WidgetSettings.EventAliasTimeMode(alias));
+                    dataset.putData(eventID, data);
+                    aliases.append(eventID).append("=").append(alias.getUri()).append(";");
+                }
+            }
+        }
+
+        Binding binding = new Binding("sun", dataset.dataActual, aliases.toString());
+        String key = binding.key();
+        synchronized (lock)
+        {
+            if (generation0 == generation) {
+                bindings.put(bindingKey, binding);
+            }
+            Object entry = entries.get(key);
+            if (entry instanceof SuntimesRiseSetDataset) {
+                return (SuntimesRiseSetDataset) entry;
+            }
+        }
+
+        dataset.calculateData();
+        synchronized (lock)
+        {
+            Object entry = entries.get(key);
+            if (entry instanceof SuntimesRiseSetDataset) {
+                return (SuntimesRiseSetDataset) entry;    // calculated concurrently by another consumer
+            }
+            if (generation0 == generation) {
+                entries.put(key, dataset);    // discarded if settings changed while calculating
+            }
+        }
+        return dataset;
+    }
+
+    /**
+     * @param context a context
+     * @param appWidgetId the widgetID to load settings from (0 for app)
+     * @return a shared (read-only) SuntimesRiseSetData2 that has been calculated (using the widget's time mode)
+     */
+    @NonNull
+    public static SuntimesRiseSetData2 getRiseSetData(Context context, int appWidgetId)
+    {
+        Context appContext = context.getApplicationContext();
+        String bindingKey = "sun2:" + appWidgetId + threadKey();
+        int generation0;
+        synchronized (lock)
+        {
+            initListener(appContext);
+            Object entry = findEntry(bindingKey);
+            if (entry instanceof SuntimesRiseSetData2) {
+                return (SuntimesRiseSetData2) entry;
+            }
+            generation0 = generation;
+        }
+
+        SuntimesRiseSetData2 data = new SuntimesRiseSetData2(appContext, appWidgetId);
+        Binding binding = new Binding("sun2", data, data.dataMode().name() + "," + data.compareMode().name());
+        String key = binding.key();
+        synchronized (lock)
+        {
+            if (generation0 == generation) {
+                bindings.put(bindingKey, binding);
+            }
+            Object entry = entries.get(key);
+            if (entry instanceof SuntimesRiseSetData2) {
+                return (SuntimesRiseSetData2) entry;
+            }
+        }
+
+        data.calculate();
+        synchronized (lock)
+        {
+            Object entry = entries.get(key);
+            if (entry instanceof SuntimesRiseSetData2) {
+                return (SuntimesRiseSetData2) entry;
+            }
+            if (generation0 == generation) {
+                entries.put(key, data);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * @param context a context
+     * @param appWidgetId the widgetID to load settings from (0 for app)
+     * @return a shared (read-only) SuntimesMoonData that has been calculated
+     */
+    @NonNull
+    public static SuntimesMoonData getMoonData(Context context, int appWidgetId) {
+        return getMoonData(context, appWidgetId, "");
+    }
+
+    /**
+     * @param calculatorName the calculator to use (e.g. "moon")
+     */
+    @NonNull
+    public static SuntimesMoonData getMoonData(Context context, int appWidgetId, @NonNull String calculatorName)
+    {
+        Context appContext = context.getApplicationContext();
+        String bindingKey = "moon:" + appWidgetId + ":" + calculatorName + threadKey();
+        int generation0;
+        synchronized (lock)
+        {
+            initListener(appContext);
+            Object entry = findEntry(bindingKey);
+            if (entry instanceof SuntimesMoonData) {
+                return (SuntimesMoonData) entry;
+            }
+            generation0 = generation;
+        }
+
+        SuntimesMoonData data = new SuntimesMoonData(appContext, appWidgetId, calculatorName);
+        Binding binding = new Binding("moon", data, "");
+        String key = binding.key();
+        synchronized (lock)
+        {
+            if (generation0 == generation) {
+                bindings.put(bindingKey, binding);
+            }
+            Object entry = entries.get(key);
+            if (entry instanceof SuntimesMoonData) {
+                return (SuntimesMoonData) entry;
+            }
+        }
+
+        data.calculate();
+        synchronized (lock)
+        {
+            Object entry = entries.get(key);
+            if (entry instanceof SuntimesMoonData) {
+                return (SuntimesMoonData) entry;
+            }
+            if (generation0 == generation) {
+                entries.put(key, data);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Clears all datasets (and the configuration read for each consumer).
+     */
+    public static void invalidate()
+    {
+        synchronized (lock)
+        {
+            entries.clear();
+            bindings.clear();
+            generation++;
+        }
+    }
+
+    public static int getNumEntries()
+    {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return identifies the current thread (entries are confined to the thread that calculated them)
+     */
+    protected static String threadKey() {
+        return "#" + Thread.currentThread().getId();
+    }
+
+    /**
+     * @return an existing entry for the consumer, or null if its configuration is unknown (or the entry was evicted)
+     */
+    @Nullable
+    private static Object findEntry(String bindingKey)
+    {
+        Binding binding = bindings.get(bindingKey);
+        if (binding != null)
+        {
+            if (binding.isValid()) {
+                return entries.get(binding.key());
+            } else bindings.remove(bindingKey);
+        }
+        return null;
+    }
+
+    private static void initListener(Context context)
+    {
+        if (listener == null)
+        {
+            listener = new SharedPreferences.OnSharedPreferenceChangeListener()
+            {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)
+                {
+                    if (key == null || isDataKey(key)) {
+                        invalidate();
+                    }
+                }
+            };
+            context.getSharedPreferences(WidgetSettings.PREFS_WIDGET, 0).registerOnSharedPreferenceChangeListener(listener);
+            context.getSharedPreferences(EventSettings.PREFS_EVENTS, 0).registerOnSharedPreferenceChangeListener(listener);
+        }
+    }
+
+    /**
+     * @return true if the key is a setting that is used by the datasets (ignores appearance, actions, and update times)
+     */
+    protected static boolean isDataKey(@NonNull String key)
+    {
+        if (!key.startsWith(WidgetSettings.PREF_PREFIX_KEY)) {
+            return true;    // event settings
+        }
+        return key.contains(WidgetSettings.PREF_PREFIX_KEY_GENERAL) || key.contains(WidgetSettings.PREF_PREFIX_KEY_LOCATION)
+                || key.contains(WidgetSettings.PREF_PREFIX_KEY_TIMEZONE) || key.contains(WidgetSettings.PREF_PREFIX_KEY_DATE);
+    }
+
+    /**
+     * The configuration that was read from settings for a consumer; the key combines the configuration
+     * with the current date (in the configured timezone) and the thread that read it.
+     */
+    protected static class Binding
+    {
+        protected final String fingerprint;
+        protected final TimeZone timezone;
+        protected final Calendar todayIs;
+        protected final String defaultTimezoneID;
+        protected final String thread;
+
+        public Binding(String type, SuntimesData data, String options)
+        {
+            thread = threadKey();
+            timezone = data.timezone();
+            todayIs = data.todayIs();
+            defaultTimezoneID = TimeZone.getDefault().getID();
+
+            Location location = data.location();
+            SuntimesCalculatorDescriptor descriptor = data.calculatorMode();
+            fingerprint = type + ":" + (descriptor != null ? descriptor.getName() : "")
+                    + ":" + location.getLatitude() + "," + location.getLongitude() + "," + (location.useAltitude() ? location.getAltitude() : "")
+                    + ":" + data.timezoneMode() + "," + timezone.getID()
+                    + ":" + options;
+        }
+
+        /**
+         * @return false if the binding is no longer valid (the system timezone was changed)
+         */
+        public boolean isValid() {
+            return defaultTimezoneID.equals(TimeZone.getDefault().getID());
+        }
+
+        public String key()
+        {
+            Calendar date = Calendar.getInstance(timezone);
+            if (todayIs != null) {
+                date.setTimeInMillis(todayIs.getTimeInMillis());
+            }
+            return fingerprint + "@" + date.get(Calendar.YEAR) + "-" + date.get(Calendar.DAY_OF_YEAR) + thread;
+        }
+    }
+}
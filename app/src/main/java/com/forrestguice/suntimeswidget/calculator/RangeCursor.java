@@ -0,0 +1,198 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.CursorIndexOutOfBoundsException;
+import android.support.annotation.NonNull;
+
+/**
+ * A read-only cursor over a range (of days, years, etc) whose rows are computed lazily. Rows are
+ * computed in windows (the row being moved to, and the next windowSize - 1 rows) as the cursor is
+ * moved, so only a small number of rows are held in memory at a time.
+ *
+ * Windows are filled on whichever thread moves the cursor; onMove is synchronized so a cursor fills one
+ * window at a time (the RowFactory should use a calculator owned by the cursor).
+ */
+public class RangeCursor extends AbstractCursor
+{
+    public static final int DEF_WINDOW_SIZE = 32;
+
+    /**
+     * RowFactory
+     */
+    public interface RowFactory
+    {
+        /**
+         * @param position the position of the first row
+         * @param rows an array of rows to be populated (rows[0] is the row at position); each row has length == columns.length
+         */
+        void fillRows(int position, Object[][] rows);
+    }
+
+    protected final String[] columns;
+    protected final int count;
+    protected final RowFactory factory;
+    protected final Object[][] window;
+    protected int windowStart = -1, windowEnd = -1;    // [windowStart, windowEnd)
+
+    public RangeCursor(@NonNull String[] columns, int count, @NonNull RowFactory factory) {
+        this(columns, count, factory, DEF_WINDOW_SIZE);
+    }
+
+    public RangeCursor(@NonNull String[] columns, int count, @NonNull RowFactory factory, int windowSize)
+    {
+        this.columns = columns;
+        this.count = count;
+        this.factory = factory;
+        this.window = new Object[Math.max(1, Math.min(windowSize, count))][columns.length];
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columns;
+    }
+
+    @Override
+    public synchronized boolean onMove(int oldPosition, int newPosition)
+    {
+        if (newPosition < windowStart || newPosition >= windowEnd) {
+            fillWindow(newPosition);
+        }
+        return true;
+    }
+
+    protected void fillWindow(int position)
+    {
+        int n = Math.min(window.length, count - position);
+        Object[][] rows = (n == window.length ? window : new Object[n][]);
+        for (int i=0; i<n; i++)
+        {
+            for (int j=0; j<window[i].length; j++) {
+                window[i][j] = null;
+            }
+            rows[i] = window[i];
+        }
+        factory.fillRows(position, rows);
+        windowStart = position;
+        windowEnd = position + n;
+    }
+
+    protected synchronized Object get(int column)
+    {
+        if (column < 0 || column >= columns.length) {
+            throw new CursorIndexOutOfBoundsException("Requested column: " + column + ", # of columns: " +  columns.length);
+        }
+        if (mPos < 0) {
+            throw new CursorIndexOutOfBoundsException("Before first row.");
+        }
+        if (mPos >= count) {
+            throw new CursorIndexOutOfBoundsException("After last row.");
+        }
+        return window[mPos - windowStart][column];
+    }
+
+    @Override
+    public String getString(int column)
+    {
+        Object value = get(column);
+        return (value != null ? value.toString() : null);
+    }
+
+    @Override
+    public short getShort(int column)
+    {
+        Object value = get(column);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).shortValue();
+        } else return Short.parseShort(value.toString());
+    }
+
+    @Override
+    public int getInt(int column)
+    {
+        Object value = get(column);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else return Integer.parseInt(value.toString());
+    }
+
+    @Override
+    public long getLong(int column)
+    {
+        Object value = get(column);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else return Long.parseLong(value.toString());
+    }
+
+    @Override
+    public float getFloat(int column)
+    {
+        Object value = get(column);
+        if (value == null) {
+            return 0f;
+        } else if (value instanceof Number) {
+            return ((Number) value).floatValue();
+        } else return Float.parseFloat(value.toString());
+    }
+
+    @Override
+    public double getDouble(int column)
+    {
+        Object value = get(column);
+        if (value == null) {
+            return 0d;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else return Double.parseDouble(value.toString());
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return (get(column) == null);
+    }
+
+    @Override
+    public int getType(int column)
+    {
+        Object value = get(column);
+        if (value == null) {
+            return Cursor.FIELD_TYPE_NULL;
+        } else if (value instanceof Float || value instanceof Double) {
+            return Cursor.FIELD_TYPE_FLOAT;
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Cursor.FIELD_TYPE_INTEGER;
+        } else if (value instanceof byte[]) {
+            return Cursor.FIELD_TYPE_BLOB;
+        } else return Cursor.FIELD_TYPE_STRING;
+    }
+}
@@ -0,0 +1,381 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates a range (of days, years, etc) in parallel. The range is split into chunks that are claimed
+ * by the calling thread and by a bounded pool of worker threads; results are written by index (into
+ * arrays owned by the caller), so they are reassembled in order.
+ *
+ * SuntimesCalculator implementations are not thread-safe, so workers never touch the caller's
+ * calculators; each worker uses its own copy of the calculators passed to execute (created once per
+ * worker thread, and reused by later jobs), and a task obtains them using Workspace.getCalculator. The calling thread always participates (so a range is
+ * completed even when the pool is busy), and calls made from a worker thread run sequentially.
+ */
+public class RangeExecutor
+{
+    public static final int DEF_MIN_CHUNK = 8;
+    public static final int MAX_WORKERS = 7;           // + the calling thread
+    public static final int CHUNKS_PER_THREAD = 2;     // smaller chunks balance the load when some days are slower than others
+
+    /**
+     * RangeTask
+     */
+    public interface RangeTask
+    {
+        /**
+         * @param from first index (inclusive)
+         * @param to last index (exclusive)
+         * @param workspace provides calculators that are safe to use from the current thread
+         */
+        void compute(int from, int to, @NonNull Workspace workspace);
+    }
+
+    /**
+     * Workspace; one per participating thread.
+     */
+    public static class Workspace
+    {
+        protected final IdentityHashMap<SuntimesCalculator, SuntimesCalculator> copies;    // null for the calling thread
+
+        protected Workspace(@Nullable IdentityHashMap<SuntimesCalculator, SuntimesCalculator> copies) {
+            this.copies = copies;
+        }
+
+        /**
+         * @param calculator a calculator that was passed to execute
+         * @return the calculator (calling thread), or this worker's copy of the calculator
+         */
+        public SuntimesCalculator getCalculator(SuntimesCalculator calculator)
+        {
+            if (copies == null || calculator == null) {
+                return calculator;
+            }
+            SuntimesCalculator copy = copies.get(calculator);
+            if (copy == null) {
+                throw new IllegalArgumentException("getCalculator: " + calculator.name() + " was not passed to execute!");
+            }
+            return copy;
+        }
+
+        public boolean isWorker() {
+            return (copies != null);
+        }
+    }
+
+    /**
+     * Evaluates the range [0, count) using DEF_MIN_CHUNK.
+     * @see #execute(Context, int, int, RangeTask, SuntimesCalculator...)
+     */
+    public static void execute(@Nullable Context context, int count, @NonNull RangeTask task, SuntimesCalculator... calculators) {
+        execute(context, count, DEF_MIN_CHUNK, task, calculators);
+    }
+
+    /**
+     * Evaluates the range [0, count), blocking until every chunk is complete.
+     * @param context used to initialize the worker's calculators (may be null)
+     * @param count number of items in the range
+     * @param minChunk the smallest number of items given to a thread (ranges smaller than 2 * minChunk run on the calling thread)
+     * @param task the task (called once per chunk)
+     * @param calculators calculators used by the task (workers use copies of these)
+     */
+    public static void execute(@Nullable Context context, int count, int minChunk, @NonNull RangeTask task, SuntimesCalculator... calculators)
+    {
+        int numWorkers = getMaxWorkers();
+        int chunkSize = Math.max(Math.max(1, minChunk), ceil(count, (numWorkers + 1) * CHUNKS_PER_THREAD));
+        int numChunks = ceil(count, chunkSize);
+
+        if (numWorkers <= 0 || numChunks <= 1 || isWorkerThread.get())
+        {
+            if (count > 0) {
+                task.compute(0, count, new Workspace(null));
+            }
+            return;
+        }
+
+        //long bench_start = System.nanoTime();
+        RangeJob job = new RangeJob(count, chunkSize, numChunks, task);
+        ThreadPoolExecutor executor = getExecutor();
+        for (int i=0; i<Math.min(numWorkers, numChunks - 1); i++) {
+            executor.execute(new WorkerRunnable(job, context, calculators));
+        }
+        job.run(new Workspace(null));
+        job.await();
+        //long bench_end = System.nanoTime();
+        //Log.d("DEBUG", "RangeExecutor: " + count + " items (" + numChunks + " chunks) :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
+    }
+
+    /**
+     * @return a suggested window size (for RangeCursor) that gives each thread at least one chunk
+     */
+    public static int suggestedWindowSize(int minChunk) {
+        return Math.max(RangeCursor.DEF_WINDOW_SIZE, (getMaxWorkers() + 1) * CHUNKS_PER_THREAD * Math.max(1, minChunk));
+    }
+
+    /**
+     * @return a new (unshared) calculator with the same class, location, and timezone, or null if the copy fails
+     */
+    @Nullable
+    public static SuntimesCalculator copyCalculator(@NonNull SuntimesCalculator calculator, @Nullable Context context)
+    {
+        if (calculator instanceof CachedSuntimesCalculator)
+        {
+            SuntimesCalculator copy = copyCalculator(((CachedSuntimesCalculator) calculator).getCalculator(), context);
+            return (copy != null ? new CachedSuntimesCalculator(copy) : null);    // the (synchronized) results cache is shared by copies
+        }
+        try {
+            SuntimesCalculator copy = calculator.getClass().newInstance();
+            copy.init(calculator.getLocation(), calculator.getTimeZone(), context);
+            return copy;
+
+        } catch (Exception e) {
+            Log.w("RangeExecutor", "copyCalculator: failed to copy " + calculator.getClass().getName() + "; " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the calling thread's copy of the calculator, or null if the copy fails; copies are kept in the thread's
+     * calculator pool (keyed like SuntimesCalculatorFactory), so later jobs on the same worker reuse them (rather than
+     * creating and initializing a new copy for every job).
+     */
+    @Nullable
+    protected static SuntimesCalculator getThreadCopy(@NonNull SuntimesCalculator calculator, @Nullable Context context)
+    {
+        boolean isCached = (calculator instanceof CachedSuntimesCalculator);
+        SuntimesCalculator wrapped = (isCached ? ((CachedSuntimesCalculator) calculator).getCalculator() : calculator);
+        String key = SuntimesCalculatorFactory.createPoolKey(wrapped.getClass().getName(), wrapped.getLocation(), wrapped.getTimeZone(), isCached);
+
+        SuntimesCalculator copy = SuntimesCalculatorFactory.getPooledCalculator(key);
+        if (copy == null)
+        {
+            copy = copyCalculator(calculator, context);
+            if (copy != null) {
+                SuntimesCalculatorFactory.putPooledCalculator(key, copy);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * @return the number of worker threads (defaults to one less than the number of processors, up to MAX_WORKERS)
+     */
+    public static int getMaxWorkers() {
+        return (maxWorkers >= 0 ? maxWorkers : Math.max(0, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1)));
+    }
+
+    /**
+     * @param value number of worker threads (0 runs everything on the calling thread), or -1 to use the default
+     */
+    public static void setMaxWorkers(int value)
+    {
+        synchronized (RangeExecutor.class)
+        {
+            maxWorkers = value;
+            if (executor != null) {
+                executor.shutdown();    // queued jobs still finish; a new pool is created by the next call
+                executor = null;
+            }
+        }
+    }
+    protected static int maxWorkers = -1;
+
+    private static int ceil(int n, int d) {
+        return (n + d - 1) / d;
+    }
+
+    /**
+     * RangeJob; chunks are claimed in order (using an atomic counter) until none remain.
+     */
+    protected static class RangeJob
+    {
+        protected final int count, chunkSize, numChunks;
+        protected final RangeTask task;
+        protected final AtomicInteger nextChunk = new AtomicInteger(0);
+        protected final Object lock = new Object();
+        protected int completed = 0;
+        protected Throwable error = null;
+
+        public RangeJob(int count, int chunkSize, int numChunks, RangeTask task)
+        {
+            this.count = count;
+            this.chunkSize = chunkSize;
+            this.numChunks = numChunks;
+            this.task = task;
+        }
+
+        public boolean hasRemaining() {
+            return nextChunk.get() < numChunks;
+        }
+
+        public void run(Workspace workspace)
+        {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < numChunks)
+            {
+                int from = chunk * chunkSize;
+                int to = Math.min(count, from + chunkSize);
+                try {
+                    if (!hasError()) {
+                        task.compute(from, to, workspace);
+                    }
+                } catch (Throwable e) {
+                    synchronized (lock) {
+                        if (error == null) {
+                            error = e;
+                        }
+                    }
+                } finally {
+                    synchronized (lock) {
+                        completed++;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+
+        protected boolean hasError()
+        {
+            synchronized (lock) {
+                return (error != null);
+            }
+        }
+
+        /**
+         * Waits for the remaining (claimed) chunks to complete, then re-throws the first error (if any).
+         */
+        public void await()
+        {
+            boolean interrupted = false;
+            synchronized (lock)
+            {
+                while (completed < numChunks)
+                {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;    // chunks are short; finish waiting (the caller owns the results), then restore the flag
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else if (error != null) {
+                throw new RuntimeException(error);
+            }
+        }
+    }
+
+    /**
+     * WorkerRunnable; obtains this worker's copy of the calculators before claiming chunks.
+     */
+    protected static class WorkerRunnable implements Runnable
+    {
+        protected final RangeJob job;
+        protected final Context context;
+        protected final SuntimesCalculator[] calculators;
+
+        public WorkerRunnable(RangeJob job, @Nullable Context context, SuntimesCalculator[] calculators)
+        {
+            this.job = job;
+            this.context = context;
+            this.calculators = calculators;
+        }
+
+        @Override
+        public void run()
+        {
+            if (!job.hasRemaining()) {
+                return;
+            }
+            IdentityHashMap<SuntimesCalculator, SuntimesCalculator> copies = new IdentityHashMap<>();
+            for (SuntimesCalculator calculator : calculators)
+            {
+                if (calculator != null && !copies.containsKey(calculator))
+                {
+                    SuntimesCalculator copy = getThreadCopy(calculator, context);
+                    if (copy == null) {
+                        return;    // the remaining chunks are left to the other threads
+                    }
+                    copies.put(calculator, copy);
+                }
+            }
+            job.run(new Workspace(copies));
+        }
+    }
+
+    protected static final ThreadLocal<Boolean> isWorkerThread = new ThreadLocal<Boolean>()
+    {
+        @Override
+        protected Boolean initialValue() {
+            return false;
+        }
+    };
+
+    protected static ThreadPoolExecutor executor = null;
+    protected static synchronized ThreadPoolExecutor getExecutor()
+    {
+        if (executor == null)
+        {
+            int n = Math.max(1, getMaxWorkers());
+            executor = new ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                private final AtomicInteger i = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(@NonNull final Runnable r)
+                {
+                    Thread thread = new Thread(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            isWorkerThread.set(true);
+                            r.run();
+                        }
+                    }, "RangeExecutor-" + i.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
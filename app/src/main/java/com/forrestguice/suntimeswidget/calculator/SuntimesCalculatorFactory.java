@@ -26,6 +26,9 @@ import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 
 import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.TimeZone;
 
 /**
@@ -83,15 +86,30 @@ public class SuntimesCalculatorFactory
 
     /**
      * Create a calculator for a given location and timezone using the calculator descriptor that was
-     * passed to the factory when it was created.
+     * passed to the factory when it was created. Calculators are pooled (if usePool is set); a previously
+     * created instance with the same descriptor, location, and timezone is returned instead of creating
+     * (and initializing) a new one. SuntimesCalculator implementations are not thread-safe, so each thread
+     * has its own pool; a pooled instance is only shared by callers on the thread that created it (callers
+     * should not re-init it, or hand it to another thread while continuing to use it).
      * @param location a SuntimesWidgetSettings.Location specifying latitude and longitude
      * @param timezone a timezone string
-     * @return a calculator object that implements SuntimesCalculator
+     * @return a calculator object that implements SuntimesCalculator (wrapped by CachedSuntimesCalculator if useCache is set)
      */
     public SuntimesCalculator createCalculator(Location location, TimeZone timezone)
     {
+        String poolKey = (usePool ? createPoolKey(current, location, timezone, useCache) : null);
+        if (poolKey != null)
+        {
+            SuntimesCalculator pooled = getPooledCalculator(poolKey);
+            if (pooled != null) {
+                //Log.d("createCalculator", "pooled .oO( " + pooled.name() + " ): " + poolKey);
+                return pooled;
+            }
+        }
+
         //long bench_start = System.nanoTime();
         SuntimesCalculator calculator;
+        boolean isFallback = false;
         try {
             //Log.d("createCalculator", "trying .oO( " + current.getReference() + " )");
             Class calculatorClass = Class.forName(current.getReference());  // may fail if using proguard without exempting key classes
@@ -101,16 +119,151 @@ public class SuntimesCalculatorFactory
 
         } catch (Exception e1) {
             calculator = fallbackCalculator();
+            isFallback = true;
             signalCreatedFallback(fallbackCalculatorDescriptor());
             Log.e("createCalculator", "fail! .oO( " + current.getReference() + "), so instantiating default: " + calculator.getClass().getName() + " :: " + timezone);
         }
         calculator.init(location, timezone, contextRef.get());
+        if (useCache) {
+            calculator = new CachedSuntimesCalculator(calculator);
+        }
+        if (poolKey != null && !isFallback) {
+            putPooledCalculator(poolKey, calculator);    // fallbacks aren't pooled (so the listener is signaled each time)
+        }
 
         //long bench_end = System.nanoTime();
         //Log.d("DEBUG", "created " + calculator.name() + " :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
         return calculator;
     }
 
+    /**
+     * @param value true created calculators are wrapped by a CachedSuntimesCalculator (default), false returns the calculator as is
+     */
+    public void setUseCache(boolean value) {
+        useCache = value;
+    }
+    public boolean useCache() {
+        return useCache;
+    }
+    protected boolean useCache = true;
+
+    /**
+     * @param value true calculators are shared using the instance pool (default), false always creates a new instance
+     */
+    public void setUsePool(boolean value) {
+        usePool = value;
+    }
+    public boolean usePool() {
+        return usePool;
+    }
+    protected boolean usePool = true;
+
+    /**
+     * Instance pool; calculators by (descriptor reference, location, timezone), with least-recently-used eviction.
+     * Pools are per thread (@see createCalculator); clearPool discards the pools of other threads the next time they are used.
+     */
+    public static final int DEF_MAX_POOL_SIZE = 32;
+    protected static volatile int maxPoolSize = DEF_MAX_POOL_SIZE;
+    protected static volatile int poolGeneration = 0;
+    protected static final Object poolLock = new Object();
+    protected static final ThreadLocal<CalculatorPool> pool = new ThreadLocal<CalculatorPool>()
+    {
+        @Override
+        protected CalculatorPool initialValue() {
+            return new CalculatorPool(poolGeneration);
+        }
+    };
+
+    protected static class CalculatorPool extends LinkedHashMap<String, SuntimesCalculator>
+    {
+        protected int generation;
+
+        public CalculatorPool(int generation)
+        {
+            super(16, 0.75f, true);
+            this.generation = generation;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SuntimesCalculator> eldest) {
+            return size() > maxPoolSize;
+        }
+    }
+
+    /**
+     * @return the calling thread's pool (emptied if clearPool was called since it was last used)
+     */
+    protected static CalculatorPool threadPool()
+    {
+        CalculatorPool calculators = pool.get();
+        int generation = poolGeneration;
+        if (calculators.generation != generation)
+        {
+            calculators.clear();
+            calculators.generation = generation;
+        }
+        return calculators;
+    }
+
+    protected static String createPoolKey(@Nullable SuntimesCalculatorDescriptor descriptor, @Nullable Location location, @Nullable TimeZone timezone, boolean useCache) {
+        return createPoolKey((descriptor != null ? descriptor.getReference() : null), location, timezone, useCache);
+    }
+
+    /**
+     * @param reference the calculator's class name (@see SuntimesCalculatorDescriptor.getReference)
+     */
+    protected static String createPoolKey(@Nullable String reference, @Nullable Location location, @Nullable TimeZone timezone, boolean useCache)
+    {
+        StringBuilder key = new StringBuilder(String.valueOf(reference));
+        key.append(useCache ? "|cached" : "");
+        if (location != null) {
+            key.append("|").append(location.getLatitude()).append(",").append(location.getLongitude()).append(",").append(location.getAltitude());
+        }
+        if (timezone != null) {
+            key.append("|").append(timezone.getID()).append(",").append(timezone.getRawOffset());
+        }
+        return key.toString();
+    }
+
+    @Nullable
+    protected static SuntimesCalculator getPooledCalculator(String key) {
+        return threadPool().get(key);
+    }
+
+    protected static void putPooledCalculator(String key, SuntimesCalculator calculator) {
+        threadPool().put(key, calculator);
+    }
+
+    /**
+     * Clears the pool (of every thread).
+     */
+    public static void clearPool()
+    {
+        synchronized (poolLock) {
+            poolGeneration++;
+        }
+        threadPool();
+    }
+
+    public static void setMaxPoolSize(int value)
+    {
+        maxPoolSize = value;    // other threads are trimmed on their next put
+        CalculatorPool calculators = threadPool();
+        Iterator<String> keys = calculators.keySet().iterator();
+        while (calculators.size() > maxPoolSize && keys.hasNext())
+        {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /**
+     * @return the size of the calling thread's pool
+     */
+    public static int getPoolSize() {
+        return threadPool().size();
+    }
+
     public SuntimesCalculator fallbackCalculator()
     {
         return new com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator();
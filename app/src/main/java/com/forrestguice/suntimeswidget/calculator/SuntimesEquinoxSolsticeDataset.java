@@ -94,6 +94,19 @@ public class SuntimesEquinoxSolsticeDataset
         return dataEquinoxSpring.calculator();
     }
 
+    /**
+     * Attaches a calculator to every data in the set (e.g. to replace a calculator that belongs to some other thread).
+     * @param calculator SuntimesCalculator
+     * @param descriptor SuntimesCalculatorDescriptor
+     */
+    public void setCalculator(SuntimesCalculator calculator, SuntimesCalculatorDescriptor descriptor)
+    {
+        dataEquinoxSpring.setCalculator(calculator, descriptor);
+        dataSolsticeSummer.setCalculator(calculator, descriptor);
+        dataEquinoxAutumnal.setCalculator(calculator, descriptor);
+        dataSolsticeWinter.setCalculator(calculator, descriptor);
+    }
+
     public void calculateData()
     {
         dataEquinoxSpring.calculate();
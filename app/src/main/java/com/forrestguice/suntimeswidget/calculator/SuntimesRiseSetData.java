@@ -24,10 +24,13 @@ import android.util.Log;
 
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.alarmclock.AlarmEventProvider;
+import com.forrestguice.suntimeswidget.calculator.core.ElevationCrossings;
+import com.forrestguice.suntimeswidget.calculator.core.NextEventSearch;
 import com.forrestguice.suntimeswidget.events.EventSettings;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
 
 import java.util.Calendar;
+import java.util.Collection;
 
 public class SuntimesRiseSetData extends SuntimesData
 {
@@ -352,72 +355,10 @@ public class SuntimesRiseSetData extends SuntimesData
         date = todaysCalendar.getTime();
         dateOther = otherCalendar.getTime();
 
-        if (angle != null)
-        {
-            sunriseCalendarToday = calculator.getSunriseCalendarForDate(todaysCalendar, angle);
-            sunsetCalendarToday = calculator.getSunsetCalendarForDate(todaysCalendar, angle);
-            sunriseCalendarOther = calculator.getSunriseCalendarForDate(otherCalendar, angle);
-            sunsetCalendarOther = calculator.getSunsetCalendarForDate(otherCalendar, angle);
-
-        } else {
-            switch (timeMode)
-            {
-                case GOLD:
-                    sunriseCalendarToday = calculator.getMorningGoldenHourForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getEveningGoldenHourForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getMorningGoldenHourForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getEveningGoldenHourForDate(otherCalendar);
-                    break;
-
-                case BLUE8:
-                    sunriseCalendarToday = calculator.getMorningBlueHourForDate(todaysCalendar)[0];
-                    sunsetCalendarToday = calculator.getEveningBlueHourForDate(todaysCalendar)[1];
-                    sunriseCalendarOther = calculator.getMorningBlueHourForDate(otherCalendar)[0];
-                    sunsetCalendarOther = calculator.getEveningBlueHourForDate(otherCalendar)[1];
-                    break;
-
-                case BLUE4:
-                    sunriseCalendarToday = calculator.getMorningBlueHourForDate(todaysCalendar)[1];
-                    sunsetCalendarToday = calculator.getEveningBlueHourForDate(todaysCalendar)[0];
-                    sunriseCalendarOther = calculator.getMorningBlueHourForDate(otherCalendar)[1];
-                    sunsetCalendarOther = calculator.getEveningBlueHourForDate(otherCalendar)[0];
-                    break;
-
-                case NOON:
-                    sunriseCalendarToday = sunsetCalendarToday = calculator.getSolarNoonCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = sunsetCalendarOther = calculator.getSolarNoonCalendarForDate(otherCalendar);
-                    break;
-
-                case CIVIL:
-                    sunriseCalendarToday = calculator.getCivilSunriseCalendarForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getCivilSunsetCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getCivilSunriseCalendarForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getCivilSunsetCalendarForDate(otherCalendar);
-                    break;
-
-                case NAUTICAL:
-                    sunriseCalendarToday = calculator.getNauticalSunriseCalendarForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getNauticalSunsetCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getNauticalSunriseCalendarForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getNauticalSunsetCalendarForDate(otherCalendar);
-                    break;
-
-                case ASTRONOMICAL:
-                    sunriseCalendarToday = calculator.getAstronomicalSunriseCalendarForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getAstronomicalSunsetCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getAstronomicalSunriseCalendarForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getAstronomicalSunsetCalendarForDate(otherCalendar);
-                    break;
-
-                case OFFICIAL:
-                default:
-                    sunriseCalendarToday = calculator.getOfficialSunriseCalendarForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getOfficialSunsetCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getOfficialSunriseCalendarForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getOfficialSunsetCalendarForDate(otherCalendar);
-                    break;
-            }
-        }
+        sunriseCalendarToday = findEvent(todaysCalendar, true);
+        sunsetCalendarToday = findEvent(todaysCalendar, false);
+        sunriseCalendarOther = findEvent(otherCalendar, true);
+        sunsetCalendarOther = findEvent(otherCalendar, false);
 
         if (offset != 0) {
             sunriseCalendarToday.add(Calendar.MILLISECOND, offset);
@@ -432,6 +373,105 @@ public class SuntimesRiseSetData extends SuntimesData
         super.calculate();
     }
 
+    /**
+     * Calculates a single event for the given date (rather than all four events, @see calculate); the calculator
+     * and timezone should be initialized first (@see initCalculator, initTimezone).
+     * @param date the date to solve
+     * @param rising true for the rising (morning) event, false for the setting (evening) event
+     * @return the event (including offset), or null if the event does not occur on this date
+     */
+    public Calendar calculateEvent(Calendar date, boolean rising)
+    {
+        Calendar event = findEvent(date, rising);
+        if (event != null && offset != 0) {
+            event.add(Calendar.MILLISECOND, offset);
+        }
+        return event;
+    }
+
+    /**
+     * Finds the next occurrence of the rising or setting event (@see NextEventSearch).
+     * @param rising true for the rising event, false for the setting event
+     * @param nowMillis the event (plus offset) must occur at or after now
+     * @param offset alarm offset (millis)
+     * @param days DAY_OF_WEEK values the event may fall on, or null for any day
+     * @return the next event (seconds cleared), or null if not found within a year
+     */
+    public Calendar findNextEvent(boolean rising, long nowMillis, long offset, Collection<Integer> days)
+    {
+        initCalculator(context);
+        initTimezone(context);
+
+        final boolean isRising = rising;
+        NextEventSearch.DayEvent function = new NextEventSearch.DayEvent()
+        {
+            @Override
+            public Calendar getEvent(Calendar date) {
+                return calculateEvent(date, isRising);
+            }
+        };
+
+        Double altitude = (location.useAltitude() ? location.getAltitudeAsDouble() : null);
+        return NextEventSearch.findNext(function, Calendar.getInstance(timezone), nowMillis, offset, days,
+                location.getLatitudeAsDouble(), (altitude != null ? altitude : 0), eventAngle());
+    }
+
+    /**
+     * @return the elevation (degrees) the event occurs at, or null if it occurs every day (solar noon)
+     */
+    public Double eventAngle()
+    {
+        if (angle != null) {
+            return angle;
+        }
+        switch (timeMode)
+        {
+            case NOON: return null;
+            case OFFICIAL: return NextEventSearch.OFFICIAL_ANGLE;
+            default: return timeMode.angle();
+        }
+    }
+
+    protected Calendar findEvent(Calendar date, boolean rising)
+    {
+        if (angle != null)
+        {
+            // solves the sun's elevation (FEATURE_POSITION); falls back to the calculator's rise/set @angle without it
+            return (rising ? ElevationCrossings.getSunriseCalendarForDate(calculator, date, angle)
+                           : ElevationCrossings.getSunsetCalendarForDate(calculator, date, angle));
+        }
+
+        switch (timeMode)
+        {
+            case GOLD:
+                return (rising ? calculator.getMorningGoldenHourForDate(date) : calculator.getEveningGoldenHourForDate(date));
+
+            case BLUE8:
+                Calendar[] blue8 = (rising ? calculator.getMorningBlueHourForDate(date) : calculator.getEveningBlueHourForDate(date));
+                return (blue8 != null ? blue8[rising ? 0 : 1] : null);
+
+            case BLUE4:
+                Calendar[] blue4 = (rising ? calculator.getMorningBlueHourForDate(date) : calculator.getEveningBlueHourForDate(date));
+                return (blue4 != null ? blue4[rising ? 1 : 0] : null);
+
+            case NOON:
+                return calculator.getSolarNoonCalendarForDate(date);
+
+            case CIVIL:
+                return (rising ? calculator.getCivilSunriseCalendarForDate(date) : calculator.getCivilSunsetCalendarForDate(date));
+
+            case NAUTICAL:
+                return (rising ? calculator.getNauticalSunriseCalendarForDate(date) : calculator.getNauticalSunsetCalendarForDate(date));
+
+            case ASTRONOMICAL:
+                return (rising ? calculator.getAstronomicalSunriseCalendarForDate(date) : calculator.getAstronomicalSunsetCalendarForDate(date));
+
+            case OFFICIAL:
+            default:
+                return (rising ? calculator.getOfficialSunriseCalendarForDate(date) : calculator.getOfficialSunsetCalendarForDate(date));
+        }
+    }
+
     /**
      * @param sunrise
      * @param sunset
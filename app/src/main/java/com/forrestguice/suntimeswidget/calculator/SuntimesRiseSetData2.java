@@ -22,6 +22,7 @@ import android.content.Context;
 import android.util.Log;
 
 import com.forrestguice.suntimeswidget.R;
+import com.forrestguice.suntimeswidget.calculator.core.ElevationCrossings;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
 
 import java.util.Arrays;
@@ -242,11 +243,16 @@ public class SuntimesRiseSetData2 extends SuntimesRiseSetData
         {
             if (angle != null)
             {
-                sunrise[i] = calculator.getSunriseCalendarForDate(calendar[i], angle);
-                sunset[i] = calculator.getSunsetCalendarForDate(calendar[i], angle);
-                if (offset != 0) {
-                    sunrise[i].add(Calendar.MILLISECOND, offset);
-                    sunset[i].add(Calendar.MILLISECOND, offset);
+                sunrise[i] = ElevationCrossings.getSunriseCalendarForDate(calculator, calendar[i], angle);
+                sunset[i] = ElevationCrossings.getSunsetCalendarForDate(calculator, calendar[i], angle);
+                if (offset != 0)
+                {
+                    if (sunrise[i] != null) {
+                        sunrise[i].add(Calendar.MILLISECOND, offset);
+                    }
+                    if (sunset[i] != null) {
+                        sunset[i].add(Calendar.MILLISECOND, offset);
+                    }
                 }
                 continue;
             }
@@ -119,6 +119,18 @@ public class SuntimesRiseSetDataset
         dataset.put(WidgetSettings.TimeMode.BLUE4.name(), dataBlue4);
     }
 
+    /**
+     * Attaches a calculator to every data in the set (e.g. to replace a calculator that belongs to some other thread).
+     * @param calculator SuntimesCalculator
+     * @param descriptor SuntimesCalculatorDescriptor
+     */
+    public void setCalculator(SuntimesCalculator calculator, SuntimesCalculatorDescriptor descriptor)
+    {
+        for (SuntimesRiseSetData data : dataset.values()) {
+            data.setCalculator(calculator, descriptor);
+        }
+    }
+
     public void calculateData()
     {
         SuntimesCalculator calculator = null;
@@ -20,6 +20,8 @@ package com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset;
 
 import android.content.Context;
 import com.forrestguice.suntimeswidget.R;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTable;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTableCalculator;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
@@ -29,7 +31,7 @@ import java.util.TimeZone;
 
 import ca.rmen.sunrisesunset.SunriseSunset;
 
-public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator
+public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator, RiseSetTableCalculator
 {
     public static final String NAME = "ca.rmen.sunrisesunset";
     public static final String REF = "com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset.SunriseSunsetSuntimesCalculator";
@@ -116,6 +118,63 @@ public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator
         return noon;
     }
 
+    /**
+     * Solves a range of days; each call to the library returns both the morning and evening event,
+     * so each angle is solved once per day (rather than once for rising, and again for setting).
+     * Angles are skipped when neither the morning nor evening event is selected.
+     */
+    @Override
+    public RiseSetTable getRiseSetTable(Calendar startDate, int numDays, int events)
+    {
+        double latitude = location.getLatitudeAsDouble();
+        double longitude = location.getLongitudeAsDouble();
+
+        RiseSetTable table = new RiseSetTable(numDays);
+        Calendar day = (Calendar) startDate.clone();
+        for (int i=0; i<numDays; i++)
+        {
+            table.setDay(i, day.getTimeInMillis());
+            if (isSelected(events, RiseSetTable.ASTRO_RISE, RiseSetTable.ASTRO_SET)) {
+                setRiseSet(table, i, RiseSetTable.ASTRO_RISE, RiseSetTable.ASTRO_SET, SunriseSunset.getAstronomicalTwilight(day, latitude, longitude));
+            }
+            if (isSelected(events, RiseSetTable.NAUTICAL_RISE, RiseSetTable.NAUTICAL_SET)) {
+                setRiseSet(table, i, RiseSetTable.NAUTICAL_RISE, RiseSetTable.NAUTICAL_SET, SunriseSunset.getNauticalTwilight(day, latitude, longitude));
+            }
+            if (isSelected(events, RiseSetTable.CIVIL_RISE, RiseSetTable.CIVIL_SET)) {
+                setRiseSet(table, i, RiseSetTable.CIVIL_RISE, RiseSetTable.CIVIL_SET, SunriseSunset.getCivilTwilight(day, latitude, longitude));
+            }
+            if (isSelected(events, RiseSetTable.OFFICIAL_RISE, RiseSetTable.OFFICIAL_SET)) {
+                setRiseSet(table, i, RiseSetTable.OFFICIAL_RISE, RiseSetTable.OFFICIAL_SET, SunriseSunset.getSunriseSunset(day, latitude, longitude));
+            }
+            if (isSelected(events, RiseSetTable.GOLDEN_MORNING, RiseSetTable.GOLDEN_EVENING)) {
+                setRiseSet(table, i, RiseSetTable.GOLDEN_MORNING, RiseSetTable.GOLDEN_EVENING, SunriseSunset.getSunriseSunset(day, latitude, longitude, SUN_ALTITUDE_GOLDEN));
+            }
+            if (isSelected(events, RiseSetTable.BLUE8_RISE, RiseSetTable.BLUE8_SET)) {
+                setRiseSet(table, i, RiseSetTable.BLUE8_RISE, RiseSetTable.BLUE8_SET, SunriseSunset.getSunriseSunset(day, latitude, longitude, SUN_ALTITUDE_BLUE_HIGH));
+            }
+            if (isSelected(events, RiseSetTable.BLUE4_RISE, RiseSetTable.BLUE4_SET)) {
+                setRiseSet(table, i, RiseSetTable.BLUE4_RISE, RiseSetTable.BLUE4_SET, SunriseSunset.getSunriseSunset(day, latitude, longitude, SUN_ALTITUDE_BLUE_LOW));
+            }
+            if (RiseSetTable.isSelected(events, RiseSetTable.NOON)) {
+                table.set(RiseSetTable.NOON, i, SunriseSunset.getSolarNoon(day, latitude, longitude));
+            }
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        return table;
+    }
+
+    private static boolean isSelected(int events, int riseEvent, int setEvent) {
+        return RiseSetTable.isSelected(events, riseEvent) || RiseSetTable.isSelected(events, setEvent);
+    }
+
+    private static void setRiseSet(RiseSetTable table, int i, int riseEvent, int setEvent, Calendar[] riseset)
+    {
+        if (riseset != null) {
+            table.set(riseEvent, i, riseset[0]);
+            table.set(setEvent, i, riseset[1]);
+        }
+    }
+
     @Override
     public Calendar getCivilSunsetCalendarForDate( Calendar date )
     {
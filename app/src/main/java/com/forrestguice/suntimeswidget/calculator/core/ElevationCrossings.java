@@ -0,0 +1,303 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * Finds the times an elevation curve (e.g. the sun's elevation) crosses a given angle. The curve is scanned at a fixed
+ * step to bracket each crossing, then each bracket is solved using Brent's method (inverse quadratic / secant steps,
+ * falling back to bisection) to the requested precision; the number of iterations per crossing is bounded by
+ * MAX_ITERATIONS. Crossings that begin and end within a single step (e.g. grazing the angle) may not be found.
+ */
+public class ElevationCrossings
+{
+    public static final long NONE = EventMillis.NONE;
+    public static final long DEFAULT_STEP_MILLIS = 15 * 60 * 1000L;    // 15m
+    public static final long DEFAULT_PRECISION_MILLIS = 1000L;         // 1s
+    public static final int MAX_ITERATIONS = 48;
+
+    public interface ElevationFunction
+    {
+        /**
+         * @param millis a given date + time
+         * @return elevation (degrees), or Double.NaN if unavailable
+         */
+        double getElevation(long millis);
+    }
+
+    /**
+     * @return an ElevationFunction that returns the sun's elevation (using the given calculator)
+     */
+    public static ElevationFunction sunElevation(final SuntimesCalculator calculator)
+    {
+        return new ElevationFunction()
+        {
+            private final SuntimesCalculator.SunPosition position = new SuntimesCalculator.SunPosition();
+
+            @Override
+            public double getElevation(long millis) {
+                return (EventMillis.getSunPosition(calculator, millis, position) ? position.elevation : Double.NaN);
+            }
+        };
+    }
+
+    /**
+     * @return an ElevationFunction that returns the moon's elevation (using the given calculator)
+     */
+    public static ElevationFunction moonElevation(final SuntimesCalculator calculator)
+    {
+        return new ElevationFunction()
+        {
+            private final SuntimesCalculator.MoonPosition position = new SuntimesCalculator.MoonPosition();
+
+            @Override
+            public double getElevation(long millis) {
+                return (EventMillis.getMoonPosition(calculator, millis, position) ? position.elevation : Double.NaN);
+            }
+        };
+    }
+
+    /**
+     * Crossings (in ascending order); `rising` is true if the curve crosses the angle from below.
+     */
+    public static class Crossings
+    {
+        private long[] millis = new long[4];
+        private boolean[] rising = new boolean[4];
+        private int n = 0;
+
+        public int size() {
+            return n;
+        }
+        public long getMillis(int i) {
+            return millis[i];
+        }
+        public boolean isRising(int i) {
+            return rising[i];
+        }
+
+        protected void add(long t, boolean isRising)
+        {
+            if (n == millis.length)
+            {
+                millis = Arrays.copyOf(millis, 2 * n);
+                rising = Arrays.copyOf(rising, 2 * n);
+            }
+            millis[n] = t;
+            rising[n] = isRising;
+            n++;
+        }
+    }
+
+    /**
+     * @param function elevation curve
+     * @param degrees the angle to find
+     * @param startMillis start of window
+     * @param endMillis end of window
+     * @param stepMillis scan interval (brackets)
+     * @param precisionMillis solve each crossing to within this interval
+     * @return all crossings within the window (ends early if the function becomes unavailable)
+     */
+    public static Crossings find(ElevationFunction function, double degrees, long startMillis, long endMillis, long stepMillis, long precisionMillis)
+    {
+        Crossings results = new Crossings();
+        scan(function, degrees, startMillis, endMillis, stepMillis, precisionMillis, null, results);
+        return results;
+    }
+
+    /**
+     * @param rising true finds the first rising crossing, false the first setting crossing
+     * @return millis of the first crossing (in the given direction) within the window, or NONE if not found
+     */
+    public static long findFirst(ElevationFunction function, double degrees, long startMillis, long endMillis, long stepMillis, long precisionMillis, boolean rising)
+    {
+        Crossings results = new Crossings();
+        scan(function, degrees, startMillis, endMillis, stepMillis, precisionMillis, rising, results);
+        return (results.size() > 0 ? results.getMillis(0) : NONE);
+    }
+
+    /**
+     * @param direction null finds all crossings, otherwise stops after the first crossing in the given direction (true rising, false setting)
+     */
+    protected static void scan(ElevationFunction function, double degrees, long startMillis, long endMillis, long stepMillis, long precisionMillis, Boolean direction, Crossings results)
+    {
+        stepMillis = Math.max(1, stepMillis);
+        long t0 = startMillis;
+        double e0 = function.getElevation(t0);
+        if (Double.isNaN(e0)) {
+            return;
+        }
+
+        while (t0 < endMillis)
+        {
+            long t1 = Math.min(t0 + stepMillis, endMillis);
+            double e1 = function.getElevation(t1);
+            if (Double.isNaN(e1)) {
+                return;
+            }
+
+            boolean rising = (e1 > e0);
+            if ((e0 >= degrees) != (e1 >= degrees) && (direction == null || direction == rising))
+            {
+                long t = solve(function, degrees, t0, e0, t1, e1, precisionMillis);
+                if (t != NONE)
+                {
+                    results.add(t, rising);
+                    if (direction != null) {
+                        return;
+                    }
+                }
+            }
+            t0 = t1;
+            e0 = e1;
+        }
+    }
+
+    /**
+     * Solves for the crossing within a bracket using Brent's method.
+     * @param t0 start of bracket (e0 is its elevation)
+     * @param t1 end of bracket (e1 is its elevation)
+     * @return millis of the crossing, or NONE if the bracket doesn't contain a crossing (or the function became unavailable)
+     */
+    public static long solve(ElevationFunction function, double degrees, long t0, double e0, long t1, double e1, long precisionMillis)
+    {
+        double a = t0, b = t1;
+        double fa = e0 - degrees, fb = e1 - degrees;
+        if (fa == 0) {
+            return t0;
+        }
+        if (fb == 0) {
+            return t1;
+        }
+        if ((fa > 0) == (fb > 0)) {
+            return NONE;
+        }
+
+        double tolerance = Math.max(1, precisionMillis) / 2d;
+        double c = b, fc = fb;
+        double d = 0, e = 0;
+        for (int i=0; i<MAX_ITERATIONS; i++)
+        {
+            if ((fb > 0) == (fc > 0))
+            {
+                c = a;         // keep the root bracketed by [b, c]
+                fc = fa;
+                d = e = b - a;
+            }
+            if (Math.abs(fc) < Math.abs(fb))
+            {
+                a = b; b = c; c = a;     // b is the best estimate
+                fa = fb; fb = fc; fc = fa;
+            }
+
+            double m = (c - b) / 2d;
+            if (Math.abs(m) <= tolerance || fb == 0) {
+                return Math.round(b);
+            }
+
+            if (Math.abs(e) >= tolerance && Math.abs(fa) > Math.abs(fb))
+            {
+                double p, q, r, s = fb / fa;
+                if (a == c) {
+                    p = 2 * m * s;             // secant
+                    q = 1 - s;
+                } else {
+                    q = fa / fc;               // inverse quadratic interpolation
+                    r = fb / fc;
+                    p = s * (2 * m * q * (q - r) - (b - a) * (r - 1));
+                    q = (q - 1) * (r - 1) * (s - 1);
+                }
+                if (p > 0) {
+                    q = -q;
+                } else p = -p;
+
+                if (2 * p < Math.min(3 * m * q - Math.abs(tolerance * q), Math.abs(e * q))) {
+                    e = d;
+                    d = p / q;
+                } else {
+                    d = e = m;    // bisection
+                }
+            } else {
+                d = e = m;    // bisection
+            }
+
+            a = b;
+            fa = fb;
+            b += (Math.abs(d) > tolerance ? d : (m > 0 ? tolerance : -tolerance));
+            double eb = function.getElevation(Math.round(b));
+            if (Double.isNaN(eb)) {
+                return NONE;
+            }
+            fb = eb - degrees;
+        }
+        return Math.round(b);
+    }
+
+    /**
+     * @return true if the calculator supports the given feature (e.g. SuntimesCalculator.FEATURE_POSITION)
+     */
+    public static boolean hasFeature(SuntimesCalculator calculator, int feature)
+    {
+        int[] features = calculator.getSupportedFeatures();
+        if (features != null) {
+            for (int f : features) {
+                if (f == feature) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the sun's rising time @ angle on the given date; solves the sun's elevation (FEATURE_POSITION), or uses the
+     * calculator's rise/set @angle if it lacks positions (FEATURE_RISESET1), otherwise null
+     */
+    public static Calendar getSunriseCalendarForDate(SuntimesCalculator calculator, Calendar date, double angle) {
+        return getCalendarForDate(calculator, date, angle, true);
+    }
+
+    /**
+     * @return the sun's setting time @ angle on the given date (@see getSunriseCalendarForDate)
+     */
+    public static Calendar getSunsetCalendarForDate(SuntimesCalculator calculator, Calendar date, double angle) {
+        return getCalendarForDate(calculator, date, angle, false);
+    }
+
+    protected static Calendar getCalendarForDate(SuntimesCalculator calculator, Calendar date, double angle, boolean rising)
+    {
+        if (!hasFeature(calculator, SuntimesCalculator.FEATURE_POSITION)) {
+            return (rising ? calculator.getSunriseCalendarForDate(date, angle) : calculator.getSunsetCalendarForDate(date, angle));
+        }
+
+        Calendar day = (Calendar) date.clone();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        long startMillis = day.getTimeInMillis();
+        day.add(Calendar.DAY_OF_YEAR, 1);
+        long endMillis = day.getTimeInMillis() - 1;
+
+        long millis = findFirst(sunElevation(calculator), angle, startMillis, endMillis, DEFAULT_STEP_MILLIS, DEFAULT_PRECISION_MILLIS, rising);
+        return EventMillis.toCalendar(millis, date.getTimeZone());
+    }
+}
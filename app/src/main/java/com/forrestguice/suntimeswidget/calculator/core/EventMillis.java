@@ -0,0 +1,197 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Helpers for working with event times as primitive epoch millis (using NONE as the "no event" value).
+ * Methods dispatch to EventMillisCalculator when the calculator implements it, and otherwise fall back
+ * to the (Calendar based) SuntimesCalculator methods. Conversion to Calendar is left to the UI.
+ */
+public class EventMillis
+{
+    public static final long NONE = RiseSetTable.NONE;
+    public static final long MILLIS_IN_DAY = 24 * 60 * 60 * 1000L;
+    public static final int MINUTES_IN_DAY = 24 * 60;
+
+    /**
+     * @param event event index (e.g. RiseSetTable.OFFICIAL_RISE)
+     * @param dateMillis a time on the given day
+     * @return event millis, or NONE
+     */
+    public static long getEventMillis(SuntimesCalculator calculator, int event, long dateMillis)
+    {
+        if (calculator instanceof EventMillisCalculator) {
+            return ((EventMillisCalculator) calculator).getEventMillis(event, dateMillis);
+
+        } else {
+            Calendar date = Calendar.getInstance(calculator.getTimeZone());
+            date.setTimeInMillis(dateMillis);
+            return toMillis(getEventCalendar(calculator, event, date));
+        }
+    }
+
+    /**
+     * Writes the millis for several events (on the same day) into a caller-supplied buffer.
+     * @param events event indices (e.g. RiseSetTable.OFFICIAL_RISE)
+     * @param dateMillis a time on the given day
+     * @param result a buffer with length >= events.length; result[i] is populated with millis (or NONE) for events[i]
+     */
+    public static void getEventMillis(SuntimesCalculator calculator, int[] events, long dateMillis, long[] result)
+    {
+        if (calculator instanceof EventMillisCalculator)
+        {
+            EventMillisCalculator c = (EventMillisCalculator) calculator;
+            for (int i=0; i<events.length; i++) {
+                result[i] = c.getEventMillis(events[i], dateMillis);
+            }
+
+        } else {
+            Calendar date = Calendar.getInstance(calculator.getTimeZone());
+            date.setTimeInMillis(dateMillis);
+            for (int i=0; i<events.length; i++) {
+                result[i] = toMillis(getEventCalendar(calculator, events[i], date));
+            }
+        }
+    }
+
+    /**
+     * @param millis a given date + time
+     * @param result a SunPosition to be populated with the result
+     * @return true if result was populated, false if unsupported
+     */
+    public static boolean getSunPosition(SuntimesCalculator calculator, long millis, SuntimesCalculator.SunPosition result)
+    {
+        if (calculator instanceof EventMillisCalculator) {
+            return ((EventMillisCalculator) calculator).getSunPosition(millis, result);
+
+        } else {
+            Calendar calendar = Calendar.getInstance(calculator.getTimeZone());
+            calendar.setTimeInMillis(millis);
+            SuntimesCalculator.SunPosition position = calculator.getSunPosition(calendar);
+            if (position != null)
+            {
+                result.azimuth = position.azimuth;
+                result.elevation = position.elevation;
+                result.rightAscension = position.rightAscension;
+                result.declination = position.declination;
+                return true;
+            } else return false;
+        }
+    }
+
+    /**
+     * @param millis a given date + time
+     * @param result a MoonPosition to be populated with the result
+     * @return true if result was populated, false if unsupported
+     */
+    public static boolean getMoonPosition(SuntimesCalculator calculator, long millis, SuntimesCalculator.MoonPosition result)
+    {
+        if (calculator instanceof EventMillisCalculator) {
+            return ((EventMillisCalculator) calculator).getMoonPosition(millis, result);
+
+        } else {
+            Calendar calendar = Calendar.getInstance(calculator.getTimeZone());
+            calendar.setTimeInMillis(millis);
+            SuntimesCalculator.MoonPosition position = calculator.getMoonPosition(calendar);
+            if (position != null)
+            {
+                result.azimuth = position.azimuth;
+                result.elevation = position.elevation;
+                result.rightAscension = position.rightAscension;
+                result.declination = position.declination;
+                result.distance = position.distance;
+                return true;
+            } else return false;
+        }
+    }
+
+    /**
+     * @return the Calendar returned by the SuntimesCalculator method corresponding to event
+     */
+    protected static Calendar getEventCalendar(SuntimesCalculator calculator, int event, Calendar date)
+    {
+        Calendar[] blueHour;
+        switch (event)
+        {
+            case RiseSetTable.ASTRO_RISE: return calculator.getAstronomicalSunriseCalendarForDate(date);
+            case RiseSetTable.NAUTICAL_RISE: return calculator.getNauticalSunriseCalendarForDate(date);
+            case RiseSetTable.CIVIL_RISE: return calculator.getCivilSunriseCalendarForDate(date);
+            case RiseSetTable.OFFICIAL_RISE: return calculator.getOfficialSunriseCalendarForDate(date);
+            case RiseSetTable.NOON: return calculator.getSolarNoonCalendarForDate(date);
+            case RiseSetTable.OFFICIAL_SET: return calculator.getOfficialSunsetCalendarForDate(date);
+            case RiseSetTable.CIVIL_SET: return calculator.getCivilSunsetCalendarForDate(date);
+            case RiseSetTable.NAUTICAL_SET: return calculator.getNauticalSunsetCalendarForDate(date);
+            case RiseSetTable.ASTRO_SET: return calculator.getAstronomicalSunsetCalendarForDate(date);
+            case RiseSetTable.GOLDEN_MORNING: return calculator.getMorningGoldenHourForDate(date);
+            case RiseSetTable.GOLDEN_EVENING: return calculator.getEveningGoldenHourForDate(date);
+
+            case RiseSetTable.BLUE8_RISE: case RiseSetTable.BLUE4_RISE:
+                blueHour = calculator.getMorningBlueHourForDate(date);
+                return (blueHour != null ? blueHour[event == RiseSetTable.BLUE8_RISE ? 0 : 1] : null);
+
+            case RiseSetTable.BLUE4_SET: case RiseSetTable.BLUE8_SET:
+                blueHour = calculator.getEveningBlueHourForDate(date);
+                return (blueHour != null ? blueHour[event == RiseSetTable.BLUE4_SET ? 0 : 1] : null);
+
+            default: return null;
+        }
+    }
+
+    public static long toMillis(Calendar calendar) {
+        return (calendar != null ? calendar.getTimeInMillis() : NONE);
+    }
+
+    /**
+     * @return a Calendar (in the given timezone), or null if millis is NONE
+     */
+    public static Calendar toCalendar(long millis, TimeZone timezone)
+    {
+        if (millis != NONE)
+        {
+            Calendar calendar = Calendar.getInstance(timezone);
+            calendar.setTimeInMillis(millis);
+            return calendar;
+        } else return null;
+    }
+
+    /**
+     * @return the number of days since the epoch (1970-01-01) as seen from the given timezone
+     */
+    public static long epochDay(long millis, TimeZone timezone)
+    {
+        long localMillis = millis + timezone.getOffset(millis);
+        long day = localMillis / MILLIS_IN_DAY;
+        return (localMillis % MILLIS_IN_DAY < 0) ? day - 1 : day;     // floor
+    }
+
+    /**
+     * @return the minute of the day [0, 1440) as seen from the given timezone (equivalent to `HOUR_OF_DAY * 60 + MINUTE`)
+     */
+    public static int minuteOfDay(long millis, TimeZone timezone)
+    {
+        long localMillis = (millis + timezone.getOffset(millis)) % MILLIS_IN_DAY;
+        if (localMillis < 0) {
+            localMillis += MILLIS_IN_DAY;
+        }
+        return (int)(localMillis / (60 * 1000));
+    }
+}
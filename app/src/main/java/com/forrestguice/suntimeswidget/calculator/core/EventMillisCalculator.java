@@ -0,0 +1,49 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+/**
+ * An optional interface implemented by SuntimesCalculators that can return results as primitive values
+ * (epoch millis) or write them into caller-supplied objects, rather than allocating a new Calendar
+ * (or Position) for each result.
+ * @see EventMillis
+ */
+public interface EventMillisCalculator
+{
+    /**
+     * @param event event index (e.g. RiseSetTable.OFFICIAL_RISE)
+     * @param dateMillis a time on the given day (the day is determined using the calculator's timezone)
+     * @return event millis, or EventMillis.NONE if the event does not occur (or is unsupported)
+     */
+    long getEventMillis(int event, long dateMillis);
+
+    /**
+     * @param millis a given date + time
+     * @param result a SunPosition to be populated with the result
+     * @return true if result was populated, false if unsupported
+     */
+    boolean getSunPosition(long millis, SuntimesCalculator.SunPosition result);
+
+    /**
+     * @param millis a given date + time
+     * @param result a MoonPosition to be populated with the result
+     * @return true if result was populated, false if unsupported
+     */
+    boolean getMoonPosition(long millis, SuntimesCalculator.MoonPosition result);
+}
@@ -0,0 +1,147 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import java.util.Calendar;
+import java.util.Collection;
+
+/**
+ * Finds the next occurrence of a daily sun event (e.g. for a repeating alarm). Instead of solving every day in turn,
+ * the search starts from the day before (now - offset), skips days that can't satisfy the repeat mask, and skips polar
+ * day / night (when the event can't occur) using an approximate solar declination; only the remaining candidate days
+ * are solved, and only for the single event that is needed.
+ */
+public class NextEventSearch
+{
+    public static final int MAX_DAYS = 366;
+    public static final double MARGIN_DEGREES = 2;               // declination approx (~0.2 deg), refraction, and semi-diameter (~0.8 deg)
+    public static final double OFFICIAL_ANGLE = -0.833;
+
+    public interface DayEvent
+    {
+        /**
+         * @param date a date to solve
+         * @return the event on the given date, or null if the event does not occur
+         */
+        Calendar getEvent(Calendar date);
+    }
+
+    /**
+     * @param function solves the event for a given date
+     * @param today a calendar (in the timezone to search with); the search starts from the day before (now - offset)
+     * @param nowMillis the event (plus offset) must occur at or after now
+     * @param offset alarm offset (millis)
+     * @param days DAY_OF_WEEK values the event may fall on, or null for any day
+     * @param latitude observer latitude (degrees)
+     * @param altitude observer altitude (meters); a raised observer sees a lowered horizon
+     * @param angle the elevation the event occurs at (degrees), or null if it occurs every day (e.g. noon)
+     * @return the next event (with seconds cleared), or null if it wasn't found within MAX_DAYS
+     */
+    public static Calendar findNext(DayEvent function, Calendar today, long nowMillis, long offset, Collection<Integer> days, double latitude, double altitude, Double angle)
+    {
+        Calendar day = (Calendar) today.clone();
+        day.setTimeInMillis(nowMillis - offset - EventMillis.MILLIS_IN_DAY);    // may be before today (positive offset); results are still filtered by (event + offset >= now)
+
+        double margin = MARGIN_DEGREES + horizonDip(altitude);
+        int i = 0;
+        while (i <= MAX_DAYS)
+        {
+            if (days != null && !isCandidateDay(day, days)) {
+                day.add(Calendar.DAY_OF_YEAR, 1);
+                i++;
+                continue;
+            }
+
+            int skip = (angle != null ? daysWithoutEvent(latitude, angle, margin, day.get(Calendar.DAY_OF_YEAR)) : 0);
+            if (skip > 0) {
+                //Log.d("DEBUG", "findNext: skipping " + skip + " days (polar day/night)");
+                day.add(Calendar.DAY_OF_YEAR, skip);
+                i += skip;
+                continue;
+            }
+
+            Calendar event = function.getEvent(day);
+            if (event != null)
+            {
+                event.set(Calendar.SECOND, 0);
+                if (event.getTimeInMillis() + offset >= nowMillis
+                        && (days == null || days.contains(event.get(Calendar.DAY_OF_WEEK)))) {
+                    return event;
+                }
+            }
+            day.add(Calendar.DAY_OF_YEAR, 1);
+            i++;
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the day, or its neighbors, fall on one of the given days (an event solved for a date may cross midnight)
+     */
+    protected static boolean isCandidateDay(Calendar day, Collection<Integer> days)
+    {
+        int dayOfWeek = day.get(Calendar.DAY_OF_WEEK);                           // 1 (SUNDAY) .. 7 (SATURDAY)
+        return days.contains(dayOfWeek)
+                || days.contains((dayOfWeek % 7) + 1)
+                || days.contains(((dayOfWeek + 5) % 7) + 1);
+    }
+
+    /**
+     * @param dayOfYear day of year (1 .. 366); values beyond the end of the year continue into the next
+     * @return the number of consecutive days (starting at dayOfYear) that the sun can't cross the given angle, or 0
+     */
+    public static int daysWithoutEvent(double latitude, double angle, double margin, int dayOfYear)
+    {
+        int n = 0;
+        while (n < MAX_DAYS && !mayOccur(latitude, angle, margin, dayOfYear + n)) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * The sun crosses the angle when it lies between the sun's lower (midnight) and upper (noon) culmination.
+     * @return false if the event definitely doesn't occur on this day (within the given margin)
+     */
+    public static boolean mayOccur(double latitude, double angle, double margin, int dayOfYear)
+    {
+        double declination = declination(dayOfYear);
+        double upper = 90 - Math.abs(latitude - declination);
+        double lower = Math.abs(latitude + declination) - 90;
+        return (upper >= angle - margin) && (lower <= angle + margin);
+    }
+
+    /**
+     * @param dayOfYear day of year (1 .. 366)
+     * @return approximate solar declination (degrees) at noon; accurate to ~0.2 degrees
+     */
+    public static double declination(int dayOfYear)
+    {
+        double n = dayOfYear - 0.5;
+        double g = Math.toRadians(360 / 365.24);
+        return -Math.toDegrees(Math.asin(0.39779 * Math.cos(g * (n + 10) + 0.0334 * Math.sin(g * (n - 2)))));
+    }
+
+    /**
+     * @return dip of the horizon (degrees) for an observer at the given altitude (meters)
+     */
+    public static double horizonDip(double altitude) {
+        return (altitude > 0 ? 0.0293 * Math.sqrt(altitude) : 0);
+    }
+}
@@ -0,0 +1,237 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * A table of sun events (rise, set, twilight, noon, golden and blue hour) for a range of consecutive
+ * days. Each event is stored as a column of millisecond timestamps (one value per day); days without
+ * the event (e.g. polar day or night) hold the value NONE.
+ *
+ * @see RiseSetTableCalculator
+ */
+public class RiseSetTable
+{
+    public static final long NONE = Long.MIN_VALUE;
+
+    public static final int ASTRO_RISE = 0;
+    public static final int NAUTICAL_RISE = 1;
+    public static final int CIVIL_RISE = 2;
+    public static final int OFFICIAL_RISE = 3;
+    public static final int NOON = 4;
+    public static final int OFFICIAL_SET = 5;
+    public static final int CIVIL_SET = 6;
+    public static final int NAUTICAL_SET = 7;
+    public static final int ASTRO_SET = 8;
+    public static final int GOLDEN_MORNING = 9;
+    public static final int GOLDEN_EVENING = 10;
+    public static final int BLUE8_RISE = 11;
+    public static final int BLUE4_RISE = 12;
+    public static final int BLUE4_SET = 13;
+    public static final int BLUE8_SET = 14;
+    public static final int NUM_EVENTS = 15;
+
+    public static final int ALL_EVENTS = (1 << NUM_EVENTS) - 1;
+
+    /**
+     * @param events event indices (e.g. OFFICIAL_RISE)
+     * @return a bitmask that selects the given events
+     */
+    public static int eventMask(int... events)
+    {
+        int mask = 0;
+        for (int event : events) {
+            mask |= (1 << event);
+        }
+        return mask;
+    }
+
+    /**
+     * @return true if the bitmask selects the given event
+     */
+    public static boolean isSelected(int mask, int event) {
+        return (mask & (1 << event)) != 0;
+    }
+
+    protected final long[] days;
+    protected final long[][] events;
+
+    public RiseSetTable(int numDays)
+    {
+        days = new long[numDays];
+        events = new long[NUM_EVENTS][numDays];
+        for (long[] column : events) {
+            Arrays.fill(column, NONE);
+        }
+    }
+
+    /**
+     * @return the number of days (rows) in the table
+     */
+    public int numDays() {
+        return days.length;
+    }
+
+    /**
+     * @param i day index
+     * @return the date (millis) that was used to calculate the ith day
+     */
+    public long getDay(int i) {
+        return days[i];
+    }
+    public void setDay(int i, long millis) {
+        days[i] = millis;
+    }
+
+    /**
+     * @param event event index (e.g. OFFICIAL_RISE)
+     * @param i day index
+     * @return event millis, or NONE if the event does not occur on the ith day
+     */
+    public long get(int event, int i) {
+        return events[event][i];
+    }
+    public boolean has(int event, int i) {
+        return events[event][i] != NONE;
+    }
+    public void set(int event, int i, long millis) {
+        events[event][i] = millis;
+    }
+    public void set(int event, int i, Calendar calendar) {
+        events[event][i] = (calendar != null ? calendar.getTimeInMillis() : NONE);
+    }
+
+    /**
+     * @param event event index (e.g. OFFICIAL_RISE)
+     * @return a column containing the event millis for each day (a reference to the backing array)
+     */
+    public long[] column(int event) {
+        return events[event];
+    }
+
+    /**
+     * @return a Calendar for the event (in the given timezone), or null if the event does not occur on the ith day
+     */
+    public Calendar getCalendar(int event, int i, TimeZone timezone)
+    {
+        long millis = events[event][i];
+        if (millis != NONE)
+        {
+            Calendar calendar = Calendar.getInstance(timezone);
+            calendar.setTimeInMillis(millis);
+            return calendar;
+        } else return null;
+    }
+
+    /**
+     * Creates a RiseSetTable using the calculator's native implementation (if it implements RiseSetTableCalculator),
+     * or by calling the calculator's individual methods for each day (fallback).
+     * @param calculator a SuntimesCalculator
+     * @param startDate the first day
+     * @param numDays number of consecutive days
+     * @return a RiseSetTable containing numDays
+     */
+    public static RiseSetTable create(SuntimesCalculator calculator, Calendar startDate, int numDays) {
+        return create(calculator, startDate, numDays, ALL_EVENTS);
+    }
+
+    /**
+     * Creates a RiseSetTable containing only the selected events; events that are not selected are left empty (NONE).
+     * @param events a bitmask of events to solve (@see eventMask)
+     */
+    public static RiseSetTable create(SuntimesCalculator calculator, Calendar startDate, int numDays, int events)
+    {
+        if (calculator instanceof RiseSetTableCalculator) {
+            return ((RiseSetTableCalculator) calculator).getRiseSetTable(startDate, numDays, events);
+        } else return createFallback(calculator, startDate, numDays, events);
+    }
+
+    /**
+     * Creates a RiseSetTable by calling the calculator's individual methods for each day.
+     */
+    public static RiseSetTable createFallback(SuntimesCalculator calculator, Calendar startDate, int numDays) {
+        return createFallback(calculator, startDate, numDays, ALL_EVENTS);
+    }
+
+    public static RiseSetTable createFallback(SuntimesCalculator calculator, Calendar startDate, int numDays, int events)
+    {
+        RiseSetTable table = new RiseSetTable(numDays);
+        Calendar day = (Calendar) startDate.clone();
+        for (int i=0; i<numDays; i++)
+        {
+            table.setDay(i, day.getTimeInMillis());
+            if (isSelected(events, ASTRO_RISE)) {
+                table.set(ASTRO_RISE, i, calculator.getAstronomicalSunriseCalendarForDate(day));
+            }
+            if (isSelected(events, NAUTICAL_RISE)) {
+                table.set(NAUTICAL_RISE, i, calculator.getNauticalSunriseCalendarForDate(day));
+            }
+            if (isSelected(events, CIVIL_RISE)) {
+                table.set(CIVIL_RISE, i, calculator.getCivilSunriseCalendarForDate(day));
+            }
+            if (isSelected(events, OFFICIAL_RISE)) {
+                table.set(OFFICIAL_RISE, i, calculator.getOfficialSunriseCalendarForDate(day));
+            }
+            if (isSelected(events, NOON)) {
+                table.set(NOON, i, calculator.getSolarNoonCalendarForDate(day));
+            }
+            if (isSelected(events, OFFICIAL_SET)) {
+                table.set(OFFICIAL_SET, i, calculator.getOfficialSunsetCalendarForDate(day));
+            }
+            if (isSelected(events, CIVIL_SET)) {
+                table.set(CIVIL_SET, i, calculator.getCivilSunsetCalendarForDate(day));
+            }
+            if (isSelected(events, NAUTICAL_SET)) {
+                table.set(NAUTICAL_SET, i, calculator.getNauticalSunsetCalendarForDate(day));
+            }
+            if (isSelected(events, ASTRO_SET)) {
+                table.set(ASTRO_SET, i, calculator.getAstronomicalSunsetCalendarForDate(day));
+            }
+            if (isSelected(events, GOLDEN_MORNING)) {
+                table.set(GOLDEN_MORNING, i, calculator.getMorningGoldenHourForDate(day));
+            }
+            if (isSelected(events, GOLDEN_EVENING)) {
+                table.set(GOLDEN_EVENING, i, calculator.getEveningGoldenHourForDate(day));
+            }
+
+            if (isSelected(events, BLUE8_RISE) || isSelected(events, BLUE4_RISE))
+            {
+                Calendar[] morningBlueHour = calculator.getMorningBlueHourForDate(day);
+                if (morningBlueHour != null) {
+                    table.set(BLUE8_RISE, i, morningBlueHour[0]);
+                    table.set(BLUE4_RISE, i, morningBlueHour[1]);
+                }
+            }
+            if (isSelected(events, BLUE4_SET) || isSelected(events, BLUE8_SET))
+            {
+                Calendar[] eveningBlueHour = calculator.getEveningBlueHourForDate(day);
+                if (eveningBlueHour != null) {
+                    table.set(BLUE4_SET, i, eveningBlueHour[0]);
+                    table.set(BLUE8_SET, i, eveningBlueHour[1]);
+                }
+            }
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        return table;
+    }
+
+}
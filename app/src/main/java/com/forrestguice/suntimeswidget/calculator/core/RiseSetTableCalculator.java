@@ -0,0 +1,36 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import java.util.Calendar;
+
+/**
+ * An optional interface implemented by SuntimesCalculators that can solve a range of days in a single pass.
+ * @see RiseSetTable#create(SuntimesCalculator, Calendar, int, int)
+ */
+public interface RiseSetTableCalculator
+{
+    /**
+     * @param startDate a Calendar representing the first day
+     * @param numDays number of consecutive days
+     * @param events a bitmask of events to solve (@see RiseSetTable#eventMask); other events may be left empty
+     * @return a RiseSetTable containing numDays of rise, set, and twilight times
+     */
+    RiseSetTable getRiseSetTable(Calendar startDate, int numDays, int events);
+}
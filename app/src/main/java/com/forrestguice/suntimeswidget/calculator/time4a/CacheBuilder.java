@@ -0,0 +1,116 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fills the entries of a lazily built cache (e.g. LunarEventIndex years, SeasonTable blocks) on a background thread,
+ * so a lookup that misses never solves a whole entry on the caller's thread (which may be the UI thread); the caller
+ * solves only the event it asked for instead, and later lookups use the entry once it is published. Requests for an
+ * entry that is already queued are ignored.
+ */
+public class CacheBuilder
+{
+    public interface Builder
+    {
+        /**
+         * Called from the background thread; implementations should solve the entry (without holding their own lock),
+         * then publish it (while holding it).
+         * @param key the entry (e.g. a year)
+         */
+        void build(int key);
+    }
+
+    protected final String tag;
+    protected final Builder builder;
+    protected final HashSet<Integer> pending = new HashSet<>();
+
+    public CacheBuilder(String tag, Builder builder)
+    {
+        this.tag = tag;
+        this.builder = builder;
+    }
+
+    /**
+     * Requests that an entry is built (returns immediately).
+     */
+    public void requestBuild(final int key)
+    {
+        synchronized (pending)
+        {
+            if (!pending.add(key)) {
+                return;
+            }
+        }
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    builder.build(key);
+                } catch (Exception e) {
+                    Log.e(tag, "build: failed to build " + key + ": " + e);
+                } finally {
+                    synchronized (pending) {
+                        pending.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocks until the builds that were requested before this call have completed.
+     */
+    public static void flush()
+    {
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() { /* EMPTY */ }
+            }).get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.w("CacheBuilder", "flush: " + e);
+        }
+    }
+
+    protected static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(@NonNull Runnable r)
+        {
+            Thread thread = new Thread(r, "CacheBuilder");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+}
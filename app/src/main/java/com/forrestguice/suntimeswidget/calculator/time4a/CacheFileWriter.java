@@ -0,0 +1,146 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persists a cache file (e.g. LunarEventIndex, SeasonTable) on a background thread. Each write goes to a temporary
+ * file that then replaces the cache file (so a reader never sees a partially written file), and requests made while
+ * a write is still pending are combined into a single write.
+ */
+public class CacheFileWriter
+{
+    public interface Writer
+    {
+        /**
+         * Called from the background thread; implementations should copy their state (while holding their own lock),
+         * then write the copy (without holding it).
+         * @param out a stream to the temporary file
+         */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    protected final String tag;
+    protected final Writer writer;
+    protected final AtomicBoolean pending = new AtomicBoolean(false);
+
+    public CacheFileWriter(String tag, Writer writer)
+    {
+        this.tag = tag;
+        this.writer = writer;
+    }
+
+    /**
+     * Requests a write to the given file (returns immediately).
+     */
+    public void requestWrite(final File file)
+    {
+        if (file != null && pending.compareAndSet(false, true))
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    pending.set(false);    // requests made after this point are written again
+                    write(file);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes to a temporary file (in the same directory), then renames it over the given file.
+     * @return true if the file was replaced
+     */
+    protected boolean write(File file)
+    {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            writer.write(out);
+            out.close();
+            out = null;
+
+            if (!tmpFile.renameTo(file))
+            {
+                if (!file.delete() || !tmpFile.renameTo(file)) {
+                    throw new IOException("failed to rename " + tmpFile);
+                }
+            }
+            return true;
+
+        } catch (IOException e) {
+            Log.e(tag, "saveCache: failed to write " + file + ": " + e);
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e1) {
+                    Log.w(tag, "failed to close stream: " + e1);
+                }
+            }
+            tmpFile.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Blocks until the writes that were requested before this call have completed.
+     */
+    public static void flush()
+    {
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() { /* EMPTY */ }
+            }).get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.w("CacheFileWriter", "flush: " + e);
+        }
+    }
+
+    protected static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(@NonNull Runnable r)
+        {
+            Thread thread = new Thread(r, "CacheFileWriter");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+}
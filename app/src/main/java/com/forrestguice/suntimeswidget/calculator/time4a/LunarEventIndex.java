@@ -0,0 +1,424 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import net.time4j.Moment;
+import net.time4j.TemporalType;
+import net.time4j.calendar.astro.MoonPhase;
+import net.time4j.calendar.astro.MoonPosition;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.TimeZone;
+
+/**
+ * An index of lunar events (the major phases, perigee, and apogee) for a window of years. Each (UTC) year
+ * is solved once by time4j and stored as a sorted long[] of event millis per event type; the next event
+ * after a given time is then found by binary search (rather than by re-running the iterative solvers).
+ *
+ * Years are built lazily in the background (@see CacheBuilder); a lookup in a year that isn't indexed yet requests the
+ * year and returns NONE (the caller solves just that event), so a whole year is never solved on the caller's thread.
+ * Built years are persisted to a cache file (if one was set; @see initCacheFile) on a background thread, so they are only
+ * solved once per install. The index is location independent (shared by all instances). Lookups outside the year window
+ * return NONE; callers should fall back to the solvers.
+ *
+ * A year is expected to contain at least MIN_EVENTS_PER_YEAR of each type; event types that fail this check
+ * (the solver skipped events when stepping from one event to the next) are left out of the index (lookups
+ * return NONE).
+ */
+public class LunarEventIndex
+{
+    public static final long NONE = Long.MIN_VALUE;
+
+    public static final int NEW_MOON = 0;
+    public static final int FIRST_QUARTER = 1;
+    public static final int FULL_MOON = 2;
+    public static final int THIRD_QUARTER = 3;
+    public static final int PERIGEE = 4;
+    public static final int APOGEE = 5;
+    public static final int NUM_TYPES = 6;
+
+    public static final int MIN_EVENTS_PER_YEAR = 12;    // ~12.4 lunations, ~13.3 anomalistic months
+
+    public static final int DEF_YEAR_RANGE = 50;        // current year +- 50 years
+    public static final String CACHE_FILENAME = "lunar_event_index.dat";
+    protected static final int CACHE_VERSION = 1;
+
+    protected static final Object lock = new Object();
+    protected static final HashMap<Integer, long[][]> years = new HashMap<>();
+    protected static int minYear = currentYear() - DEF_YEAR_RANGE;
+    protected static int maxYear = currentYear() + DEF_YEAR_RANGE;
+    protected static File cacheFile = null;
+    protected static boolean cacheLoaded = false;
+
+    /**
+     * Sets the range of years that are indexed; lookups outside this range return NONE.
+     */
+    public static void setYearRange(int min, int max)
+    {
+        synchronized (lock) {
+            minYear = Math.min(min, max);
+            maxYear = Math.max(min, max);
+        }
+    }
+    public static int getMinYear() {
+        return minYear;
+    }
+    public static int getMaxYear() {
+        return maxYear;
+    }
+
+    /**
+     * Persists the index to a file in the app's cache directory.
+     */
+    public static void initCacheFile(Context context)
+    {
+        if (context != null && cacheFile == null)
+        {
+            setCacheFile(new File(context.getCacheDir(), CACHE_FILENAME));
+            int year = currentYear();
+            prefetch(year, year + 1);
+        }
+    }
+
+    /**
+     * @param file the file used to persist the index (or null to keep the index in memory only)
+     */
+    public static void setCacheFile(File file)
+    {
+        synchronized (lock) {
+            cacheFile = file;
+            cacheLoaded = false;
+        }
+    }
+
+    /**
+     * Discards the index (in memory); the cache file is reloaded on next use.
+     */
+    public static void clear()
+    {
+        synchronized (lock) {
+            years.clear();
+            cacheLoaded = false;
+        }
+    }
+
+    /**
+     * @return the number of years currently held by the index
+     */
+    public static int getNumYears()
+    {
+        synchronized (lock) {
+            return years.size();
+        }
+    }
+
+    /**
+     * @param type event type (e.g. FULL_MOON, PERIGEE)
+     * @param millis time
+     * @return the millis of the first event strictly after millis (the same as the time4j solvers), or NONE if outside the year window (or not indexed)
+     */
+    public static long next(int type, long millis)
+    {
+        int min, max;
+        synchronized (lock)
+        {
+            if (!cacheLoaded) {
+                loadCache();
+            }
+            min = minYear;
+            max = maxYear;
+        }
+
+        if (millis < startOfYear(min)) {
+            return NONE;
+        }
+        for (int y = yearOf(millis); y <= max; y++)
+        {
+            long[][] year = getYear(y);
+            if (year == null) {
+                return NONE;    // not indexed yet (requested)
+            }
+            long[] events = year[type];
+            if (events == null) {
+                return NONE;    // not indexed
+            }
+            int i = Arrays.binarySearch(events, millis);
+            i = (i >= 0) ? i + 1 : -(i + 1);    // first event > millis
+            if (i < events.length) {
+                return events[i];
+            }
+        }
+        return NONE;
+    }
+
+    public static int toType(SuntimesCalculator.MoonPhase phase)
+    {
+        switch (phase) {
+            case NEW: return NEW_MOON;
+            case FIRST_QUARTER: return FIRST_QUARTER;
+            case THIRD_QUARTER: return THIRD_QUARTER;
+            case FULL: default: return FULL_MOON;
+        }
+    }
+
+    /**
+     * Requests that the years [fromYear, toYear] are indexed (in the background); years outside the window are ignored.
+     */
+    public static void prefetch(int fromYear, int toYear)
+    {
+        for (int year = Math.max(fromYear, minYear); year <= Math.min(toYear, maxYear); year++) {
+            getYear(year);
+        }
+    }
+
+    /**
+     * @return event arrays for the given year, or null if the year isn't indexed yet (the year is requested from
+     * the builder); the arrays are not modified once published
+     */
+    protected static long[][] getYear(int year)
+    {
+        long[][] events;
+        synchronized (lock) {
+            events = years.get(year);
+        }
+        if (events == null) {
+            builder.requestBuild(year);
+        }
+        return events;
+    }
+
+    protected static final CacheBuilder builder = new CacheBuilder("LunarEventIndex", new CacheBuilder.Builder()
+    {
+        @Override
+        public void build(int year)
+        {
+            synchronized (lock)
+            {
+                if (!cacheLoaded) {
+                    loadCache();
+                }
+                if (years.containsKey(year)) {
+                    return;
+                }
+            }
+            long[][] events = createYear(year);    // solved outside the lock
+            synchronized (lock)
+            {
+                if (years.containsKey(year)) {
+                    return;
+                }
+                years.put(year, events);
+            }
+            saveCache();
+        }
+    });
+
+    protected static long[][] createYear(int year)
+    {
+        //long bench_start = System.nanoTime();
+        long start = startOfYear(year);
+        long end = startOfYear(year + 1);
+        long[][] events = new long[NUM_TYPES][];
+        events[NEW_MOON] = solvePhase(MoonPhase.NEW_MOON, start, end);
+        events[FIRST_QUARTER] = solvePhase(MoonPhase.FIRST_QUARTER, start, end);
+        events[FULL_MOON] = solvePhase(MoonPhase.FULL_MOON, start, end);
+        events[THIRD_QUARTER] = solvePhase(MoonPhase.LAST_QUARTER, start, end);
+        events[PERIGEE] = solveDistance(true, start, end);
+        events[APOGEE] = solveDistance(false, start, end);
+        for (int type=0; type<NUM_TYPES; type++)
+        {
+            if (events[type].length < MIN_EVENTS_PER_YEAR) {
+                Log.w("LunarEventIndex", "createYear: " + year + ": found " + events[type].length + " events of type " + type + "; excluding this type from the index..");
+                events[type] = null;
+            }
+        }
+        //long bench_end = System.nanoTime();
+        //Log.d("DEBUG", "LunarEventIndex: created year " + year + " :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
+        return events;
+    }
+
+    /**
+     * @return sorted millis of the given phase in [start, end)
+     */
+    protected static long[] solvePhase(MoonPhase phase, long start, long end)
+    {
+        long[] events = new long[16];
+        int n = 0;
+        Moment moment = phase.after(TemporalType.MILLIS_SINCE_UNIX.translate(start - 1));    // after is exclusive
+        long millis;
+        while ((millis = TemporalType.MILLIS_SINCE_UNIX.from(moment)) < end)
+        {
+            if (n == events.length) {
+                events = Arrays.copyOf(events, n * 2);
+            }
+            events[n++] = millis;
+            moment = phase.after(moment);
+        }
+        return Arrays.copyOf(events, n);
+    }
+
+    /**
+     * @return sorted millis of perigee (or apogee) in [start, end)
+     */
+    protected static long[] solveDistance(boolean perigee, long start, long end)
+    {
+        long[] events = new long[16];
+        int n = 0;
+        Moment moment = TemporalType.MILLIS_SINCE_UNIX.translate(start - 1);
+        moment = (perigee ? MoonPosition.inNextPerigeeAfter(moment) : MoonPosition.inNextApogeeAfter(moment));
+        long millis;
+        while ((millis = TemporalType.MILLIS_SINCE_UNIX.from(moment)) < end)
+        {
+            if (n == events.length) {
+                events = Arrays.copyOf(events, n * 2);
+            }
+            events[n++] = millis;
+            moment = (perigee ? MoonPosition.inNextPerigeeAfter(moment) : MoonPosition.inNextApogeeAfter(moment));
+        }
+        return Arrays.copyOf(events, n);
+    }
+
+    /**
+     * Reads previously indexed years from the cache file; must hold lock.
+     */
+    protected static void loadCache()
+    {
+        cacheLoaded = true;
+        if (cacheFile == null || !cacheFile.exists() || cacheFile.length() == 0) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != CACHE_VERSION) {
+                Log.w("LunarEventIndex", "loadCache: version mismatch; ignoring " + cacheFile);
+                return;
+            }
+            int numYears = in.readInt();
+            for (int i=0; i<numYears; i++)
+            {
+                int year = in.readInt();
+                long[][] events = new long[NUM_TYPES][];
+                for (int type=0; type<NUM_TYPES; type++)
+                {
+                    int n = in.readInt();
+                    if (n < 0) {
+                        continue;    // not indexed
+                    }
+                    events[type] = new long[n];
+                    for (int j=0; j<events[type].length; j++) {
+                        events[type][j] = in.readLong();
+                    }
+                }
+                if (!years.containsKey(year)) {
+                    years.put(year, events);
+                }
+            }
+        } catch (IOException e) {
+            Log.e("LunarEventIndex", "loadCache: failed to read " + cacheFile + ": " + e);
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Requests that the indexed years are written to the cache file (@see CacheFileWriter).
+     */
+    protected static void saveCache()
+    {
+        File file;
+        synchronized (lock) {
+            file = cacheFile;
+        }
+        cacheWriter.requestWrite(file);
+    }
+
+    protected static final CacheFileWriter cacheWriter = new CacheFileWriter("LunarEventIndex", new CacheFileWriter.Writer()
+    {
+        @Override
+        public void write(DataOutputStream out) throws IOException
+        {
+            HashMap<Integer, long[][]> indexed;
+            synchronized (lock) {
+                indexed = new HashMap<>(years);
+            }
+            out.writeInt(CACHE_VERSION);
+            out.writeInt(indexed.size());
+            for (Integer year : indexed.keySet())
+            {
+                out.writeInt(year);
+                for (long[] events : indexed.get(year))
+                {
+                    if (events == null) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    out.writeInt(events.length);
+                    for (long millis : events) {
+                        out.writeLong(millis);
+                    }
+                }
+            }
+        }
+    });
+
+    private static void close(Closeable stream)
+    {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Log.w("LunarEventIndex", "failed to close stream: " + e);
+            }
+        }
+    }
+
+    protected static int yearOf(long millis)
+    {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(millis);
+        return calendar.get(Calendar.YEAR);
+    }
+
+    protected static long startOfYear(int year)
+    {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1, 0, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static int currentYear() {
+        return Calendar.getInstance(TimeZone.getTimeZone("UTC")).get(Calendar.YEAR);
+    }
+}
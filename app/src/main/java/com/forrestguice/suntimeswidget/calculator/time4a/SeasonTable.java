@@ -0,0 +1,317 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import android.content.Context;
+import android.util.Log;
+
+import net.time4j.TemporalType;
+import net.time4j.calendar.astro.AstronomicalSeason;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * A table of equinox and solstice times (as seen from the northern hemisphere) for the years MIN_YEAR to MAX_YEAR,
+ * stored as a packed long[] (four values per year). The seasons are location independent instants, so the table
+ * is shared by all instances; the southern hemisphere is handled at lookup (the same instants, with spring/autumn
+ * and summer/winter swapped).
+ *
+ * The table is filled lazily in blocks (of BLOCK_YEARS) solved by time4j in the background (@see CacheBuilder); a lookup
+ * in a block that isn't solved yet requests the block and returns NONE (the caller solves just that season), so a block
+ * is never solved on the caller's thread. Solved blocks are persisted to a cache file (if one was set; @see initCacheFile)
+ * on a background thread, so each block is only solved once per install. Years outside the table return NONE; callers
+ * should fall back to AstronomicalSeason.inYear.
+ */
+public class SeasonTable
+{
+    public static final long NONE = Long.MIN_VALUE;
+
+    public static final int VERNAL_EQUINOX = 0;
+    public static final int SUMMER_SOLSTICE = 1;
+    public static final int AUTUMNAL_EQUINOX = 2;
+    public static final int WINTER_SOLSTICE = 3;
+    public static final int NUM_SEASONS = 4;
+
+    public static final int MIN_YEAR = 1600;
+    public static final int MAX_YEAR = 2400;
+    public static final int BLOCK_YEARS = 50;
+    protected static final int NUM_YEARS = MAX_YEAR - MIN_YEAR + 1;
+    protected static final int NUM_BLOCKS = (NUM_YEARS + BLOCK_YEARS - 1) / BLOCK_YEARS;
+
+    public static final String CACHE_FILENAME = "season_table.dat";
+    protected static final int CACHE_VERSION = 1;
+
+    protected static final Object lock = new Object();
+    protected static final long[] table = new long[NUM_YEARS * NUM_SEASONS];
+    protected static final boolean[] blocks = new boolean[NUM_BLOCKS];
+    protected static File cacheFile = null;
+    protected static boolean cacheLoaded = false;
+    static {
+        Arrays.fill(table, NONE);
+    }
+
+    /**
+     * Persists the table to a file in the app's cache directory.
+     */
+    public static void initCacheFile(Context context)
+    {
+        if (context != null && cacheFile == null)
+        {
+            setCacheFile(new File(context.getCacheDir(), CACHE_FILENAME));
+            prefetch(Calendar.getInstance().get(Calendar.YEAR));
+        }
+    }
+
+    /**
+     * @param file the file used to persist the table (or null to keep the table in memory only)
+     */
+    public static void setCacheFile(File file)
+    {
+        synchronized (lock) {
+            cacheFile = file;
+            cacheLoaded = false;
+        }
+    }
+
+    /**
+     * Discards the table (in memory); the cache file is reloaded on next use.
+     */
+    public static void clear()
+    {
+        synchronized (lock) {
+            Arrays.fill(table, NONE);
+            Arrays.fill(blocks, false);
+            cacheLoaded = false;
+        }
+    }
+
+    /**
+     * @return the number of blocks currently held by the table
+     */
+    public static int getNumBlocks()
+    {
+        synchronized (lock)
+        {
+            int n = 0;
+            for (boolean block : blocks) {
+                if (block) {
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    /**
+     * @param season season index (e.g. VERNAL_EQUINOX)
+     * @param year the year
+     * @param northernHemisphere true if the seasons are as seen from the northern hemisphere (false swaps spring/autumn, summer/winter)
+     * @return the season millis, or NONE if the year is outside the table (or its block isn't solved yet; the block is requested)
+     */
+    public static long get(int season, int year, boolean northernHemisphere)
+    {
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            return NONE;
+        }
+        if (!northernHemisphere) {
+            season = (season + 2) % NUM_SEASONS;
+        }
+        int i = year - MIN_YEAR;
+        int block = i / BLOCK_YEARS;
+        synchronized (lock)
+        {
+            if (!cacheLoaded) {
+                loadCache();
+            }
+            if (blocks[block]) {
+                return table[i * NUM_SEASONS + season];
+            }
+        }
+        builder.requestBuild(block);
+        return NONE;
+    }
+
+    /**
+     * Requests that the block containing the given year is solved (in the background); years outside the table are ignored.
+     */
+    public static void prefetch(int year)
+    {
+        if (year >= MIN_YEAR && year <= MAX_YEAR) {
+            builder.requestBuild((year - MIN_YEAR) / BLOCK_YEARS);
+        }
+    }
+
+    protected static final CacheBuilder builder = new CacheBuilder("SeasonTable", new CacheBuilder.Builder()
+    {
+        @Override
+        public void build(int block)
+        {
+            synchronized (lock)
+            {
+                if (!cacheLoaded) {
+                    loadCache();
+                }
+                if (blocks[block]) {
+                    return;
+                }
+            }
+            long[] values = createBlock(block);    // solved outside the lock
+            synchronized (lock)
+            {
+                if (blocks[block]) {
+                    return;
+                }
+                System.arraycopy(values, 0, table, block * BLOCK_YEARS * NUM_SEASONS, values.length);
+                blocks[block] = true;
+            }
+            saveCache();
+        }
+    });
+
+    /**
+     * @return the AstronomicalSeason (northern hemisphere) for the given season index
+     */
+    public static AstronomicalSeason toSeason(int season)
+    {
+        switch (season) {
+            case SUMMER_SOLSTICE: return AstronomicalSeason.SUMMER_SOLSTICE;
+            case AUTUMNAL_EQUINOX: return AstronomicalSeason.AUTUMNAL_EQUINOX;
+            case WINTER_SOLSTICE: return AstronomicalSeason.WINTER_SOLSTICE;
+            case VERNAL_EQUINOX: default: return AstronomicalSeason.VERNAL_EQUINOX;
+        }
+    }
+
+    /**
+     * Solves the seasons for the given block.
+     * @return the block's values (packed like the table, starting from the block's first year)
+     */
+    protected static long[] createBlock(int block)
+    {
+        //long bench_start = System.nanoTime();
+        int i0 = block * BLOCK_YEARS;
+        int i1 = Math.min(i0 + BLOCK_YEARS, NUM_YEARS);
+        long[] values = new long[(i1 - i0) * NUM_SEASONS];
+        for (int i=i0; i<i1; i++)
+        {
+            for (int season=0; season<NUM_SEASONS; season++) {
+                values[(i - i0) * NUM_SEASONS + season] = TemporalType.MILLIS_SINCE_UNIX.from(toSeason(season).inYear(MIN_YEAR + i));
+            }
+        }
+        //long bench_end = System.nanoTime();
+        //Log.d("DEBUG", "SeasonTable: created block " + block + " :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
+        return values;
+    }
+
+    /**
+     * Reads previously solved blocks from the cache file; must hold lock.
+     */
+    protected static void loadCache()
+    {
+        cacheLoaded = true;
+        if (cacheFile == null || !cacheFile.exists() || cacheFile.length() == 0) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != CACHE_VERSION || in.readInt() != MIN_YEAR || in.readInt() != MAX_YEAR || in.readInt() != BLOCK_YEARS) {
+                Log.w("SeasonTable", "loadCache: version mismatch; ignoring " + cacheFile);
+                return;
+            }
+            boolean[] loaded = new boolean[NUM_BLOCKS];
+            for (int block=0; block<NUM_BLOCKS; block++) {
+                loaded[block] = in.readBoolean();
+            }
+            long[] values = new long[table.length];
+            for (int i=0; i<values.length; i++) {
+                values[i] = in.readLong();
+            }
+            for (int block=0; block<NUM_BLOCKS; block++)
+            {
+                if (loaded[block] && !blocks[block])
+                {
+                    int j0 = block * BLOCK_YEARS * NUM_SEASONS;
+                    int j1 = Math.min(j0 + BLOCK_YEARS * NUM_SEASONS, table.length);
+                    System.arraycopy(values, j0, table, j0, j1 - j0);
+                    blocks[block] = true;
+                }
+            }
+        } catch (IOException e) {
+            Log.e("SeasonTable", "loadCache: failed to read " + cacheFile + ": " + e);
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Requests that the table is written to the cache file (@see CacheFileWriter).
+     */
+    protected static void saveCache()
+    {
+        File file;
+        synchronized (lock) {
+            file = cacheFile;
+        }
+        cacheWriter.requestWrite(file);
+    }
+
+    protected static final CacheFileWriter cacheWriter = new CacheFileWriter("SeasonTable", new CacheFileWriter.Writer()
+    {
+        @Override
+        public void write(DataOutputStream out) throws IOException
+        {
+            boolean[] solved;
+            long[] values;
+            synchronized (lock)
+            {
+                solved = blocks.clone();
+                values = table.clone();
+            }
+            out.writeInt(CACHE_VERSION);
+            out.writeInt(MIN_YEAR);
+            out.writeInt(MAX_YEAR);
+            out.writeInt(BLOCK_YEARS);
+            for (boolean block : solved) {
+                out.writeBoolean(block);
+            }
+            for (long millis : values) {
+                out.writeLong(millis);
+            }
+        }
+    });
+
+    private static void close(Closeable stream)
+    {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Log.w("SeasonTable", "failed to close stream: " + e);
+            }
+        }
+    }
+}
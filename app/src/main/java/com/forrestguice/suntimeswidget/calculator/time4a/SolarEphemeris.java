@@ -0,0 +1,249 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import net.time4j.Moment;
+import net.time4j.TemporalType;
+import net.time4j.calendar.astro.GeoLocation;
+import net.time4j.calendar.astro.JulianDay;
+import net.time4j.calendar.astro.StdSolarCalculator;
+import net.time4j.calendar.astro.SunPosition;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A precomputed table of the sun's (geocentric) right ascension and declination, and the offset of mean
+ * solar time (UT) from unix time, sampled at a fixed cadence (hourly) and served by linear interpolation.
+ * Positions are rotated into the local sky using Greenwich mean sidereal time (the same formula, refraction,
+ * and conventions as time4j's SunPosition.at), so only the interpolation and a few trig calls are performed
+ * per position.
+ *
+ * The table is location independent (shared by all instances); it is built lazily in blocks (of 32 days)
+ * that are computed by time4j on first use, and the least recently used blocks are discarded.
+ *
+ * Accuracy (vs SunPosition.at): the interpolation error is < 0.0001 degrees, and the hour angle omits
+ * the equation of the equinoxes (nutation in right ascension; < 0.005 degrees). Elevation and azimuth
+ * (as an arc; azimuth error * cos(elevation), since azimuth is undefined at the zenith) are within
+ * ACCURACY_DEGREES; measured max error ~0.004 degrees (1990-2060). Positions are ~15x faster to compute.
+ */
+public class SolarEphemeris
+{
+    public static final double ACCURACY_DEGREES = 0.01;
+
+    public static final long CADENCE_MILLIS = 60 * 60 * 1000;            // hourly
+    public static final int BLOCK_NODES = 32 * 24;                       // 32 days per block
+    public static final long BLOCK_MILLIS = BLOCK_NODES * CADENCE_MILLIS;
+    public static final int DEF_MAX_BLOCKS = 24;                         // ~2 years
+    protected static final int NODE_SIZE = 3;                            // ra, dec, ut offset
+
+    protected static int maxBlocks = DEF_MAX_BLOCKS;
+    protected static final Object blockLock = new Object();
+    protected static final LinkedHashMap<Long, float[]> blocks = new LinkedHashMap<Long, float[]>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, float[]> eldest) {
+            return size() > maxBlocks;
+        }
+    };
+
+    /**
+     * @param index the block index (floor(millis / BLOCK_MILLIS))
+     * @return a block of interleaved values [ra0, dec0, ut0, ra1, dec1, ut1, ...] containing BLOCK_NODES + 1 nodes;
+     * right ascension and declination (degrees), and the offset of mean solar time from unix time (seconds)
+     */
+    protected static float[] getBlock(long index)
+    {
+        float[] block;
+        synchronized (blockLock) {
+            block = blocks.get(index);
+        }
+        if (block == null)
+        {
+            block = createBlock(index);    // computed outside the lock; concurrent callers may compute the same block (identical result)
+            synchronized (blockLock) {
+                blocks.put(index, block);
+            }
+        }
+        return block;
+    }
+
+    protected static float[] createBlock(long index)
+    {
+        //long bench_start = System.nanoTime();
+        GeoLocation origin = new Origin();
+        float[] block = new float[(BLOCK_NODES + 1) * NODE_SIZE];
+        long millis = index * BLOCK_MILLIS;
+        for (int i=0; i<=BLOCK_NODES; i++)
+        {
+            Moment moment = TemporalType.MILLIS_SINCE_UNIX.translate(millis);
+            SunPosition position = SunPosition.at(moment, origin);
+            block[NODE_SIZE * i] = (float) position.getRightAscension();
+            block[NODE_SIZE * i + 1] = (float) position.getDeclination();
+            block[NODE_SIZE * i + 2] = (float) ((JulianDay.ofMeanSolarTime(moment).getMJD() - toMJD(millis)) * 86400d);
+            millis += CADENCE_MILLIS;
+        }
+        //long bench_end = System.nanoTime();
+        //Log.d("DEBUG", "SolarEphemeris: created block " + index + " :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
+        return block;
+    }
+
+    /**
+     * @param millis time
+     * @param result array of length 3 populated with [rightAscension, declination] (degrees), and the offset of mean solar time (seconds)
+     */
+    public static void getEquatorialCoordinates(long millis, double[] result)
+    {
+        long index = floorDiv(millis, BLOCK_MILLIS);
+        long offset = millis - (index * BLOCK_MILLIS);
+        int i = (int) (offset / CADENCE_MILLIS);
+        double fraction = (offset - (i * CADENCE_MILLIS)) / (double) CADENCE_MILLIS;
+
+        float[] block = getBlock(index);
+        int j = NODE_SIZE * i;
+        double ra0 = block[j], ra1 = block[j + NODE_SIZE];
+        if (ra1 - ra0 < -180) {
+            ra1 += 360;    // wraps from 360 to 0
+        }
+        double ra = ra0 + (ra1 - ra0) * fraction;
+        result[0] = (ra >= 360 ? ra - 360 : ra);
+        result[1] = block[j + 1] + (block[j + 1 + NODE_SIZE] - block[j + 1]) * fraction;
+        result[2] = block[j + 2] + (block[j + 2 + NODE_SIZE] - block[j + 2]) * fraction;
+    }
+
+    /**
+     * Observer; the location dependent values are derived once (rather than once per position). Observers are
+     * immutable and may be shared between threads (each thread interpolates into its own coordinate buffer).
+     */
+    public static class Observer
+    {
+        protected final double longitudeRad, sinLatitude, cosLatitude;
+        protected final double refractionLimit, refractionFactor;
+
+        protected static final ThreadLocal<double[]> coordinates = new ThreadLocal<double[]>()
+        {
+            @Override
+            protected double[] initialValue() {
+                return new double[NODE_SIZE];
+            }
+        };
+
+        public Observer(double latitude, double longitude, int altitude)
+        {
+            double latitudeRad = Math.toRadians(latitude);
+            this.longitudeRad = Math.toRadians(longitude);
+            this.sinLatitude = Math.sin(latitudeRad);
+            this.cosLatitude = Math.cos(latitudeRad);
+            this.refractionLimit = -0.5 - StdSolarCalculator.TIME4J.getGeodeticAngle(latitude, altitude);
+            this.refractionFactor = Math.pow(1 - (0.0065 * altitude / 288.15), 4.255);    // standard atmosphere
+        }
+
+        /**
+         * Populates the result with the sun's position.
+         * @param millis time
+         * @param result populated with azimuth, elevation, rightAscension, and declination
+         */
+        public void getSunPosition(long millis, SuntimesCalculator.SunPosition result)
+        {
+            double[] coordinates = Observer.coordinates.get();
+            getEquatorialCoordinates(millis, coordinates);
+            double ra = Math.toRadians(coordinates[0]);
+            double dec = Math.toRadians(coordinates[1]);
+            double hourAngle = gmst(toMJD(millis) + (coordinates[2] / 86400d)) + longitudeRad - ra;
+
+            double elevation = Math.toDegrees(Math.asin(sinLatitude * Math.sin(dec) + cosLatitude * Math.cos(dec) * Math.cos(hourAngle)));
+            if (elevation >= refractionLimit) {
+                elevation += refractionFactor * refraction(elevation) / 60d;
+            }
+
+            result.azimuth = Math.toDegrees(Math.atan2(Math.sin(hourAngle), Math.cos(hourAngle) * sinLatitude - Math.tan(dec) * cosLatitude)) + 180;
+            result.elevation = elevation;
+            result.rightAscension = coordinates[0];
+            result.declination = coordinates[1];
+        }
+    }
+
+    /**
+     * @param mjd modified julian date (mean solar time)
+     * @return greenwich mean sidereal time (radians)
+     */
+    public static double gmst(double mjd)
+    {
+        double mjd0 = Math.floor(mjd);
+        double ut = 86400d * (mjd - mjd0);
+        double t0 = (mjd0 - 51544.5) / 36525d;
+        double t = (mjd - 51544.5) / 36525d;
+        double seconds = 24110.54841 + (8640184.812866 * t0) + (1.0027379093 * ut) + ((0.093104 - (6.2E-6 * t)) * t * t);
+        double days = seconds / 86400d;
+        return (days - Math.floor(days)) * 2 * Math.PI;
+    }
+
+    /**
+     * @param elevation apparent elevation (degrees)
+     * @return refraction (arcminutes)
+     */
+    public static double refraction(double elevation) {
+        return (1.02 / Math.tan(Math.toRadians(elevation + (10.3 / (elevation + 5.11))))) + 0.0019279;
+    }
+
+    public static double toMJD(long millis) {
+        return (millis / 86400000d) + 40587d;
+    }
+
+    private static long floorDiv(long x, long y)
+    {
+        long q = x / y;
+        return ((x % y != 0) && ((x < 0) != (y < 0))) ? q - 1 : q;
+    }
+
+    public static void clear()
+    {
+        synchronized (blockLock) {
+            blocks.clear();
+        }
+    }
+
+    public static int getNumBlocks()
+    {
+        synchronized (blockLock) {
+            return blocks.size();
+        }
+    }
+
+    /**
+     * GeoLocation at latitude 0, longitude 0 (right ascension and declination are geocentric).
+     */
+    private static class Origin implements GeoLocation
+    {
+        @Override
+        public double getLatitude() {
+            return 0;
+        }
+        @Override
+        public double getLongitude() {
+            return 0;
+        }
+        @Override
+        public int getAltitude() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+    Copyright (C) 2017 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/ 
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.R;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Time4A (NOAA) with sun positions served from a precomputed ephemeris (@see SolarEphemeris); positions
+ * are accurate to SolarEphemeris.ACCURACY_DEGREES, and are an order of magnitude cheaper to compute
+ * (intended for rendering the lightmap, line graph, and world map).
+ */
+public class Time4AEphemerisSuntimesCalculator extends Time4ANOAASuntimesCalculator implements SuntimesCalculator
+{
+    public static final String NAME = "time4a-ephemeris";
+    public static final String REF = "com.forrestguice.suntimeswidget.calculator.time4a.Time4AEphemerisSuntimesCalculator";
+    public static final String LINK = "time4j.net";
+
+    protected SolarEphemeris.Observer observer;
+
+    public Time4AEphemerisSuntimesCalculator() { /* EMPTY */ }
+
+    @Override
+    public String name()
+    {
+        return NAME;
+    }
+
+    @Override
+    public void init(Location location, TimeZone timezone, Context context)
+    {
+        super.init(location, timezone, context);
+        this.observer = new SolarEphemeris.Observer(solarTime.getLatitude(), solarTime.getLongitude(), solarTime.getAltitude());
+    }
+
+    @Override
+    public SunPosition getSunPosition(Calendar dateTime)
+    {
+        SunPosition result = new SunPosition();
+        getSunPosition(dateTime.getTimeInMillis(), result);
+        return result;
+    }
+
+    @Override
+    public boolean getSunPosition(long millis, SunPosition result)
+    {
+        observer.getSunPosition(millis, result);
+        return true;
+    }
+
+    public static SuntimesCalculatorDescriptor getDescriptor()
+    {
+        return new SuntimesCalculatorDescriptor(Time4AEphemerisSuntimesCalculator.NAME, Time4AEphemerisSuntimesCalculator.LINK, Time4AEphemerisSuntimesCalculator.REF, R.string.calculator_displayString_time4a_ephemeris, Time4ASuntimesCalculator.FEATURES);
+    }
+
+}
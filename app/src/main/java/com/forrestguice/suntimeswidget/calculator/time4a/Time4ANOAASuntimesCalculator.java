@@ -19,13 +19,23 @@
 package com.forrestguice.suntimeswidget.calculator.time4a;
 
 import com.forrestguice.suntimeswidget.R;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTable;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTableCalculator;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
 
+import net.time4j.Moment;
+import net.time4j.PlainDate;
+import net.time4j.calendar.astro.JulianDay;
+import net.time4j.calendar.astro.SolarTime;
 import net.time4j.calendar.astro.StdSolarCalculator;
+import net.time4j.scale.LeapSeconds;
+import net.time4j.scale.TimeScale;
 
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
 
-public class Time4ANOAASuntimesCalculator extends Time4ASuntimesCalculator implements SuntimesCalculator
+public class Time4ANOAASuntimesCalculator extends Time4ASuntimesCalculator implements SuntimesCalculator, RiseSetTableCalculator
 {
     public static final String NAME = "time4a-noaa";
     public static final String REF = "com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator";
@@ -45,6 +55,149 @@ public class Time4ANOAASuntimesCalculator extends Time4ASuntimesCalculator imple
         return StdSolarCalculator.NOAA;
     }
 
+    /**
+     * Solves a range of days, sharing the per-day terms between events. The NOAA algorithm solves every event
+     * from apparent noon (mean noon corrected by the equation of time), first estimating the hour angle using the
+     * declination at noon, then refining it using the declination at the estimate. Apparent noon and the declination
+     * at noon are the same for every event on a given day, so they are computed once per day; each event then only
+     * evaluates the declination at its own estimate (instead of two equations of time and two declinations per event).
+     * The results match the individual getters (truncated to seconds).
+     */
+    @Override
+    public RiseSetTable getRiseSetTable(Calendar startDate, int numDays, int events)
+    {
+        StdSolarCalculator calculator = getCalculator();
+        double longitude = solarTime.getLongitude();
+        double radLatitude = Math.toRadians(solarTime.getLatitude());
+        double sinLatitude = Math.sin(radLatitude);
+        double cosLatitude = Math.cos(radLatitude);
+
+        double[] cosZenith = new double[RiseSetTable.NUM_EVENTS];
+        for (int event=0; event<RiseSetTable.NUM_EVENTS; event++)
+        {
+            if (event != RiseSetTable.NOON && RiseSetTable.isSelected(events, event)) {
+                cosZenith[event] = Math.cos(Math.toRadians(zenithAngle(event)));
+            }
+        }
+
+        RiseSetTable table = new RiseSetTable(numDays);
+        Calendar day = (Calendar) startDate.clone();
+        for (int i=0; i<numDays; i++)
+        {
+            table.setDay(i, day.getTimeInMillis());
+            Moment noon = apparentNoon(calculator, calendarToPlainDate(day), longitude);
+            double jd = JulianDay.ofEphemerisTime(noon).getValue();
+            double declination = Math.toRadians(calculator.declination(jd));
+            double sinDeclination = Math.sin(declination);
+            double cosDeclination = Math.cos(declination);
+
+            for (int event=0; event<RiseSetTable.NUM_EVENTS; event++)
+            {
+                if (!RiseSetTable.isSelected(events, event)) {
+                    continue;
+                }
+                if (event == RiseSetTable.NOON) {
+                    table.set(event, i, momentToMillis(noon.with(Moment.PRECISION, TimeUnit.SECONDS)));
+                    continue;
+                }
+
+                boolean rising = isRisingEvent(event);
+                double t = hourAngle(cosZenith[event], sinLatitude, cosLatitude, sinDeclination, cosDeclination);    // estimate
+                if (Double.isNaN(t)) {
+                    continue;    // NONE
+                }
+                double declination1 = Math.toRadians(calculator.declination(jd + (rising ? -t : t) / 86400d));
+                t = hourAngle(cosZenith[event], sinLatitude, cosLatitude, Math.sin(declination1), Math.cos(declination1));
+                if (Double.isNaN(t)) {
+                    continue;
+                }
+                if (rising) {
+                    t = -t;
+                }
+
+                long seconds = (long) Math.floor(t);
+                int nanos = (int) ((t - seconds) * 1e9);
+                Moment moment = noon.plus(seconds, TimeUnit.SECONDS).plus(nanos, TimeUnit.NANOSECONDS);
+                table.set(event, i, momentToMillis(moment.with(Moment.PRECISION, TimeUnit.SECONDS)));
+            }
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        return table;
+    }
+
+    /**
+     * @return apparent noon; mean noon at the given longitude, corrected by the equation of time (twice)
+     */
+    protected static Moment apparentNoon(SolarTime.Calculator calculator, PlainDate date, double longitude)
+    {
+        double meanNoon = (double) (date.getDaysSinceEpochUTC() * 86400L + 12 * 3600) - (longitude * 240d);    // seconds since the UTC epoch (1972)
+        long seconds = (long) Math.floor(meanNoon);
+        int nanos = (int) ((meanNoon - seconds) * 1e9);
+        TimeScale scale = TimeScale.UT;
+        if (!LeapSeconds.getInstance().isEnabled())
+        {
+            seconds += 63072000L;    // 1970 to 1972
+            scale = TimeScale.POSIX;
+        }
+        Moment mean = Moment.of(seconds, nanos, scale);
+
+        Moment noon = mean;
+        for (int i=0; i<2; i++)
+        {
+            double eot = calculator.equationOfTime(JulianDay.ofEphemerisTime(noon).getValue());
+            long eotSeconds = (long) Math.floor(eot);
+            int eotNanos = (int) ((eot - eotSeconds) * 1e9);
+            noon = mean.minus(eotSeconds, TimeUnit.SECONDS).minus(eotNanos, TimeUnit.NANOSECONDS);
+        }
+        return noon;
+    }
+
+    /**
+     * @return the hour angle (seconds) of the given zenith angle, or NaN if the sun doesn't reach it
+     */
+    protected static double hourAngle(double cosZenith, double sinLatitude, double cosLatitude, double sinDeclination, double cosDeclination)
+    {
+        double cosH = (cosZenith - (sinDeclination * sinLatitude)) / (cosDeclination * cosLatitude);
+        if (Double.compare(cosH, 1) > 0 || Double.compare(cosH, -1) < 0) {
+            return Double.NaN;
+        }
+        return Math.toDegrees(Math.acos(cosH)) * 240d;
+    }
+
+    /**
+     * @param event event index (e.g. RiseSetTable.CIVIL_RISE)
+     * @return the zenith angle of the event (the same angles used by eventFunction)
+     */
+    protected double zenithAngle(int event)
+    {
+        SolarTime.Calculator calculator = solarTime.getCalculator();
+        double geodeticAngle = calculator.getGeodeticAngle(solarTime.getLatitude(), solarTime.getAltitude());
+        switch (event)
+        {
+            case RiseSetTable.OFFICIAL_RISE: case RiseSetTable.OFFICIAL_SET: return calculator.getZenithAngle(solarTime.getLatitude(), solarTime.getAltitude());
+            case RiseSetTable.CIVIL_RISE: case RiseSetTable.CIVIL_SET: return 90 + geodeticAngle + TWILIGHT_CIVIL;
+            case RiseSetTable.NAUTICAL_RISE: case RiseSetTable.NAUTICAL_SET: return 90 + geodeticAngle + TWILIGHT_NAUTICAL;
+            case RiseSetTable.ASTRO_RISE: case RiseSetTable.ASTRO_SET: return 90 + geodeticAngle + TWILIGHT_ASTRONOMICAL;
+            case RiseSetTable.GOLDEN_MORNING: case RiseSetTable.GOLDEN_EVENING: return 90 + geodeticAngle - SUN_ALTITUDE_GOLDEN;
+            case RiseSetTable.BLUE8_RISE: case RiseSetTable.BLUE8_SET: return 90 + geodeticAngle + SUN_ALTITUDE_BLUE_HIGH;
+            case RiseSetTable.BLUE4_RISE: case RiseSetTable.BLUE4_SET: return 90 + geodeticAngle + SUN_ALTITUDE_BLUE_LOW;
+            default: throw new IllegalArgumentException("unrecognized event: " + event);
+        }
+    }
+
+    public static final double TWILIGHT_CIVIL = 6, TWILIGHT_NAUTICAL = 12, TWILIGHT_ASTRONOMICAL = 18;    // Twilight angles (degrees below the horizon)
+
+    protected static boolean isRisingEvent(int event)
+    {
+        switch (event)
+        {
+            case RiseSetTable.ASTRO_RISE: case RiseSetTable.NAUTICAL_RISE: case RiseSetTable.CIVIL_RISE: case RiseSetTable.OFFICIAL_RISE:
+            case RiseSetTable.GOLDEN_MORNING: case RiseSetTable.BLUE8_RISE: case RiseSetTable.BLUE4_RISE:
+                return true;
+            default: return false;
+        }
+    }
+
     public static SuntimesCalculatorDescriptor getDescriptor()
     {
         return new SuntimesCalculatorDescriptor(Time4ANOAASuntimesCalculator.NAME, Time4ANOAASuntimesCalculator.LINK, Time4ANOAASuntimesCalculator.REF, R.string.calculator_displayString_time4a_noaa, Time4ASuntimesCalculator.FEATURES);
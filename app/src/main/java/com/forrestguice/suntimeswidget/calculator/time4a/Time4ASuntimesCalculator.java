@@ -21,6 +21,9 @@ package com.forrestguice.suntimeswidget.calculator.time4a;
 import android.content.Context;
 import android.util.Log;
 
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillisCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTable;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 
@@ -36,6 +39,7 @@ import net.time4j.calendar.astro.StdSolarCalculator;
 import net.time4j.calendar.astro.Twilight;
 import net.time4j.engine.CalendarDate;
 import net.time4j.engine.ChronoFunction;
+import net.time4j.engine.EpochDays;
 import net.time4j.tz.TZID;
 import net.time4j.tz.Timezone;
 import net.time4j.tz.ZonalOffset;
@@ -44,7 +48,7 @@ import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
-public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
+public abstract class Time4ASuntimesCalculator implements SuntimesCalculator, EventMillisCalculator
 {
     public static final int[] FEATURES = new int[] { FEATURE_RISESET, FEATURE_SOLSTICE, FEATURE_GOLDBLUE, FEATURE_POSITION, FEATURE_RISESET1 };
 
@@ -78,6 +82,8 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
         this.solarTime = SolarTime.ofLocation(location.getLatitudeAsDouble(), location.getLongitudeAsDouble(), clampAltitude(location.getAltitudeAsInteger()), getCalculator());
         this.timezone = timezone;
         this.location = location;
+        LunarEventIndex.initCacheFile(context);
+        SeasonTable.initCacheFile(context);
     }
 
     @Override
@@ -276,6 +282,64 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
         return momentToCalendar(localDate.get(sunset));
     }
 
+    /**
+     * @param event event index (e.g. RiseSetTable.CIVIL_RISE)
+     * @return a function that solves the event for a given date; official and twilight events use time4j's Twilight,
+     * golden and blue hour use the same angles as getMorningGoldenHourForDate, getMorningBlueHourForDate (etc).
+     */
+    protected ChronoFunction<CalendarDate, Moment> eventFunction(int event)
+    {
+        switch (event)
+        {
+            case RiseSetTable.ASTRO_RISE: return solarTime.sunrise(Twilight.ASTRONOMICAL);
+            case RiseSetTable.NAUTICAL_RISE: return solarTime.sunrise(Twilight.NAUTICAL);
+            case RiseSetTable.CIVIL_RISE: return solarTime.sunrise(Twilight.CIVIL);
+            case RiseSetTable.OFFICIAL_RISE: return solarTime.sunrise();
+            case RiseSetTable.NOON: return solarTime.transitAtNoon();
+            case RiseSetTable.OFFICIAL_SET: return solarTime.sunset();
+            case RiseSetTable.CIVIL_SET: return solarTime.sunset(Twilight.CIVIL);
+            case RiseSetTable.NAUTICAL_SET: return solarTime.sunset(Twilight.NAUTICAL);
+            case RiseSetTable.ASTRO_SET: return solarTime.sunset(Twilight.ASTRONOMICAL);
+            case RiseSetTable.GOLDEN_MORNING: return eventAtAngle(-SUN_ALTITUDE_GOLDEN, true);
+            case RiseSetTable.GOLDEN_EVENING: return eventAtAngle(-SUN_ALTITUDE_GOLDEN, false);
+            case RiseSetTable.BLUE8_RISE: return eventAtAngle(SUN_ALTITUDE_BLUE_HIGH, true);
+            case RiseSetTable.BLUE4_RISE: return eventAtAngle(SUN_ALTITUDE_BLUE_LOW, true);
+            case RiseSetTable.BLUE4_SET: return eventAtAngle(SUN_ALTITUDE_BLUE_LOW, false);
+            case RiseSetTable.BLUE8_SET: return eventAtAngle(SUN_ALTITUDE_BLUE_HIGH, false);
+            default: throw new IllegalArgumentException("unrecognized event: " + event);
+        }
+    }
+
+    /**
+     * @param depression degrees below the horizon (negative values are above the horizon)
+     * @param rising true for the morning event, false for the evening event
+     * @return a function that solves sunrise (or sunset) at the given angle (adjusted for altitude)
+     */
+    protected ChronoFunction<CalendarDate, Moment> eventAtAngle(double depression, final boolean rising)
+    {
+        final SolarTime.Calculator calculator = solarTime.getCalculator();
+        final double latitude = solarTime.getLatitude();
+        final double longitude = solarTime.getLongitude();
+        final double zenithAngle = 90 + calculator.getGeodeticAngle(latitude, clampAltitude(solarTime.getAltitude())) + depression;
+        return new ChronoFunction<CalendarDate, Moment>()
+        {
+            @Override
+            public Moment apply(CalendarDate date) {
+                return (rising ? calculator.sunrise(date, latitude, longitude, zenithAngle)
+                               : calculator.sunset(date, latitude, longitude, zenithAngle));
+            }
+        };
+    }
+
+    @Override
+    public long getEventMillis(int event, long dateMillis)
+    {
+        if (event < 0 || event >= RiseSetTable.NUM_EVENTS) {
+            return EventMillis.NONE;
+        }
+        return momentToMillis(millisToPlainDate(dateMillis).get(eventFunction(event)));
+    }
+
     @Override
     public Calendar getVernalEquinoxForYear(Calendar date)
     {
@@ -285,32 +349,39 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
     @Override
     public Calendar getSpringEquinoxForYear(Calendar date)
     {
-        AstronomicalSeason vernalEquinox = adjustSeasonToHemisphere(AstronomicalSeason.VERNAL_EQUINOX);
-        Moment moment = vernalEquinox.inYear(date.get(Calendar.YEAR));
-        return momentToCalendar(moment);
+        return getSeasonForYear(SeasonTable.VERNAL_EQUINOX, date.get(Calendar.YEAR));
     }
 
     @Override
     public Calendar getSummerSolsticeForYear(Calendar date)
     {
-        AstronomicalSeason summerSolstice = adjustSeasonToHemisphere(AstronomicalSeason.SUMMER_SOLSTICE);
-        Moment moment = summerSolstice.inYear(date.get(Calendar.YEAR));
-        return momentToCalendar(moment);
+        return getSeasonForYear(SeasonTable.SUMMER_SOLSTICE, date.get(Calendar.YEAR));
     }
 
     @Override
     public Calendar getAutumnalEquinoxForYear(Calendar date)
     {
-        AstronomicalSeason autumnalEquinox = adjustSeasonToHemisphere(AstronomicalSeason.AUTUMNAL_EQUINOX);
-        Moment moment = autumnalEquinox.inYear(date.get(Calendar.YEAR));
-        return momentToCalendar(moment);
+        return getSeasonForYear(SeasonTable.AUTUMNAL_EQUINOX, date.get(Calendar.YEAR));
     }
 
     @Override
     public Calendar getWinterSolsticeForYear(Calendar date)
     {
-        AstronomicalSeason winterSolstice = adjustSeasonToHemisphere(AstronomicalSeason.WINTER_SOLSTICE);
-        Moment moment = winterSolstice.inYear(date.get(Calendar.YEAR));
+        return getSeasonForYear(SeasonTable.WINTER_SOLSTICE, date.get(Calendar.YEAR));
+    }
+
+    /**
+     * @param season season index (e.g. SeasonTable.VERNAL_EQUINOX)
+     * @return a Calendar for the season (adjusted to hemisphere); looked up from the SeasonTable, or solved if the year is outside the table
+     */
+    protected Calendar getSeasonForYear(int season, int year)
+    {
+        long millis = SeasonTable.get(season, year, (this.solarTime.getLatitude() >= 0));
+        if (millis != SeasonTable.NONE) {
+            return EventMillis.toCalendar(millis, timezone);
+        }
+        AstronomicalSeason astronomicalSeason = adjustSeasonToHemisphere(SeasonTable.toSeason(season));
+        Moment moment = astronomicalSeason.inYear(year);
         return momentToCalendar(moment);
     }
 
@@ -318,9 +389,14 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
     public long getTropicalYearLength(Calendar date)
     {
         int year = date.get(Calendar.YEAR);
-        AstronomicalSeason vernalEquinox = AstronomicalSeason.VERNAL_EQUINOX.onNorthernHemisphere();
-        long t0 = TemporalType.MILLIS_SINCE_UNIX.from(vernalEquinox.inYear(year));
-        long t1 = TemporalType.MILLIS_SINCE_UNIX.from(vernalEquinox.inYear(year + 1));
+        long t0 = SeasonTable.get(SeasonTable.VERNAL_EQUINOX, year, true);
+        long t1 = SeasonTable.get(SeasonTable.VERNAL_EQUINOX, year + 1, true);
+        if (t0 == SeasonTable.NONE || t1 == SeasonTable.NONE)
+        {
+            AstronomicalSeason vernalEquinox = AstronomicalSeason.VERNAL_EQUINOX.onNorthernHemisphere();
+            t0 = TemporalType.MILLIS_SINCE_UNIX.from(vernalEquinox.inYear(year));
+            t1 = TemporalType.MILLIS_SINCE_UNIX.from(vernalEquinox.inYear(year + 1));
+        }
         return t1 - t0;
     }
 
@@ -349,6 +425,10 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
         return moment.toZonalTimestamp(zonalOffset).toDate();
     }
 
+    protected PlainDate millisToPlainDate(long millis) {
+        return PlainDate.of(EventMillis.epochDay(millis, timezone), EpochDays.UNIX);
+    }
+
     protected Calendar momentToCalendar(Moment moment)
     {
         Calendar retValue = null;
@@ -361,6 +441,10 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
         return retValue;
     }
 
+    protected static long momentToMillis(Moment moment) {
+        return (moment != null ? TemporalType.MILLIS_SINCE_UNIX.from(moment) : EventMillis.NONE);
+    }
+
     protected AstronomicalSeason adjustSeasonToHemisphere( AstronomicalSeason season )
     {
         boolean northernHemisphere = (this.solarTime.getLatitude() >= 0);
@@ -395,6 +479,10 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
     @Override
     public Calendar getMoonPhaseNextDate(MoonPhase phase, Calendar date)
     {
+        long millis = LunarEventIndex.next(LunarEventIndex.toType(phase), date.getTimeInMillis());
+        if (millis != LunarEventIndex.NONE) {
+            return EventMillis.toCalendar(millis, timezone);
+        }
         net.time4j.calendar.astro.MoonPhase moonPhase = toPhase(phase);
         Moment phaseMoment = moonPhase.after(TemporalType.JAVA_UTIL_DATE.translate(date.getTime()));
         return momentToCalendar(phaseMoment);
@@ -414,30 +502,42 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
     @Override
     public SunPosition getSunPosition(Calendar dateTime)
     {
-        Moment moment = TemporalType.JAVA_UTIL_DATE.translate(dateTime.getTime());
-        net.time4j.calendar.astro.SunPosition position = net.time4j.calendar.astro.SunPosition.at(moment, solarTime);
-
         SunPosition result = new SunPosition();
+        getSunPosition(dateTime.getTimeInMillis(), result);
+        return result;
+    }
+
+    @Override
+    public boolean getSunPosition(long millis, SunPosition result)
+    {
+        Moment moment = TemporalType.MILLIS_SINCE_UNIX.translate(millis);
+        net.time4j.calendar.astro.SunPosition position = net.time4j.calendar.astro.SunPosition.at(moment, solarTime);
         result.azimuth = position.getAzimuth();
         result.elevation = position.getElevation();
         result.rightAscension = position.getRightAscension();
         result.declination = position.getDeclination();
-        return result;
+        return true;
     }
 
     @Override
     public MoonPosition getMoonPosition(Calendar dateTime)
     {
-        Moment moment = TemporalType.JAVA_UTIL_DATE.translate(dateTime.getTime());
-        net.time4j.calendar.astro.MoonPosition position = net.time4j.calendar.astro.MoonPosition.at(moment, solarTime);
-
         MoonPosition result = new MoonPosition();
+        getMoonPosition(dateTime.getTimeInMillis(), result);
+        return result;
+    }
+
+    @Override
+    public boolean getMoonPosition(long millis, MoonPosition result)
+    {
+        Moment moment = TemporalType.MILLIS_SINCE_UNIX.translate(millis);
+        net.time4j.calendar.astro.MoonPosition position = net.time4j.calendar.astro.MoonPosition.at(moment, solarTime);
         result.azimuth = position.getAzimuth();
         result.elevation = position.getElevation();
         result.rightAscension = position.getRightAscension();
         result.declination = position.getDeclination();
         result.distance = position.getDistance();
-        return result;
+        return true;
     }
 
     @Override
@@ -458,6 +558,10 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
     @Override
     public Calendar getMoonPerigeeNextDate(Calendar dateTime)
     {
+        long millis = LunarEventIndex.next(LunarEventIndex.PERIGEE, dateTime.getTimeInMillis());
+        if (millis != LunarEventIndex.NONE) {
+            return EventMillis.toCalendar(millis, timezone);
+        }
         Moment moment = TemporalType.JAVA_UTIL_DATE.translate(dateTime.getTime());
         Moment apogeeMoment = net.time4j.calendar.astro.MoonPosition.inNextPerigeeAfter(moment);
         return momentToCalendar(apogeeMoment);
@@ -466,6 +570,10 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
     @Override
     public Calendar getMoonApogeeNextDate(Calendar dateTime)
     {
+        long millis = LunarEventIndex.next(LunarEventIndex.APOGEE, dateTime.getTimeInMillis());
+        if (millis != LunarEventIndex.NONE) {
+            return EventMillis.toCalendar(millis, timezone);
+        }
         Moment moment = TemporalType.JAVA_UTIL_DATE.translate(dateTime.getTime());
         Moment apogeeMoment = net.time4j.calendar.astro.MoonPosition.inNextApogeeAfter(moment);
         return momentToCalendar(apogeeMoment);
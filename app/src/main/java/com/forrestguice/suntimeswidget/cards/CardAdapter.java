@@ -23,6 +23,8 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.Rect;
+import android.os.AsyncTask;
+import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
@@ -39,6 +41,8 @@ import android.view.ViewGroup;
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.SuntimesUtils;
 import com.forrestguice.suntimeswidget.alarmclock.AlarmEventProvider;
+import com.forrestguice.suntimeswidget.calculator.RangeExecutor;
+import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
 import com.forrestguice.suntimeswidget.calculator.SuntimesMoonData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
@@ -51,6 +55,7 @@ import com.forrestguice.suntimeswidget.themes.SuntimesTheme;
 import com.forrestguice.suntimeswidget.views.ViewUtils;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Set;
@@ -103,16 +108,97 @@ public class CardAdapter extends RecyclerView.Adapter<CardViewHolder>
     {
         Pair<SuntimesRiseSetDataset, SuntimesMoonData> retValue;
         data.clear();
+        dataGeneration++;
         invalidated = false;
         initOptions(context);
-        initData(context, TODAY_POSITION - 1);
         retValue = initData(context, TODAY_POSITION);
-        initData(context, TODAY_POSITION + 1);
-        initData(context, TODAY_POSITION + 2);
+        prefetchData(context, retValue, new int[] { TODAY_POSITION - 1, TODAY_POSITION + 1, TODAY_POSITION + 2 });
         notifyDataSetChanged();
         return retValue;
     }
 
+    /**
+     * Calculates data for the given positions in the background (in parallel using RangeExecutor); results are handed
+     * back on the main thread, where positions that were created in the meantime are kept. The task uses its own copies
+     * of the template's calculators, and each result is re-attached to the template's calculators before it is published
+     * (so a retained dataset never holds a calculator that belongs to some other thread).
+     * @param template data for an existing position
+     * @param positions positions to calculate (existing positions are skipped)
+     */
+    protected void prefetchData(final Context context, @Nullable Pair<SuntimesRiseSetDataset, SuntimesMoonData> template, int[] positions)
+    {
+        if (template == null || template.first == null || invalidated) {
+            return;
+        }
+        final SuntimesCalculator sunCalculator = template.first.calculator();
+        final SuntimesCalculatorDescriptor sunDescriptor = template.first.calculatorMode();
+        final SuntimesCalculator moonCalculator = (template.second != null ? template.second.calculator() : null);
+        final SuntimesCalculatorDescriptor moonDescriptor = (template.second != null ? template.second.calculatorMode() : null);
+
+        final ArrayList<Integer> missing = new ArrayList<>();
+        for (int position : positions) {
+            if (!data.containsKey(position)) {
+                missing.add(position);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        final int generation = dataGeneration;
+        AsyncTask<Void, Void, Pair<SuntimesRiseSetDataset, SuntimesMoonData>[]> task = new AsyncTask<Void, Void, Pair<SuntimesRiseSetDataset, SuntimesMoonData>[]>()
+        {
+            @Override
+            protected Pair<SuntimesRiseSetDataset, SuntimesMoonData>[] doInBackground(Void... params)
+            {
+                final SuntimesCalculator sunCopy = (sunCalculator != null ? RangeExecutor.copyCalculator(sunCalculator, context) : null);
+                final SuntimesCalculator moonCopy = (moonCalculator != null ? RangeExecutor.copyCalculator(moonCalculator, context) : null);
+
+                @SuppressWarnings("unchecked")
+                final Pair<SuntimesRiseSetDataset, SuntimesMoonData>[] results = new Pair[missing.size()];
+                RangeExecutor.execute(context, results.length, 1, new RangeExecutor.RangeTask()
+                {
+                    @Override
+                    public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+                    {
+                        for (int i=from; i<to; i++) {
+                            results[i] = createData(context, missing.get(i), workspace.getCalculator(sunCopy), sunDescriptor, workspace.getCalculator(moonCopy), moonDescriptor);
+                        }
+                    }
+                }, sunCopy, moonCopy);
+                return results;
+            }
+
+            @Override
+            protected void onPostExecute(Pair<SuntimesRiseSetDataset, SuntimesMoonData>[] results)
+            {
+                if (invalidated || generation != dataGeneration) {
+                    return;    // discarded by initData or invalidateData
+                }
+                for (int i=0; i<results.length; i++)
+                {
+                    int position = missing.get(i);
+                    if (results[i] != null && !data.containsKey(position))
+                    {
+                        if (sunCalculator != null) {
+                            results[i].first.setCalculator(sunCalculator, sunDescriptor);
+                        }
+                        if (results[i].second != null && moonCalculator != null) {
+                            results[i].second.setCalculator(moonCalculator, moonDescriptor);
+                        }
+                        data.put(position, results[i]);
+                    }
+                }
+            }
+        };
+        if (Build.VERSION.SDK_INT >= 11) {
+            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        } else {
+            task.execute();
+        }
+    }
+    private int dataGeneration = 0;    // incremented whenever data is cleared (pending prefetch results are discarded)
+
     public Pair<SuntimesRiseSetDataset, SuntimesMoonData> initData(Context context, int position)
     {
         Pair<SuntimesRiseSetDataset, SuntimesMoonData> dataPair = data.get(position);
@@ -122,7 +208,13 @@ public class CardAdapter extends RecyclerView.Adapter<CardViewHolder>
         return dataPair;
     }
 
-    protected Pair<SuntimesRiseSetDataset, SuntimesMoonData> createData(Context context, int position)
+    protected Pair<SuntimesRiseSetDataset, SuntimesMoonData> createData(Context context, int position) {
+        return createData(context, position, null, null, null, null);
+    }
+
+    protected Pair<SuntimesRiseSetDataset, SuntimesMoonData> createData(Context context, int position,
+                                                                        @Nullable SuntimesCalculator sunCalculator, @Nullable SuntimesCalculatorDescriptor sunDescriptor,
+                                                                        @Nullable SuntimesCalculator moonCalculator, @Nullable SuntimesCalculatorDescriptor moonDescriptor)
     {
         Calendar date = Calendar.getInstance(options.timezone);
         if (options.dateMode != WidgetSettings.DateMode.CURRENT_DATE) {
@@ -139,8 +231,12 @@ public class CardAdapter extends RecyclerView.Adapter<CardViewHolder>
             sun.putData(eventID, d);
         }
         sun.setTodayIs(date);
-        for (String id : sun.getDataModes()) {
+        for (String id : sun.getDataModes())
+        {
             sun.getData(id).setCompareMode(options.comparisonMode);
+            if (sunCalculator != null) {
+                sun.getData(id).setCalculator(sunCalculator, sunDescriptor);
+            }
         }
         sun.calculateData();
 
@@ -148,6 +244,9 @@ public class CardAdapter extends RecyclerView.Adapter<CardViewHolder>
         if (options.showMoon)
         {
             moon = new SuntimesMoonData(context, 0, "moon");
+            if (moonCalculator != null) {
+                moon.setCalculator(moonCalculator, moonDescriptor);
+            }
             moon.setTodayIs(date);
             moon.calculate();
         }
@@ -320,6 +419,7 @@ public class CardAdapter extends RecyclerView.Adapter<CardViewHolder>
     {
         invalidated = true;
         data.clear();
+        dataGeneration++;
         notifyDataSetChanged();
     }
 
@@ -20,6 +20,7 @@ package com.forrestguice.suntimeswidget.equinox;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import android.support.v7.widget.RecyclerView;
@@ -30,7 +31,10 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.forrestguice.suntimeswidget.calculator.RangeExecutor;
+import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
 import com.forrestguice.suntimeswidget.calculator.SuntimesEquinoxSolsticeDataset;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
 import com.forrestguice.suntimeswidget.themes.SuntimesTheme;
 import com.forrestguice.suntimeswidget.views.ViewUtils;
@@ -166,12 +170,61 @@ public class EquinoxDatasetAdapter extends RecyclerView.Adapter<EquinoxDatasetVi
         return retValue;
     }
 
-    protected SuntimesEquinoxSolsticeDataset createData(Context context, int position)
+    /**
+     * Initialize data for positions [from, to); missing positions are calculated in parallel (the first
+     * on this thread, the remaining by RangeExecutor using copies of the first position's calculator). Results are
+     * re-attached to the first position's calculator before they are kept.
+     * @param context
+     * @param from first position (inclusive)
+     * @param to last position (exclusive)
+     */
+    public void initData(final Context context, int from, int to)
+    {
+        final ArrayList<Integer> positions = new ArrayList<>();
+        for (int position = from; position < to; position++) {
+            if (!data.containsKey(position)) {
+                positions.add(position);
+            }
+        }
+        if (positions.isEmpty()) {
+            return;
+        }
+
+        SuntimesEquinoxSolsticeDataset first = initData(context, positions.get(0));
+        final SuntimesCalculator calculator = first.calculator();
+        final SuntimesCalculatorDescriptor descriptor = first.dataEquinoxSpring.calculatorMode();
+        final SuntimesEquinoxSolsticeDataset[] results = new SuntimesEquinoxSolsticeDataset[positions.size() - 1];
+        RangeExecutor.execute(context, results.length, 1, new RangeExecutor.RangeTask()
+        {
+            @Override
+            public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+            {
+                for (int i=from; i<to; i++) {
+                    results[i] = createData(context, positions.get(i + 1), workspace.getCalculator(calculator), descriptor);
+                }
+            }
+        }, calculator);
+
+        for (int i=0; i<results.length; i++)
+        {
+            results[i].setCalculator(calculator, descriptor);    // re-attached; results computed by workers hold the worker's copy
+            data.put(positions.get(i + 1), results[i]);
+        }
+    }
+
+    protected SuntimesEquinoxSolsticeDataset createData(Context context, int position) {
+        return createData(context, position, null, null);
+    }
+
+    protected SuntimesEquinoxSolsticeDataset createData(Context context, int position, @Nullable SuntimesCalculator calculator, @Nullable SuntimesCalculatorDescriptor descriptor)
     {
         Calendar date = Calendar.getInstance();
         date.add(Calendar.YEAR, position - CENTER_POSITION);
 
         SuntimesEquinoxSolsticeDataset retValue = new SuntimesEquinoxSolsticeDataset(context, 0);
+        if (calculator != null) {
+            retValue.dataEquinoxSpring.setCalculator(calculator, descriptor);
+        }
         retValue.setTodayIs(date);
         retValue.calculateData();
         return retValue;
@@ -179,6 +232,7 @@ public class EquinoxDatasetAdapter extends RecyclerView.Adapter<EquinoxDatasetVi
 
     public int highlightNote(Context context)
     {
+        initData(context, CENTER_POSITION - 1, CENTER_POSITION + 2);
         ArrayList<Pair<Integer,Calendar>> pageInfo = new ArrayList<>();
         int position = CENTER_POSITION - 1;
         do {
@@ -33,6 +33,7 @@ import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.forrestguice.suntimeswidget.ExportTask;
+import com.forrestguice.suntimeswidget.PauseCondition;
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 
@@ -55,20 +56,22 @@ public class BuildPlacesTask extends AsyncTask<Object, Object, Integer>
     private GetFixDatabaseAdapter db;
     private WeakReference<Context> contextRef;
 
-    private boolean isPaused = false;
+    public static final int PROGRESS_INTERVAL = 100;    // publish progress every n places
+
+    private final PauseCondition pauseCondition = new PauseCondition();
     public void pauseTask()
     {
-        isPaused = true;
+        pauseCondition.pause();
         //Log.d("DEBUG", "BuildPlacesTask paused");
     }
     public void resumeTask()
     {
-        isPaused = false;
+        pauseCondition.resume();
         //Log.d("DEBUG", "BuildPlacesTask resumed");
     }
     public boolean isPaused()
     {
-        return isPaused;
+        return pauseCondition.isPaused();
     }
 
     public BuildPlacesTask(Context context)
@@ -198,8 +201,12 @@ public class BuildPlacesTask extends AsyncTask<Object, Object, Integer>
             });
 
             Cursor cursor = db.getAllPlaces(0, false);
-            for (int i=0; i<locations.size(); i++)
+            int n = locations.size();
+            for (int i=0; i<n; i++)
             {
+                if (isCancelled()) {
+                    break;
+                }
                 Location location = locations.get(i);
                 int p = GetFixDatabaseAdapter.findPlaceByName(location.getLabel(), cursor);
                 if (p < 0)    // if not found
@@ -207,6 +214,9 @@ public class BuildPlacesTask extends AsyncTask<Object, Object, Integer>
                     db.addPlace(location, PlaceItem.TAG_DEFAULT);
                     result++;
                 }
+                if ((i + 1) % PROGRESS_INTERVAL == 0 || (i + 1) == n) {
+                    publishProgress(i + 1, n);
+                }
             }
 
             Log.i("BuildPlacesTask", "buildPlaces: " + result);
@@ -237,11 +247,7 @@ public class BuildPlacesTask extends AsyncTask<Object, Object, Integer>
         int result = param_clearPlaces ? clearPlaces()
                                        : buildPlaces(param_source);
 
-        long endTime = System.currentTimeMillis();
-        while ((endTime - startTime) < MIN_WAIT_TIME || isPaused)
-        {
-            endTime = System.currentTimeMillis();
-        }
+        pauseCondition.awaitFinish(startTime, MIN_WAIT_TIME);
         return result;
     }
 
@@ -251,6 +257,17 @@ public class BuildPlacesTask extends AsyncTask<Object, Object, Integer>
         signalStarted();
     }
 
+    /**
+     * @param progress 0: Integer (places processed), 1: Integer (total places)
+     */
+    @Override
+    protected void onProgressUpdate(Object... progress)
+    {
+        if (progress.length >= 2) {
+            signalProgress((Integer) progress[0], (Integer) progress[1]);
+        }
+    }
+
     @Override
     protected void onPostExecute(Integer result)
     {
@@ -273,6 +290,7 @@ public class BuildPlacesTask extends AsyncTask<Object, Object, Integer>
     public static abstract class TaskListener
     {
         public void onStarted() {}
+        public void onProgress( int current, int max ) {}
         public void onFinished( Integer result ) {}
     }
 
@@ -281,6 +299,11 @@ public class BuildPlacesTask extends AsyncTask<Object, Object, Integer>
         if (taskListener != null)
             taskListener.onStarted();
     }
+    private void signalProgress( int current, int max )
+    {
+        if (taskListener != null)
+            taskListener.onProgress(current, max);
+    }
     private void signalFinished( Integer result )
     {
         if (taskListener != null)
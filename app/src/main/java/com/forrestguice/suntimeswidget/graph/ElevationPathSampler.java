@@ -0,0 +1,243 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.graph;
+
+import android.support.annotation.NonNull;
+
+import com.forrestguice.suntimeswidget.calculator.core.ElevationCrossings;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Samples an elevation curve (e.g. the sun or moon path) at adaptive resolution; the curve is sampled coarsely
+ * and intervals are subdivided only where the curve bends away from a straight line (by more than `tolerance`),
+ * or where it crosses the horizon, down to a minimum interval (e.g. the width of a pixel).
+ *
+ * Results are kept in a small process-wide cache (keyed by the caller, e.g. calculator + location + day) so the
+ * same polyline can be reused by successive animation frames; at most MAX_ENTRIES are retained.
+ */
+public class ElevationPathSampler
+{
+    public static final int MAX_ENTRIES = 8;
+
+    /**
+     * A sampled elevation curve; `millis` is ascending, `elevation` holds the corresponding values.
+     */
+    public static class Samples
+    {
+        public final long[] millis;
+        public final double[] elevation;
+        public final double elevation_min, elevation_max;
+
+        public Samples(long[] millis, double[] elevation)
+        {
+            this.millis = millis;
+            this.elevation = elevation;
+
+            double min = 0, max = 0;
+            for (double value : elevation)
+            {
+                if (value < min) {
+                    min = value;
+                } else if (value > max) {
+                    max = value;
+                }
+            }
+            elevation_min = min;
+            elevation_max = max;
+        }
+
+        public int size() {
+            return millis.length;
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final LinkedHashMap<String, Samples> cache = new LinkedHashMap<String, Samples>(MAX_ENTRIES + 1, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Samples> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static int numHits = 0, numMisses = 0;
+
+    /**
+     * @param key identifies the curve and its parameters (e.g. calculator + location + startMillis + resolution)
+     * @return cached samples (or samples created using the given parameters if they aren't cached)
+     * @see #sample(ElevationCrossings.ElevationFunction, long, long, long, long, double)
+     */
+    @NonNull
+    public static Samples get(@NonNull String key, @NonNull ElevationCrossings.ElevationFunction function, long startMillis, long endMillis, long coarseMillis, long minMillis, double tolerance)
+    {
+        synchronized (lock)
+        {
+            Samples samples = cache.get(key);
+            if (samples != null) {
+                numHits++;
+                return samples;
+            }
+            numMisses++;
+        }
+
+        Samples samples = sample(function, startMillis, endMillis, coarseMillis, minMillis, tolerance);    // sampled outside the lock
+        synchronized (lock)
+        {
+            Samples existing = cache.get(key);
+            if (existing != null) {
+                return existing;    // sampled concurrently by another caller
+            }
+            cache.put(key, samples);
+            return samples;
+        }
+    }
+
+    public static boolean contains(@NonNull String key)
+    {
+        synchronized (lock) {
+            return cache.containsKey(key);
+        }
+    }
+
+    public static void clear()
+    {
+        synchronized (lock)
+        {
+            cache.clear();
+            numHits = numMisses = 0;
+        }
+    }
+
+    public static int getNumEntries()
+    {
+        synchronized (lock) {
+            return cache.size();
+        }
+    }
+    public static int getNumHits()
+    {
+        synchronized (lock) {
+            return numHits;
+        }
+    }
+    public static int getNumMisses()
+    {
+        synchronized (lock) {
+            return numMisses;
+        }
+    }
+
+    /**
+     * @param function the curve to sample
+     * @param startMillis first sample
+     * @param endMillis last sample (exclusive)
+     * @param coarseMillis initial sample interval
+     * @param minMillis smallest interval that may be subdivided (the number of samples is at most `(endMillis - startMillis) / minMillis`)
+     * @param tolerance subdivide an interval if its midpoint is further than this (degrees) from the line between its ends
+     * @return samples (ends early if the function becomes unavailable)
+     */
+    @NonNull
+    public static Samples sample(@NonNull ElevationCrossings.ElevationFunction function, long startMillis, long endMillis, long coarseMillis, long minMillis, double tolerance)
+    {
+        minMillis = Math.max(1, minMillis);
+        coarseMillis = Math.max(minMillis, coarseMillis);
+
+        SampleBuffer buffer = new SampleBuffer((int) Math.min(4096, 2 + (endMillis - startMillis) / coarseMillis));
+        long t0 = startMillis;
+        double e0 = function.getElevation(t0);
+        if (Double.isNaN(e0)) {
+            return buffer.toSamples();
+        }
+        buffer.add(t0, e0);
+
+        while (t0 + minMillis < endMillis)
+        {
+            long t1 = Math.min(t0 + coarseMillis, endMillis - 1);
+            double e1 = function.getElevation(t1);
+            if (Double.isNaN(e1)) {
+                break;
+            }
+            if (!subdivide(function, t0, e0, t1, e1, minMillis, tolerance, buffer)) {
+                break;
+            }
+            t0 = t1;
+            e0 = e1;
+        }
+        return buffer.toSamples();
+    }
+
+    /**
+     * Adds samples within (t0, t1]; the sample at t0 is expected to have already been added.
+     * @return false if the function became unavailable
+     */
+    protected static boolean subdivide(ElevationCrossings.ElevationFunction function, long t0, double e0, long t1, double e1, long minMillis, double tolerance, SampleBuffer buffer)
+    {
+        if ((t1 - t0) >= (2 * minMillis))
+        {
+            long tm = t0 + (t1 - t0) / 2;
+            double em = function.getElevation(tm);
+            if (Double.isNaN(em)) {
+                return false;
+            }
+
+            boolean crossesHorizon = ((e0 < 0) != (e1 < 0));
+            boolean isCurved = (Math.abs(em - ((e0 + e1) / 2d)) > tolerance);
+            if (crossesHorizon || isCurved)
+            {
+                return subdivide(function, t0, e0, tm, em, minMillis, tolerance, buffer)
+                        && subdivide(function, tm, em, t1, e1, minMillis, tolerance, buffer);
+            } else {
+                buffer.add(tm, em);
+            }
+        }
+        buffer.add(t1, e1);
+        return true;
+    }
+
+    protected static class SampleBuffer
+    {
+        private long[] millis;
+        private double[] elevation;
+        private int n = 0;
+
+        public SampleBuffer(int capacity)
+        {
+            millis = new long[Math.max(2, capacity)];
+            elevation = new double[millis.length];
+        }
+
+        public void add(long t, double e)
+        {
+            if (n == millis.length)
+            {
+                millis = Arrays.copyOf(millis, 2 * n);
+                elevation = Arrays.copyOf(elevation, 2 * n);
+            }
+            millis[n] = t;
+            elevation[n] = e;
+            n++;
+        }
+
+        public Samples toSamples() {
+            return new Samples(Arrays.copyOf(millis, n), Arrays.copyOf(elevation, n));
+        }
+    }
+}
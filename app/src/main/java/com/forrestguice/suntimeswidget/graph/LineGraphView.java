@@ -40,11 +40,15 @@ import android.view.View;
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
+import com.forrestguice.suntimeswidget.calculator.core.ElevationCrossings;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
 import com.forrestguice.suntimeswidget.themes.SuntimesTheme;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
+import com.forrestguice.suntimeswidget.views.FrameClock;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -59,6 +63,7 @@ import java.util.concurrent.locks.Lock;
 public class LineGraphView extends android.support.v7.widget.AppCompatImageView
 {
     public static final int MINUTES_IN_DAY = 24 * 60;
+    public static final int PATH_INTERVAL_COARSE = 60;    // minutes; sun/moon paths are sampled (at least) hourly, then subdivided where needed
 
     public static final int DEFAULT_MAX_UPDATE_RATE = 15 * 1000;  // ms value; once every 15s
 
@@ -198,6 +203,19 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         }
     }
 
+    /**
+     * Displays a frame; the previous frame is no longer displayed and is returned to the BitmapPool.
+     */
+    protected void setFrame(@Nullable Bitmap frame)
+    {
+        setImageBitmap(frame);
+        if (this.frame != null && this.frame != frame) {
+            BitmapPool.release(this.frame);
+        }
+        this.frame = frame;
+    }
+    private Bitmap frame = null;
+
     private LineGraphTaskListener drawTaskListener = new LineGraphTaskListener() {
         @Override
         public void onStarted() {
@@ -219,7 +237,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         @Override
         public void onFrame(Bitmap frame, long offsetMinutes) {
             Log.d(LineGraphView.class.getSimpleName(), "LineGraphView.updateViews: onFrame: " + Integer.toHexString(LineGraphView.this.hashCode()));
-            setImageBitmap(frame);
+            setFrame(frame);
             if (graphListener != null) {
                 graphListener.onFrame(frame, offsetMinutes);
             }
@@ -233,7 +251,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         @Override
         public void onFinished(Bitmap frame) {
             //Log.d(LineGraphView.class.getSimpleName(), "LineGraphView.updateViews: onFinished: " + Integer.toHexString(LineGraphView.this.hashCode()));
-            setImageBitmap(frame);
+            setFrame(frame);
             if (graphListener != null) {
                 graphListener.onFinished(frame);
             }
@@ -381,7 +399,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         {
             int w, h;
             int numFrames = 1;
-            long frameDuration = 250000000;    // nanoseconds (250 ms)
+            long frameDuration = 250;    // ms
             long initialOffset = 0;
             SuntimesRiseSetDataset data;
             try {
@@ -396,18 +414,19 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
                 if (params.length > 5) {
                     initialOffset = (long)params[5];
                 }
-                frameDuration = options.anim_frameLengthMs * 1000000;   // ms to ns
+                frameDuration = options.anim_frameLengthMs;
 
             } catch (ClassCastException e) {
                 Log.w(LineGraphTask.class.getSimpleName(), "Invalid params; using [null, 0, 0]");
                 return null;
             }
 
-            long time0 = System.nanoTime();
+            FrameClock clock = new FrameClock(frameDuration);
+            clock.start();
             Bitmap frame = null;
             options.offsetMinutes = initialOffset;
 
-            int i = 0;
+            int i = 0, advance = 0, lastAdvance = 0;    // lastAdvance is undone when the loop ends (advance is 0 if interrupted)
             while (i < numFrames || numFrames <= 0)
             {
                 //Log.d(getClass().getSimpleName(), "generating frame " + i + " | " + w + "," + h + " :: " + numFrames);
@@ -436,21 +455,23 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
 
                 frame = makeBitmap(data, w, h, options);
 
-                long time1 = System.nanoTime();
-                while ((time1 - time0) < frameDuration) {
-                    time1 = System.nanoTime();
+                advance = clock.awaitFrame();
+                if (advance <= 0) {
+                    options.releaseDrawLock();
+                    break;    // interrupted (cancelled)
                 }
 
                 publishProgress(frame);
                 if (listener != null) {
                     listener.afterFrame(frame, options.offsetMinutes);
                 }
-                options.offsetMinutes += options.anim_frameOffsetMinutes;
-                time0 = System.nanoTime();
+                options.offsetMinutes += advance * options.anim_frameOffsetMinutes;
+                lastAdvance = advance;
                 i++;
                 options.releaseDrawLock();
             }
-            options.offsetMinutes -= options.anim_frameOffsetMinutes;
+            options.offsetMinutes -= lastAdvance * options.anim_frameOffsetMinutes;
+            //Log.d("DEBUG", "LineGraphTask: frames: " + clock.getNumFrames() + ", dropped: " + clock.getNumDropped() + ", pooled bitmaps: " + BitmapPool.getHitRate());
             return frame;
         }
 
@@ -467,7 +488,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
 
             this.options = options;
             Calendar now = graphTime(data, options);
-            Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565);
+            Bitmap b = BitmapPool.obtain(w, h, Bitmap.Config.RGB_565);
             b.setDensity(options.densityDpi);
             Canvas c = new Canvas(b);
             initPaint();
@@ -685,6 +706,9 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
             }
         }
 
+        /**
+         * @return the minutes (lmt) the sun crosses the given elevation on the day containing `now`, or null if it doesn't cross
+         */
         @Nullable
         protected Integer[] findMinutes(Calendar now, double degrees, SuntimesCalculator calculator)
         {
@@ -692,46 +716,35 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
             lmt.setTimeInMillis(now.getTimeInMillis());
             lmt = toStartOfDay(lmt);
             long startMillis = lmt.getTimeInMillis();
-            lmt = toNoon(lmt);
-            long midMillis = lmt.getTimeInMillis();
             lmt = toEndOfDay(lmt);
             long endMillis = lmt.getTimeInMillis();
 
-            ArrayList<Integer> results = new ArrayList<>();
-            Long[] millis = new Long[2];
-            millis[0] = findMillis(degrees, calculator, lmt, startMillis, midMillis-1, true);
-            millis[1] = findMillis(degrees, calculator, lmt, midMillis+1, endMillis, false);
-
-            for (Long time : millis) {
-                if (time != null) {
-                    lmt.setTimeInMillis(time);
-                    results.add((lmt.get(Calendar.HOUR_OF_DAY) * 60) + lmt.get(Calendar.MINUTE));
-                }
+            Location location = calculator.getLocation();
+            String key = calculator.name() + ":" + location.getLatitude() + "," + location.getLongitude() + "," + location.getAltitude() + ":" + startMillis;
+            if (!key.equals(pointMinutes_key))
+            {
+                pointMinutes.clear();
+                pointMinutes_key = key;
             }
-            return ((results.size() > 0) ? results.toArray(new Integer[0]) : null);
-        }
-
-        @Nullable
-        protected Long findMillis(double degrees, SuntimesCalculator calculator, Calendar lmt, long minMillis, long maxMillis, boolean ascending)
-        {
-            if (minMillis > maxMillis) {
-                return null;
+            if (pointMinutes.containsKey(degrees)) {
+                return pointMinutes.get(degrees);    // same day (previous frame)
             }
 
-            lmt.setTimeInMillis(minMillis + ((maxMillis - minMillis) / 2));
-            SuntimesCalculator.SunPosition position = calculator.getSunPosition(lmt);
-
-            if (Math.abs(position.elevation - degrees) < 0.25) {
-                return lmt.getTimeInMillis();
-
-            } else if ((ascending && (degrees > position.elevation))
-                    || (!ascending && (degrees < position.elevation))) {
-                return findMillis(degrees, calculator, lmt, lmt.getTimeInMillis() + 1, maxMillis, ascending);
-
-            } else {
-                return findMillis(degrees, calculator, lmt, minMillis, lmt.getTimeInMillis() - 1, ascending);
+            ElevationCrossings.Crossings crossings = ElevationCrossings.find(ElevationCrossings.sunElevation(calculator), degrees, startMillis, endMillis, ElevationCrossings.DEFAULT_STEP_MILLIS, POINT_PRECISION_MILLIS);
+            Integer[] results = null;
+            if (crossings.size() > 0)
+            {
+                results = new Integer[crossings.size()];
+                for (int i=0; i<results.length; i++) {
+                    results[i] = EventMillis.minuteOfDay(crossings.getMillis(i), lmt.getTimeZone());
+                }
             }
+            pointMinutes.put(degrees, results);
+            return results;
         }
+        private final HashMap<Double, Integer[]> pointMinutes = new HashMap<>();    // findMinutes results (by degrees) for pointMinutes_key
+        private String pointMinutes_key = null;
+        public static final long POINT_PRECISION_MILLIS = 30 * 1000L;
 
         public static Calendar toStartOfDay(Calendar calendar)
         {
@@ -805,75 +818,9 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         }
         protected HashMap<Path, Double> createMoonPath(Calendar now, SuntimesCalculator calculator, Canvas c, LineGraphOptions options, boolean closed, ArrayList<Path> paths, HashMap<Path,Double> elevations)
         {
-            int path_width = 2 * MINUTES_IN_DAY ; // options.graph_width;
-
-            paths.clear();
-            elevations.clear();
-
-            Calendar lmt = lmt(calculator.getLocation());
-            lmt.setTimeInMillis(now.getTimeInMillis());
-            toStartOfDay(lmt);
-
-            SuntimesCalculator.MoonPosition position;
-            double elevation_prev = -90;   // sun elevation (previous iteration)
-            elevation_min = elevation_max = 0;
-            float x = 0, y = 0;
-
-            Path path = null;
-            int minute = 0;
-            while (minute < path_width)
-            {
-                position = calculator.getMoonPosition(lmt);
-                if (position.elevation < elevation_min) {
-                    elevation_min = position.elevation;
-                } else if (position.elevation > elevation_max) {
-                    elevation_max = position.elevation;
-                }
-
-                int d = (int)(minute / MINUTES_IN_DAY);
-                double m = (d * MINUTES_IN_DAY) + (lmt.get(Calendar.HOUR_OF_DAY) * 60) + lmt.get(Calendar.MINUTE);
-                x = (float) minutesToBitmapCoords(c, m, options);
-                y = (float) degreesToBitmapCoords(c, position.elevation, options);
-
-                if (path != null
-                        && ((elevation_prev < 0 && position.elevation >= 0)
-                        || (elevation_prev >= 0 && position.elevation < 0))) {
-                    path.lineTo(x, y);
-                    if (closed) {
-                        path.close();
-                    }
-                    path = null;
-                }
-
-                if (path == null)
-                {
-                    path = new Path();
-                    paths.add(path);
-                    elevations.put(path, position.elevation);
-
-                    if (closed) {
-                        path.moveTo(x, (float)degreesToBitmapCoords(c, 0, options));
-                        path.lineTo(x, y);
-                    } else {
-                        path.moveTo(x, y);
-                    }
-
-                } else {
-                    path.lineTo(x, y);
-                }
-
-                elevation_prev = position.elevation;
-                lmt.add(Calendar.MINUTE, options.moonPath_interval);
-                minute += options.moonPath_interval;
-            }
-
-            if (closed)
-            {
-                path = paths.get(paths.size()-1);
-                path.lineTo(x, (float)degreesToBitmapCoords(c, 0, options));
-                path.close();
-            }
-            return elevations;
+            long startMillis = pathStartMillis(now, calculator);
+            ElevationPathSampler.Samples samples = samplePath("moon", ElevationCrossings.moonElevation(calculator), calculator, startMillis, c, options, options.moonPath_interval);
+            return createPath(samples, startMillis, c, options, closed, paths, elevations);
         }
 
 
@@ -911,39 +858,62 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         private double elevation_min = -90, elevation_max = 90;
         protected HashMap<Path, Double> createSunPath(Calendar now, SuntimesCalculator calculator, Canvas c, LineGraphOptions options, boolean closed, ArrayList<Path> paths, HashMap<Path,Double> elevations)
         {
-            int path_width = 2 * MINUTES_IN_DAY ; // options.graph_width;
-
-            paths.clear();
-            elevations.clear();
+            long startMillis = pathStartMillis(now, calculator);
+            ElevationPathSampler.Samples samples = samplePath("sun", ElevationCrossings.sunElevation(calculator), calculator, startMillis, c, options, options.sunPath_interval);
+            return createPath(samples, startMillis, c, options, closed, paths, elevations);
+        }
 
+        /**
+         * @return start of the (lmt) day containing `now`
+         */
+        protected long pathStartMillis(Calendar now, SuntimesCalculator calculator)
+        {
             Calendar lmt = lmt(calculator.getLocation());
             lmt.setTimeInMillis(now.getTimeInMillis());
             toStartOfDay(lmt);
+            return lmt.getTimeInMillis();
+        }
+
+        /**
+         * Samples a path (two days beginning at startMillis) at adaptive resolution; the path is sampled coarsely (hourly), then
+         * subdivided down to the width of a pixel where it curves by more than half a pixel (or crosses the horizon). Samples are
+         * cached by calculator, location, and day so they can be reused by successive frames.
+         * @param interval minimum coarse sample interval (minutes)
+         */
+        protected ElevationPathSampler.Samples samplePath(String name, ElevationCrossings.ElevationFunction function, SuntimesCalculator calculator, long startMillis, Canvas c, LineGraphOptions options, int interval)
+        {
+            long endMillis = startMillis + (2 * MINUTES_IN_DAY * 60 * 1000L);
+            long coarseMillis = Math.max(PATH_INTERVAL_COARSE, interval) * 60 * 1000L;
+            long pixelMillis = (long)((options.graph_width / c.getWidth()) * 60 * 1000L);
+            double tolerance = (options.graph_height / c.getHeight()) / 2d;
+
+            Location location = calculator.getLocation();
+            String key = name + ":" + calculator.name() + ":" + location.getLatitude() + "," + location.getLongitude() + "," + location.getAltitude()
+                    + ":" + startMillis + ":" + coarseMillis + ":" + pixelMillis + ":" + tolerance;
+            return ElevationPathSampler.get(key, function, startMillis, endMillis, coarseMillis, pixelMillis, tolerance);
+        }
 
-            SuntimesCalculator.SunPosition position;
-            double elevation_prev = -90;   // sun elevation (previous iteration)
-            elevation_min = elevation_max = 0;
+        protected HashMap<Path, Double> createPath(ElevationPathSampler.Samples samples, long startMillis, Canvas c, LineGraphOptions options, boolean closed, ArrayList<Path> paths, HashMap<Path,Double> elevations)
+        {
+            paths.clear();
+            elevations.clear();
+
+            double elevation_prev = -90;   // elevation (previous iteration)
+            elevation_min = samples.elevation_min;
+            elevation_max = samples.elevation_max;
             float x = 0, y = 0;
 
             Path path = null;
-            int minute = 0;
-            while (minute < path_width)
+            for (int i=0; i<samples.size(); i++)
             {
-                position = calculator.getSunPosition(lmt);
-                if (position.elevation < elevation_min) {
-                    elevation_min = position.elevation;
-                } else if (position.elevation > elevation_max) {
-                    elevation_max = position.elevation;
-                }
-
-                int d = (int)(minute / MINUTES_IN_DAY);
-                double m = (d * MINUTES_IN_DAY) + (lmt.get(Calendar.HOUR_OF_DAY) * 60) + lmt.get(Calendar.MINUTE);
+                double elevation = samples.elevation[i];
+                double m = (samples.millis[i] - startMillis) / (60 * 1000d);
                 x = (float) minutesToBitmapCoords(c, m, options);
-                y = (float) degreesToBitmapCoords(c, position.elevation, options);
+                y = (float) degreesToBitmapCoords(c, elevation, options);
 
                 if (path != null
-                        && ((elevation_prev < 0 && position.elevation >= 0)
-                        || (elevation_prev >= 0 && position.elevation < 0))) {
+                        && ((elevation_prev < 0 && elevation >= 0)
+                        || (elevation_prev >= 0 && elevation < 0))) {
                     path.lineTo(x, y);
                     if (closed) {
                         path.close();
@@ -955,7 +925,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
                 {
                     path = new Path();
                     paths.add(path);
-                    elevations.put(path, position.elevation);
+                    elevations.put(path, elevation);
 
                     if (closed) {
                         path.moveTo(x, (float)degreesToBitmapCoords(c, 0, options));
@@ -968,12 +938,10 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
                     path.lineTo(x, y);
                 }
 
-                elevation_prev = position.elevation;
-                lmt.add(Calendar.MINUTE, options.sunPath_interval);
-                minute += options.sunPath_interval;
+                elevation_prev = elevation;
             }
 
-            if (closed)
+            if (closed && !paths.isEmpty())
             {
                 path = paths.get(paths.size()-1);
                 path.lineTo(x, (float)degreesToBitmapCoords(c, 0, options));
@@ -1180,10 +1148,11 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         protected void drawPoint(long time, SuntimesCalculator calculator, int radius, int strokeWidth, Canvas c, Paint p, int fillColor, int strokeColor, DashPathEffect strokeEffect)
         {
             Calendar lmt = lmt(calculator.getLocation());
-            lmt.setTimeInMillis(time);
-            double minute = lmt.get(Calendar.HOUR_OF_DAY) * 60 + lmt.get(Calendar.MINUTE);
-            double degrees = calculator.getSunPosition(lmt).elevation;
-            drawPoint(minute, degrees, radius, strokeWidth, c, p, fillColor, strokeColor, strokeEffect);
+            double minute = EventMillis.minuteOfDay(time, lmt.getTimeZone());
+            SuntimesCalculator.SunPosition sunPosition = new SuntimesCalculator.SunPosition();
+            if (EventMillis.getSunPosition(calculator, time, sunPosition)) {
+                drawPoint(minute, sunPosition.elevation, radius, strokeWidth, c, p, fillColor, strokeColor, strokeEffect);
+            }
         }
 
         protected void drawPoint(double minute, double degrees, int radius, int strokeWidth, Canvas c, Paint p, int fillColor, int strokeColor, DashPathEffect strokeEffect)
@@ -36,8 +36,10 @@ import android.util.Log;
 
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -93,79 +95,10 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
 
     protected int[] initPixels(int w, int h, double[] sunUp, double[] moonUp, WorldMapTask.WorldMapOptions options)
     {
-        int z = 0;
-        int j0, j1, j2;
-        double v0, v1, v2;
-        double sunIntensity, moonIntensity;
-        int[] pixels = new int[w * h];
-        double[] m = getMatrix();
-
-        if (options.showSunShadow && options.showMoonLight)
-        {
-            int combinedColor = ColorUtils.compositeColors(options.moonLightColor, options.sunShadowColor);
-            for (int j = 0; j < h; j++)
-            {
-                j0 = (360 * j);
-                j1 = (360 * (360 + j));
-                j2 = (360 * (720 + j));
-
-                for (int i = 0; i < w; i++)
-                {
-                    v0 = m[i + j0];
-                    v1 = m[i + j1];
-                    v2 = m[i + j2];
-
-                    sunIntensity = (sunUp[0] * v0) + (sunUp[1] * v1) + (sunUp[2] * v2);
-                    moonIntensity = (moonUp[0] * v0) + (moonUp[1] * v1) + (moonUp[2] * v2);
-                    if (sunIntensity <= 0 && moonIntensity > 0) {
-                        pixels[z] = combinedColor;
-                    } else if (sunIntensity <= 0) {
-                        pixels[z] = options.sunShadowColor;
-                    } else if (moonIntensity > 0) {
-                        pixels[z] = options.moonLightColor;
-                    }
-                    z++;
-                }
-            }
-
-        } else if (options.showSunShadow) {
-            for (int j = 0; j < h; j++)
-            {
-                j0 = (360 * j);
-                j1 = (360 * (360 + j));
-                j2 = (360 * (720 + j));
-
-                for (int i = 0; i < w; i++)
-                {
-                    v0 = m[i + j0];
-                    v1 = m[i + j1];
-                    v2 = m[i + j2];
-
-                    sunIntensity = (sunUp[0] * v0) + (sunUp[1] * v1) + (sunUp[2] * v2);
-                    pixels[z] = (sunIntensity <= 0) ? options.sunShadowColor : Color.TRANSPARENT;
-                    z++;
-                }
-            }
-
-        } else if (options.showMoonLight) {
-            for (int j = 0; j < h; j++)
-            {
-                j0 = (360 * j);
-                j1 = (360 * (360 + j));
-                j2 = (360 * (720 + j));
-
-                for (int i = 0; i < w; i++)
-                {
-                    v0 = m[i + j0];
-                    v1 = m[i + j1];
-                    v2 = m[i + j2];
-
-                    moonIntensity = (moonUp[0] * v0) + (moonUp[1] * v1) + (moonUp[2] * v2);
-                    pixels[z] = (moonIntensity > 0) ? options.moonLightColor : Color.TRANSPARENT;
-                    z++;
-                }
-            }
-        }
+        int combinedColor = ColorUtils.compositeColors(options.moonLightColor, options.sunShadowColor);
+        int[] palette = new int[] { Color.TRANSPARENT, options.sunShadowColor, options.moonLightColor, combinedColor };    // [LIT, SHADOW, MOONLIGHT, SHADOW | MOONLIGHT]
+        int[] pixels = rasterizer.getBuffer(0, w * h);
+        WorldMapRasterizer.shade(getMatrix(), w, h, (options.showSunShadow ? sunUp : null), (options.showMoonLight ? moonUp : null), pixels, palette, null, null);
         return pixels;
     }
 
@@ -239,22 +172,18 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
     }
 
     @Override
-    public Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options)
+    public synchronized Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options)
     {
         long bench_start = System.nanoTime();
         if (w <= 0 || h <= 0) {
             return null;
         }
 
-        if (matrix == null) {
-            matrix = initMatrix();
-        }
-
         double[] mid = new double[2];
         mid[0] = w/2d;
         mid[1] = h/2d;
 
-        Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap b = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
         Canvas c = new Canvas(b);
 
         if (!paintInitialized) {
@@ -277,8 +206,10 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
         {
             Calendar now = mapTime(data, options);
             SuntimesCalculator calculator = data.calculator();
-            SuntimesCalculator.SunPosition sunPos = calculator.getSunPosition(now);
-            SuntimesCalculator.MoonPosition moonPos = calculator.getMoonPosition(now);
+            SuntimesCalculator.SunPosition sunPosition = new SuntimesCalculator.SunPosition();
+            SuntimesCalculator.SunPosition sunPos = (EventMillis.getSunPosition(calculator, now.getTimeInMillis(), sunPosition) ? sunPosition : null);
+            SuntimesCalculator.MoonPosition moonPosition = new SuntimesCalculator.MoonPosition();
+            SuntimesCalculator.MoonPosition moonPos = (EventMillis.getMoonPosition(calculator, now.getTimeInMillis(), moonPosition) ? moonPosition : null);
             Location location = data.location();
 
             if (sunPos == null || moonPos == null) {
@@ -321,14 +252,14 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
             if (options.showSunPosition || options.showMoonPosition)
             {
                 int[] size = matrixSize();
-                Bitmap lightBitmap = Bitmap.createBitmap(size[0], size[1], Bitmap.Config.ARGB_8888);
+                Bitmap lightBitmap = BitmapPool.obtain(size[0], size[1], Bitmap.Config.ARGB_8888);
                 int[] pixels = initPixels(size[0], size[1], sunUp, moonUp, options);
                 lightBitmap.setPixels(pixels, 0, size[0], 0, 0, size[0], size[1]);
 
                 Rect src = new Rect(0,0,size[0]-1, size[1]-1);
                 Rect dst = new Rect(0,0,w-1, h-1);
                 c.drawBitmap(lightBitmap, src, dst, paintScaled);
-                lightBitmap.recycle();
+                BitmapPool.release(lightBitmap);
             }
 
             ////////////////
@@ -373,28 +304,18 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
         }
 
         // mask final image to fit within a circle (fixes fuzzy edges from base maps)
-        Bitmap masked = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap masked = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
         Canvas maskedCanvas = new Canvas(masked);
         maskedCanvas.drawCircle((float)mid[0], (float)mid[1], (float)mid[0] - 2, paintMask_srcOver);
         maskedCanvas.drawBitmap(b, 0, 0, paintMask_srcIn);
-        b.recycle();
+        BitmapPool.release(b);
 
         long bench_end = System.nanoTime();
         Log.d(WorldMapView.LOGTAG, "make equiazimuthal world map :: " + ((bench_end - bench_start) / 1000000.0) + " ms; " + w + ", " + h);
         return masked;
     }
 
-    private static double[] matrix = null;    // [x * y * v(3)]
 
-    @Override
-    public double[] getMatrix() {
-        return matrix;
-    }
-
-    @Override
-    public void resetMatrix() {
-        matrix = null;
-    }
 
     @Override
     public int[] matrixSize()
@@ -403,14 +324,14 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
     }
 
     @Override
-    public double[] initMatrix()
+    public float[] initMatrix()
     {
         long bench_start = System.nanoTime();
 
         int[] size = matrixSize();
         int w = size[0];
         int h = size[1];
-        double[] v = new double[w * h * 3];
+        float[] v = new float[w * h * 3];
 
         double radLon, cosLon, sinLon;
         double radLat, cosLat;
@@ -443,9 +364,9 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
                 cosLat = Math.cos(radLat);
                 cosLon = Math.cos(radLon);
 
-                v[i + (360 * j)] = cosLon * cosLat;
-                v[i + (360 * (360 + j))] = sinLon * cosLat;
-                v[i + (360 * (720 + j))] = Math.sin(radLat);
+                v[i + (360 * j)] = (float)(cosLon * cosLat);
+                v[i + (360 * (360 + j))] = (float)(sinLon * cosLat);
+                v[i + (360 * (720 + j))] = (float)Math.sin(radLat);
             }
         }
 
@@ -32,9 +32,11 @@ import android.support.v4.graphics.ColorUtils;
 import android.util.Log;
 
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
 
 import java.util.Calendar;
 
@@ -56,27 +58,17 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
         return polar;
     }
 
-    private static double[] matrix = null;    // [x * y * v(3)]
 
-    @Override
-    public double[] getMatrix() {
-        return matrix;
-    }
 
     @Override
-    public void resetMatrix() {
-        matrix = null;
-    }
-
-    @Override
-    public double[] initMatrix()
+    public float[] initMatrix()
     {
         long bench_start = System.nanoTime();
 
         int[] size = matrixSize();
         int w = size[0];
         int h = size[1];
-        double[] v = new double[w * h * 3];
+        float[] v = new float[w * h * 3];
 
         double squareR = (0.5 * w + 1) * (0.5 * w + 1);
         double negPiOver2 = -0.5 * Math.PI;
@@ -116,9 +108,9 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
                 cosLon = Math.cos(radLon);
                 sinLon = Math.sin(radLon);
 
-                v[i + (360 * j)] = cosLon * cosLat;
-                v[i + (360 * (360 + j))] = sinLon * cosLat;
-                v[i + (360 * (720 + j))] = Math.sin(radLat);
+                v[i + (360 * j)] = (float)(cosLon * cosLat);
+                v[i + (360 * (360 + j))] = (float)(sinLon * cosLat);
+                v[i + (360 * (720 + j))] = (float)Math.sin(radLat);
             }
         }
 
@@ -128,7 +120,7 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
     }
 
     @Override
-    public Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options)
+    public synchronized Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options)
     {
         long bench_start = System.nanoTime();
         if (w <= 0 || h <= 0)
@@ -136,15 +128,11 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
             return null;
         }
 
-        if (matrix == null) {
-            matrix = initMatrix();
-        }
-
         double[] mid = new double[2];
         mid[0] = w/2d;
         mid[1] = h/2d;
 
-        Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap b = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
         Canvas c = new Canvas(b);
 
         if (!paintInitialized) {
@@ -167,8 +155,10 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
         {
             Calendar now = mapTime(data, options);
             SuntimesCalculator calculator = data.calculator();
-            SuntimesCalculator.SunPosition sunPos = calculator.getSunPosition(now);
-            SuntimesCalculator.MoonPosition moonPos = calculator.getMoonPosition(now);
+            SuntimesCalculator.SunPosition sunPosition = new SuntimesCalculator.SunPosition();
+            SuntimesCalculator.SunPosition sunPos = (EventMillis.getSunPosition(calculator, now.getTimeInMillis(), sunPosition) ? sunPosition : null);
+            SuntimesCalculator.MoonPosition moonPosition = new SuntimesCalculator.MoonPosition();
+            SuntimesCalculator.MoonPosition moonPos = (EventMillis.getMoonPosition(calculator, now.getTimeInMillis(), moonPosition) ? moonPosition : null);
             Location location = data.location();
 
             if (sunPos == null || moonPos == null) {
@@ -211,14 +201,14 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
             if (options.showSunPosition || options.showMoonPosition)
             {
                 int[] size = matrixSize();
-                Bitmap lightBitmap = Bitmap.createBitmap(size[0], size[1], Bitmap.Config.ARGB_8888);
+                Bitmap lightBitmap = BitmapPool.obtain(size[0], size[1], Bitmap.Config.ARGB_8888);
                 int[] pixels = initPixels(size[0], size[1], sunUp, moonUp, options);
                 lightBitmap.setPixels(pixels, 0, size[0], 0, 0, size[0], size[1]);
 
                 Rect src = new Rect(0,0,size[0]-1, size[1]-1);
                 Rect dst = new Rect(0,0,w-1, h-1);
                 c.drawBitmap(lightBitmap, src, dst, paintScaled);
-                lightBitmap.recycle();
+                BitmapPool.release(lightBitmap);
             }
 
             ////////////////
@@ -263,11 +253,11 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
         }
 
         // mask final image to fit within a circle (fixes fuzzy edges from base maps)
-        Bitmap masked = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap masked = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
         Canvas maskedCanvas = new Canvas(masked);
         maskedCanvas.drawCircle((float)mid[0], (float)mid[1], (float)mid[0] - 2, paintMask_srcOver);
         maskedCanvas.drawBitmap(b, 0, 0, paintMask_srcIn);
-        b.recycle();
+        BitmapPool.release(b);
 
         long bench_end = System.nanoTime();
         Log.d(WorldMapView.LOGTAG, "make equiazimuthal world map :: " + ((bench_end - bench_start) / 1000000.0) + " ms; " + w + ", " + h);
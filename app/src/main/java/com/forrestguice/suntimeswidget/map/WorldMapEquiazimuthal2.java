@@ -32,9 +32,11 @@ import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -68,28 +70,39 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
     }
 
     @Override
-    public double[] getMatrix() {
-        return matrix;
+    protected String matrixKey() {
+        return super.matrixKey() + ":" + center[0] + "," + center[1];    // a matrix for each center
     }
-    private static double[] matrix = null;    // [x * y * v(3)]
 
-    @Override
-    public void resetMatrix() {
-        matrix = null;
+    /**
+     * Initializes values that depend on the center (sinLat1, cosLat1, pixelSrc); these are only recalculated when the center changes.
+     */
+    protected void initCenter()
+    {
+        if (center1 != null && center1[0] == center[0] && center1[1] == center[1]) {
+            return;
+        }
+        int[] size = matrixSize();
+        pixelSrc = new Rect(0,0,size[0]-1, size[1]-1);
+        grid_mid = null;
+
+        double radLat1 = Math.toRadians(center[0]);
+        sinLat1 = Math.sin(radLat1);
+        cosLat1 = Math.cos(radLat1);
+        center1 = new double[] { center[0], center[1] };
     }
+    private static double[] center1 = null;
 
     @Override
-    public double[] initMatrix()
+    public float[] initMatrix()
     {
         long bench_start = System.nanoTime();
+        initCenter();
 
         int[] size = matrixSize();
-        pixelSrc = new Rect(0,0,size[0]-1, size[1]-1);
-        grid_mid = null;
-
         int w = size[0];
         int h = size[1];
-        double[] v = new double[w * h * 3];
+        float[] v = new float[w * h * 3];
 
         double x, y;
         double c, sinC, cosC;
@@ -98,9 +111,6 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
         double squareR = Math.PI * Math.PI;
 
         double radLon1 = Math.toRadians(center[1]);
-        double radLat1 = Math.toRadians(center[0]);
-        sinLat1 = Math.sin(radLat1);
-        cosLat1 = Math.cos(radLat1);
 
         for (int i = 0; i < w; i++)
         {
@@ -140,9 +150,9 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
                 cosLon = Math.cos(radLon);
                 sinLon = Math.sin(radLon);
 
-                v[i + (360 * j)] = cosLon * cosLat;
-                v[i + (360 * (360 + j))] = sinLon * cosLat;
-                v[i + (360 * (720 + j))] = Math.sin(radLat);
+                v[i + (360 * j)] = (float)(cosLon * cosLat);
+                v[i + (360 * (360 + j))] = (float)(sinLon * cosLat);
+                v[i + (360 * (720 + j))] = (float)Math.sin(radLat);
             }
         }
 
@@ -216,23 +226,21 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
     private Rect pixelDst = new Rect();
 
     @Override
-    public Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options)
+    public synchronized Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options)
     {
         long bench_start = System.nanoTime();
         if (w <= 0 || h <= 0) {
             return null;
         }
 
-        boolean recenter = setCenterFromOptions(options);
-        if (matrix == null || recenter) {
-            matrix = initMatrix();
-        }
+        setCenterFromOptions(options);
+        initCenter();
 
         double[] mid = new double[2];
         mid[0] = w/2d;
         mid[1] = h/2d;
 
-        Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap b = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
         Canvas c = new Canvas(b);
 
         if (!paintInitialized) {
@@ -255,8 +263,10 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
         {
             Calendar now = mapTime(data, options);
             SuntimesCalculator calculator = data.calculator();
-            SuntimesCalculator.SunPosition sunPos = calculator.getSunPosition(now);
-            SuntimesCalculator.MoonPosition moonPos = calculator.getMoonPosition(now);
+            SuntimesCalculator.SunPosition sunPosition = new SuntimesCalculator.SunPosition();
+            SuntimesCalculator.SunPosition sunPos = (EventMillis.getSunPosition(calculator, now.getTimeInMillis(), sunPosition) ? sunPosition : null);
+            SuntimesCalculator.MoonPosition moonPosition = new SuntimesCalculator.MoonPosition();
+            SuntimesCalculator.MoonPosition moonPos = (EventMillis.getMoonPosition(calculator, now.getTimeInMillis(), moonPosition) ? moonPosition : null);
             Location location = data.location();
 
             if (sunPos == null || moonPos == null) {
@@ -299,14 +309,14 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
             if (options.showSunPosition || options.showMoonPosition)
             {
                 int[] size = matrixSize();
-                Bitmap lightBitmap = Bitmap.createBitmap(size[0], size[1], Bitmap.Config.ARGB_8888);
+                Bitmap lightBitmap = BitmapPool.obtain(size[0], size[1], Bitmap.Config.ARGB_8888);
                 int[] pixels = initPixels(size[0], size[1], sunUp, moonUp, options);    // TODO: double buffer?
                 lightBitmap.setPixels(pixels, 0, size[0], 0, 0, size[0], size[1]);
 
-                //Rect pixelSrc = new Rect(0,0,size[0]-1, size[1]-1);    // set by initMatrix
+                //Rect pixelSrc = new Rect(0,0,size[0]-1, size[1]-1);    // set by initCenter
                 pixelDst.set(0,0,w-1, h-1);
                 c.drawBitmap(lightBitmap, pixelSrc, pixelDst, paintScaled);
-                lightBitmap.recycle();
+                BitmapPool.release(lightBitmap);
             }
 
             ////////////////
@@ -351,11 +361,11 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
         }
 
         // mask final image to fit within a circle (fixes fuzzy edges from base maps)
-        Bitmap masked = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap masked = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
         Canvas maskedCanvas = new Canvas(masked);
         maskedCanvas.drawCircle((float)mid[0], (float)mid[1], (float)mid[0] - 2, paintMask_srcOver);
         maskedCanvas.drawBitmap(b, 0, 0, paintMask_srcIn);
-        b.recycle();
+        BitmapPool.release(b);
 
         long bench_end = System.nanoTime();
         Log.d(WorldMapView.LOGTAG, "make equiazimuthal2 world map :: " + ((bench_end - bench_start) / 1000000.0) + " ms; " + w + ", " + h);
@@ -27,13 +27,16 @@ import android.graphics.Paint;
 import android.graphics.PathEffect;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
+import com.forrestguice.suntimeswidget.calculator.core.EventMillis;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
 
 import java.util.Calendar;
 
@@ -78,6 +81,7 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
         paintMask_srcOver = new Paint(Paint.ANTI_ALIAS_FLAG);    // to create a mask
         paintMask_srcOver.setColor(Color.WHITE);
         paintMask_srcOver.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_OVER));
+        paintMask_srcOver.setFilterBitmap(true);    // masks are scaled when drawn
 
         paintMask_srcIn = new Paint(Paint.ANTI_ALIAS_FLAG);      // to apply a mask
         paintMask_srcIn.setColor(Color.WHITE);
@@ -125,22 +129,18 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
     }
 
     @Override
-    public Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options)
+    public synchronized Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options)
     {
         long bench_start = System.nanoTime();
         if (w <= 0 || h <= 0) {
             return null;
         }
 
-        if (matrix == null) {
-            matrix = initMatrix();
-        }
-
         double[] mid = new double[2];
         mid[0] = w/2d;
         mid[1] = h/2d;
 
-        Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap b = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
         Canvas c = new Canvas(b);
 
         if (!paintInitialized) {
@@ -161,8 +161,10 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
         {
             Calendar now = mapTime(data, options);
             SuntimesCalculator calculator = data.calculator();
-            SuntimesCalculator.SunPosition sunPos = calculator.getSunPosition(now);
-            SuntimesCalculator.MoonPosition moonPos = calculator.getMoonPosition(now);
+            SuntimesCalculator.SunPosition sunPosition = new SuntimesCalculator.SunPosition();
+            SuntimesCalculator.SunPosition sunPos = (EventMillis.getSunPosition(calculator, now.getTimeInMillis(), sunPosition) ? sunPosition : null);
+            SuntimesCalculator.MoonPosition moonPosition = new SuntimesCalculator.MoonPosition();
+            SuntimesCalculator.MoonPosition moonPos = (EventMillis.getMoonPosition(calculator, now.getTimeInMillis(), moonPosition) ? moonPosition : null);
             Location location = data.location();
 
             if (sunPos == null || moonPos == null) {
@@ -209,79 +211,45 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
                     initBitmap(size[0], size[1]);
                 }
 
-                int z = 0;
-                int k0, k1, k2;
-                double v0, v1, v2;
-                double sunIntensity, moonIntensity;
-                int[] sun_pixels = new int[size[0] * size[1]];
-                int[] moon_pixels = new int[size[0] * size[1]];
-                for (int j = 0; j < size[1]; j++)
-                {
-                    k0 = size[0] * j;
-                    k1 = size[0] * (size[1] + j);
-                    k2 = size[0] * ((size[1] * 2) + j);
-
-                    for (int i = 0; i < size[0]; i++)
-                    {
-                        v0 = matrix[i + k0];
-                        v1 = matrix[i + k1];
-                        v2 = matrix[i + k2];
-
-                        if (options.showSunShadow)
-                        {
-                            sunIntensity = (sunUp[0] * v0) + (sunUp[1] * v1) + (sunUp[2] * v2);    // intensity = up.dotProduct(v)
-                            if (sunIntensity <= 0) {
-                                sun_pixels[z] = Color.WHITE;
-                            }
-                        }
-
-                        if (options.showMoonLight)
-                        {
-                            moonIntensity = (moonUp[0] * v0) + (moonUp[1] * v1) + (moonUp[2] * v2);
-                            if (moonIntensity > 0) {
-                                moon_pixels[z] = Color.WHITE;
-                            }
-                        }
-                        z++;
-                    }
-                }
+                int[] sun_pixels = rasterizer.getBuffer(0, size[0] * size[1]);
+                int[] moon_pixels = rasterizer.getBuffer(1, size[0] * size[1]);
+                double[][] axes = initAxes(size[0], size[1]);
+                rasterizer.shadeNext(axes[0], axes[1], size[0], size[1], (options.showSunShadow ? sunUp : null), (options.showMoonLight ? moonUp : null),
+                        sun_pixels, SUN_MASK_PALETTE, moon_pixels, MOON_MASK_PALETTE);
                 sunMaskBitmap.setPixels(sun_pixels, 0, size[0], 0, 0, size[0], size[1]);
                 moonMaskBitmap.setPixels(moon_pixels, 0, size[0], 0, 0, size[0], size[1]);
 
                 // draw sun shadow
-                Bitmap sunMask = Bitmap.createScaledBitmap(sunMaskBitmap, w, h, true);
-                Bitmap shadowBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+                maskDst.set(0, 0, w, h);
+                Bitmap shadowBitmap = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
                 Canvas shadowCanvas = new Canvas(shadowBitmap);
-                shadowCanvas.drawBitmap(sunMask, 0, 0, paintMask_srcOver);
+                shadowCanvas.drawBitmap(sunMaskBitmap, null, maskDst, paintMask_srcOver);    // scaled (filtered)
 
                 if (options.map_night != null)
                 {
-                    Bitmap nightBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+                    Bitmap nightBitmap = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
                     Canvas nightCanvas = new Canvas(nightBitmap);
                     options.map_night.setBounds(0, 0, nightCanvas.getWidth(), nightCanvas.getHeight());
                     options.map_night.draw(nightCanvas);
 
                     shadowCanvas.drawBitmap(nightBitmap, 0, 0, paintMask_srcIn);
-                    nightBitmap.recycle();
+                    BitmapPool.release(nightBitmap);
 
                 } else {
                     shadowCanvas.drawPaint(paintSunshadow);
                 }
 
                 c.drawBitmap(shadowBitmap, 0, 0, paintMask_srcOver);
-                shadowBitmap.recycle();
-                sunMask.recycle();
+                BitmapPool.release(shadowBitmap);
 
                 // draw moon light
-                Bitmap moonMask = Bitmap.createScaledBitmap(moonMaskBitmap, w, h, true);
-                Bitmap moonBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+                Bitmap moonBitmap = BitmapPool.obtain(w, h, Bitmap.Config.ARGB_8888);
                 Canvas moonCanvas = new Canvas(moonBitmap);
-                moonCanvas.drawBitmap(moonMask, 0, 0, paintMask_srcOver);
+                moonCanvas.drawBitmap(moonMaskBitmap, null, maskDst, paintMask_srcOver);    // scaled (filtered)
                 moonCanvas.drawPaint(paintMoonlight);
 
                 c.drawBitmap(moonBitmap, 0, 0, paintMask_srcOver);
-                moonBitmap.recycle();
-                moonMask.recycle();
+                BitmapPool.release(moonBitmap);
             }
 
             ////////////////
@@ -318,20 +286,54 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
         return b;
     }
 
-    private static double[] matrix = null;    // [x * y * v(3)]
+    private static double[][] axes = null;    // [lon(cos, sin)][lat(cos, sin)]
 
-    @Override
-    public void resetMatrix() {
-        matrix = null;
+    private static final int[] SUN_MASK_PALETTE = new int[] { Color.TRANSPARENT, Color.WHITE, Color.TRANSPARENT, Color.WHITE };     // [LIT, SHADOW, MOONLIGHT, SHADOW | MOONLIGHT]
+    private static final int[] MOON_MASK_PALETTE = new int[] { Color.TRANSPARENT, Color.TRANSPARENT, Color.WHITE, Color.WHITE };
+
+    /**
+     * The equirectangular grid is separable; each unit vector is (cosLon * cosLat, sinLon * cosLat, sinLat), so rather than
+     * a full matrix the map is shaded from the cos/sin of each column (longitude) and each row (latitude).
+     * @param w matrix width (see matrixSize)
+     * @param h matrix height (see matrixSize)
+     * @return [lon[2 * w], lat[2 * h]] (cosines followed by sines)
+     */
+    protected static double[][] initAxes(int w, int h)
+    {
+        synchronized (WorldMapEquirectangular.class)
+        {
+            if (axes == null || axes[0].length != 2 * w || axes[1].length != 2 * h)
+            {
+                double[] lon = new double[2 * w];
+                double[] lat = new double[2 * h];
+                double iw0 = (1d / w) * 360d;
+                double ih0 = (1d / h) * 180d;
+
+                for (int i = 0; i < w; i++)
+                {
+                    double radLon = Math.toRadians(((double) i * iw0) - 180d);  // i in [0,w] to [0,360] to [-180,180]
+                    lon[i] = Math.cos(radLon);
+                    lon[w + i] = Math.sin(radLon);
+                }
+                for (int j = 0; j < h; j++)
+                {
+                    double radLat = Math.toRadians(-1 * (((double) j * ih0) - 90d));      // j in [0,h] to [0,180] to [-90,90] (inverted to canvas)
+                    lat[j] = Math.cos(radLat);
+                    lat[h + j] = Math.sin(radLat);
+                }
+                axes = new double[][] { lon, lat };
+            }
+            return axes;
+        }
     }
 
     @Override
-    public double[] initMatrix()
+    public float[] initMatrix()
     {
         long bench_start = System.nanoTime();
 
         int[] size = matrixSize();
-        double[] v = new double[size[0] * size[1] * 3];
+        float[] v = new float[size[0] * size[1] * 3];
         double iw0 = (1d / size[0]) * 360d;
         double ih0 = (1d / size[1]) * 180d;
 
@@ -349,9 +351,9 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
                 radLat = Math.toRadians(-1 * (((double) j * ih0) - 90d));      // j in [0,h] to [0,180] to [-90,90] (inverted to canvas)
                 cosLat = Math.cos(radLat);
 
-                v[i + (size[0] * j)] = cosLon * cosLat;
-                v[i + (size[0] * (size[1] + j))] = sinLon * cosLat;
-                v[i + (size[0] * ((size[1] * 2) + j))] = Math.sin(radLat);
+                v[i + (size[0] * j)] = (float)(cosLon * cosLat);
+                v[i + (size[0] * (size[1] + j))] = (float)(sinLon * cosLat);
+                v[i + (size[0] * ((size[1] * 2) + j))] = (float)Math.sin(radLat);
             }
         }
 
@@ -360,6 +362,7 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
         return v;
     }
 
+    private final Rect maskDst = new Rect();
     private Bitmap sunMaskBitmap = null;
     private Bitmap moonMaskBitmap = null;
 
@@ -375,11 +378,6 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
         return i + (720 * ((360 * k) + j));
     }
 
-    @Override
-    public double[] getMatrix() {
-        return matrix;
-    }
-
     @Override
     public int[] matrixSize()
     {
@@ -26,17 +26,25 @@ import android.util.Log;
 import com.forrestguice.suntimeswidget.ExportTask;
 
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 /**
  * This task writes one or more (worldmap) bitmaps to zip file.
+ *
+ * Frames are streamed; each frame is compressed and written to the zip as it is taken from a bounded queue, so
+ * memory use doesn't grow with the length of the animation. A producer that gets ahead of the export is blocked
+ * by addBitmap until there is room in the queue (back-pressure).
  */
 public class WorldMapExportTask extends ExportTask
 {
+    public static final long FRAME_TIMEOUT = 1000;    // ms; a blocked export (or producer) re-checks isCancelled at least this often
+    public static final int MAX_QUEUED_FRAMES = 4;
+    private static final Bitmap[] END_OF_FRAMES = new Bitmap[0];
+
     public WorldMapExportTask(Context context, String exportTarget)
     {
         super(context, exportTarget);
@@ -48,19 +56,33 @@ public class WorldMapExportTask extends ExportTask
         setZippedOutput(zippedOutput);
     }
 
-    private ConcurrentLinkedQueue<byte[]> bitmaps;
-    public void setBitmaps( @NonNull Bitmap[] bitmaps ) {
-        this.bitmaps = new ConcurrentLinkedQueue<>();
+    private LinkedBlockingQueue<Bitmap[]> bitmaps;    // [bitmap], or END_OF_FRAMES
+    public void setBitmaps( @NonNull Bitmap[] bitmaps )
+    {
+        this.bitmaps = new LinkedBlockingQueue<>(Math.max(MAX_QUEUED_FRAMES, bitmaps.length));
         for (Bitmap bitmap : bitmaps) {
-            addBitmap(bitmap);
+            this.bitmaps.offer(new Bitmap[] { bitmap });
         }
     }
+
+    /**
+     * Adds a frame to the export; blocks while the queue is full (until the export catches up, or is cancelled).
+     * The bitmap is compressed later by the export (and must not be recycled before then).
+     * @param bitmap a frame
+     */
     public void addBitmap(@NonNull Bitmap bitmap)
     {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        bitmap.compress(imageFormat, imageQuality, byteStream);
-        byte[] bytes = byteStream.toByteArray();
-        bitmaps.add(bytes);
+        try {
+            while (!isCancelled() && getStatus() != Status.FINISHED)
+            {
+                if (bitmaps.offer(new Bitmap[] { bitmap }, FRAME_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.w("ExportTask", "addBitmap interrupted; frame dropped; " + e);
+            Thread.currentThread().interrupt();
+        }
     }
 
     private String imageExt = ".png";
@@ -101,9 +123,27 @@ public class WorldMapExportTask extends ExportTask
         }
     }
 
-    private boolean waitForFrames = false;
-    public void setWaitForFrames(boolean value) {
+    /**
+     * @return the number of frames waiting to be exported (excludes END_OF_FRAMES)
+     */
+    private int queuedFrames()
+    {
+        int n = 0;
+        for (Bitmap[] bitmap : bitmaps) {
+            if (bitmap != END_OF_FRAMES) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private volatile boolean waitForFrames = false;
+    public void setWaitForFrames(boolean value)
+    {
         waitForFrames = value;
+        if (!value && bitmaps != null) {
+            bitmaps.offer(END_OF_FRAMES);    // wake a blocked export
+        }
     }
 
     @Override
@@ -117,20 +157,32 @@ public class WorldMapExportTask extends ExportTask
                 try {
 
                     int c = 0;
-                    while (!isCancelled() && (!bitmaps.isEmpty() || waitForFrames))
+                    while (!isCancelled())
                     {
-                        byte[] bitmap = bitmaps.poll();
-                        if (bitmap != null)
+                        Bitmap[] bitmap = (waitForFrames ? bitmaps.poll(FRAME_TIMEOUT, TimeUnit.MILLISECONDS) : bitmaps.poll());
+                        if (bitmap == null)
                         {
-                            ZipEntry entry = new ZipEntry(c + imageExt);
-                            entry.setMethod(ZipEntry.DEFLATED);
-                            zippedOut.putNextEntry(entry);
-                            zippedOut.write(bitmap);
-                            zippedOut.flush();
-                            c++;
+                            if (waitForFrames) {
+                                continue;    // timed out; still recording
+                            } else break;    // no more frames
                         }
+                        if (bitmap == END_OF_FRAMES) {
+                            continue;
+                        }
+
+                        ZipEntry entry = new ZipEntry(c + imageExt);
+                        entry.setMethod(ZipEntry.DEFLATED);
+                        zippedOut.putNextEntry(entry);
+                        bitmap[0].compress(imageFormat, imageQuality, zippedOut);
+                        zippedOut.flush();
+                        c++;
+                        publishProgress(new ExportProgress(c, c + queuedFrames(), null));
                     }
 
+                } catch (InterruptedException e) {
+                    Log.w("ExportTask", "Export interrupted; " + e);
+                    Thread.currentThread().interrupt();
+
                 } catch (IOException e) {
                     Log.e("ExportTask", "Error writing zip file: " + e);
                     throw e;
@@ -140,7 +192,10 @@ public class WorldMapExportTask extends ExportTask
                 }
 
             } else {
-                out.write(bitmaps.peek());
+                Bitmap[] bitmap = bitmaps.peek();
+                if (bitmap != END_OF_FRAMES) {
+                    bitmap[0].compress(imageFormat, imageQuality, out);
+                }
                 out.flush();
             }
             return true;
@@ -0,0 +1,156 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.map;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of rendered world map frames (keyframes) keyed by map time, so that scrubbing back over an animation
+ * (e.g. with WorldMapSeekBar) shows frames that were already rendered instead of rendering them again.
+ *
+ * Frames are only valid for a single scene (dataset, dimensions, projection, and options); the cache is cleared
+ * whenever the scene changes. The least recently used frames are evicted once the cache exceeds maxBytes. Frames
+ * may still be displayed after they are evicted, so they are released (never recycled).
+ */
+public class WorldMapKeyframes
+{
+    public static final long MAX_BYTES_DEFAULT = Runtime.getRuntime().maxMemory() / 8;
+
+    protected final Object lock = new Object();
+    protected final LinkedHashMap<Long, Bitmap> frames = new LinkedHashMap<>(16, 0.75f, true);
+    protected final long maxBytes;
+    protected long numBytes = 0;
+    protected String scene = null;
+    protected int numHits = 0, numMisses = 0;
+
+    public WorldMapKeyframes() {
+        this(MAX_BYTES_DEFAULT);
+    }
+
+    public WorldMapKeyframes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Sets the current scene; frames that belong to some other scene are discarded.
+     * @param w width
+     * @param h height
+     * @param data the dataset (compared by identity)
+     * @param projection the projection
+     * @param options the options (compared by center and map); changes to other options should call clear
+     */
+    public void setScene(int w, int h, Object data, WorldMapTask.WorldMapProjection projection, WorldMapTask.WorldMapOptions options)
+    {
+        String center = (options.center != null ? options.center[0] + "," + options.center[1] : "");
+        String value = w + "x" + h + ":" + System.identityHashCode(data) + ":" + projection.getClass().getName() + ":" + center
+                + ":" + System.identityHashCode(options.map) + ":" + System.identityHashCode(options.map_night);
+        synchronized (lock)
+        {
+            if (!value.equals(scene))
+            {
+                clear();
+                scene = value;
+            }
+        }
+    }
+
+    /**
+     * @param now map time (millis), or -1 (current time; not cached)
+     * @param offsetMinutes minutes offset from now
+     * @return a cached frame, or null
+     */
+    @Nullable
+    public Bitmap get(long now, long offsetMinutes)
+    {
+        if (now < 0) {
+            return null;
+        }
+        synchronized (lock)
+        {
+            Bitmap frame = frames.get(key(now, offsetMinutes));
+            if (frame != null && !frame.isRecycled())
+            {
+                numHits++;
+                return frame;
+            } else {
+                numMisses++;
+                return null;
+            }
+        }
+    }
+
+    public void put(long now, long offsetMinutes, @Nullable Bitmap frame)
+    {
+        if (now < 0 || frame == null) {
+            return;
+        }
+        synchronized (lock)
+        {
+            Bitmap previous = frames.put(key(now, offsetMinutes), frame);
+            if (previous != null) {
+                numBytes -= sizeOf(previous);
+            }
+            numBytes += sizeOf(frame);
+
+            Iterator<Map.Entry<Long, Bitmap>> iterator = frames.entrySet().iterator();
+            while (numBytes > maxBytes && iterator.hasNext())
+            {
+                Map.Entry<Long, Bitmap> eldest = iterator.next();
+                numBytes -= sizeOf(eldest.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    protected static long key(long now, long offsetMinutes) {
+        return now + (offsetMinutes * 60 * 1000);
+    }
+
+    protected static long sizeOf(Bitmap frame) {
+        return (long) frame.getRowBytes() * frame.getHeight();
+    }
+
+    public void clear()
+    {
+        synchronized (lock)
+        {
+            frames.clear();
+            numBytes = 0;
+        }
+    }
+
+    public int getNumFrames()
+    {
+        synchronized (lock) {
+            return frames.size();
+        }
+    }
+
+    public int getNumHits() {
+        return numHits;
+    }
+    public int getNumMisses() {
+        return numMisses;
+    }
+}
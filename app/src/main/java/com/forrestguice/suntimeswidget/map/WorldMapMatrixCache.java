@@ -0,0 +1,96 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.map;
+
+import android.support.annotation.NonNull;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process-wide cache of projection matrices (unit vector per pixel; see WorldMapProjection.initMatrix).
+ * Matrices are created lazily on first use, are shared by every instance of a projection (keyed by
+ * WorldMapProjection.matrixKey), and are held by SoftReference so they can be reclaimed under memory
+ * pressure; at most MAX_ENTRIES are retained (least recently used are evicted first).
+ */
+public class WorldMapMatrixCache
+{
+    public static final int MAX_ENTRIES = 4;
+
+    private static final Object lock = new Object();
+    private static final LinkedHashMap<String, SoftReference<float[]>> matrices = new LinkedHashMap<String, SoftReference<float[]>>(MAX_ENTRIES + 1, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SoftReference<float[]>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * @param projection the projection (used to create the matrix if it isn't cached)
+     * @return the projection's matrix (cached)
+     */
+    @NonNull
+    public static float[] get(@NonNull WorldMapTask.WorldMapProjection projection)
+    {
+        String key = projection.matrixKey();
+        synchronized (lock)
+        {
+            SoftReference<float[]> reference = matrices.get(key);
+            float[] matrix = (reference != null ? reference.get() : null);
+            if (matrix == null)
+            {
+                matrix = projection.initMatrix();
+                matrices.put(key, new SoftReference<>(matrix));
+            }
+            return matrix;
+        }
+    }
+
+    public static boolean contains(@NonNull String key)
+    {
+        synchronized (lock)
+        {
+            SoftReference<float[]> reference = matrices.get(key);
+            return (reference != null && reference.get() != null);
+        }
+    }
+
+    public static void remove(@NonNull String key)
+    {
+        synchronized (lock) {
+            matrices.remove(key);
+        }
+    }
+
+    public static void clear()
+    {
+        synchronized (lock) {
+            matrices.clear();
+        }
+    }
+
+    public static int getNumEntries()
+    {
+        synchronized (lock) {
+            return matrices.size();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.forrestguice.suntimeswidget.map;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.forrestguice.suntimeswidget.calculator.RangeExecutor;
+
+/**
+ * Shades sunlight and moonlight for a WorldMapProjection. The projection's matrix holds a unit vector for each
+ * pixel (three planes of w * h values; v0, v1, then v2); each pixel is classified by the sign of its dot product
+ * with the sun (shadow) and the moon (moonlight), then assigned a color from a palette indexed by the result
+ * (LIT, SHADOW, MOONLIGHT, or SHADOW | MOONLIGHT).
+ *
+ * The grid is split into bands of rows that are shaded in parallel (using RangeExecutor), and results are
+ * written into pixel buffers that are reused between frames. Matrices are stored as floats (half the size of
+ * doubles); grids that are separable (equirectangular) can be shaded from per-column and per-row factors instead.
+ */
+public class WorldMapRasterizer
+{
+    public static final int LIT = 0;
+    public static final int SHADOW = 1;
+    public static final int MOONLIGHT = 2;
+
+    public static final int MIN_BAND_ROWS = 16;
+
+    protected int[][] buffers = new int[2][];
+
+    /**
+     * @param i buffer index (0 or 1)
+     * @param length required length
+     * @return a reusable pixel buffer (contents are overwritten by shade)
+     */
+    public int[] getBuffer(int i, int length)
+    {
+        if (buffers[i] == null || buffers[i].length != length) {
+            buffers[i] = new int[length];
+        }
+        return buffers[i];
+    }
+
+    /**
+     * Shades the w * h grid into pixels0 (and pixels1).
+     * @param m matrix of unit vectors [3 * w * h]
+     * @param sunUp unit vector pointing at the sun, or null (no shadow)
+     * @param moonUp unit vector pointing at the moon, or null (no moonlight)
+     * @param pixels0 output [w * h]
+     * @param palette0 colors [4] for pixels0
+     * @param pixels1 a second output [w * h] (or null)
+     * @param palette1 colors [4] for pixels1 (or null)
+     */
+    public static void shade(@NonNull final float[] m, final int w, final int h, @Nullable double[] sunUp, @Nullable double[] moonUp,
+                             @NonNull final int[] pixels0, @NonNull final int[] palette0, @Nullable final int[] pixels1, @Nullable final int[] palette1)
+    {
+        final boolean hasSun = (sunUp != null);
+        final boolean hasMoon = (moonUp != null);
+        final double s0 = (hasSun ? sunUp[0] : 0), s1 = (hasSun ? sunUp[1] : 0), s2 = (hasSun ? sunUp[2] : 0);
+        final double m0 = (hasMoon ? moonUp[0] : 0), m1 = (hasMoon ? moonUp[1] : 0), m2 = (hasMoon ? moonUp[2] : 0);
+        final int n = w * h;
+
+        RangeExecutor.execute(null, h, MIN_BAND_ROWS, new RangeExecutor.RangeTask()
+        {
+            @Override
+            public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+            {
+                double v0, v1, v2;
+                for (int j = from; j < to; j++)
+                {
+                    int z = w * j;
+                    int z1 = z + w;
+                    for (; z < z1; z++)
+                    {
+                        v0 = m[z];
+                        v1 = m[n + z];
+                        v2 = m[n + n + z];
+
+                        int c = LIT;
+                        if (hasSun && ((s0 * v0) + (s1 * v1) + (s2 * v2)) <= 0) {    // intensity = up.dotProduct(v)
+                            c |= SHADOW;
+                        }
+                        if (hasMoon && ((m0 * v0) + (m1 * v1) + (m2 * v2)) > 0) {
+                            c |= MOONLIGHT;
+                        }
+                        pixels0[z] = palette0[c];
+                        if (pixels1 != null) {
+                            pixels1[z] = palette1[c];
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Shades a separable (equirectangular) w * h grid into pixels0 (and pixels1). Each unit vector factors as
+     * (cosLon * cosLat, sinLon * cosLat, sinLat), so its dot product with u is (cosLat * ((u0 * cosLon) + (u1 * sinLon))) + (u2 * sinLat);
+     * the column terms are computed once, leaving two multiply-adds per pixel (and no matrix).
+     * @param lon cosines [w] followed by sines [w] of each column's longitude
+     * @param lat cosines [h] followed by sines [h] of each row's latitude
+     */
+    public static void shade(@NonNull final double[] lon, @NonNull final double[] lat, final int w, final int h, @Nullable double[] sunUp, @Nullable double[] moonUp,
+                             @NonNull final int[] pixels0, @NonNull final int[] palette0, @Nullable final int[] pixels1, @Nullable final int[] palette1)
+    {
+        final boolean hasSun = (sunUp != null);
+        final boolean hasMoon = (moonUp != null);
+        final double s2 = (hasSun ? sunUp[2] : 0);
+        final double m2 = (hasMoon ? moonUp[2] : 0);
+
+        final double[] sunColumn = columnTerms(lon, w, sunUp);
+        final double[] moonColumn = columnTerms(lon, w, moonUp);
+
+        RangeExecutor.execute(null, h, MIN_BAND_ROWS, new RangeExecutor.RangeTask()
+        {
+            @Override
+            public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+            {
+                for (int j = from; j < to; j++)
+                {
+                    double cosLat = lat[j];
+                    double sunRow = s2 * lat[h + j];
+                    double moonRow = m2 * lat[h + j];
+
+                    int z = w * j;
+                    for (int i = 0; i < w; i++, z++)
+                    {
+                        int c = LIT;
+                        if (hasSun && ((cosLat * sunColumn[i]) + sunRow) <= 0) {
+                            c |= SHADOW;
+                        }
+                        if (hasMoon && ((cosLat * moonColumn[i]) + moonRow) > 0) {
+                            c |= MOONLIGHT;
+                        }
+                        pixels0[z] = palette0[c];
+                        if (pixels1 != null) {
+                            pixels1[z] = palette1[c];
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the column terms ((u0 * cosLon) + (u1 * sinLon)) of a separable grid, or null if u is null
+     */
+    @Nullable
+    protected static double[] columnTerms(@NonNull double[] lon, int w, @Nullable double[] u)
+    {
+        if (u == null) {
+            return null;
+        }
+        double[] column = new double[w];
+        for (int i = 0; i < w; i++) {
+            column[i] = (u[0] * lon[i]) + (u[1] * lon[w + i]);
+        }
+        return column;
+    }
+
+    /////////////////////////////////////////////
+
+    /**
+     * Shades the next frame of a separable (equirectangular) grid into pixels0 (and pixels1), updating the pixels
+     * shaded by the previous call (same grid, buffers, and palettes) rather than shading the entire grid.
+     *
+     * Within each row the lit part of the grid is a single arc of columns centered on the column facing the sun
+     * (or moon); between frames this arc rotates and widens only slightly, so only the columns its ends have swept
+     * across are shaded again. Rows that change shape (e.g. polar day ending) are shaded entirely, and the first
+     * frame (or a frame that doesn't follow the previous one) falls back to shading the full grid.
+     */
+    public void shadeNext(@NonNull double[] lon, @NonNull double[] lat, int w, int h, @Nullable double[] sunUp, @Nullable double[] moonUp,
+                          @NonNull int[] pixels0, @NonNull int[] palette0, @Nullable int[] pixels1, @Nullable int[] palette1)
+    {
+        double[] sunColumn = columnTerms(lon, w, sunUp);
+        double[] moonColumn = columnTerms(lon, w, moonUp);
+        double s2 = (sunUp != null ? sunUp[2] : 0);
+        double m2 = (moonUp != null ? moonUp[2] : 0);
+
+        int[] sunArcs0 = sunArcs, moonArcs0 = moonArcs;
+        sunArcs = findArcs(sunColumn, s2, lat, w, h, sunArcs1);
+        moonArcs = findArcs(moonColumn, m2, lat, w, h, moonArcs1);
+        sunArcs1 = sunArcs0;
+        moonArcs1 = moonArcs0;
+
+        Object[] frame = new Object[] { lon, lat, pixels0, palette0, pixels1, palette1 };
+        boolean followsPrevious = (previous != null && previousW == w && previousH == h
+                && (sunArcs0 != null) == (sunUp != null) && (moonArcs0 != null) == (moonUp != null));
+        for (int k = 0; followsPrevious && k < frame.length; k++) {
+            followsPrevious = (frame[k] == previous[k]);
+        }
+        previous = frame;
+        previousW = w;
+        previousH = h;
+
+        if (!followsPrevious)
+        {
+            shade(lon, lat, w, h, sunUp, moonUp, pixels0, palette0, pixels1, palette1);
+            numShaded = w * h;
+            return;
+        }
+
+        numShaded = 0;
+        int maxSpan = w / 4;
+        for (int j = 0; j < h; j++)
+        {
+            boolean rowChanged = false;
+            if (sunArcs != null) {
+                rowChanged = !shadeSwept(sunArcs0, sunArcs, j, w, maxSpan, sunColumn, s2, moonColumn, m2, lat, h, pixels0, palette0, pixels1, palette1);
+            }
+            if (!rowChanged && moonArcs != null) {
+                rowChanged = !shadeSwept(moonArcs0, moonArcs, j, w, maxSpan, sunColumn, s2, moonColumn, m2, lat, h, pixels0, palette0, pixels1, palette1);
+            }
+            if (rowChanged) {
+                shadeSpan(j, 0, w, w, sunColumn, s2, moonColumn, m2, lat, h, pixels0, palette0, pixels1, palette1);
+            }
+        }
+    }
+
+    public static final int ROW_DARK = -1;    // arcs[2 * j] when the entire row is dark
+    public static final int ROW_LIT = -2;     // arcs[2 * j] when the entire row is lit
+
+    protected int[] sunArcs = null, moonArcs = null;      // [2 * h]; per row the lit arc [start, end) of the previous frame (circular), or ROW_DARK / ROW_LIT
+    protected int[] sunArcs1 = null, moonArcs1 = null;    // spare arrays (reused)
+    protected Object[] previous = null;
+    protected int previousW = 0, previousH = 0;
+
+    protected int numShaded = 0;
+    /**
+     * @return the number of pixels shaded by the last call to shadeNext
+     */
+    public int getNumShaded() {
+        return numShaded;
+    }
+
+    /**
+     * Finds the lit arc of each row. The column terms of a separable grid are a sampled cosine (largest at the column
+     * facing u, smallest opposite it), so each side of the arc is found by binary search.
+     * @return [2 * h] arcs (reusing the given array if possible), or null if column is null
+     */
+    @Nullable
+    protected static int[] findArcs(@Nullable double[] column, double u2, double[] lat, int w, int h, @Nullable int[] arcs)
+    {
+        if (column == null) {
+            return null;
+        }
+        if (arcs == null || arcs.length != 2 * h) {
+            arcs = new int[2 * h];
+        }
+
+        int iMax = 0, iMin = 0;
+        for (int i = 1; i < w; i++)
+        {
+            if (column[i] > column[iMax]) {
+                iMax = i;
+            }
+            if (column[i] < column[iMin]) {
+                iMin = i;
+            }
+        }
+        int dRise = (iMax - iMin + w) % w;    // iMin .. iMax (dark to lit)
+        int dSet = (iMin - iMax + w) % w;     // iMax .. iMin (lit to dark)
+
+        for (int j = 0; j < h; j++)
+        {
+            double cosLat = lat[j];
+            double row = u2 * lat[h + j];
+            if (!isLit(column, iMax, cosLat, row)) {
+                arcs[2 * j] = ROW_DARK;
+
+            } else if (isLit(column, iMin, cosLat, row)) {
+                arcs[2 * j] = ROW_LIT;
+
+            } else {
+                int lo = 0, hi = dRise;    // first lit column after iMin
+                while (hi - lo > 1)
+                {
+                    int k = (lo + hi) >>> 1;
+                    if (isLit(column, (iMin + k) % w, cosLat, row)) {
+                        hi = k;
+                    } else lo = k;
+                }
+                arcs[2 * j] = (iMin + hi) % w;
+
+                lo = 0; hi = dSet;         // first dark column after iMax
+                while (hi - lo > 1)
+                {
+                    int k = (lo + hi) >>> 1;
+                    if (isLit(column, (iMax + k) % w, cosLat, row)) {
+                        lo = k;
+                    } else hi = k;
+                }
+                arcs[2 * j + 1] = (iMax + hi) % w;
+            }
+        }
+        return arcs;
+    }
+
+    protected static boolean isLit(double[] column, int i, double cosLat, double row) {
+        return ((cosLat * column[i]) + row) > 0;    // same expression as shade (SHADOW when <= 0)
+    }
+
+    /**
+     * Shades the columns of row j swept by the ends of an arc (between frames).
+     * @return false if the row changed shape (and should be shaded entirely)
+     */
+    protected boolean shadeSwept(int[] arcs0, int[] arcs1, int j, int w, int maxSpan, double[] sunColumn, double s2, double[] moonColumn, double m2, double[] lat, int h,
+                                 int[] pixels0, int[] palette0, int[] pixels1, int[] palette1)
+    {
+        int start0 = arcs0[2 * j], start1 = arcs1[2 * j];
+        if (start0 < 0 || start1 < 0) {
+            return (start0 == start1);    // unchanged (entirely lit or dark), or changed shape
+        }
+
+        int end0 = arcs0[2 * j + 1], end1 = arcs1[2 * j + 1];
+        int dStart = (start1 - start0 + w) % w;
+        int dEnd = (end1 - end0 + w) % w;
+        int spanStart = Math.min(dStart, w - dStart);
+        int spanEnd = Math.min(dEnd, w - dEnd);
+        if (spanStart > maxSpan || spanEnd > maxSpan) {
+            return false;
+        }
+        shadeSpan(j, (dStart <= w - dStart ? start0 : start1), spanStart, w, sunColumn, s2, moonColumn, m2, lat, h, pixels0, palette0, pixels1, palette1);
+        shadeSpan(j, (dEnd <= w - dEnd ? end0 : end1), spanEnd, w, sunColumn, s2, moonColumn, m2, lat, h, pixels0, palette0, pixels1, palette1);
+        return true;
+    }
+
+    /**
+     * Shades n columns of row j (starting from column i, wrapping around).
+     */
+    protected void shadeSpan(int j, int i, int n, int w, @Nullable double[] sunColumn, double s2, @Nullable double[] moonColumn, double m2, double[] lat, int h,
+                             int[] pixels0, int[] palette0, @Nullable int[] pixels1, @Nullable int[] palette1)
+    {
+        double cosLat = lat[j];
+        double sunRow = s2 * lat[h + j];
+        double moonRow = m2 * lat[h + j];
+        for (int k = 0; k < n; k++)
+        {
+            int x = (i + k) % w;
+            int z = (w * j) + x;
+            int c = LIT;
+            if (sunColumn != null && !isLit(sunColumn, x, cosLat, sunRow)) {
+                c |= SHADOW;
+            }
+            if (moonColumn != null && isLit(moonColumn, x, cosLat, moonRow)) {
+                c |= MOONLIGHT;
+            }
+            pixels0[z] = palette0[c];
+            if (pixels1 != null) {
+                pixels1[z] = palette1[c];
+            }
+        }
+        numShaded += n;
+    }
+}
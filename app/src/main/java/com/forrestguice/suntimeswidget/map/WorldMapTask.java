@@ -27,11 +27,13 @@ import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.views.FrameClock;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -60,7 +62,7 @@ public class WorldMapTask extends AsyncTask<Object, Bitmap, Bitmap>
     {
         int w, h;
         int numFrames = 1;
-        long frameDuration = 250000000;    // nanoseconds (250 ms)
+        long frameDuration = 250;    // ms
         long initialOffset = 0;
         SuntimesRiseSetDataset data;
         try {
@@ -79,39 +81,49 @@ public class WorldMapTask extends AsyncTask<Object, Bitmap, Bitmap>
             if (params.length > 6) {
                 initialOffset = (long)params[6];
             }
-            frameDuration = options.anim_frameLengthMs * 1000000;   // ms to ns
+            frameDuration = options.anim_frameLengthMs;
 
         } catch (ClassCastException e) {
             Log.w("WorldMapTask", "Invalid params; using [null, 0, 0]");
             return null;
         }
 
-        long time0 = System.nanoTime();
+        FrameClock clock = new FrameClock(frameDuration);
+        clock.start();
         Bitmap frame = null;
         options.offsetMinutes = initialOffset;
 
-        int i = 0;
+        int i = 0, advance = 0, lastAdvance = 0;    // lastAdvance is undone when the loop ends (advance is 0 if interrupted)
         while (i < numFrames || numFrames <= 0)
         {
             if (isCancelled()) {
                 break;
             }
-            frame = makeBitmap(data, w, h, options);
+            frame = (keyframes != null ? keyframes.get(options.now, options.offsetMinutes) : null);
+            if (frame == null)
+            {
+                frame = makeBitmap(data, w, h, options);
+                if (keyframes != null) {
+                    keyframes.put(options.now, options.offsetMinutes, frame);
+                }
+            }
 
-            long time1 = System.nanoTime();
-            while ((time1 - time0) < frameDuration) {
-                time1 = System.nanoTime();
+            clock.setAllowSkip(allowFrameSkip);
+            advance = clock.awaitFrame();
+            if (advance <= 0) {
+                break;    // interrupted (cancelled)
             }
 
             publishProgress(frame);
             if (listener != null) {
                 listener.afterFrame(frame, options.offsetMinutes);
             }
-            options.offsetMinutes += options.anim_frameOffsetMinutes;
-            time0 = System.nanoTime();
+            options.offsetMinutes += advance * options.anim_frameOffsetMinutes;
+            lastAdvance = advance;
             i++;
         }
-        options.offsetMinutes -= options.anim_frameOffsetMinutes;
+        options.offsetMinutes -= lastAdvance * options.anim_frameOffsetMinutes;
+        //Log.d("DEBUG", "WorldMapTask: frames: " + clock.getNumFrames() + ", dropped: " + clock.getNumDropped() + ", pooled bitmaps: " + BitmapPool.getHitRate());
         return frame;
     }
 
@@ -157,6 +169,16 @@ public class WorldMapTask extends AsyncTask<Object, Bitmap, Bitmap>
         this.listener = listener;
     }
 
+    private volatile boolean allowFrameSkip = true;
+    public void setAllowFrameSkip( boolean value ) {
+        allowFrameSkip = value;    // false; every frame is rendered (e.g. while recording) even if it falls behind
+    }
+
+    private WorldMapKeyframes keyframes = null;
+    public void setKeyframes( @Nullable WorldMapKeyframes keyframes ) {
+        this.keyframes = keyframes;    // frames are taken from (and added to) keyframes (or null to render every frame)
+    }
+
     /**
      * WorldMapOptions
      */
@@ -219,14 +241,25 @@ public class WorldMapTask extends AsyncTask<Object, Bitmap, Bitmap>
      */
     public static abstract class WorldMapProjection
     {
+        protected final WorldMapRasterizer rasterizer = new WorldMapRasterizer();    // pixel buffers reused each frame (guarded by makeBitmap)
+
         /**
          * algorithm described at https://gis.stackexchange.com/questions/17184/method-to-shade-or-overlay-a-raster-map-to-reflect-time-of-day-and-ambient-light
+         * Implementations are synchronized; the paints, mask bitmaps, and pixel buffers held by a projection are
+         * reused between frames, so a projection renders one frame at a time (whichever thread calls it).
          */
         public abstract Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options);
         public abstract void initPaint(WorldMapTask.WorldMapOptions options);
-        public abstract double[] initMatrix();            // creates flattened multi-dimensional array; [lon][lat][v(3)]
-        public abstract double[] getMatrix();
-        public abstract void resetMatrix();
+        public abstract float[] initMatrix();             // creates flattened multi-dimensional array; [lon][lat][v(3)]
+        public float[] getMatrix() {                      // lazily created, shared, and evictable (@see WorldMapMatrixCache)
+            return WorldMapMatrixCache.get(this);
+        }
+        public void resetMatrix() {
+            WorldMapMatrixCache.remove(matrixKey());
+        }
+        protected String matrixKey() {                    // identifies the matrix; projections sharing a key share a matrix
+            return getClass().getName();
+        }
         public abstract int[] matrixSize();               // [width(lon), height(lat)]
         protected abstract int k(int x, int y, int z);    // returns index into flattened array
         public abstract int[] toBitmapCoords(int w, int h, double[] mid, double lat, double lon);
@@ -61,6 +61,7 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
 
     private WorldMapTask drawTask;
     private WorldMapTask.WorldMapOptions options = new WorldMapTask.WorldMapOptions();
+    private final WorldMapKeyframes keyframes = new WorldMapKeyframes();    // rendered frames (reused when scrubbing)
     private WorldMapWidgetSettings.WorldMapWidgetMode mode = WorldMapWidgetSettings.WorldMapWidgetMode.EQUIRECTANGULAR_SIMPLE;
 
     private SuntimesRiseSetDataset data = null;
@@ -119,6 +120,7 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
     {
         Drawable background = loadBackgroundDrawable(context, mode.getMapTag(), options.center);
         this.mode = mode;
+        keyframes.clear();
         switch (mode)
         {
             case EQUIAZIMUTHAL_SIMPLE:
@@ -211,6 +213,7 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
     public void setOptions( WorldMapTask.WorldMapOptions options )
     {
         this.options = options;
+        keyframes.clear();
     }
 
     public int getMaxUpdateRate()
@@ -283,6 +286,7 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
     private int foregroundColor;
     public void themeViews(Context context, SuntimesTheme theme)
     {
+        keyframes.clear();
         options.backgroundColor = theme.getMapBackgroundColor();
         options.sunShadowColor = theme.getMapShadowColor();
         options.moonLightColor = theme.getMapHighlightColor();
@@ -406,8 +410,15 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
                 return;
             }
 
+            if (!sameOptions) {
+                keyframes.clear();
+            }
+            keyframes.setScene(w, h, data, projection, options);
+
             drawTask = new WorldMapTask();
             drawTask.setListener(drawListener);
+            drawTask.setKeyframes(keyframes);
+            drawTask.setAllowFrameSkip(!isRecording());
 
             Log.w(LOGTAG, "updateViews: " + w + ", " + h );
             drawTask.execute(data, w, h, options, projection, (animated ? 0 : 1), options.offsetMinutes);
@@ -552,6 +563,9 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
             exportTask.setBitmaps(new Bitmap[] { bitmap });
             exportTask.setWaitForFrames(animated);
             exportTask.setZippedOutput(animated);
+            if (drawTask != null) {
+                drawTask.setAllowFrameSkip(!animated);    // record every frame
+            }
             if (Build.VERSION.SDK_INT >= 11) {
                 exportTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);   // executes in parallel to draw task
             } else exportTask.execute();
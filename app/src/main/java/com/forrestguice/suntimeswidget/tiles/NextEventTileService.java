@@ -34,6 +34,7 @@ import android.view.ContextThemeWrapper;
 
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.SuntimesUtils;
+import com.forrestguice.suntimeswidget.calculator.DatasetRegistry;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.settings.AppSettings;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
@@ -84,10 +85,7 @@ public class NextEventTileService extends ClockTileService
      */
     protected SuntimesRiseSetDataset initDataset(Context context)
     {
-        if (dataset == null) {
-            dataset = new SuntimesRiseSetDataset(context, appWidgetId());
-            dataset.calculateData();
-        }
+        dataset = DatasetRegistry.getRiseSetDataset(context, appWidgetId());    // shared; recalculated after settings change or date rollover
         return dataset;
     }
     protected SuntimesRiseSetDataset dataset = null;
@@ -34,6 +34,7 @@ import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.SuntimesActivity;
 import com.forrestguice.suntimeswidget.SuntimesUtils;
 import com.forrestguice.suntimeswidget.alarmclock.AlarmNotifications;
+import com.forrestguice.suntimeswidget.calculator.DatasetRegistry;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData2;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.settings.WidgetActions;
@@ -92,7 +93,7 @@ public abstract class SuntimesTileService extends TileService
     public void onStartListening()
     {
         super.onStartListening();
-        initData(getApplicationContext(), true);
+        initData(getApplicationContext());
         initLocale(getApplicationContext());
         updateTile(getApplicationContext());
         //Log.i(TAG, "onStartListening");
@@ -178,15 +179,9 @@ public abstract class SuntimesTileService extends TileService
         } else return AlarmNotifications.getSuntimesIntent(getApplicationContext());
     }
 
-    protected SuntimesRiseSetData2 initData(Context context) {
-        return initData(context, false);
-    }
-    protected SuntimesRiseSetData2 initData(Context context, boolean replace)
+    protected SuntimesRiseSetData2 initData(Context context)
     {
-        if (data == null || replace) {
-            data = new SuntimesRiseSetData2(context, appWidgetId());
-            data.calculate();
-        }
+        data = DatasetRegistry.getRiseSetData(context, appWidgetId());    // shared; recalculated after settings change or date rollover
         return data;
     }
     protected SuntimesRiseSetData2 data = null;
@@ -0,0 +1,189 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A pool of bitmaps (keyed by width, height, and config) shared by the map and graph renderers (LightMapTask,
+ * LineGraphTask, and the WorldMapProjections). Animated views render a new bitmap every frame; rather than
+ * allocating each frame (and leaving the previous one for the garbage collector), renderers obtain bitmaps
+ * from the pool, and views release frames they are no longer displaying back to it.
+ *
+ * A bitmap must only be released by its owner once nothing else will draw it (e.g. not a frame that was
+ * handed to a widget or an export). The pool retains at most MAX_PER_KEY bitmaps of each size and at most
+ * MAX_BYTES in total; bitmaps beyond that are recycled.
+ */
+public class BitmapPool
+{
+    public static final int MAX_PER_KEY = 4;
+    public static final long MAX_BYTES = Runtime.getRuntime().maxMemory() / 16;
+
+    private static final Object lock = new Object();
+    private static final HashMap<String, ArrayList<Bitmap>> pool = new HashMap<>();
+    private static long numBytes = 0;
+    private static int numHits = 0, numMisses = 0;
+    private static volatile int defaultDensity = 0;    // density of a new bitmap (pooled bitmaps are reset to this)
+
+    /**
+     * @return a mutable bitmap (cleared to transparent, with the default density) from the pool, or a new bitmap
+     */
+    @NonNull
+    public static Bitmap obtain(int w, int h, @NonNull Bitmap.Config config)
+    {
+        Bitmap bitmap = null;
+        synchronized (lock)
+        {
+            ArrayList<Bitmap> bitmaps = pool.get(key(w, h, config));
+            while (bitmap == null && bitmaps != null && !bitmaps.isEmpty())
+            {
+                Bitmap b = bitmaps.remove(bitmaps.size() - 1);
+                numBytes -= sizeOf(b);
+                if (!b.isRecycled()) {
+                    bitmap = b;
+                }
+            }
+            if (bitmap != null) {
+                numHits++;
+            } else numMisses++;
+        }
+
+        if (bitmap != null)
+        {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            if (defaultDensity != 0) {
+                bitmap.setDensity(defaultDensity);
+            }
+            return bitmap;
+
+        } else {
+            bitmap = Bitmap.createBitmap(w, h, config);
+            defaultDensity = bitmap.getDensity();
+            return bitmap;
+        }
+    }
+
+    /**
+     * Returns a bitmap to the pool (or recycles it if the pool is full); the caller must not use it afterward.
+     * @param bitmap a bitmap that is no longer displayed (or null)
+     */
+    public static void release(@Nullable Bitmap bitmap)
+    {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (bitmap.isMutable() && bitmap.getConfig() != null)
+        {
+            long size = sizeOf(bitmap);
+            synchronized (lock)
+            {
+                String key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+                ArrayList<Bitmap> bitmaps = pool.get(key);
+                if (bitmaps == null) {
+                    pool.put(key, bitmaps = new ArrayList<>());
+                }
+                if (containsBitmap(bitmaps, bitmap)) {
+                    return;    // already released
+                }
+                if (bitmaps.size() < MAX_PER_KEY && (numBytes + size) <= MAX_BYTES)
+                {
+                    bitmaps.add(bitmap);
+                    numBytes += size;
+                    return;
+                }
+            }
+        }
+        bitmap.recycle();
+    }
+
+    private static boolean containsBitmap(ArrayList<Bitmap> bitmaps, Bitmap bitmap)
+    {
+        for (Bitmap b : bitmaps) {
+            if (b == bitmap) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static String key(int w, int h, Bitmap.Config config) {
+        return w + "x" + h + ":" + config;
+    }
+
+    protected static long sizeOf(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * Recycles all pooled bitmaps (and resets metrics).
+     */
+    public static void clear()
+    {
+        synchronized (lock)
+        {
+            for (ArrayList<Bitmap> bitmaps : pool.values()) {
+                for (Bitmap bitmap : bitmaps) {
+                    bitmap.recycle();
+                }
+            }
+            pool.clear();
+            numBytes = 0;
+            numHits = numMisses = 0;
+        }
+    }
+
+    public static int getNumHits()
+    {
+        synchronized (lock) {
+            return numHits;
+        }
+    }
+
+    public static int getNumMisses()
+    {
+        synchronized (lock) {
+            return numMisses;
+        }
+    }
+
+    /**
+     * @return the fraction of obtain calls that reused a pooled bitmap [0, 1]
+     */
+    public static double getHitRate()
+    {
+        synchronized (lock)
+        {
+            int n = numHits + numMisses;
+            return (n > 0 ? (double) numHits / n : 0);
+        }
+    }
+
+    public static long getNumBytes()
+    {
+        synchronized (lock) {
+            return numBytes;
+        }
+    }
+}
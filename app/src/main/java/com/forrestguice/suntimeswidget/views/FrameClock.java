@@ -0,0 +1,116 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.forrestguice.suntimeswidget.views;
+
+/**
+ * A frame clock used to pace animation frames rendered by a background task (LightMapTask, LineGraphTask,
+ * and WorldMapTask). Frames are due at fixed intervals; the clock sleeps until the next frame is due (rather
+ * than spinning on System.nanoTime), and is interrupted when the task is cancelled.
+ *
+ * When a frame is rendered late (the render took longer than the frame interval), the missed intervals are
+ * counted as dropped frames, and awaitFrame returns the number of intervals that elapsed so that the task can
+ * skip ahead (keeping the animation in step with the clock). At most MAX_SKIP intervals are skipped at once;
+ * beyond that the clock is resynchronized (e.g. after a long pause).
+ */
+public class FrameClock
+{
+    public static final int MAX_SKIP = 4;
+
+    protected final long frameNanos;
+    protected long deadline;           // nanoTime that the next frame is due
+    protected boolean allowSkip = true;
+
+    protected int numFrames = 0;
+    protected int numDropped = 0;
+
+    public FrameClock(long frameMillis) {
+        this.frameNanos = Math.max(1, frameMillis) * 1000000L;    // ms to ns
+    }
+
+    /**
+     * @param value true frames may be skipped when behind (default), false every frame advances a single interval
+     */
+    public void setAllowSkip(boolean value) {
+        allowSkip = value;
+    }
+
+    /**
+     * Starts the clock; the first frame is due one interval from now.
+     */
+    public void start()
+    {
+        deadline = System.nanoTime() + frameNanos;
+        numFrames = numDropped = 0;
+    }
+
+    /**
+     * Waits until the next frame is due.
+     * @return the number of intervals the animation should advance (1, or more when frames were dropped), or 0 if interrupted
+     */
+    public int awaitFrame()
+    {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0)
+        {
+            try {
+                Thread.sleep(remaining / 1000000L, (int)(remaining % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+        }
+        return nextFrame(System.nanoTime());
+    }
+
+    /**
+     * Advances the deadline after a frame that was presented at the given time.
+     * @return the number of intervals the animation should advance
+     */
+    protected int nextFrame(long now)
+    {
+        numFrames++;
+        int late = (int)Math.min(Integer.MAX_VALUE, Math.max(0, (now - deadline) / frameNanos));
+        numDropped += late;
+
+        int advance = (allowSkip ? 1 + Math.min(late, MAX_SKIP) : 1);
+        if (late > MAX_SKIP) {
+            deadline = now + frameNanos;    // resync
+        } else deadline += (late + 1) * frameNanos;
+        return advance;
+    }
+
+    /**
+     * @return the number of frames that have been presented since start
+     */
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+    /**
+     * @return the number of frame intervals that were missed since start
+     */
+    public int getNumDropped() {
+        return numDropped;
+    }
+
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+}
@@ -0,0 +1,285 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.widgets;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.SuntimesWidget0;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A single refresh alarm shared by all widgets. Each widget's next update (deadline) is kept in a priority
+ * queue (persisted to SharedPreferences); one (non-waking) alarm is armed for the earliest deadline, and when
+ * it fires every widget that is due (within WINDOW_MILLIS) is dispatched its update broadcast. Widgets then
+ * reschedule themselves after updating (@see SuntimesWidget0.setUpdateAlarm).
+ *
+ * This replaces one alarm per widget; widgets that are due at the same time (e.g. midnight) share a wakeup.
+ */
+public class WidgetRefreshScheduler extends BroadcastReceiver
+{
+    public static final String TAG = "WidgetRefresh";
+    public static final String ACTION_REFRESH = "suntimes.SUNTIMES_WIDGET_REFRESH";
+    public static final String PREFS_REFRESH = "com.forrestguice.suntimeswidget.refresh";
+    public static final String PREF_KEY_DEADLINE = "deadline_";
+    public static final String PREF_KEY_ACTION = "action_";
+
+    public static final long WINDOW_MILLIS = 5 * 1000;    // batching tolerance; the alarm may fire up to 5s late, and widgets due within 5s are dispatched together
+
+    protected static final Object lock = new Object();
+    protected static PriorityQueue<Entry> queue = null;
+    protected static final HashMap<String, Entry> entries = new HashMap<>();
+    protected static long armedAt = -1;
+
+    /**
+     * Entry; a widget's next update.
+     */
+    public static class Entry
+    {
+        public final String widgetClass;    // class name
+        public final int appWidgetId;
+        public final String action;         // update intent filter (@see SuntimesWidget0.getUpdateIntentFilter)
+        public final long deadline;
+
+        public Entry(String widgetClass, int appWidgetId, String action, long deadline)
+        {
+            this.widgetClass = widgetClass;
+            this.appWidgetId = appWidgetId;
+            this.action = action;
+            this.deadline = deadline;
+        }
+
+        public String key() {
+            return key(widgetClass, appWidgetId);
+        }
+        public static String key(String widgetClass, int appWidgetId) {
+            return widgetClass + ":" + appWidgetId;
+        }
+    }
+
+    /**
+     * Schedules (or reschedules) a widget's next update.
+     * @param widgetClass the widget (provider) class
+     * @param appWidgetId the widget id
+     * @param action the update action that is dispatched to the widget
+     * @param deadline time of the update (millis)
+     */
+    public static void schedule(@NonNull Context context, @NonNull Class widgetClass, int appWidgetId, @NonNull String action, long deadline)
+    {
+        synchronized (lock)
+        {
+            initQueue(context);
+            SharedPreferences.Editor prefs = context.getSharedPreferences(PREFS_REFRESH, 0).edit();
+            removeEntry(prefs, Entry.key(widgetClass.getName(), appWidgetId));
+            addEntry(prefs, new Entry(widgetClass.getName(), appWidgetId, action, deadline));
+            prefs.apply();
+            arm(context);
+        }
+    }
+
+    /**
+     * Removes a widget from the queue (e.g. after it was deleted).
+     */
+    public static void unschedule(@NonNull Context context, @NonNull Class widgetClass, int appWidgetId)
+    {
+        synchronized (lock)
+        {
+            initQueue(context);
+            SharedPreferences.Editor prefs = context.getSharedPreferences(PREFS_REFRESH, 0).edit();
+            if (removeEntry(prefs, Entry.key(widgetClass.getName(), appWidgetId)))
+            {
+                prefs.apply();
+                arm(context);
+            }
+        }
+    }
+
+    /**
+     * @return the deadline of the given widget, or -1 if not scheduled
+     */
+    public static long getDeadline(@NonNull Context context, @NonNull Class widgetClass, int appWidgetId)
+    {
+        synchronized (lock)
+        {
+            initQueue(context);
+            Entry entry = entries.get(Entry.key(widgetClass.getName(), appWidgetId));
+            return (entry != null ? entry.deadline : -1);
+        }
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent)
+    {
+        String action = intent.getAction();
+        if (ACTION_REFRESH.equals(action))
+        {
+            ArrayList<Entry> due = new ArrayList<>();
+            synchronized (lock)
+            {
+                initQueue(context);
+                armedAt = -1;
+                long now = System.currentTimeMillis();
+                SharedPreferences.Editor prefs = context.getSharedPreferences(PREFS_REFRESH, 0).edit();
+                while (!queue.isEmpty() && queue.peek().deadline <= now + WINDOW_MILLIS)
+                {
+                    Entry entry = queue.peek();
+                    removeEntry(prefs, entry.key());
+                    due.add(entry);
+                }
+                prefs.apply();
+                arm(context);
+            }
+            Log.d(TAG, "onReceive: " + ACTION_REFRESH + " :: dispatching " + due.size() + " widget updates");
+            for (Entry entry : due) {
+                dispatch(context, entry);
+            }
+        } else {
+            Log.w(TAG, "onReceive: unhandled :: " + action);
+        }
+    }
+
+    /**
+     * Sends the widget its update broadcast (handled by SuntimesWidget0.onReceive).
+     */
+    protected static void dispatch(Context context, Entry entry)
+    {
+        try {
+            Class<?> widgetClass = Class.forName(entry.widgetClass);
+            Intent intent = new Intent(entry.action);
+            intent.setComponent(new ComponentName(context, widgetClass));
+            intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, entry.appWidgetId);
+            intent.putExtra(SuntimesWidget0.KEY_WIDGETCLASS, widgetClass.toString());
+            context.sendBroadcast(intent);
+
+        } catch (ClassNotFoundException e) {
+            Log.w(TAG, "dispatch: dropping " + entry.key() + "; " + e);
+        }
+    }
+
+    /**
+     * Arms the alarm for the earliest deadline (or cancels it if the queue is empty); must hold lock.
+     */
+    protected static void arm(Context context)
+    {
+        Entry next = queue.peek();
+        long nextAt = (next != null ? next.deadline : -1);
+        if (nextAt == armedAt) {
+            return;
+        }
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null)
+        {
+            PendingIntent alarmIntent = getRefreshIntent(context);
+            if (next == null) {
+                alarmManager.cancel(alarmIntent);
+                Log.d(TAG, "arm: queue is empty; alarm cancelled");
+
+            } else if (Build.VERSION.SDK_INT < 19) {
+                alarmManager.set(AlarmManager.RTC, nextAt, alarmIntent);
+            } else {
+                alarmManager.setWindow(AlarmManager.RTC, nextAt, WINDOW_MILLIS, alarmIntent);
+            }
+            armedAt = nextAt;
+            //Log.d(TAG, "arm: " + nextAt + " (" + queue.size() + " widgets in queue)");
+        }
+    }
+
+    protected static PendingIntent getRefreshIntent(Context context)
+    {
+        Intent intent = new Intent(context, WidgetRefreshScheduler.class);
+        intent.setAction(ACTION_REFRESH);
+        return PendingIntent.getBroadcast(context, 0, intent, 0);
+    }
+
+    /**
+     * Loads the queue from SharedPreferences (once per process); must hold lock.
+     */
+    protected static void initQueue(Context context)
+    {
+        if (queue != null) {
+            return;
+        }
+        queue = new PriorityQueue<>(16, new Comparator<Entry>()
+        {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return (o1.deadline < o2.deadline) ? -1 : ((o1.deadline == o2.deadline) ? 0 : 1);
+            }
+        });
+        entries.clear();
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_REFRESH, 0);
+        for (Map.Entry<String, ?> pref : prefs.getAll().entrySet())
+        {
+            String key = pref.getKey();
+            if (key.startsWith(PREF_KEY_DEADLINE) && pref.getValue() instanceof Long)
+            {
+                String entryKey = key.substring(PREF_KEY_DEADLINE.length());
+                String action = prefs.getString(PREF_KEY_ACTION + entryKey, null);
+                int i = entryKey.lastIndexOf(':');
+                if (action != null && i > 0)
+                {
+                    try {
+                        Entry entry = new Entry(entryKey.substring(0, i), Integer.parseInt(entryKey.substring(i + 1)), action, (Long) pref.getValue());
+                        entries.put(entryKey, entry);
+                        queue.add(entry);
+                    } catch (NumberFormatException e) {
+                        Log.w(TAG, "initQueue: ignoring " + key + "; " + e);
+                    }
+                }
+            }
+        }
+    }
+
+    protected static void addEntry(SharedPreferences.Editor prefs, Entry entry)
+    {
+        entries.put(entry.key(), entry);
+        queue.add(entry);
+        prefs.putLong(PREF_KEY_DEADLINE + entry.key(), entry.deadline);
+        prefs.putString(PREF_KEY_ACTION + entry.key(), entry.action);
+    }
+
+    protected static boolean removeEntry(SharedPreferences.Editor prefs, String key)
+    {
+        Entry entry = entries.remove(key);
+        if (entry != null)
+        {
+            queue.remove(entry);
+            prefs.remove(PREF_KEY_DEADLINE + key);
+            prefs.remove(PREF_KEY_ACTION + key);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,237 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.widgets;
+
+import android.annotation.TargetApi;
+import android.appwidget.AppWidgetManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs widget updates off the main thread. Update requests (from any widget provider) are queued by
+ * widget class and appWidgetId, and run after a short delay (COALESCE_MILLIS), so a burst of broadcasts
+ * (e.g. SUNTIMES_ALARM_UPDATE sent to every provider after a timezone or date change) updates each widget once.
+ *
+ * Providers call schedule from onReceive (onUpdate), passing the PendingResult from goAsync; the broadcast
+ * is finished after the batch containing its request has completed. Updates run on a single worker thread
+ * (in the order they were requested); widget layouts share static state (e.g. display strings) and are not
+ * safe to run concurrently. Rise, set, and twilight times are shared between widgets with the same location,
+ * calculator, and date by the calculator pool and CachedSuntimesCalculator.
+ */
+public class WidgetUpdateScheduler
+{
+    public static final String TAG = "WidgetUpdate";
+    public static final long COALESCE_MILLIS = 250;
+
+    /**
+     * UpdateTarget; implemented by widget providers.
+     */
+    public interface UpdateTarget
+    {
+        /**
+         * Called from the worker thread to update a single widget (and schedule its next update); the next update
+         * should be scheduled even if the update fails (exceptions are logged by the scheduler).
+         */
+        void onUpdateWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId);
+    }
+
+    protected static final Object lock = new Object();
+    protected static final LinkedHashMap<String, UpdateRequest> pending = new LinkedHashMap<>();
+    protected static final ArrayList<Object> pendingResults = new ArrayList<>();    // BroadcastReceiver.PendingResult (api11+)
+    protected static boolean scheduled = false;
+
+    /**
+     * Requests an update of the given widgets.
+     * @param context the context
+     * @param widgetClass the widget (provider) class
+     * @param appWidgetIds the widgets to update
+     * @param target performs the update (the most recent request for a widget wins)
+     * @param result the result of goAsync (or null); finished after the update completes
+     */
+    public static void schedule(@NonNull Context context, @NonNull Class widgetClass, @NonNull int[] appWidgetIds, @NonNull UpdateTarget target, @Nullable Object result)
+    {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        if (!isAsync())
+        {
+            for (int appWidgetId : appWidgetIds) {
+                runRequest(new UpdateRequest(context, appWidgetManager, appWidgetId, target));
+            }
+            return;
+        }
+
+        synchronized (lock)
+        {
+            for (int appWidgetId : appWidgetIds)
+            {
+                String key = widgetClass.getName() + ":" + appWidgetId;
+                pending.remove(key);    // re-insert (moves the request to the end of the queue)
+                pending.put(key, new UpdateRequest(context, appWidgetManager, appWidgetId, target));
+            }
+            if (result != null) {
+                pendingResults.add(result);
+            }
+            if (!scheduled)
+            {
+                scheduled = true;
+                getExecutor().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        runPending();
+                    }
+                }, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Discards pending updates (e.g. for widgets that were deleted).
+     */
+    public static void cancel(@NonNull Class widgetClass, @NonNull int[] appWidgetIds)
+    {
+        synchronized (lock)
+        {
+            for (int appWidgetId : appWidgetIds) {
+                pending.remove(widgetClass.getName() + ":" + appWidgetId);
+            }
+        }
+    }
+
+    /**
+     * @return the result of receiver.goAsync() (api11+), or null
+     */
+    @Nullable
+    public static Object goAsync(@NonNull BroadcastReceiver receiver)
+    {
+        if (isAsync()) {
+            return goAsync11(receiver);
+        } else return null;
+    }
+    @TargetApi(11)
+    private static Object goAsync11(@NonNull BroadcastReceiver receiver) {
+        return receiver.goAsync();    // null if called outside of onReceive
+    }
+
+    /**
+     * @return true if updates run on the worker thread (requires goAsync; api11+), false if updates run on the calling thread
+     */
+    public static boolean isAsync() {
+        return (Build.VERSION.SDK_INT >= 11);
+    }
+
+    /**
+     * @return the number of widget updates that are waiting to run
+     */
+    public static int getNumPending()
+    {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    protected static void runPending()
+    {
+        ArrayList<UpdateRequest> requests;
+        ArrayList<Object> results;
+        synchronized (lock)
+        {
+            requests = new ArrayList<>(pending.values());
+            results = new ArrayList<>(pendingResults);
+            pending.clear();
+            pendingResults.clear();
+            scheduled = false;
+        }
+
+        //long bench_start = System.nanoTime();
+        try {
+            for (UpdateRequest request : requests) {
+                runRequest(request);
+            }
+        } finally {
+            finishResults(results);
+        }
+        //long bench_end = System.nanoTime();
+        //Log.d("DEBUG", "WidgetUpdateScheduler: updated " + requests.size() + " widgets (" + results.size() + " broadcasts) :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
+    }
+
+    protected static void runRequest(UpdateRequest request)
+    {
+        try {
+            request.target.onUpdateWidget(request.context, request.appWidgetManager, request.appWidgetId);
+        } catch (Exception e) {
+            Log.e(TAG, "update failed (" + request.appWidgetId + "): " + e, e);
+        }
+    }
+
+    @TargetApi(11)
+    protected static void finishResults(ArrayList<Object> results)
+    {
+        for (Object result : results) {
+            ((BroadcastReceiver.PendingResult) result).finish();
+        }
+    }
+
+    /**
+     * UpdateRequest
+     */
+    protected static class UpdateRequest
+    {
+        public final Context context;
+        public final AppWidgetManager appWidgetManager;
+        public final int appWidgetId;
+        public final UpdateTarget target;
+
+        public UpdateRequest(Context context, AppWidgetManager appWidgetManager, int appWidgetId, UpdateTarget target)
+        {
+            this.context = context;
+            this.appWidgetManager = appWidgetManager;
+            this.appWidgetId = appWidgetId;
+            this.target = target;
+        }
+    }
+
+    protected static ScheduledThreadPoolExecutor executor = null;
+    protected static synchronized ScheduledThreadPoolExecutor getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(@NonNull Runnable r)
+                {
+                    Thread thread = new Thread(r, "WidgetUpdate");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
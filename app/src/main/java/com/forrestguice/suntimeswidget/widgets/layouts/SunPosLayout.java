@@ -50,7 +50,9 @@ public abstract class SunPosLayout extends PositionLayout
     public void prepareForUpdate(Context context, int appWidgetId, SuntimesRiseSetDataset dataset, int[] widgetSize)
     {
         this.scaleBase = WidgetSettings.loadScaleBasePref(context, appWidgetId);
-        dataset.calculateData();
+        if (!dataset.isCalculated()) {
+            dataset.calculateData();
+        }
     }
 
     /**
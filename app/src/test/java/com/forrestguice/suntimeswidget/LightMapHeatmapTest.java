@@ -0,0 +1,169 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTable;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+import com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LightMapHeatmapTest
+{
+    public static final int COLOR_NIGHT = 0, COLOR_ASTRO = 1, COLOR_NAUTICAL = 2, COLOR_CIVIL = 3, COLOR_DAY = 4;
+    public static final int[] LAYER_COLORS = new int[] { COLOR_ASTRO, COLOR_NAUTICAL, COLOR_CIVIL, COLOR_DAY };
+
+    protected static SuntimesCalculator createCalculator(Location location, TimeZone timezone)
+    {
+        SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(location, timezone);
+        return calculator;
+    }
+
+    /**
+     * counts the tables that are solved by each instance
+     */
+    public static class TestCalculator extends Time4ANOAASuntimesCalculator
+    {
+        public int numTables = 0;
+
+        @Override
+        public RiseSetTable getRiseSetTable(Calendar startDate, int numDays, int events)
+        {
+            numTables++;
+            return super.getRiseSetTable(startDate, numDays, events);
+        }
+    }
+
+    @Test
+    public void test_calculate()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        SuntimesCalculator calculator = createCalculator(new Location("test", "35", "-112", "0"), timezone);
+        LightMapHeatmap.YearData data = LightMapHeatmap.calculate(calculator, timezone, timezone, 2024);
+        assertEquals(2024, data.year);
+        assertEquals(366, data.numDays);
+
+        for (int day=0; day<data.numDays; day++)
+        {
+            for (int layer=0; layer<LightMapHeatmap.NUM_LAYERS; layer++)
+            {
+                assertTrue(data.hasLayer(day, layer));
+                assertTrue(data.riseMinute(day, layer) < data.setMinute(day, layer));
+                if (layer > 0) {
+                    assertTrue(data.riseMinute(day, layer) > data.riseMinute(day, layer - 1));    // each layer is inside the previous
+                    assertTrue(data.setMinute(day, layer) < data.setMinute(day, layer - 1));
+                }
+            }
+            assertTrue(Float.isNaN(data.noonElevation(day)));
+        }
+
+        int winter = 355, summer = 172;    // ~ Dec 21, Jun 21
+        float winterLength = data.setMinute(winter, LightMapHeatmap.LAYER_DAY) - data.riseMinute(winter, LightMapHeatmap.LAYER_DAY);
+        float summerLength = data.setMinute(summer, LightMapHeatmap.LAYER_DAY) - data.riseMinute(summer, LightMapHeatmap.LAYER_DAY);
+        assertTrue(summerLength > winterLength + 3 * 60);
+    }
+
+    @Test
+    public void test_calculate_polar()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("UTC");
+        SuntimesCalculator calculator = createCalculator(new Location("test", "85", "0", "0"), timezone);
+        LightMapHeatmap.YearData data = LightMapHeatmap.calculate(calculator, timezone, timezone, 2023);
+        assertEquals(365, data.numDays);
+
+        int summer = 171;
+        assertFalse(data.hasLayer(summer, LightMapHeatmap.LAYER_DAY));
+        assertTrue(data.noonElevation(summer) > 0);
+
+        int winter = 354;
+        assertFalse(data.hasLayer(winter, LightMapHeatmap.LAYER_ASTRO));
+        assertTrue(data.noonElevation(winter) < -6);
+
+        int[] pixels = new int[data.numDays * 10];
+        LightMapHeatmap.rasterize(data, data.numDays, 10, COLOR_NIGHT, LAYER_COLORS, pixels);
+        for (int y=0; y<10; y++) {
+            assertEquals(COLOR_DAY, pixels[y * data.numDays + summer]);    // polar day
+        }
+    }
+
+    @Test
+    public void test_rasterize()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        SuntimesCalculator calculator = createCalculator(new Location("test", "35", "-112", "0"), timezone);
+        LightMapHeatmap.YearData data = LightMapHeatmap.calculate(calculator, timezone, timezone, 2024);
+
+        int w = 2 * data.numDays, h = 1440;
+        int[] pixels = new int[w * h];
+        LightMapHeatmap.rasterize(data, w, h, COLOR_NIGHT, LAYER_COLORS, pixels);
+
+        for (int x=0; x<w; x += 17)
+        {
+            int day = (x * data.numDays) / w;
+            assertEquals(COLOR_NIGHT, pixels[x]);                       // midnight
+            assertEquals(COLOR_DAY, pixels[(h / 2) * w + x]);           // noon
+            for (int layer=0; layer<LightMapHeatmap.NUM_LAYERS; layer++)
+            {
+                int y = Math.round(data.riseMinute(day, layer)) + 1;    // just after rise (h == minutes)
+                assertEquals(LAYER_COLORS[layer], pixels[y * w + x]);
+            }
+        }
+    }
+
+    @Test
+    public void test_get_cached()
+    {
+        LightMapHeatmap.clear();
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        SuntimesCalculator calculator = createCalculator(new Location("test", "35", "-112", "0"), timezone);
+        LightMapHeatmap.YearData data0 = LightMapHeatmap.get(calculator, timezone, timezone, 2024);
+        assertSame(data0, LightMapHeatmap.get(calculator, timezone, timezone, 2024));
+        assertNotSame(data0, LightMapHeatmap.get(calculator, timezone, timezone, 2025));
+
+        SuntimesCalculator calculator1 = createCalculator(new Location("test", "40", "-112", "0"), timezone);
+        assertNotSame(data0, LightMapHeatmap.get(calculator1, timezone, timezone, 2024));
+        assertEquals(3, LightMapHeatmap.getNumEntries());
+        LightMapHeatmap.clear();
+    }
+
+    @Test
+    public void test_get_copiesCalculator()
+    {
+        LightMapHeatmap.clear();
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        TestCalculator calculator = new TestCalculator();
+        calculator.init(new Location("test", "35", "-112", "0"), timezone);
+
+        LightMapHeatmap.YearData data = LightMapHeatmap.get(calculator, timezone, timezone, 2024);
+        assertEquals("the caller's calculator isn't used to solve the year", 0, calculator.numTables);
+        assertTrue(data.hasLayer(0, LightMapHeatmap.LAYER_DAY));
+        LightMapHeatmap.clear();
+    }
+}
@@ -0,0 +1,81 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.forrestguice.suntimeswidget;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PauseConditionTest
+{
+    @Test
+    public void test_awaitFinish_minWait()
+    {
+        PauseCondition condition = new PauseCondition();
+        long start = System.currentTimeMillis();
+        assertTrue(condition.awaitFinish(start, 100));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+
+        start = System.currentTimeMillis();
+        assertTrue(condition.awaitFinish(start - 1000, 100));    // already elapsed
+        assertTrue(System.currentTimeMillis() - start < 100);
+    }
+
+    @Test
+    public void test_awaitFinish_paused() throws InterruptedException
+    {
+        final PauseCondition condition = new PauseCondition();
+        condition.pause();
+        assertTrue(condition.isPaused());
+
+        final AtomicLong finishedAt = new AtomicLong(-1);
+        Thread waiting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (condition.awaitFinish(System.currentTimeMillis(), 0)) {
+                    finishedAt.set(System.currentTimeMillis());
+                }
+            }
+        });
+        waiting.start();
+        Thread.sleep(200);
+        assertTrue("should still be waiting while paused", waiting.isAlive());
+
+        long resumedAt = System.currentTimeMillis();
+        condition.resume();
+        waiting.join(1000);
+        assertFalse(waiting.isAlive());
+        assertFalse(condition.isPaused());
+        assertTrue(finishedAt.get() >= resumedAt);
+    }
+
+    @Test
+    public void test_awaitFinish_interrupted()
+    {
+        PauseCondition condition = new PauseCondition();
+        condition.pause();
+        Thread.currentThread().interrupt();
+        assertFalse(condition.awaitFinish(System.currentTimeMillis(), 60000));
+        assertTrue(Thread.interrupted());
+    }
+}
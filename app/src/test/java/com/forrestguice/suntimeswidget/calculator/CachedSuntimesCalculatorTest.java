@@ -0,0 +1,137 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+import com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertNotSame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachedSuntimesCalculatorTest
+{
+    public static final Location TEST_LOCATION = new Location("test", "35", "-112", "0");
+    public static final TimeZone TEST_TIMEZONE = TimeZone.getTimeZone("America/Phoenix");
+
+    protected SuntimesCalculator calculator0;
+    protected CachedSuntimesCalculator calculator1;
+
+    @Before
+    public void init()
+    {
+        CachedSuntimesCalculator.clearCache();
+        calculator0 = new Time4ANOAASuntimesCalculator();
+        calculator0.init(TEST_LOCATION, TEST_TIMEZONE);
+        SuntimesCalculator wrapped = new Time4ANOAASuntimesCalculator();
+        wrapped.init(TEST_LOCATION, TEST_TIMEZONE);
+        calculator1 = new CachedSuntimesCalculator(wrapped);
+    }
+
+    @After
+    public void cleanup()
+    {
+        CachedSuntimesCalculator.setMaxCacheEntries(CachedSuntimesCalculator.DEF_MAX_ENTRIES);
+        CachedSuntimesCalculator.clearCache();
+    }
+
+    @Test
+    public void test_cachedResults()
+    {
+        Calendar date = Calendar.getInstance(TEST_TIMEZONE);
+        date.set(2024, 5, 21, 12, 0, 0);
+
+        Calendar expected = calculator0.getOfficialSunriseCalendarForDate(date);
+        Calendar result0 = calculator1.getOfficialSunriseCalendarForDate(date);
+        assertEquals(0, CachedSuntimesCalculator.getCacheHits());
+        assertEquals(1, CachedSuntimesCalculator.getCacheMisses());
+        assertEquals(expected.getTimeInMillis(), result0.getTimeInMillis());
+
+        date.set(Calendar.HOUR_OF_DAY, 18);    // same day; should be a cache hit
+        Calendar result1 = calculator1.getOfficialSunriseCalendarForDate(date);
+        assertEquals(1, CachedSuntimesCalculator.getCacheHits());
+        assertEquals(expected.getTimeInMillis(), result1.getTimeInMillis());
+        assertNotSame(result0, result1);
+
+        result1.add(Calendar.HOUR, 1);        // modifying a result should not modify the cached value
+        Calendar result2 = calculator1.getOfficialSunriseCalendarForDate(date);
+        assertEquals(expected.getTimeInMillis(), result2.getTimeInMillis());
+
+        date.add(Calendar.DAY_OF_YEAR, 1);    // next day; should be a cache miss
+        calculator1.getOfficialSunriseCalendarForDate(date);
+        assertEquals(2, CachedSuntimesCalculator.getCacheMisses());
+        assertEquals(2, CachedSuntimesCalculator.getCacheSize());
+    }
+
+    @Test
+    public void test_cachedResults_shared()
+    {
+        Calendar date = Calendar.getInstance(TEST_TIMEZONE);
+        date.set(2024, 0, 1, 12, 0, 0);
+        calculator1.getSolarNoonCalendarForDate(date);
+
+        SuntimesCalculator other = new Time4ANOAASuntimesCalculator();
+        other.init(TEST_LOCATION, TEST_TIMEZONE);
+        CachedSuntimesCalculator calculator2 = new CachedSuntimesCalculator(other);
+        Calendar noon = calculator2.getSolarNoonCalendarForDate(date);
+        assertNotNull(noon);
+        assertEquals(1, CachedSuntimesCalculator.getCacheHits());
+        assertEquals(calculator0.getSolarNoonCalendarForDate(date).getTimeInMillis(), noon.getTimeInMillis());
+
+        other.init(new Location("test2", "-35", "112", "0"), TEST_TIMEZONE);
+        calculator2.init(new Location("test2", "-35", "112", "0"), TEST_TIMEZONE);   // different location; should be a cache miss
+        calculator2.getSolarNoonCalendarForDate(date);
+        assertEquals(1, CachedSuntimesCalculator.getCacheHits());
+        assertEquals(2, CachedSuntimesCalculator.getCacheMisses());
+    }
+
+    @Test
+    public void test_cachedResults_eviction()
+    {
+        CachedSuntimesCalculator.setMaxCacheEntries(10);
+        Calendar date = Calendar.getInstance(TEST_TIMEZONE);
+        date.set(2024, 0, 1, 12, 0, 0);
+        for (int i=0; i<20; i++)
+        {
+            calculator1.getOfficialSunsetCalendarForDate(date);
+            date.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        assertTrue(CachedSuntimesCalculator.getCacheSize() <= 10);
+    }
+
+    @Test
+    public void test_cachedResults_otherTimezone()
+    {
+        Calendar date = Calendar.getInstance(TimeZone.getTimeZone("UTC"));    // local day is ambiguous; passed through
+        date.set(2024, 5, 21, 3, 0, 0);
+        Calendar expected = calculator0.getOfficialSunriseCalendarForDate(date);
+        Calendar result = calculator1.getOfficialSunriseCalendarForDate(date);
+        assertEquals(expected.getTimeInMillis(), result.getTimeInMillis());
+        assertEquals(0, CachedSuntimesCalculator.getCacheSize());
+    }
+}
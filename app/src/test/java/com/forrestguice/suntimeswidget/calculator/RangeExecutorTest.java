@@ -0,0 +1,159 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.support.annotation.NonNull;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTable;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+import com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RangeExecutorTest
+{
+    public static final Location TEST_LOCATION = new Location("test", "35", "-112", "0");
+    public static final TimeZone TEST_TIMEZONE = TimeZone.getTimeZone("America/Phoenix");
+
+    @Test
+    public void test_execute_inOrder()
+    {
+        test_execute_inOrder(0);    // calling thread only
+        test_execute_inOrder(3);    // calling thread + workers
+        RangeExecutor.setMaxWorkers(-1);
+    }
+
+    protected void test_execute_inOrder(int numWorkers)
+    {
+        RangeExecutor.setMaxWorkers(numWorkers);
+        final SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(TEST_LOCATION, TEST_TIMEZONE);
+
+        final Calendar startDay = Calendar.getInstance(TEST_TIMEZONE);
+        startDay.set(2024, 0, 1, 12, 0, 0);
+
+        final int n = 400;
+        final long[] results = new long[n];
+        RangeExecutor.execute(null, n, new RangeExecutor.RangeTask()
+        {
+            @Override
+            public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+            {
+                SuntimesCalculator c = workspace.getCalculator(calculator);
+                if (workspace.isWorker()) {
+                    assertNotSame(calculator, c);
+                }
+                Calendar day = (Calendar) startDay.clone();
+                day.add(Calendar.DAY_OF_YEAR, from);
+                RiseSetTable table = RiseSetTable.create(c, day, to - from, RiseSetTable.eventMask(RiseSetTable.OFFICIAL_RISE));
+                for (int i=0; i<table.numDays(); i++) {
+                    results[from + i] = table.get(RiseSetTable.OFFICIAL_RISE, i);
+                }
+            }
+        }, calculator);
+
+        Calendar day = (Calendar) startDay.clone();
+        for (int i=0; i<n; i++)
+        {
+            assertEquals(calculator.getOfficialSunriseCalendarForDate(day).getTimeInMillis(), results[i]);
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+    }
+
+    @Test
+    public void test_execute_error()
+    {
+        RangeExecutor.setMaxWorkers(3);
+        try {
+            RangeExecutor.execute(null, 100, 1, new RangeExecutor.RangeTask()
+            {
+                @Override
+                public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace) {
+                    if (from <= 50 && 50 < to) {
+                        throw new IllegalStateException("test");
+                    }
+                }
+            });
+            fail("expected the task's exception to be re-thrown");
+
+        } catch (IllegalStateException e) {
+            assertEquals("test", e.getMessage());
+        }
+        RangeExecutor.setMaxWorkers(-1);
+    }
+
+    @Test
+    public void test_copyCalculator()
+    {
+        SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(TEST_LOCATION, TEST_TIMEZONE);
+        SuntimesCalculator copy = RangeExecutor.copyCalculator(new CachedSuntimesCalculator(calculator), null);
+        assertNotNull(copy);
+        assertTrue(copy instanceof CachedSuntimesCalculator);
+        assertNotSame(calculator, ((CachedSuntimesCalculator) copy).getCalculator());
+        assertEquals(calculator.getLocation().getLatitude(), copy.getLocation().getLatitude());
+        assertEquals(calculator.getTimeZone().getID(), copy.getTimeZone().getID());
+    }
+
+    @Test
+    public void test_execute_reusesCopies()
+    {
+        RangeExecutor.setMaxWorkers(2);
+        final SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(TEST_LOCATION, TEST_TIMEZONE);
+
+        final Set<SuntimesCalculator> copies = Collections.newSetFromMap(new IdentityHashMap<SuntimesCalculator, Boolean>());
+        RangeExecutor.RangeTask task = new RangeExecutor.RangeTask()
+        {
+            @Override
+            public void compute(int from, int to, @NonNull RangeExecutor.Workspace workspace)
+            {
+                if (workspace.isWorker())
+                {
+                    synchronized (copies) {
+                        copies.add(workspace.getCalculator(calculator));
+                    }
+                }
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) { /* EMPTY */ }
+            }
+        };
+
+        for (int i=0; i<5; i++) {
+            RangeExecutor.execute(null, 64, 4, task, calculator);    // each job is a separate call (e.g. RangeCursor windows)
+        }
+        assertTrue(copies.size() >= 1);
+        assertTrue(copies.size() <= 2);    // at most one copy per worker thread (reused by later jobs)
+        RangeExecutor.setMaxWorkers(-1);
+    }
+}
@@ -0,0 +1,155 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTable;
+import com.forrestguice.suntimeswidget.calculator.core.RiseSetTableCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RiseSetTableTest
+{
+    public static final Location[] TEST_LOCATIONS = new Location[] {
+            new Location("test0", "35", "-112", "0"),
+            new Location("test1", "78", "15", "0"),         // polar day/night
+            new Location("test2", "-33.9", "18.4", "0"),
+            new Location("test3", "46.5", "9.8", "1800"),    // nonzero altitude
+            new Location("test4", "66", "-18", "500")
+    };
+    public static final TimeZone TEST_TIMEZONE = TimeZone.getTimeZone("UTC");
+    public static final int TEST_DAYS = 60;
+    public static final long TOLERANCE = 1000;
+
+    @Test
+    public void test_riseSetTable()
+    {
+        for (Location location : TEST_LOCATIONS)
+        {
+            test_riseSetTable(new com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator(), location);
+            test_riseSetTable(new com.forrestguice.suntimeswidget.calculator.time4a.Time4ASimpleSuntimesCalculator(), location);
+            test_riseSetTable(new com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator(), location);
+            test_riseSetTable(new com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset.SunriseSunsetSuntimesCalculator(), location);
+        }
+    }
+
+    /**
+     * the table (native where implemented) should match the (per-day) fallback table
+     */
+    protected void test_riseSetTable(SuntimesCalculator calculator, Location location)
+    {
+        calculator.init(location, TEST_TIMEZONE);
+
+        Calendar startDate = Calendar.getInstance(TEST_TIMEZONE);
+        startDate.set(2024, 4, 1, 12, 0, 0);
+
+        RiseSetTable expected = RiseSetTable.createFallback(calculator, startDate, TEST_DAYS);
+        RiseSetTable result = RiseSetTable.create(calculator, startDate, TEST_DAYS);
+        assertEquals(TEST_DAYS, result.numDays());
+
+        for (int i=0; i<TEST_DAYS; i++)
+        {
+            assertEquals(expected.getDay(i), result.getDay(i));
+            for (int event=0; event<RiseSetTable.NUM_EVENTS; event++)
+            {
+                String tag = calculator.name() + " " + location.getLabel() + " [" + event + "," + i + "]";
+                assertEquals(tag, expected.has(event, i), result.has(event, i));
+                if (expected.has(event, i)) {
+                    assertTrue(tag, Math.abs(expected.get(event, i) - result.get(event, i)) <= TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_riseSetTable_native()
+    {
+        assertTrue(new com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator() instanceof RiseSetTableCalculator);
+        assertTrue(new com.forrestguice.suntimeswidget.calculator.time4a.Time4AEphemerisSuntimesCalculator() instanceof RiseSetTableCalculator);
+        assertTrue(new com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset.SunriseSunsetSuntimesCalculator() instanceof RiseSetTableCalculator);
+
+        for (Location location : TEST_LOCATIONS) {
+            test_riseSetTable(new com.forrestguice.suntimeswidget.calculator.time4a.Time4AEphemerisSuntimesCalculator(), location);
+        }
+    }
+
+    @Test
+    public void test_riseSetTable_eventMask()
+    {
+        int events = RiseSetTable.eventMask(RiseSetTable.OFFICIAL_RISE, RiseSetTable.NOON, RiseSetTable.BLUE4_SET);
+        assertTrue(RiseSetTable.isSelected(events, RiseSetTable.NOON));
+        assertTrue(!RiseSetTable.isSelected(events, RiseSetTable.OFFICIAL_SET));
+
+        Calendar startDate = Calendar.getInstance(TEST_TIMEZONE);
+        startDate.set(2024, 4, 1, 12, 0, 0);
+        SuntimesCalculator[] calculators = new SuntimesCalculator[] {
+                new com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator(),
+                new com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator(),
+                new com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset.SunriseSunsetSuntimesCalculator()
+        };
+        for (SuntimesCalculator calculator : calculators)
+        {
+            calculator.init(TEST_LOCATIONS[0], TEST_TIMEZONE);
+            RiseSetTable expected = RiseSetTable.create(calculator, startDate, 7);
+            RiseSetTable[] results = new RiseSetTable[] { RiseSetTable.create(calculator, startDate, 7, events), RiseSetTable.createFallback(calculator, startDate, 7, events) };
+            for (RiseSetTable result : results)
+            {
+                for (int i=0; i<result.numDays(); i++)
+                {
+                    for (int event=0; event<RiseSetTable.NUM_EVENTS; event++)
+                    {
+                        String tag = calculator.name() + " [" + event + "," + i + "]";
+                        if (RiseSetTable.isSelected(events, event))    // selected events should match the full table
+                        {
+                            assertEquals(tag, expected.has(event, i), result.has(event, i));
+                            if (expected.has(event, i)) {
+                                assertTrue(tag, Math.abs(expected.get(event, i) - result.get(event, i)) <= TOLERANCE);
+                            }
+                        }
+                    }
+                }
+            }
+            assertTrue(!RiseSetTable.create(calculator, startDate, 1, events).has(RiseSetTable.CIVIL_RISE, 0));
+        }
+    }
+
+    @Test
+    public void test_riseSetTable_cached()
+    {
+        SuntimesCalculator calculator = new com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator();
+        calculator.init(TEST_LOCATIONS[0], TEST_TIMEZONE);
+        CachedSuntimesCalculator cached = new CachedSuntimesCalculator(calculator);
+
+        Calendar startDate = Calendar.getInstance(TEST_TIMEZONE);
+        startDate.set(2024, 0, 1, 12, 0, 0);
+        RiseSetTable table = RiseSetTable.create(cached, startDate, 7);
+        assertEquals(7, table.numDays());
+        for (int i=0; i<table.numDays(); i++) {
+            assertEquals(calculator.getOfficialSunriseCalendarForDate(startDate).getTimeInMillis(), table.get(RiseSetTable.OFFICIAL_RISE, i));
+            startDate.add(Calendar.DAY_OF_YEAR, 1);
+        }
+    }
+}
@@ -26,7 +26,10 @@ import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import org.junit.Test;
 import java.util.TimeZone;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class SuntimesCalculatorTest
@@ -63,4 +66,66 @@ public class SuntimesCalculatorTest
         assertTrue("calculator name (" + calculator.name() + ") should match descriptor (" + descriptor.getName() + ")", calculator.name().equals(descriptor.getName()));
     }
 
+    @Test
+    public void test_pool()
+    {
+        SuntimesCalculatorFactory.clearPool();
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        SuntimesCalculatorDescriptor descriptor = com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor();
+
+        SuntimesCalculator calculator0 = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(TEST_LOCATIONS[3], timezone);
+        SuntimesCalculator calculator1 = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(new Location("other label", "35", "-112", "14"), timezone);
+        assertSame(calculator0, calculator1);    // same descriptor, location, and timezone; should share an instance
+        assertEquals(1, SuntimesCalculatorFactory.getPoolSize());
+
+        SuntimesCalculator calculator2 = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(TEST_LOCATIONS[1], timezone);
+        SuntimesCalculator calculator3 = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(TEST_LOCATIONS[3], TimeZone.getTimeZone("UTC"));
+        SuntimesCalculator calculator4 = new SuntimesCalculatorFactory((Context)null, com.forrestguice.suntimeswidget.calculator.time4a.Time4ACCSuntimesCalculator.getDescriptor()).createCalculator(TEST_LOCATIONS[3], timezone);
+        assertNotSame(calculator0, calculator2);    // different location
+        assertNotSame(calculator0, calculator3);    // different timezone
+        assertNotSame(calculator0, calculator4);    // different descriptor
+        assertEquals(4, SuntimesCalculatorFactory.getPoolSize());
+
+        SuntimesCalculatorFactory factory = new SuntimesCalculatorFactory((Context)null, descriptor);
+        factory.setUsePool(false);
+        assertNotSame(calculator0, factory.createCalculator(TEST_LOCATIONS[3], timezone));
+
+        SuntimesCalculatorFactory.setMaxPoolSize(2);
+        assertEquals(2, SuntimesCalculatorFactory.getPoolSize());
+        SuntimesCalculatorFactory.setMaxPoolSize(SuntimesCalculatorFactory.DEF_MAX_POOL_SIZE);
+        SuntimesCalculatorFactory.clearPool();
+    }
+
+    @Test
+    public void test_pool_perThread() throws InterruptedException
+    {
+        SuntimesCalculatorFactory.clearPool();
+        final TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        final SuntimesCalculatorDescriptor descriptor = com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor();
+        SuntimesCalculator calculator0 = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(TEST_LOCATIONS[3], timezone);
+
+        final SuntimesCalculator[] other = new SuntimesCalculator[2];
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                other[0] = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(TEST_LOCATIONS[3], timezone);
+                other[1] = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(TEST_LOCATIONS[3], timezone);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertNotNull(other[0]);
+        assertSame(other[0], other[1]);         // shared on the same thread
+        assertNotSame(calculator0, other[0]);   // but not between threads
+        assertEquals(1, SuntimesCalculatorFactory.getPoolSize());
+
+        SuntimesCalculatorFactory.clearPool();
+        assertEquals(0, SuntimesCalculatorFactory.getPoolSize());
+        assertNotSame(calculator0, new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(TEST_LOCATIONS[3], timezone));
+        SuntimesCalculatorFactory.clearPool();
+    }
+
 }
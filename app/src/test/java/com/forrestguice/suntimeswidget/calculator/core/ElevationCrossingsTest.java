@@ -0,0 +1,154 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ElevationCrossingsTest
+{
+    public static final long MINUTE = 60 * 1000L;
+
+    /**
+     * a sinusoidal curve (amplitude 60, offset 10, period 1 day); crosses 0 at `acos(1/6)` (rising) and `1 - acos(1/6)` (setting) of each day
+     */
+    public static class TestFunction implements ElevationCrossings.ElevationFunction
+    {
+        public int numCalls = 0;
+
+        @Override
+        public double getElevation(long millis)
+        {
+            numCalls++;
+            return 10 - 60 * Math.cos(2 * Math.PI * millis / (double) EventMillis.MILLIS_IN_DAY);
+        }
+    }
+
+    @Test
+    public void test_find()
+    {
+        TestFunction function = new TestFunction();
+        ElevationCrossings.Crossings crossings = ElevationCrossings.find(function, 0, 0, 2 * EventMillis.MILLIS_IN_DAY, ElevationCrossings.DEFAULT_STEP_MILLIS, 1000);
+        assertEquals(4, crossings.size());
+
+        double f = Math.acos(1 / 6d) / (2 * Math.PI);
+        long[] expected = new long[] { Math.round(f * EventMillis.MILLIS_IN_DAY), Math.round((1 - f) * EventMillis.MILLIS_IN_DAY) };
+        for (int i=0; i<crossings.size(); i++)
+        {
+            assertEquals((i % 2 == 0), crossings.isRising(i));
+            assertEquals(expected[i % 2] + (i / 2) * EventMillis.MILLIS_IN_DAY, crossings.getMillis(i), 1000);
+        }
+
+        int numScanned = 1 + (int)(2 * EventMillis.MILLIS_IN_DAY / ElevationCrossings.DEFAULT_STEP_MILLIS);
+        assertTrue(function.numCalls <= numScanned + 4 * ElevationCrossings.MAX_ITERATIONS);
+        assertTrue(function.numCalls < numScanned + 4 * 16);    // converges well within MAX_ITERATIONS
+
+        assertEquals(0, ElevationCrossings.find(function, 80, 0, EventMillis.MILLIS_IN_DAY, ElevationCrossings.DEFAULT_STEP_MILLIS, 1000).size());
+    }
+
+    @Test
+    public void test_findFirst()
+    {
+        TestFunction function = new TestFunction();
+        double f = Math.acos(1 / 6d) / (2 * Math.PI);
+        assertEquals(Math.round(f * EventMillis.MILLIS_IN_DAY), ElevationCrossings.findFirst(function, 0, 0, EventMillis.MILLIS_IN_DAY, 15 * MINUTE, 1000, true), 1000);
+        assertEquals(Math.round((1 - f) * EventMillis.MILLIS_IN_DAY), ElevationCrossings.findFirst(function, 0, 0, EventMillis.MILLIS_IN_DAY, 15 * MINUTE, 1000, false), 1000);
+        assertEquals(ElevationCrossings.NONE, ElevationCrossings.findFirst(function, 80, 0, EventMillis.MILLIS_IN_DAY, 15 * MINUTE, 1000, true));
+    }
+
+    @Test
+    public void test_solve()
+    {
+        TestFunction function = new TestFunction();
+        long t0 = 0, t1 = EventMillis.MILLIS_IN_DAY / 2;
+        double e0 = function.getElevation(t0), e1 = function.getElevation(t1);
+        long precision = 1;
+        long t = ElevationCrossings.solve(function, 0, t0, e0, t1, e1, precision);
+        assertEquals(Math.round(Math.acos(1 / 6d) / (2 * Math.PI) * EventMillis.MILLIS_IN_DAY), t, precision);
+        assertEquals(ElevationCrossings.NONE, ElevationCrossings.solve(function, 80, t0, e0, t1, e1, precision));
+        assertEquals(t0, ElevationCrossings.solve(function, e0, t0, e0, t1, e1, precision));
+    }
+
+    @Test
+    public void test_sunElevation()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(EventMillisTest.TEST_LOCATION, timezone);
+        assertTrue(ElevationCrossings.hasFeature(calculator, SuntimesCalculator.FEATURE_POSITION));
+        assertFalse(ElevationCrossings.hasFeature(calculator, SuntimesCalculator.FEATURE_MOON + 1000));
+
+        Calendar date = Calendar.getInstance(timezone);
+        date.set(2024, 5, 21, 12, 0, 0);
+        Calendar day = (Calendar) date.clone();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        long startMillis = day.getTimeInMillis();
+
+        double angle = -6;
+        ElevationCrossings.ElevationFunction function = ElevationCrossings.sunElevation(calculator);
+        ElevationCrossings.Crossings crossings = ElevationCrossings.find(function, angle, startMillis, startMillis + EventMillis.MILLIS_IN_DAY - 1, ElevationCrossings.DEFAULT_STEP_MILLIS, 1000);
+        assertEquals(2, crossings.size());
+        assertTrue(crossings.isRising(0));
+        assertFalse(crossings.isRising(1));
+        assertEquals(angle, function.getElevation(crossings.getMillis(0)), 0.01);
+        assertEquals(angle, function.getElevation(crossings.getMillis(1)), 0.01);
+
+        // agrees with the calculator's rise/set @angle (within a few minutes; the two use different models)
+        assertEquals(calculator.getSunriseCalendarForDate(date, angle).getTimeInMillis(), crossings.getMillis(0), 5 * MINUTE);
+        assertEquals(calculator.getSunsetCalendarForDate(date, angle).getTimeInMillis(), crossings.getMillis(1), 5 * MINUTE);
+    }
+
+    @Test
+    public void test_getCalendarForDate()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(EventMillisTest.TEST_LOCATION, timezone);
+        assertTrue(ElevationCrossings.hasFeature(calculator, SuntimesCalculator.FEATURE_RISESET1));
+
+        Calendar date = Calendar.getInstance(timezone);
+        date.set(2024, 5, 21, 12, 0, 0);
+        Calendar day = (Calendar) date.clone();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        long startMillis = day.getTimeInMillis();
+        long endMillis = startMillis + EventMillis.MILLIS_IN_DAY - 1;
+
+        // solved from the sun's elevation (even though the calculator supports rise/set @angle)
+        double angle = -6;
+        ElevationCrossings.ElevationFunction function = ElevationCrossings.sunElevation(calculator);
+        Calendar sunrise = ElevationCrossings.getSunriseCalendarForDate(calculator, date, angle);
+        Calendar sunset = ElevationCrossings.getSunsetCalendarForDate(calculator, date, angle);
+        assertEquals(ElevationCrossings.findFirst(function, angle, startMillis, endMillis, ElevationCrossings.DEFAULT_STEP_MILLIS, ElevationCrossings.DEFAULT_PRECISION_MILLIS, true), sunrise.getTimeInMillis());
+        assertEquals(ElevationCrossings.findFirst(function, angle, startMillis, endMillis, ElevationCrossings.DEFAULT_STEP_MILLIS, ElevationCrossings.DEFAULT_PRECISION_MILLIS, false), sunset.getTimeInMillis());
+        assertEquals(timezone.getID(), sunrise.getTimeZone().getID());
+
+        assertEquals(null, ElevationCrossings.getSunriseCalendarForDate(calculator, date, 85));    // never reached
+    }
+}
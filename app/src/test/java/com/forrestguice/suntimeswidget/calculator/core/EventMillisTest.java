@@ -0,0 +1,100 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventMillisTest
+{
+    public static final Location TEST_LOCATION = new Location("test", "35", "-112", "0");
+
+    @Test
+    public void test_minuteOfDay_epochDay()
+    {
+        String[] timezones = new String[] { "UTC", "America/Phoenix", "Asia/Kolkata", "Pacific/Chatham", "America/New_York" };
+        for (String tzID : timezones)
+        {
+            TimeZone timezone = TimeZone.getTimeZone(tzID);
+            Calendar calendar = Calendar.getInstance(timezone);
+            calendar.set(1969, 11, 30, 0, 0, 0);
+            for (int i=0; i<24 * 10; i++)
+            {
+                long millis = calendar.getTimeInMillis();
+                assertEquals(tzID, calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE), EventMillis.minuteOfDay(millis, timezone));
+
+                Calendar epoch = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+                epoch.clear();
+                epoch.set(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH));
+                assertEquals(tzID, epoch.getTimeInMillis() / EventMillis.MILLIS_IN_DAY, EventMillis.epochDay(millis, timezone));
+                calendar.add(Calendar.MINUTE, 61);
+            }
+        }
+    }
+
+    @Test
+    public void test_eventMillis()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(TEST_LOCATION, timezone);
+        assertTrue(calculator instanceof EventMillisCalculator);
+
+        Calendar date = Calendar.getInstance(timezone);
+        date.set(2024, 5, 21, 23, 30, 0);
+        for (int event=0; event<RiseSetTable.NUM_EVENTS; event++)
+        {
+            long expected = EventMillis.toMillis(EventMillis.getEventCalendar(calculator, event, date));
+            assertEquals("event " + event, expected, EventMillis.getEventMillis(calculator, event, date.getTimeInMillis()));
+        }
+
+        long[] result = new long[2];
+        EventMillis.getEventMillis(calculator, new int[] { RiseSetTable.OFFICIAL_RISE, RiseSetTable.OFFICIAL_SET }, date.getTimeInMillis(), result);
+        assertEquals(calculator.getOfficialSunriseCalendarForDate(date).getTimeInMillis(), result[0]);
+        assertEquals(calculator.getOfficialSunsetCalendarForDate(date).getTimeInMillis(), result[1]);
+
+        SuntimesCalculator.SunPosition position = new SuntimesCalculator.SunPosition();
+        assertTrue(EventMillis.getSunPosition(calculator, date.getTimeInMillis(), position));
+        assertEquals(calculator.getSunPosition(date).elevation, position.elevation, 0.0001);
+        assertEquals(calculator.getSunPosition(date).azimuth, position.azimuth, 0.0001);
+    }
+
+    @Test
+    public void test_eventMillis_fallback()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("UTC");
+        SuntimesCalculator calculator = new com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator();
+        calculator.init(new Location("test", "78", "15", "0"), timezone);    // polar day
+        assertFalse(calculator instanceof EventMillisCalculator);
+
+        Calendar date = Calendar.getInstance(timezone);
+        date.set(2024, 5, 21, 12, 0, 0);
+        assertEquals(EventMillis.NONE, EventMillis.getEventMillis(calculator, RiseSetTable.OFFICIAL_RISE, date.getTimeInMillis()));
+        assertEquals(EventMillis.NONE, EventMillis.getEventMillis(calculator, RiseSetTable.GOLDEN_MORNING, date.getTimeInMillis()));
+        assertFalse(EventMillis.getSunPosition(calculator, date.getTimeInMillis(), new SuntimesCalculator.SunPosition()));
+    }
+}
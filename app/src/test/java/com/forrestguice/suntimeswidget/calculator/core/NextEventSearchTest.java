@@ -0,0 +1,203 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NextEventSearchTest
+{
+    public static final Location POLAR_LOCATION = new Location("Longyearbyen", "78.2232", "15.6267", "0");
+
+    /**
+     * official sunrise using the given calculator (counts calls)
+     */
+    public static class TestDayEvent implements NextEventSearch.DayEvent
+    {
+        public int numCalls = 0;
+        protected SuntimesCalculator calculator;
+
+        public TestDayEvent(SuntimesCalculator calculator) {
+            this.calculator = calculator;
+        }
+
+        @Override
+        public Calendar getEvent(Calendar date)
+        {
+            numCalls++;
+            return calculator.getOfficialSunriseCalendarForDate(date);
+        }
+    }
+
+    /**
+     * reference search; solves each day in turn (starting from the day before now - offset)
+     */
+    protected static Calendar findNextDaily(NextEventSearch.DayEvent function, Calendar today, long nowMillis, long offset, Collection<Integer> days)
+    {
+        Calendar day = (Calendar) today.clone();
+        day.setTimeInMillis(nowMillis - offset - EventMillis.MILLIS_IN_DAY);
+        for (int i=0; i<=NextEventSearch.MAX_DAYS; i++)
+        {
+            Calendar event = function.getEvent(day);
+            if (event != null)
+            {
+                event.set(Calendar.SECOND, 0);
+                if (event.getTimeInMillis() + offset >= nowMillis && (days == null || days.contains(event.get(Calendar.DAY_OF_WEEK)))) {
+                    return event;
+                }
+            }
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        return null;
+    }
+
+    @Test
+    public void test_declination()
+    {
+        assertEquals(23.44, NextEventSearch.declination(172), 0.3);     // june solstice
+        assertEquals(-23.44, NextEventSearch.declination(355), 0.3);    // december solstice
+        assertEquals(0, NextEventSearch.declination(80), 0.5);          // march equinox
+        assertEquals(0, NextEventSearch.declination(266), 0.5);         // september equinox
+    }
+
+    @Test
+    public void test_daysWithoutEvent()
+    {
+        double margin = NextEventSearch.MARGIN_DEGREES;
+        assertEquals(0, NextEventSearch.daysWithoutEvent(40, NextEventSearch.OFFICIAL_ANGLE, margin, 355));
+        assertEquals(0, NextEventSearch.daysWithoutEvent(-40, NextEventSearch.OFFICIAL_ANGLE, margin, 172));
+
+        int polarNight = NextEventSearch.daysWithoutEvent(78.2, NextEventSearch.OFFICIAL_ANGLE, margin, 335);    // dec 1
+        assertTrue(polarNight > 60 && polarNight < 80);
+        assertEquals(polarNight, NextEventSearch.daysWithoutEvent(-78.2, NextEventSearch.OFFICIAL_ANGLE, margin, 335 - 182), 3);
+
+        int polarDay = NextEventSearch.daysWithoutEvent(78.2, NextEventSearch.OFFICIAL_ANGLE, margin, 140);      // may 20
+        assertTrue(polarDay > 80 && polarDay < 110);
+
+        assertTrue(NextEventSearch.daysWithoutEvent(78.2, NextEventSearch.OFFICIAL_ANGLE, margin + NextEventSearch.horizonDip(1000), 335) < polarNight);
+        assertEquals(NextEventSearch.MAX_DAYS, NextEventSearch.daysWithoutEvent(0, 95, margin, 1));
+    }
+
+    @Test
+    public void test_findNext_polar()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("Europe/Oslo");
+        SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(POLAR_LOCATION, timezone);
+        double latitude = POLAR_LOCATION.getLatitudeAsDouble();
+
+        Calendar today = Calendar.getInstance(timezone);
+        for (int month : new int[] { Calendar.NOVEMBER, Calendar.DECEMBER, Calendar.MAY, Calendar.JUNE, Calendar.SEPTEMBER })
+        {
+            today.set(2024, month, 1, 12, 0, 0);
+            long now = today.getTimeInMillis();
+
+            TestDayEvent reference = new TestDayEvent(calculator);
+            Calendar expected = findNextDaily(reference, today, now, 0, null);
+            assertNotNull(expected);
+
+            TestDayEvent function = new TestDayEvent(calculator);
+            Calendar event = NextEventSearch.findNext(function, today, now, 0, null, latitude, 0, NextEventSearch.OFFICIAL_ANGLE);
+            assertNotNull(event);
+            assertEquals(expected.getTimeInMillis(), event.getTimeInMillis());
+            assertTrue(function.numCalls <= reference.numCalls);
+            if (reference.numCalls > 30) {
+                assertTrue(function.numCalls < reference.numCalls / 4);    // skipped most of polar day / night
+            }
+        }
+    }
+
+    @Test
+    public void test_findNext_repeating()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(EventMillisTest.TEST_LOCATION, timezone);
+        double latitude = EventMillisTest.TEST_LOCATION.getLatitudeAsDouble();
+
+        Calendar today = Calendar.getInstance(timezone);
+        today.set(2024, Calendar.MARCH, 4, 12, 0, 0);     // monday
+        long offset = -30 * 60 * 1000L;
+
+        List<List<Integer>> masks = Arrays.asList(null, Collections.singletonList(Calendar.SUNDAY), Arrays.asList(Calendar.SATURDAY, Calendar.WEDNESDAY));
+        for (List<Integer> days : masks)
+        {
+            for (long now : new long[] { today.getTimeInMillis(), today.getTimeInMillis() + 40 * EventMillis.MILLIS_IN_DAY })
+            {
+                TestDayEvent reference = new TestDayEvent(calculator);
+                Calendar expected = findNextDaily(reference, today, now, offset, days);
+
+                TestDayEvent function = new TestDayEvent(calculator);
+                Calendar event = NextEventSearch.findNext(function, today, now, offset, days, latitude, 0, NextEventSearch.OFFICIAL_ANGLE);
+                assertNotNull(event);
+                assertEquals(expected.getTimeInMillis(), event.getTimeInMillis());
+                assertTrue(event.getTimeInMillis() + offset >= now);
+                assertTrue(function.numCalls <= reference.numCalls);
+                assertTrue(function.numCalls <= 7);    // jumps to (now - offset), then solves (at most) a week of candidate days
+            }
+        }
+
+        assertNull(NextEventSearch.findNext(new TestDayEvent(calculator), today, today.getTimeInMillis(), 0, Collections.<Integer>emptyList(), latitude, 0, NextEventSearch.OFFICIAL_ANGLE));
+    }
+
+    @Test
+    public void test_findNext_afterMidnight()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        final SuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(EventMillisTest.TEST_LOCATION, timezone);
+        double latitude = EventMillisTest.TEST_LOCATION.getLatitudeAsDouble();
+
+        Calendar today = Calendar.getInstance(timezone);
+        today.set(2024, Calendar.MARCH, 5, 0, 30, 0);      // 00:30
+        long now = today.getTimeInMillis();
+        long offset = 7 * 60 * 60 * 1000L;                 // sunset +7h (~01:30 today; yesterday's sunset is still ahead)
+
+        NextEventSearch.DayEvent sunset = new NextEventSearch.DayEvent()
+        {
+            @Override
+            public Calendar getEvent(Calendar date) {
+                return calculator.getOfficialSunsetCalendarForDate(date);
+            }
+        };
+
+        Calendar yesterday = (Calendar) today.clone();
+        yesterday.add(Calendar.DAY_OF_YEAR, -1);
+        Calendar expected = calculator.getOfficialSunsetCalendarForDate(yesterday);
+        expected.set(Calendar.SECOND, 0);
+        assertTrue(expected.getTimeInMillis() + offset >= now);
+
+        Calendar event = NextEventSearch.findNext(sunset, today, now, offset, null, latitude, 0, NextEventSearch.OFFICIAL_ANGLE);
+        assertNotNull(event);
+        assertEquals(expected.getTimeInMillis(), event.getTimeInMillis());
+    }
+}
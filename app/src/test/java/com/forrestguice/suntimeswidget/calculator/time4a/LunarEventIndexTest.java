@@ -0,0 +1,180 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import net.time4j.Moment;
+import net.time4j.TemporalType;
+import net.time4j.calendar.astro.MoonPhase;
+import net.time4j.calendar.astro.MoonPosition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LunarEventIndexTest
+{
+    protected int minYear, maxYear;
+
+    @Before
+    public void init()
+    {
+        minYear = LunarEventIndex.getMinYear();
+        maxYear = LunarEventIndex.getMaxYear();
+        LunarEventIndex.setCacheFile(null);
+        LunarEventIndex.clear();
+        LunarEventIndex.setYearRange(2020, 2030);
+    }
+
+    @After
+    public void cleanup()
+    {
+        LunarEventIndex.setCacheFile(null);
+        LunarEventIndex.clear();
+        LunarEventIndex.setYearRange(minYear, maxYear);
+    }
+
+    @Test
+    public void test_next()
+    {
+        Random random = new Random(9);
+        long start = LunarEventIndex.startOfYear(2022);
+        long span = LunarEventIndex.startOfYear(2026) - start;
+        LunarEventIndex.prefetch(2022, 2026);
+        CacheBuilder.flush();
+        assertEquals(5, LunarEventIndex.getNumYears());
+
+        for (int i=0; i<100; i++)
+        {
+            long millis = start + (long)(random.nextDouble() * span);
+            Moment moment = TemporalType.MILLIS_SINCE_UNIX.translate(millis);
+            assertEquals(toMillis(MoonPhase.NEW_MOON.after(moment)), LunarEventIndex.next(LunarEventIndex.NEW_MOON, millis));
+            assertEquals(toMillis(MoonPhase.FIRST_QUARTER.after(moment)), LunarEventIndex.next(LunarEventIndex.FIRST_QUARTER, millis));
+            assertEquals(toMillis(MoonPhase.FULL_MOON.after(moment)), LunarEventIndex.next(LunarEventIndex.FULL_MOON, millis));
+            assertEquals(toMillis(MoonPhase.LAST_QUARTER.after(moment)), LunarEventIndex.next(LunarEventIndex.THIRD_QUARTER, millis));
+            assertNextOrNone(toMillis(MoonPosition.inNextPerigeeAfter(moment)), LunarEventIndex.next(LunarEventIndex.PERIGEE, millis));
+            assertNextOrNone(toMillis(MoonPosition.inNextApogeeAfter(moment)), LunarEventIndex.next(LunarEventIndex.APOGEE, millis));
+        }
+    }
+
+    @Test
+    public void test_next_exclusive()
+    {
+        LunarEventIndex.prefetch(2024, 2024);
+        CacheBuilder.flush();
+        long millis = LunarEventIndex.next(LunarEventIndex.FULL_MOON, LunarEventIndex.startOfYear(2024));
+        long next = LunarEventIndex.next(LunarEventIndex.FULL_MOON, millis);
+        assertTrue(next > millis);
+        assertEquals(toMillis(MoonPhase.FULL_MOON.after(TemporalType.MILLIS_SINCE_UNIX.translate(millis))), next);
+        assertEquals(millis, LunarEventIndex.next(LunarEventIndex.FULL_MOON, millis - 1));
+    }
+
+    @Test
+    public void test_next_notIndexed()
+    {
+        long millis = LunarEventIndex.startOfYear(2024) + 1000;
+        assertEquals(LunarEventIndex.NONE, LunarEventIndex.next(LunarEventIndex.NEW_MOON, millis));    // requested; not solved on this thread
+        CacheBuilder.flush();
+        assertEquals(1, LunarEventIndex.getNumYears());    // built in the background
+        Moment moment = TemporalType.MILLIS_SINCE_UNIX.translate(millis);
+        assertEquals(toMillis(MoonPhase.NEW_MOON.after(moment)), LunarEventIndex.next(LunarEventIndex.NEW_MOON, millis));
+    }
+
+    @Test
+    public void test_next_outsideRange()
+    {
+        assertEquals(LunarEventIndex.NONE, LunarEventIndex.next(LunarEventIndex.NEW_MOON, LunarEventIndex.startOfYear(2019)));
+        assertEquals(LunarEventIndex.NONE, LunarEventIndex.next(LunarEventIndex.NEW_MOON, LunarEventIndex.startOfYear(2031)));
+        LunarEventIndex.prefetch(2031, 2032);
+        CacheBuilder.flush();
+        assertEquals(0, LunarEventIndex.getNumYears());
+    }
+
+    @Test
+    public void test_cacheFile() throws Exception
+    {
+        File file = File.createTempFile("lunar_event_index", ".dat");
+        try {
+            LunarEventIndex.setCacheFile(file);
+            long millis = LunarEventIndex.startOfYear(2024) + 1000;
+            LunarEventIndex.prefetch(2024, 2024);
+            CacheBuilder.flush();       // built in the background
+            long expected = LunarEventIndex.next(LunarEventIndex.NEW_MOON, millis);
+            CacheFileWriter.flush();    // written in the background
+            assertTrue(file.length() > 0);
+            assertFalse(new File(file.getPath() + ".tmp").exists());    // written to a temporary file, then renamed
+
+            LunarEventIndex.clear();
+            assertEquals(0, LunarEventIndex.getNumYears());
+            LunarEventIndex.setCacheFile(file);
+            LunarEventIndex.loadCache();
+            assertEquals(1, LunarEventIndex.getNumYears());    // loaded from file
+            assertEquals(expected, LunarEventIndex.next(LunarEventIndex.NEW_MOON, millis));
+            assertEquals(1, LunarEventIndex.getNumYears());
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void test_calculator()
+    {
+        Time4ASuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        calculator.init(new Location("test", "35", "-112", "0"), TimeZone.getTimeZone("America/Phoenix"));
+        Calendar date = Calendar.getInstance(TimeZone.getTimeZone("America/Phoenix"));
+        date.set(2024, 5, 21, 12, 0, 0);
+        Moment moment = TemporalType.JAVA_UTIL_DATE.translate(date.getTime());
+
+        for (int i=0; i<2; i++)    // solved (year requested), then indexed
+        {
+            Calendar fullMoon = calculator.getMoonPhaseNextDate(SuntimesCalculator.MoonPhase.FULL, date);
+            assertEquals(toMillis(MoonPhase.FULL_MOON.after(moment)), fullMoon.getTimeInMillis());
+            assertEquals(date.getTimeZone(), fullMoon.getTimeZone());
+            assertEquals(toMillis(MoonPosition.inNextApogeeAfter(moment)), calculator.getMoonApogeeNextDate(date).getTimeInMillis());    // indexed or solved
+            CacheBuilder.flush();
+        }
+        assertTrue(LunarEventIndex.getNumYears() > 0);
+    }
+
+    /**
+     * perigee and apogee are excluded from the index if the solver skips events (NONE; callers use the solver instead)
+     */
+    protected static void assertNextOrNone(long expected, long result)
+    {
+        if (result != LunarEventIndex.NONE) {
+            assertEquals(expected, result);
+        }
+    }
+
+    protected static long toMillis(Moment moment) {
+        return TemporalType.MILLIS_SINCE_UNIX.from(moment);
+    }
+}
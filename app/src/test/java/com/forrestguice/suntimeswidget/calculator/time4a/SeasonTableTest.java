@@ -0,0 +1,146 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+
+import net.time4j.Moment;
+import net.time4j.TemporalType;
+import net.time4j.calendar.astro.AstronomicalSeason;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SeasonTableTest
+{
+    @Before
+    public void init()
+    {
+        SeasonTable.setCacheFile(null);
+        SeasonTable.clear();
+    }
+
+    @After
+    public void cleanup()
+    {
+        SeasonTable.setCacheFile(null);
+        SeasonTable.clear();
+    }
+
+    @Test
+    public void test_get()
+    {
+        int[] years = new int[] { SeasonTable.MIN_YEAR, 1655, 1899, 1970, 2024, 2201, SeasonTable.MAX_YEAR };
+        for (int year : years) {
+            SeasonTable.prefetch(year);
+        }
+        CacheBuilder.flush();
+        assertEquals(years.length, SeasonTable.getNumBlocks());
+
+        for (int year : years)
+        {
+            for (int season=0; season<SeasonTable.NUM_SEASONS; season++)
+            {
+                AstronomicalSeason expected = SeasonTable.toSeason(season);
+                assertEquals(toMillis(expected.inYear(year)), SeasonTable.get(season, year, true));
+                assertEquals(toMillis(expected.onSouthernHemisphere().inYear(year)), SeasonTable.get(season, year, false));
+            }
+        }
+    }
+
+    @Test
+    public void test_get_notSolved()
+    {
+        assertEquals(SeasonTable.NONE, SeasonTable.get(SeasonTable.SUMMER_SOLSTICE, 2024, true));    // requested; not solved on this thread
+        CacheBuilder.flush();
+        assertEquals(1, SeasonTable.getNumBlocks());    // solved in the background
+        assertEquals(toMillis(AstronomicalSeason.SUMMER_SOLSTICE.inYear(2024)), SeasonTable.get(SeasonTable.SUMMER_SOLSTICE, 2024, true));
+    }
+
+    @Test
+    public void test_get_outsideRange()
+    {
+        assertEquals(SeasonTable.NONE, SeasonTable.get(SeasonTable.VERNAL_EQUINOX, SeasonTable.MIN_YEAR - 1, true));
+        assertEquals(SeasonTable.NONE, SeasonTable.get(SeasonTable.VERNAL_EQUINOX, SeasonTable.MAX_YEAR + 1, true));
+        SeasonTable.prefetch(SeasonTable.MAX_YEAR + 1);
+        CacheBuilder.flush();
+        assertEquals(0, SeasonTable.getNumBlocks());
+    }
+
+    @Test
+    public void test_cacheFile() throws Exception
+    {
+        File file = File.createTempFile("season_table", ".dat");
+        try {
+            SeasonTable.setCacheFile(file);
+            SeasonTable.prefetch(2024);
+            CacheBuilder.flush();       // solved in the background
+            long expected = SeasonTable.get(SeasonTable.WINTER_SOLSTICE, 2024, true);
+            assertEquals(1, SeasonTable.getNumBlocks());
+            CacheFileWriter.flush();    // written in the background
+            assertTrue(file.length() > 0);
+            assertFalse(new File(file.getPath() + ".tmp").exists());    // written to a temporary file, then renamed
+
+            SeasonTable.clear();
+            assertEquals(0, SeasonTable.getNumBlocks());
+            SeasonTable.loadCache();
+            assertEquals(1, SeasonTable.getNumBlocks());    // loaded from file
+            assertEquals(expected, SeasonTable.get(SeasonTable.WINTER_SOLSTICE, 2024, true));
+            assertEquals(1, SeasonTable.getNumBlocks());
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void test_calculator()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        Time4ASuntimesCalculator calculator = new Time4ANOAASuntimesCalculator();
+        Calendar date = Calendar.getInstance(timezone);
+        int[] years = new int[] { 1601, 2024, 2399, 2500, 2024 };    // 2500 is outside the table (solved); 2024 solved, then from the table
+        for (int year : years)
+        {
+            CacheBuilder.flush();
+            date.set(year, 5, 21, 12, 0, 0);
+            calculator.init(new Location("test", "35", "-112", "0"), timezone);
+            assertEquals(toMillis(AstronomicalSeason.VERNAL_EQUINOX.inYear(year)), calculator.getSpringEquinoxForYear(date).getTimeInMillis());
+            assertEquals(toMillis(AstronomicalSeason.WINTER_SOLSTICE.inYear(year)), calculator.getWinterSolsticeForYear(date).getTimeInMillis());
+            assertEquals(timezone, calculator.getSummerSolsticeForYear(date).getTimeZone());
+
+            calculator.init(new Location("test", "-35", "-112", "0"), timezone);
+            assertEquals(toMillis(AstronomicalSeason.AUTUMNAL_EQUINOX.inYear(year)), calculator.getSpringEquinoxForYear(date).getTimeInMillis());
+            assertEquals(toMillis(AstronomicalSeason.SUMMER_SOLSTICE.inYear(year)), calculator.getWinterSolsticeForYear(date).getTimeInMillis());
+        }
+    }
+
+    protected static long toMillis(Moment moment) {
+        return TemporalType.JAVA_UTIL_DATE.from(moment).getTime();
+    }
+}
@@ -0,0 +1,151 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolarEphemerisTest
+{
+    public static final Location[] TEST_LOCATIONS = new Location[] {
+            new Location("test0", "33.45579", "-111.9485", "360"),
+            new Location("test1", "78", "15", "0"),
+            new Location("test2", "-33.9", "18.4", "1500"),
+            new Location("test3", "0", "179.9", "0")
+    };
+    public static final TimeZone TEST_TIMEZONE = TimeZone.getTimeZone("UTC");
+    public static final int TEST_SAMPLES = 2000;
+    public static final int TEST_WINDOWS = 20;
+    public static final long TEST_WINDOW_MILLIS = 60L * 24 * 60 * 60 * 1000;    // 60 days
+
+    @Test
+    public void test_accuracy()
+    {
+        Calendar start = Calendar.getInstance(TEST_TIMEZONE);
+        start.set(1990, 0, 1, 0, 0, 0);
+        Calendar end = Calendar.getInstance(TEST_TIMEZONE);
+        end.set(2060, 0, 1, 0, 0, 0);
+        long range = end.getTimeInMillis() - start.getTimeInMillis();
+
+        Random random = new Random(8);
+        SuntimesCalculator.SunPosition expected = new SuntimesCalculator.SunPosition();
+        SuntimesCalculator.SunPosition result = new SuntimesCalculator.SunPosition();
+        for (Location location : TEST_LOCATIONS)
+        {
+            Time4ANOAASuntimesCalculator calculator0 = new Time4ANOAASuntimesCalculator();
+            calculator0.init(location, TEST_TIMEZONE);
+            Time4AEphemerisSuntimesCalculator calculator1 = new Time4AEphemerisSuntimesCalculator();
+            calculator1.init(location, TEST_TIMEZONE);
+
+            for (int i=0; i<TEST_SAMPLES; i++)
+            {
+                long window = start.getTimeInMillis() + (range / TEST_WINDOWS) * (i / (TEST_SAMPLES / TEST_WINDOWS));    // samples are clustered (so only a few blocks are computed per window)
+                long millis = window + (long) (random.nextDouble() * TEST_WINDOW_MILLIS);
+                calculator0.getSunPosition(millis, expected);
+                calculator1.getSunPosition(millis, result);
+
+                String tag = location.getLabel() + " @ " + millis;
+                assertEquals(tag, expected.rightAscension, result.rightAscension, SolarEphemeris.ACCURACY_DEGREES);
+                assertEquals(tag, expected.declination, result.declination, SolarEphemeris.ACCURACY_DEGREES);
+                assertEquals(tag, expected.elevation, result.elevation, SolarEphemeris.ACCURACY_DEGREES);
+                assertTrue(tag, angularDistance(expected.azimuth, result.azimuth) * Math.cos(Math.toRadians(expected.elevation)) <= SolarEphemeris.ACCURACY_DEGREES);
+            }
+        }
+    }
+
+    @Test
+    public void test_sharedObserver() throws InterruptedException
+    {
+        final Time4AEphemerisSuntimesCalculator calculator = new Time4AEphemerisSuntimesCalculator();
+        calculator.init(TEST_LOCATIONS[0], TEST_TIMEZONE);
+
+        Calendar start = Calendar.getInstance(TEST_TIMEZONE);
+        start.set(2024, 0, 1, 0, 0, 0);
+        final long startMillis = start.getTimeInMillis();
+        final int n = 200000;
+        final long step = 60 * 1000L;
+
+        final double[] expected = new double[n];
+        SuntimesCalculator.SunPosition position = new SuntimesCalculator.SunPosition();
+        for (int i=0; i<n; i++)
+        {
+            calculator.getSunPosition(startMillis + i * step, position);
+            expected[i] = position.elevation;
+        }
+
+        final int[] mismatches = new int[4];
+        Thread[] threads = new Thread[mismatches.length];
+        for (int j=0; j<threads.length; j++)
+        {
+            final int k = j;
+            threads[j] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    SuntimesCalculator.SunPosition result = new SuntimesCalculator.SunPosition();
+                    for (int i=0; i<n; i++)
+                    {
+                        int index = (k % 2 == 0) ? i : (n - 1 - i);    // threads walk in opposite directions (so their buffers would differ)
+                        calculator.getSunPosition(startMillis + index * step, result);
+                        if (result.elevation != expected[index]) {
+                            mismatches[k]++;
+                        }
+                    }
+                }
+            });
+            threads[j].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int mismatch : mismatches) {
+            assertEquals(0, mismatch);    // a calculator (and its Observer) is safe to share between threads
+        }
+    }
+
+    @Test
+    public void test_blocks()
+    {
+        SolarEphemeris.clear();
+        double[] coordinates = new double[3];
+        SolarEphemeris.getEquatorialCoordinates(0, coordinates);                                 // block boundary
+        SolarEphemeris.getEquatorialCoordinates(SolarEphemeris.BLOCK_MILLIS - 1, coordinates);   // last node of the same block
+        assertEquals(1, SolarEphemeris.getNumBlocks());
+        SolarEphemeris.getEquatorialCoordinates(-1, coordinates);                                // before the epoch
+        assertEquals(2, SolarEphemeris.getNumBlocks());
+        SolarEphemeris.clear();
+        assertEquals(0, SolarEphemeris.getNumBlocks());
+    }
+
+    protected static double angularDistance(double a, double b)
+    {
+        double d = Math.abs(a - b) % 360;
+        return (d > 180 ? 360 - d : d);
+    }
+}
@@ -0,0 +1,156 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.graph;
+
+import com.forrestguice.suntimeswidget.calculator.core.ElevationCrossings;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ElevationPathSamplerTest
+{
+    public static final long MINUTE = 60 * 1000L;
+    public static final long DAY = 24 * 60 * MINUTE;
+
+    /**
+     * a sinusoidal "sun path" (amplitude 60, offset 10, period 1 day)
+     */
+    public static class TestFunction implements ElevationCrossings.ElevationFunction
+    {
+        public int numCalls = 0;
+
+        @Override
+        public double getElevation(long millis)
+        {
+            numCalls++;
+            return 10 - 60 * Math.cos(2 * Math.PI * millis / (double) DAY);
+        }
+    }
+
+    @Test
+    public void test_sample()
+    {
+        TestFunction function = new TestFunction();
+        double tolerance = 0.25;
+        ElevationPathSampler.Samples samples = ElevationPathSampler.sample(function, 0, 2 * DAY, 60 * MINUTE, MINUTE, tolerance);
+
+        assertTrue(samples.size() > 2);
+        assertTrue(samples.size() < (2 * DAY / (5 * MINUTE)));      // fewer samples than a fixed 5 minute interval
+        assertTrue(function.numCalls < (2 * DAY / (5 * MINUTE)));
+        assertEquals(0, samples.millis[0]);
+        assertTrue(samples.millis[samples.size() - 1] < 2 * DAY);
+        assertEquals(-50, samples.elevation_min, 0.01);
+        assertEquals(70, samples.elevation_max, 0.01);
+
+        for (int i=1; i<samples.size(); i++)
+        {
+            long t0 = samples.millis[i-1], t1 = samples.millis[i];
+            assertTrue(t1 > t0);
+
+            // the polyline is within tolerance of the curve (checked at each segment's midpoint)
+            double e = function.getElevation(t0 + (t1 - t0) / 2);
+            assertEquals(e, (samples.elevation[i-1] + samples.elevation[i]) / 2d, 2 * tolerance);
+
+            // horizon crossings are resolved to the minimum interval
+            if ((samples.elevation[i-1] < 0) != (samples.elevation[i] < 0)) {
+                assertTrue(t1 - t0 < 2 * MINUTE);
+            }
+        }
+    }
+
+    @Test
+    public void test_sample_capped()
+    {
+        TestFunction function = new TestFunction();
+        ElevationPathSampler.Samples samples = ElevationPathSampler.sample(function, 0, 2 * DAY, 60 * MINUTE, 30 * MINUTE, 0);
+        assertTrue(samples.size() <= 1 + (2 * DAY / (30 * MINUTE)));     // tolerance 0 is limited by the minimum interval
+    }
+
+    @Test
+    public void test_sample_unavailable()
+    {
+        ElevationPathSampler.Samples samples = ElevationPathSampler.sample(new ElevationCrossings.ElevationFunction()
+        {
+            @Override
+            public double getElevation(long millis) {
+                return (millis < DAY ? 0 : Double.NaN);
+            }
+        }, 0, 2 * DAY, 60 * MINUTE, MINUTE, 0.25);
+        assertTrue(samples.size() > 0);
+        assertTrue(samples.millis[samples.size() - 1] < DAY);
+    }
+
+    @Test
+    public void test_get_cached()
+    {
+        ElevationPathSampler.clear();
+        TestFunction function = new TestFunction();
+        ElevationPathSampler.Samples samples0 = ElevationPathSampler.get("test0", function, 0, 2 * DAY, 60 * MINUTE, MINUTE, 0.25);
+        int numCalls = function.numCalls;
+        assertSame(samples0, ElevationPathSampler.get("test0", function, 0, 2 * DAY, 60 * MINUTE, MINUTE, 0.25));
+        assertEquals(numCalls, function.numCalls);
+        assertEquals(1, ElevationPathSampler.getNumHits());
+        assertEquals(1, ElevationPathSampler.getNumMisses());
+
+        for (int i=1; i<=ElevationPathSampler.MAX_ENTRIES; i++) {
+            ElevationPathSampler.get("test" + i, function, 0, DAY, 60 * MINUTE, MINUTE, 0.25);
+        }
+        assertEquals(ElevationPathSampler.MAX_ENTRIES, ElevationPathSampler.getNumEntries());
+        assertFalse(ElevationPathSampler.contains("test0"));      // evicted (least recently used)
+        ElevationPathSampler.clear();
+    }
+
+    @Test
+    public void test_get_unlocked() throws InterruptedException
+    {
+        ElevationPathSampler.clear();
+        final boolean[] blocked = new boolean[] { false };
+        ElevationPathSampler.get("test0", new ElevationCrossings.ElevationFunction()
+        {
+            @Override
+            public double getElevation(long millis)
+            {
+                if (millis == 0)
+                {
+                    Thread thread = new Thread(new Runnable()
+                    {
+                        @Override
+                        public void run() {
+                            ElevationPathSampler.contains("test1");    // blocks if the cache is locked while sampling
+                        }
+                    });
+                    thread.start();
+                    try {
+                        thread.join(5000);
+                    } catch (InterruptedException e) { /* EMPTY */ }
+                    blocked[0] = thread.isAlive();
+                }
+                return 10 - 60 * Math.cos(2 * Math.PI * millis / (double) DAY);
+            }
+        }, 0, DAY, 60 * MINUTE, MINUTE, 0.25);
+
+        assertFalse("the cache is locked while sampling", blocked[0]);
+        assertTrue(ElevationPathSampler.contains("test0"));
+        ElevationPathSampler.clear();
+    }
+}
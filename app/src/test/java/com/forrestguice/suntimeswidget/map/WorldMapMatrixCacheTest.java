@@ -0,0 +1,88 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WorldMapMatrixCacheTest
+{
+    @Test
+    public void test_getMatrix_shared()
+    {
+        WorldMapMatrixCache.clear();
+        WorldMapEquiazimuthal projection0 = new WorldMapEquiazimuthal();
+        WorldMapEquiazimuthal projection1 = new WorldMapEquiazimuthal();
+        float[] matrix = projection0.getMatrix();
+        int[] size = projection0.matrixSize();
+        assertEquals(size[0] * size[1] * 3, matrix.length);
+        assertSame(matrix, projection1.getMatrix());    // shared between instances
+        assertTrue(WorldMapMatrixCache.contains(projection0.matrixKey()));
+
+        WorldMapEquiazimuthal1 projection2 = new WorldMapEquiazimuthal1();
+        assertNotSame(matrix, projection2.getMatrix());    // but not between projections
+        assertEquals(2, WorldMapMatrixCache.getNumEntries());
+
+        projection0.resetMatrix();
+        assertFalse(WorldMapMatrixCache.contains(projection0.matrixKey()));
+        assertNotSame(matrix, projection1.getMatrix());
+        WorldMapMatrixCache.clear();
+    }
+
+    @Test
+    public void test_getMatrix_center()
+    {
+        WorldMapMatrixCache.clear();
+        WorldMapEquiazimuthal2 projection = new WorldMapEquiazimuthal2();
+        projection.setCenter(0, 0);
+        float[] matrix0 = projection.getMatrix();
+        String key0 = projection.matrixKey();
+
+        projection.setCenter(40, -100);
+        float[] matrix1 = projection.getMatrix();
+        assertNotSame(matrix0, matrix1);    // a matrix for each center
+        assertTrue(WorldMapMatrixCache.contains(key0));
+
+        projection.setCenter(0, 0);
+        assertSame(matrix0, projection.getMatrix());
+        WorldMapMatrixCache.clear();
+    }
+
+    @Test
+    public void test_evict()
+    {
+        WorldMapMatrixCache.clear();
+        WorldMapEquiazimuthal2 projection = new WorldMapEquiazimuthal2();
+        for (int i = 0; i <= WorldMapMatrixCache.MAX_ENTRIES; i++)
+        {
+            projection.setCenter(0, i * 10);
+            projection.getMatrix();
+        }
+        assertEquals(WorldMapMatrixCache.MAX_ENTRIES, WorldMapMatrixCache.getNumEntries());
+        projection.setCenter(0, 0);
+        assertFalse(WorldMapMatrixCache.contains(projection.matrixKey()));    // least recently used
+        WorldMapMatrixCache.clear();
+        projection.setCenter(0, 0);
+    }
+}
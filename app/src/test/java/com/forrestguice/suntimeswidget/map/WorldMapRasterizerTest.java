@@ -0,0 +1,214 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.forrestguice.suntimeswidget.map;
+
+import com.forrestguice.suntimeswidget.calculator.RangeExecutor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WorldMapRasterizerTest
+{
+    public static final int[] PALETTE0 = new int[] { 0, 1, 2, 3 };
+    public static final int[] PALETTE1 = new int[] { 10, 11, 12, 13 };
+
+    @Test
+    public void test_shade()
+    {
+        int w = 72, h = 36;
+        float[] m = createMatrix(w, h);
+        double[] sunUp = unitVector(23.4, -45);
+        double[] moonUp = unitVector(-5, 100);
+
+        int[] expected0 = shadeNaive(m, w, h, sunUp, moonUp, PALETTE0);
+        int[] expected1 = shadeNaive(m, w, h, sunUp, moonUp, PALETTE1);
+        for (int numWorkers : new int[] { 0, 3 })
+        {
+            RangeExecutor.setMaxWorkers(numWorkers);
+            int[] pixels0 = new int[w * h];
+            int[] pixels1 = new int[w * h];
+            WorldMapRasterizer.shade(m, w, h, sunUp, moonUp, pixels0, PALETTE0, pixels1, PALETTE1);
+            assertArrayEquals(expected0, pixels0);
+            assertArrayEquals(expected1, pixels1);
+        }
+        RangeExecutor.setMaxWorkers(-1);
+    }
+
+    @Test
+    public void test_shade_sunOnly()
+    {
+        int w = 36, h = 18;
+        float[] m = createMatrix(w, h);
+        double[] sunUp = unitVector(0, 0);
+
+        int[] pixels = new int[w * h];
+        WorldMapRasterizer.shade(m, w, h, sunUp, null, pixels, PALETTE0, null, null);
+        assertArrayEquals(shadeNaive(m, w, h, sunUp, null, PALETTE0), pixels);
+    }
+
+    @Test
+    public void test_shade_separable()
+    {
+        int w = 72, h = 36;
+        double[][] axes = createAxes(w, h);
+        double[] lon = axes[0], lat = axes[1];
+
+        float[] m = createMatrix(w, h);
+        double[] sunUp = unitVector(-12.5, 60);
+        double[] moonUp = unitVector(18, -135);
+        for (int numWorkers : new int[] { 0, 3 })
+        {
+            RangeExecutor.setMaxWorkers(numWorkers);
+            int[] pixels0 = new int[w * h];
+            int[] pixels1 = new int[w * h];
+            WorldMapRasterizer.shade(lon, lat, w, h, sunUp, moonUp, pixels0, PALETTE0, pixels1, PALETTE1);
+
+            int[] expected0 = shadeNaive(m, w, h, sunUp, moonUp, PALETTE0);
+            int[] expected1 = shadeNaive(m, w, h, sunUp, moonUp, PALETTE1);
+            int n = w * h;
+            for (int z = 0; z < n; z++)
+            {
+                if (Math.abs(dot(sunUp, m[z], m[n + z], m[2 * n + z])) > 1e-6 && Math.abs(dot(moonUp, m[z], m[n + z], m[2 * n + z])) > 1e-6)  // skip pixels on the terminator (float rounding)
+                {
+                    assertEquals(expected0[z], pixels0[z]);
+                    assertEquals(expected1[z], pixels1[z]);
+                }
+            }
+        }
+        RangeExecutor.setMaxWorkers(-1);
+    }
+
+    @Test
+    public void test_shadeNext()
+    {
+        int w = 720, h = 360;
+        double[][] axes = createAxes(w, h);
+        WorldMapRasterizer rasterizer = new WorldMapRasterizer();
+        int[] pixels0 = rasterizer.getBuffer(0, w * h);
+        int[] pixels1 = rasterizer.getBuffer(1, w * h);
+        int[] expected0 = new int[w * h];
+        int[] expected1 = new int[w * h];
+
+        for (int frame = 0; frame < 60; frame++)
+        {
+            double[] sunUp = unitVector(23.4 - (frame * 0.05), -180 + (frame * 0.75));    // crosses the antimeridian
+            double[] moonUp = unitVector(-5 + (frame * 0.1), 100 + (frame * 0.7));
+            rasterizer.shadeNext(axes[0], axes[1], w, h, sunUp, moonUp, pixels0, PALETTE0, pixels1, PALETTE1);
+            WorldMapRasterizer.shade(axes[0], axes[1], w, h, sunUp, moonUp, expected0, PALETTE0, expected1, PALETTE1);
+            assertArrayEquals("frame " + frame, expected0, pixels0);
+            assertArrayEquals("frame " + frame, expected1, pixels1);
+
+            if (frame == 0) {
+                assertEquals(w * h, rasterizer.getNumShaded());    // first frame is shaded entirely
+            } else assertTrue(rasterizer.getNumShaded() < (w * h) / 10);
+        }
+
+        double[] sunUp = unitVector(-23.4, 45);    // a frame that doesn't follow the previous (different palette)
+        rasterizer.shadeNext(axes[0], axes[1], w, h, sunUp, null, pixels0, PALETTE1, null, null);
+        WorldMapRasterizer.shade(axes[0], axes[1], w, h, sunUp, null, expected0, PALETTE1, null, null);
+        assertArrayEquals(expected0, pixels0);
+        assertEquals(w * h, rasterizer.getNumShaded());
+
+        sunUp = unitVector(90, 0);    // sun overhead at the pole (rows entirely lit or dark)
+        rasterizer.shadeNext(axes[0], axes[1], w, h, sunUp, null, pixels0, PALETTE1, null, null);
+        WorldMapRasterizer.shade(axes[0], axes[1], w, h, sunUp, null, expected0, PALETTE1, null, null);
+        assertArrayEquals(expected0, pixels0);
+    }
+
+    @Test
+    public void test_getBuffer()
+    {
+        WorldMapRasterizer rasterizer = new WorldMapRasterizer();
+        int[] buffer = rasterizer.getBuffer(0, 100);
+        assertSame(buffer, rasterizer.getBuffer(0, 100));    // reused
+        assertArrayEquals(new int[200], rasterizer.getBuffer(0, 200));
+    }
+
+    protected static int[] shadeNaive(float[] m, int w, int h, double[] sunUp, double[] moonUp, int[] palette)
+    {
+        int n = w * h;
+        int[] pixels = new int[n];
+        for (int j = 0; j < h; j++)
+        {
+            for (int i = 0; i < w; i++)
+            {
+                int z = i + (w * j);
+                int c = WorldMapRasterizer.LIT;
+                if (sunUp != null && dot(sunUp, m[z], m[n + z], m[2 * n + z]) <= 0) {
+                    c |= WorldMapRasterizer.SHADOW;
+                }
+                if (moonUp != null && dot(moonUp, m[z], m[n + z], m[2 * n + z]) > 0) {
+                    c |= WorldMapRasterizer.MOONLIGHT;
+                }
+                pixels[z] = palette[c];
+            }
+        }
+        return pixels;
+    }
+
+    protected static double dot(double[] u, double v0, double v1, double v2) {
+        return (u[0] * v0) + (u[1] * v1) + (u[2] * v2);
+    }
+
+    protected static float[] createMatrix(int w, int h)    // equirectangular
+    {
+        float[] v = new float[w * h * 3];
+        for (int i = 0; i < w; i++)
+        {
+            for (int j = 0; j < h; j++)
+            {
+                double[] u = unitVector(90 - ((j * 180d) / h), ((i * 360d) / w) - 180);
+                v[i + (w * j)] = (float) u[0];
+                v[i + (w * (h + j))] = (float) u[1];
+                v[i + (w * ((2 * h) + j))] = (float) u[2];
+            }
+        }
+        return v;
+    }
+
+    protected static double[][] createAxes(int w, int h)    // equirectangular (separable)
+    {
+        double[] lon = new double[2 * w];
+        double[] lat = new double[2 * h];
+        for (int i = 0; i < w; i++)
+        {
+            double radLon = Math.toRadians(((i * 360d) / w) - 180);
+            lon[i] = Math.cos(radLon);
+            lon[w + i] = Math.sin(radLon);
+        }
+        for (int j = 0; j < h; j++)
+        {
+            double radLat = Math.toRadians(90 - ((j * 180d) / h));
+            lat[j] = Math.cos(radLat);
+            lat[h + j] = Math.sin(radLat);
+        }
+        return new double[][] { lon, lat };
+    }
+
+    protected static double[] unitVector(double lat, double lon)
+    {
+        double radLat = Math.toRadians(lat), radLon = Math.toRadians(lon);
+        return new double[] { Math.cos(radLon) * Math.cos(radLat), Math.sin(radLon) * Math.cos(radLat), Math.sin(radLat) };
+    }
+}
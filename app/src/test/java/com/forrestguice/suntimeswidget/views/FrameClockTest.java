@@ -0,0 +1,85 @@
+/**
+    Copyright (C) 2024 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.forrestguice.suntimeswidget.views;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameClockTest
+{
+    @Test
+    public void test_awaitFrame()
+    {
+        FrameClock clock = new FrameClock(20);
+        clock.start();
+        long start = System.nanoTime();
+        for (int i=0; i<5; i++) {
+            assertTrue(clock.awaitFrame() >= 1);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue("frames should be paced (elapsed " + elapsed + " ns)", elapsed >= 5 * clock.getFrameNanos() - 1000000L);
+        assertEquals(5, clock.getNumFrames());
+    }
+
+    @Test
+    public void test_awaitFrame_interrupted()
+    {
+        FrameClock clock = new FrameClock(60000);
+        clock.start();
+        Thread.currentThread().interrupt();
+        assertEquals(0, clock.awaitFrame());
+        assertTrue(Thread.interrupted());    // interrupt status is restored (and cleared here)
+    }
+
+    @Test
+    public void test_nextFrame_skip()
+    {
+        FrameClock clock = new FrameClock(100);
+        long frame = clock.getFrameNanos();
+        clock.start();
+        long t0 = clock.deadline;
+
+        assertEquals(1, clock.nextFrame(t0));                    // on time
+        assertEquals(0, clock.getNumDropped());
+        assertEquals(t0 + frame, clock.deadline);
+
+        assertEquals(3, clock.nextFrame(t0 + 3 * frame + 1));    // 2 intervals late; skips ahead
+        assertEquals(2, clock.getNumDropped());
+        assertEquals(t0 + 4 * frame, clock.deadline);            // stays on the grid
+
+        long t1 = clock.deadline + 10 * frame;                   // very late; resync
+        assertEquals(1 + FrameClock.MAX_SKIP, clock.nextFrame(t1));
+        assertEquals(12, clock.getNumDropped());
+        assertEquals(t1 + frame, clock.deadline);
+        assertEquals(3, clock.getNumFrames());
+    }
+
+    @Test
+    public void test_nextFrame_noSkip()
+    {
+        FrameClock clock = new FrameClock(100);
+        clock.setAllowSkip(false);
+        clock.start();
+        assertEquals(1, clock.nextFrame(clock.deadline + 3 * clock.getFrameNanos()));
+        assertEquals(3, clock.getNumDropped());
+    }
+}